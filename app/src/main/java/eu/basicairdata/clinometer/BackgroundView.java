@@ -32,10 +32,10 @@ import android.view.View;
 public class BackgroundView extends View {
 
     private static final float N_CIRCLES_FULLY_VISIBLE = 4.5f;
+    private static final int N_LINES = 24;          // The number of lines: every 10°, except the multiples of 30°
 
     private Paint paint_bg;                 // For Background Gradient
     private Paint paint_DKGray;             // For Background Lines != 30°
-    private boolean isShaderCreated = false;                    // True if the Background Shader has been created
 
     private final ClinometerActivity clinometerActivity = ClinometerActivity.getInstance();
     private final ClinometerApplication clinometerApplication = ClinometerApplication.getInstance();
@@ -55,6 +55,8 @@ public class BackgroundView extends View {
 
     private int angle;
 
+    private final float[] lines = new float[N_LINES * 4];  // The end points of the lines, computed when the size changes
+
 
     public BackgroundView(Context context, AttributeSet attrs) {
         super(context, attrs);
@@ -89,18 +91,15 @@ public class BackgroundView extends View {
 
         paint_bg = new Paint();
         paint_bg.setStyle(Paint.Style.FILL);
-        isShaderCreated = false;
     }
 
 
     @Override
-    protected void onDraw(Canvas canvas) {
-        //super.onDraw(canvas);
-
-        refbgAxis = clinometerActivity.getbgPIDValue();
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
 
-        x = getWidth();
-        y = getHeight();
+        x = w;
+        y = h;
         min_xy = Math.min(x, y);
         max_xy = Math.max(x, y);
         xc = x / 2;                                     // x screen center
@@ -112,27 +111,36 @@ public class BackgroundView extends View {
         // The number of circles to be drawn
         r1 = (min_xy / 2.0f) / N_CIRCLES_FULLY_VISIBLE; // The radius of the first circle.
 
-        if (!isShaderCreated) {
-            paint_bg.setShader(new RadialGradient(xc, yc, (int) (Math.sqrt(xc * xc + yc * yc) / 2),
-                    getResources().getColor(R.color.bgpaint_dark),
-                    getResources().getColor(R.color.bgpaint_light),
-                    Shader.TileMode.MIRROR));
-            isShaderCreated = true;
-        }
-        canvas.drawCircle(xc, yc, (int) Math.sqrt(xc*xc + yc*yc), paint_bg);
-
-        canvas.save();
-        canvas.rotate(refbgAxis, xc, yc);
+        // The Shader depends on the size, so it is created again
+        paint_bg.setShader(new RadialGradient(xc, yc, (int) (Math.sqrt(xc * xc + yc * yc) / 2),
+                getResources().getColor(R.color.bgpaint_dark),
+                getResources().getColor(R.color.bgpaint_light),
+                Shader.TileMode.MIRROR));
 
+        // The lines, from the border to the first circle
+        int i = 0;
         for (angle = 0; angle < 360; angle += 10) {
-            if (angle % 30 != 0) canvas.drawLine(
-                xc - (int) (diag2c * Math.cos(Math.toRadians(angle))),
-                yc - (int) (diag2c * Math.sin(Math.toRadians(angle))),
-                xc - (int) (r1 * Math.cos(Math.toRadians(angle))),
-                yc - (int) (r1 * Math.sin(Math.toRadians(angle))),
-                paint_DKGray);
+            if (angle % 30 != 0) {
+                lines[i++] = xc - (int) (diag2c * Math.cos(Math.toRadians(angle)));
+                lines[i++] = yc - (int) (diag2c * Math.sin(Math.toRadians(angle)));
+                lines[i++] = xc - (int) (r1 * Math.cos(Math.toRadians(angle)));
+                lines[i++] = yc - (int) (r1 * Math.sin(Math.toRadians(angle)));
+            }
         }
+    }
 
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        //super.onDraw(canvas);
+
+        refbgAxis = clinometerActivity.getbgPIDValue();
+
+        canvas.drawCircle(xc, yc, (int) diag2c, paint_bg);
+
+        canvas.save();
+        canvas.rotate(refbgAxis, xc, yc);
+        canvas.drawLines(lines, paint_DKGray);
         canvas.restore();
     }
 }
@@ -63,21 +63,8 @@ public class CalibrationActivity extends AppCompatActivity implements SensorEven
     private Vibrator vibrator;
 
     private final static int ACCELEROMETER_UPDATE_INTERVAL_MICROS = 10000;
-    private final static float MIN_CALIBRATION_PRECISION = 0.05f;
-    private final static int SIZE_OF_MEANVARIANCE = 300;                    // 4 seconds
 
-
-    MeanVariance mvGravity0 = new MeanVariance(SIZE_OF_MEANVARIANCE);
-    MeanVariance mvGravity1 = new MeanVariance(SIZE_OF_MEANVARIANCE);
-    MeanVariance mvGravity2 = new MeanVariance(SIZE_OF_MEANVARIANCE);
-
-    private final float[][] mean = new float[3][7];              // The Mean values of vectors
-
-    private final float[] calibrationOffset = new float[3];      // The Offsets of accelerometers
-    private final float[] calibrationGain = new float[3];        // The Gains of accelerometers
-    private final float[] calibrationAngle = new float[3];       // The calibration angles
-
-    private float calibrationPrecisionIncrement = 0;             // The increment of the MIN_CALIBRATION_PRECISION in case of calibration reset
+    private final CalibrationEngine calibrationEngine = new CalibrationEngine();    // The signal processing
 
     private AppCompatButton buttonNext;
     private ProgressBar progressBar;
@@ -105,11 +92,6 @@ public class CalibrationActivity extends AppCompatActivity implements SensorEven
     private static final int STEP_7_CAL     = 13;   // Calibrating...   Don't move the device
     private static final int STEP_COMPLETED = 14;   // Calibration completed, performs calculations and shows results
 
-    private static final float STANDARD_GRAVITY = 9.807f;
-
-    private static final int DISCARD_FIRST_SAMPLES = 20;
-    private int samplesDiscarded = 0;
-
     ToneGenerator toneGen1 = new ToneGenerator(AudioManager.STREAM_MUSIC, ToneGenerator.TONE_CDMA_KEYPAD_VOLUME_KEY_LITE);
 
     private SensorManager mSensorManager;
@@ -300,82 +282,51 @@ public class CalibrationActivity extends AppCompatActivity implements SensorEven
                 buttonNext.setVisibility(View.INVISIBLE);
                 textViewProgress.setVisibility(View.VISIBLE);
                 textViewStepDescription.setText(R.string.calibration_calibrating);
-                mvGravity0.reset();
-                mvGravity1.reset();
-                mvGravity2.reset();
-                samplesDiscarded = 0;
+                calibrationEngine.startStep(currentStep / 2);
                 mSensorManager.registerListener(this, mRotationSensor, ACCELEROMETER_UPDATE_INTERVAL_MICROS);
                 break;
             case STEP_COMPLETED:
 
                 // Write raw step Values into Preferences
 
+                float[][] mean = calibrationEngine.getMean();
                 SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
                 SharedPreferences.Editor editorRaw = preferences.edit();
-                for (int i = 0; i < 7; i++) {
+                for (int i = 0; i < CalibrationEngine.N_STEPS; i++) {
                     editorRaw.putFloat("prefCalibrationRawMean_0_" + i , mean[0][i]);
                     editorRaw.putFloat("prefCalibrationRawMean_1_" + i , mean[1][i]);
                     editorRaw.putFloat("prefCalibrationRawMean_2_" + i , mean[2][i]);
                 }
                 editorRaw.commit();
 
-                // Calculations
-
                 Log.d("Clinometer","-- MEAN NOT CORRECTED ------------------------------------------------------");
-                for (int i = 0; i < 7; i++) {
+                for (int i = 0; i < CalibrationEngine.N_STEPS; i++) {
                     Log.d("Clinometer", String.format("mean[ ][" + i + "]  =  %+1.4f  %+1.4f  %+1.4f", mean[0][i], mean[1][i], mean[2][i]));
                 }
 
-                // Calibration offset and Gain (https://www.digikey.it/it/articles/using-an-accelerometer-for-inclination-sensing)
-
-                calibrationOffset[0] = (mean[0][2] + mean[0][3]) / 2;
-                calibrationOffset[1] = (mean[1][4] + mean[1][5]) / 2;
-                calibrationOffset[2] = (mean[2][0] + mean[2][6]) / 2;
-
-                calibrationGain[0] = (mean[0][2] - mean[0][3]) / (STANDARD_GRAVITY * 2);
-                calibrationGain[1] = (mean[1][4] - mean[1][5]) / (STANDARD_GRAVITY * 2);
-                calibrationGain[2] = (mean[2][0] - mean[2][6]) / (STANDARD_GRAVITY * 2);
+                // Calculations
 
-                // Estimation of the third axis
-//                CalibrationGain[2] = (CalibrationGain[0] + CalibrationGain[1]) / 2;
-//                CalibrationOffset[2] = (Mean[2][0] + Mean[2][0]) / 2 - (CalibrationGain[2] * STANDARD_GRAVITY);
+                calibrationEngine.calculate();
+                float[] calibrationOffset = calibrationEngine.getCalibrationOffset();
+                float[] calibrationGain = calibrationEngine.getCalibrationGain();
+                float[] calibrationAngle = calibrationEngine.getCalibrationAngle();
 
                 Log.d("Clinometer","-- ACCELEROMETERS ----------------------------------------------------------");
                 Log.d("Clinometer", String.format("Offset  =  %+1.4f  %+1.4f  %+1.4f", calibrationOffset[0], calibrationOffset[1], calibrationOffset[2]));
                 Log.d("Clinometer", String.format("Gain    =  %+1.4f  %+1.4f  %+1.4f", calibrationGain[0], calibrationGain[1], calibrationGain[2]));
 
-                // Apply the Gain and Offset Correction to measurement
-
-                for (int i = 0; i < 7; i++) {
-                    mean[0][i] = (mean[0][i] - calibrationOffset[0]) / calibrationGain[0];
-                    mean[1][i] = (mean[1][i] - calibrationOffset[1]) / calibrationGain[1];
-                    mean[2][i] = (mean[2][i] - calibrationOffset[2]) / calibrationGain[2];
-                }
-
+                float[][] meanCorrected = calibrationEngine.getMeanCorrected();
                 Log.d("Clinometer","-- MEAN CORRECTED ----------------------------------------------------------");
-                for (int i = 0; i < 7; i++) {
-                    Log.d("Clinometer", String.format("mean[ ][" + i + "]  =  %+1.4f  %+1.4f  %+1.4f", mean[0][i], mean[1][i], mean[2][i]));
+                for (int i = 0; i < CalibrationEngine.N_STEPS; i++) {
+                    Log.d("Clinometer", String.format("mean[ ][" + i + "]  =  %+1.4f  %+1.4f  %+1.4f", meanCorrected[0][i], meanCorrected[1][i], meanCorrected[2][i]));
                 }
 
-                // Calculation of Angles
-
-                float[][] angle = new float[3][7];
-
+                float[][] angle = calibrationEngine.getAngle();
                 Log.d("Clinometer","-- ANGLES ------------------------------------------------------------------");
-                for (int i = 0; i < 7; i++) {
-                    angle[0][i] = (float) (Math.toDegrees(Math.asin(mean[0][i]
-                            / Math.sqrt(mean[0][i] * mean[0][i] + mean[1][i] * mean[1][i] + mean[2][i] * mean[2][i]))));
-                    angle[1][i] = (float) (Math.toDegrees(Math.asin(mean[1][i]
-                            / Math.sqrt(mean[0][i] * mean[0][i] + mean[1][i] * mean[1][i] + mean[2][i] * mean[2][i]))));
-                    angle[2][i] = (float) (Math.toDegrees(Math.asin(mean[2][i]
-                            / Math.sqrt(mean[0][i] * mean[0][i] + mean[1][i] * mean[1][i] + mean[2][i] * mean[2][i]))));
+                for (int i = 0; i < CalibrationEngine.N_STEPS; i++) {
                     Log.d("Clinometer", String.format("angle[ ][" + i + "] =  %+1.4f°  %+1.4f°  %+1.4f°", angle[0][i], angle[1][i], angle[2][i]));
                 }
 
-                calibrationAngle[2] =  (angle[0][0] + angle[0][1])/2;       // angle 0 = X axis
-                calibrationAngle[1] = -(angle[1][0] + angle[1][1])/2;       // angle 1 = Y axis
-                calibrationAngle[0] = -(angle[1][3] - angle[1][2])/2;       // angle 2 = Z axis
-
                 Log.d("Clinometer","-- CALIBRATION ANGLES ------------------------------------------------------");
                 Log.d("Clinometer", String.format("Cal.Angles =  %+1.4f°  %+1.4f°  %+1.4f°", calibrationAngle[2], calibrationAngle[1], calibrationAngle[0]));
                 Log.d("Clinometer","----------------------------------------------------------------------------");
@@ -425,63 +376,35 @@ public class CalibrationActivity extends AppCompatActivity implements SensorEven
                 mSensorManager.unregisterListener(this);
             } else {
 
-                if (samplesDiscarded < DISCARD_FIRST_SAMPLES) {
-                    samplesDiscarded++;
-                    return;
-                }
+                int result = calibrationEngine.loadSample(event.values);
+                if (result == CalibrationEngine.SAMPLE_DISCARDED) return;
 
                 // Calibration
                 //Log.d("CalibrationActivity", "CALIBRATION");
 
-                mvGravity0.loadSample(event.values[0]);
-                mvGravity1.loadSample(event.values[1]);
-                mvGravity2.loadSample(event.values[2]);
-
                 textViewProgress.setText(String.format("%s %1.0f%%   %s %1.3f",
                         getString(R.string.calibration_progress),
-                        mvGravity0.percentLoaded(),
+                        calibrationEngine.getPercentLoaded(),
                         getString(R.string.calibration_tolerance),
-                        mvGravity0.getTolerance()));
-                int progress1 = (int) (10 * mvGravity0.percentLoaded());
-                int progress2 = (int) (Math.min(1000, Math.max(0, 1000 - 1000 *(mvGravity0.getTolerance() / (MIN_CALIBRATION_PRECISION + calibrationPrecisionIncrement)))));
+                        calibrationEngine.getTolerance()));
+                int progress1 = (int) (10 * calibrationEngine.getPercentLoaded());
+                int progress2 = (int) (Math.min(1000, Math.max(0, 1000 - 1000 *(calibrationEngine.getTolerance() / calibrationEngine.getPrecision()))));
                 progressBar.setSecondaryProgress(Math.max(progress1, progress2));
                 progressBar.setProgress(Math.min(progress1, progress2));
 
-
                 // DEVICE MOVED
 
-                //Log.d("Clinometer",String.format("[#] Mean value = %+1.5f    Reading = %+1.5f    Difference = %+1.5f", mvGravity0.getMeanValue(), event.values[0], mvGravity0.getMeanValue() - event.values[0]));
-
-                //if (mvGravity0.isReady() && (mvGravity0.getTolerance() > MIN_CALIBRATION_PRECISION)) {
-                if (mvGravity0.isReady() && (
-                        (Math.abs(mvGravity0.getMeanValue() - event.values[0]) > (MIN_CALIBRATION_PRECISION + calibrationPrecisionIncrement)) ||
-                        (Math.abs(mvGravity1.getMeanValue() - event.values[1]) > (MIN_CALIBRATION_PRECISION + calibrationPrecisionIncrement)) ||
-                        (Math.abs(mvGravity2.getMeanValue() - event.values[2]) > (MIN_CALIBRATION_PRECISION + calibrationPrecisionIncrement)))
-                ) {
-                    mvGravity0.reset();
-                    mvGravity1.reset();
-                    mvGravity2.reset();
-                    if (calibrationPrecisionIncrement < 0.15f) calibrationPrecisionIncrement += 0.01f;
-                    //Log.d("Clinometer",String.format("[#] Mean value = %+1.5f    Reading = %+1.5f    Difference = %+1.5f", mvGravity0.getMeanValue(), event.values[0], mvGravity0.getMeanValue() - event.values[0]));
-                    Log.d("Clinometer",String.format("[#] New calibration precision = %+1.5f", MIN_CALIBRATION_PRECISION + calibrationPrecisionIncrement));
-
+                if (result == CalibrationEngine.SAMPLE_MOVED) {
+                    Log.d("Clinometer",String.format("[#] New calibration precision = %+1.5f", calibrationEngine.getPrecision()));
                 }
 
                 // END OF CALIBRATION STEP
 
-                if (mvGravity0.percentLoaded() == 100) {
+                if (result == CalibrationEngine.STEP_COMPLETED) {
                     mSensorManager.unregisterListener(this);
 
-                    int i = (int) (currentStep / 2);
-
-                    mean[0][i] = mvGravity0.getMeanValue(SIZE_OF_MEANVARIANCE-100);
-                    mean[1][i] = mvGravity1.getMeanValue(SIZE_OF_MEANVARIANCE-100);
-                    mean[2][i] = mvGravity2.getMeanValue(SIZE_OF_MEANVARIANCE-100);
-
                     beep();
 
-                    calibrationPrecisionIncrement = 0;
-
                     currentStep++;
                     startStep();
                 }
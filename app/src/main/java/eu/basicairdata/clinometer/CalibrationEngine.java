@@ -0,0 +1,218 @@
+/*
+ * CalibrationEngine - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+/**
+ * The signal processing of the Calibration.
+ * The calibration is made of 7 steps: for each step the device is placed on a different side
+ * and the mean values of the accelerometers are measured while the device is steady.
+ * When all the steps are completed, the offsets, the gains and the calibration angles are computed.
+ * The Class doesn't depend on Android, so that the calibration can be replayed on a plain JVM.
+ */
+public class CalibrationEngine {
+
+    public static final int N_STEPS = 7;                                   // The number of calibration steps
+    public static final float MIN_CALIBRATION_PRECISION = 0.05f;
+    public static final int SIZE_OF_MEANVARIANCE = 300;                    // 4 seconds
+    public static final int DISCARD_FIRST_SAMPLES = 20;
+    public static final float STANDARD_GRAVITY = 9.807f;
+
+    // The results of loadSample
+    public static final int SAMPLE_DISCARDED = 0;   // The sample has been discarded (the device could be still moving)
+    public static final int SAMPLE_LOADED = 1;      // The sample has been loaded
+    public static final int SAMPLE_MOVED = 2;       // The device has been moved: the step is restarted with a lower precision
+    public static final int STEP_COMPLETED = 3;     // The step has been completed
+
+    private final MeanVariance mvGravity0 = new MeanVariance(SIZE_OF_MEANVARIANCE);
+    private final MeanVariance mvGravity1 = new MeanVariance(SIZE_OF_MEANVARIANCE);
+    private final MeanVariance mvGravity2 = new MeanVariance(SIZE_OF_MEANVARIANCE);
+
+    private final float[][] mean = new float[3][N_STEPS];           // The Mean values of vectors
+    private final float[][] meanCorrected = new float[3][N_STEPS];  // The Mean values corrected with offsets and gains
+    private final float[][] angle = new float[3][N_STEPS];          // The angles of the corrected Mean values
+
+    private final float[] calibrationOffset = new float[3];         // The Offsets of accelerometers
+    private final float[] calibrationGain = new float[3];           // The Gains of accelerometers
+    private final float[] calibrationAngle = new float[3];          // The calibration angles
+
+    private float calibrationPrecisionIncrement = 0;    // The increment of the MIN_CALIBRATION_PRECISION in case of calibration reset
+    private int samplesDiscarded = 0;
+    private int step = 0;                               // The current step (0 .. N_STEPS-1)
+
+
+    /**
+     * Starts (or restarts) the measurement of the given step.
+     *
+     * @param step The step to measure (0 .. N_STEPS-1)
+     */
+    public void startStep(int step) {
+        this.step = step;
+        mvGravity0.reset();
+        mvGravity1.reset();
+        mvGravity2.reset();
+        samplesDiscarded = 0;
+    }
+
+
+    /**
+     * Loads a new accelerometer sample into the current step.
+     *
+     * @param values The values of the accelerometers (X, Y, Z)
+     * @return SAMPLE_DISCARDED, SAMPLE_LOADED, SAMPLE_MOVED or STEP_COMPLETED
+     */
+    public int loadSample(float[] values) {
+        if (samplesDiscarded < DISCARD_FIRST_SAMPLES) {
+            samplesDiscarded++;
+            return SAMPLE_DISCARDED;
+        }
+
+        mvGravity0.loadSample(values[0]);
+        mvGravity1.loadSample(values[1]);
+        mvGravity2.loadSample(values[2]);
+
+        // DEVICE MOVED
+
+        if (mvGravity0.isReady() && (
+                (Math.abs(mvGravity0.getMeanValue() - values[0]) > getPrecision()) ||
+                (Math.abs(mvGravity1.getMeanValue() - values[1]) > getPrecision()) ||
+                (Math.abs(mvGravity2.getMeanValue() - values[2]) > getPrecision()))
+        ) {
+            mvGravity0.reset();
+            mvGravity1.reset();
+            mvGravity2.reset();
+            if (calibrationPrecisionIncrement < 0.15f) calibrationPrecisionIncrement += 0.01f;
+            return SAMPLE_MOVED;
+        }
+
+        // END OF CALIBRATION STEP
+
+        if (mvGravity0.percentLoaded() == 100) {
+            mean[0][step] = mvGravity0.getMeanValue(SIZE_OF_MEANVARIANCE-100);
+            mean[1][step] = mvGravity1.getMeanValue(SIZE_OF_MEANVARIANCE-100);
+            mean[2][step] = mvGravity2.getMeanValue(SIZE_OF_MEANVARIANCE-100);
+            calibrationPrecisionIncrement = 0;
+            return STEP_COMPLETED;
+        }
+        return SAMPLE_LOADED;
+    }
+
+
+    /**
+     * Computes the offsets, the gains and the calibration angles,
+     * using the mean values of all the steps.
+     */
+    public void calculate() {
+
+        // Calibration offset and Gain (https://www.digikey.it/it/articles/using-an-accelerometer-for-inclination-sensing)
+
+        calibrationOffset[0] = (mean[0][2] + mean[0][3]) / 2;
+        calibrationOffset[1] = (mean[1][4] + mean[1][5]) / 2;
+        calibrationOffset[2] = (mean[2][0] + mean[2][6]) / 2;
+
+        calibrationGain[0] = (mean[0][2] - mean[0][3]) / (STANDARD_GRAVITY * 2);
+        calibrationGain[1] = (mean[1][4] - mean[1][5]) / (STANDARD_GRAVITY * 2);
+        calibrationGain[2] = (mean[2][0] - mean[2][6]) / (STANDARD_GRAVITY * 2);
+
+        // Apply the Gain and Offset Correction to measurement
+
+        for (int i = 0; i < N_STEPS; i++) {
+            meanCorrected[0][i] = (mean[0][i] - calibrationOffset[0]) / calibrationGain[0];
+            meanCorrected[1][i] = (mean[1][i] - calibrationOffset[1]) / calibrationGain[1];
+            meanCorrected[2][i] = (mean[2][i] - calibrationOffset[2]) / calibrationGain[2];
+        }
+
+        // Calculation of Angles
+
+        for (int i = 0; i < N_STEPS; i++) {
+            double module = Math.sqrt(meanCorrected[0][i] * meanCorrected[0][i] + meanCorrected[1][i] * meanCorrected[1][i] + meanCorrected[2][i] * meanCorrected[2][i]);
+            angle[0][i] = (float) (Math.toDegrees(Math.asin(meanCorrected[0][i] / module)));
+            angle[1][i] = (float) (Math.toDegrees(Math.asin(meanCorrected[1][i] / module)));
+            angle[2][i] = (float) (Math.toDegrees(Math.asin(meanCorrected[2][i] / module)));
+        }
+
+        calibrationAngle[2] =  (angle[0][0] + angle[0][1])/2;       // angle 0 = X axis
+        calibrationAngle[1] = -(angle[1][0] + angle[1][1])/2;       // angle 1 = Y axis
+        calibrationAngle[0] = -(angle[1][3] - angle[1][2])/2;       // angle 2 = Z axis
+    }
+
+
+    /**
+     * @return the current precision required to the samples (in m/s²)
+     */
+    public float getPrecision() {
+        return MIN_CALIBRATION_PRECISION + calibrationPrecisionIncrement;
+    }
+
+
+    /**
+     * @return the percentage of the samples loaded into the current step
+     */
+    public float getPercentLoaded() {
+        return mvGravity0.percentLoaded();
+    }
+
+
+    /**
+     * @return the tolerance of the X axis in the current step
+     */
+    public float getTolerance() {
+        return mvGravity0.getTolerance();
+    }
+
+
+    /**
+     * @return the mean values measured in the steps, as [axis][step]
+     */
+    public float[][] getMean() {
+        return mean;
+    }
+
+
+    /**
+     * @return the mean values corrected with the offsets and the gains, as [axis][step] (after calculate)
+     */
+    public float[][] getMeanCorrected() {
+        return meanCorrected;
+    }
+
+
+    /**
+     * @return the angles of the corrected mean values (in degrees), as [axis][step] (after calculate)
+     */
+    public float[][] getAngle() {
+        return angle;
+    }
+
+
+    public float[] getCalibrationOffset() {
+        return calibrationOffset;
+    }
+
+
+    public float[] getCalibrationGain() {
+        return calibrationGain;
+    }
+
+
+    public float[] getCalibrationAngle() {
+        return calibrationAngle;
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Camera2Preview - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.CameraMetadata;
+import android.hardware.camera2.CaptureFailure;
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.TotalCaptureResult;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Build;
+import android.os.Handler;
+import android.util.Log;
+import android.util.Range;
+import android.util.Size;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * The CameraPreview implemented with Camera2, from Android 5.0.
+ * The Preview is drawn into the Surface of the View; the saved frame is captured by an
+ * ImageReader (YUV_420_888) and its planes are converted in place, without copies into arrays.
+ * All the callbacks of the Camera and of the ImageReader run on the camera thread.
+ * The support of the Camera is checked when it is opened, on the camera thread, because
+ * it needs calls to the camera service: if Camera2 can't use the Camera, all the operations
+ * fall back to the implementation of LegacyCameraPreview.
+ */
+@RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+public class Camera2Preview extends LegacyCameraPreview {
+
+    private static final int MAX_IMAGES = 2;                    // The images of the ImageReader (acquireLatestImage needs 2)
+
+    private final String cameraId;
+    private volatile CameraCharacteristics characteristics;     // Read also by the UI thread, once opened
+
+    // Used only by the camera thread
+    private ImageReader imageReader;
+    private CameraDevice cameraDevice;
+    private CameraCaptureSession captureSession;
+    private CaptureRequest previewRequest;                      // The repeating request of the Preview
+    private CaptureRequest captureRequest;                      // The request of the saved frame (Preview + ImageReader)
+    private Surface previewSurface;
+    private boolean isPreviewStarted = false;                   // True when the first frame of the Preview has been completed
+    private volatile boolean isLegacy = false;                  // True if the Camera is used with LegacyCameraPreview
+
+
+    /**
+     * Checks whether the given Camera can be used with Camera2.
+     * It reads only the characteristics of the Camera, without opening it, but it calls
+     * the camera service: it must not run on the UI thread.
+     *
+     * @return true if the Camera is listed by Camera2 and supports the Preview and the YUV_420_888 images
+     */
+    private static boolean isSupported(Context context, CameraInformation cameraInformation) {
+        // The ids of Camera2 are the indexes of android.hardware.Camera, used by CameraInformation
+        String cameraId = String.valueOf(cameraInformation.id);
+        try {
+            CameraManager cameraManager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+            if (!Arrays.asList(cameraManager.getCameraIdList()).contains(cameraId)) return false;
+            StreamConfigurationMap map = cameraManager.getCameraCharacteristics(cameraId)
+                    .get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+            return (map != null) && (map.getOutputSizes(SurfaceHolder.class) != null)
+                    && (map.getOutputSizes(ImageFormat.YUV_420_888) != null);
+        } catch (CameraAccessException | IllegalArgumentException | SecurityException e) {
+            Log.w("CameraPreview", "Unable to use the Camera " + cameraId + " with Camera2: " + e);
+            return false;
+        }
+    }
+
+
+    Camera2Preview(Context context, CameraInformation cameraInformation, int exposureCompensation,
+                   int maxPreviewSize, Handler cameraHandler, CameraFramePool cameraFramePool,
+                   Listener listener) {
+        super(context, cameraInformation, exposureCompensation, maxPreviewSize, cameraHandler, cameraFramePool, listener);
+        cameraId = String.valueOf(cameraInformation.id);
+    }
+
+
+    private Size chooseSize(Size[] sizes) {
+        int[] widths = new int[sizes.length];
+        int[] heights = new int[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            widths[i] = sizes[i].getWidth();
+            heights[i] = sizes[i].getHeight();
+        }
+        return sizes[choosePreviewSize(widths, heights)];
+    }
+
+
+    @Override
+    protected void onOpened() {
+        if (isLegacy) {
+            super.onOpened();
+            return;
+        }
+        // The Surface must have the size of the Preview, or the session can't be configured
+        getHolder().setFixedSize(previewWidth, previewHeight);
+    }
+
+
+    @Override
+    public int getRotationDegrees() {
+        if (isLegacy) return super.getRotationDegrees();
+        Integer sensorOrientation = characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+        Integer facing = characteristics.get(CameraCharacteristics.LENS_FACING);
+        return getRotationDegrees(sensorOrientation != null ? sensorOrientation : 0,
+                (facing != null) && (facing == CameraMetadata.LENS_FACING_FRONT));
+    }
+
+
+    @Override
+    protected void open() {
+        if (!isSupported(getContext(), cameraInformation)) {
+            Log.w("CameraPreview", "The Camera " + cameraId + " is not supported by Camera2: android.hardware.Camera is used");
+            isLegacy = true;
+            super.open();
+            return;
+        }
+        try {
+            CameraManager cameraManager = (CameraManager) getContext().getSystemService(Context.CAMERA_SERVICE);
+            characteristics = cameraManager.getCameraCharacteristics(cameraId);
+            StreamConfigurationMap map = characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+
+            Size previewSize = chooseSize(map.getOutputSizes(SurfaceHolder.class));
+            previewWidth = previewSize.getWidth();
+            previewHeight = previewSize.getHeight();
+
+            Size imageSize = chooseSize(map.getOutputSizes(ImageFormat.YUV_420_888));
+            imageReader = ImageReader.newInstance(imageSize.getWidth(), imageSize.getHeight(), ImageFormat.YUV_420_888, MAX_IMAGES);
+            imageReader.setOnImageAvailableListener(onImageAvailableListener, cameraHandler);
+
+            cameraManager.openCamera(cameraId, stateCallback, cameraHandler);
+        } catch (CameraAccessException | IllegalArgumentException | SecurityException e) {
+            Log.w("CameraPreview", "Unable to open the Camera " + cameraId + ": " + e);
+            close();
+            notifyError();
+        }
+    }
+
+
+    @Override
+    protected void startPreview() {
+        if (isLegacy) {
+            super.startPreview();
+            return;
+        }
+        previewSurface = getHolder().getSurface();
+        createCaptureSession();
+    }
+
+
+    @Override
+    protected void capture() {
+        if (isLegacy) {
+            super.capture();
+            return;
+        }
+        if ((captureSession == null) || (captureRequest == null)) {
+            deliverNoImage();
+            return;
+        }
+        try {
+            captureSession.capture(captureRequest, captureCallback, cameraHandler);
+            captureSession.stopRepeating();                     // The Preview stops on the saved frame
+        } catch (CameraAccessException | IllegalStateException e) {
+            Log.w("CameraPreview", "Unable to save the image of the Camera Preview: " + e);
+            deliverNoImage();
+        }
+    }
+
+
+    @Override
+    protected void close() {
+        if (isLegacy) {
+            super.close();
+            return;
+        }
+        if (captureSession != null) {
+            captureSession.close();
+            captureSession = null;
+        }
+        if (cameraDevice != null) {
+            cameraDevice.close();
+            cameraDevice = null;
+        }
+        // The images in conversion are on this thread too: they have already been delivered
+        if (imageReader != null) {
+            imageReader.close();
+            imageReader = null;
+        }
+        previewSurface = null;
+    }
+
+
+    /**
+     * Creates the session when both the Camera and the Surface are ready.
+     */
+    private void createCaptureSession() {
+        if (isReleased() || (cameraDevice == null) || (previewSurface == null) || (captureSession != null)) return;
+        try {
+            cameraDevice.createCaptureSession(Arrays.asList(previewSurface, imageReader.getSurface()),
+                    sessionStateCallback, cameraHandler);
+        } catch (CameraAccessException | IllegalStateException | IllegalArgumentException e) {
+            Log.w("CameraPreview", "Unable to create the session of the Camera: " + e);
+            notifyError();
+        }
+    }
+
+
+    /**
+     * @return the request of the Preview, with the settings of the app, on the given Surfaces
+     */
+    private CaptureRequest buildRequest(Surface... surfaces) throws CameraAccessException {
+        CaptureRequest.Builder builder = cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+        for (Surface surface : surfaces) builder.addTarget(surface);
+
+        int[] focusModes = characteristics.get(CameraCharacteristics.CONTROL_AF_AVAILABLE_MODES);
+        if (focusModes != null) {
+            for (int focusMode : focusModes) {
+                if (focusMode == CameraMetadata.CONTROL_AF_MODE_CONTINUOUS_VIDEO)
+                    builder.set(CaptureRequest.CONTROL_AF_MODE, CameraMetadata.CONTROL_AF_MODE_CONTINUOUS_VIDEO);
+            }
+        }
+        Range<Integer> exposureRange = characteristics.get(CameraCharacteristics.CONTROL_AE_COMPENSATION_RANGE);
+        if ((exposureCompensation != 0) && (exposureRange != null)) {
+            builder.set(CaptureRequest.CONTROL_AE_EXPOSURE_COMPENSATION, exposureRange.clamp(exposureCompensation));
+        }
+        return builder.build();
+    }
+
+
+    private final CameraDevice.StateCallback stateCallback = new CameraDevice.StateCallback() {
+        @Override
+        public void onOpened(@NonNull CameraDevice camera) {
+            if (isReleased()) {
+                camera.close();
+                return;
+            }
+            cameraDevice = camera;
+            notifyOpened();
+            createCaptureSession();
+        }
+
+        @Override
+        public void onDisconnected(@NonNull CameraDevice camera) {
+            camera.close();
+            if (cameraDevice == camera) cameraDevice = null;
+        }
+
+        @Override
+        public void onError(@NonNull CameraDevice camera, int error) {
+            Log.w("CameraPreview", "Error " + error + " of the Camera " + cameraId);
+            camera.close();
+            if (cameraDevice == camera) cameraDevice = null;
+            notifyError();
+        }
+    };
+
+
+    private final CameraCaptureSession.StateCallback sessionStateCallback = new CameraCaptureSession.StateCallback() {
+        @Override
+        public void onConfigured(@NonNull CameraCaptureSession session) {
+            if (isReleased() || (cameraDevice == null)) {
+                session.close();
+                return;
+            }
+            captureSession = session;
+            try {
+                previewRequest = buildRequest(previewSurface);
+                captureRequest = buildRequest(previewSurface, imageReader.getSurface());
+                captureSession.setRepeatingRequest(previewRequest, startupCallback, cameraHandler);
+            } catch (CameraAccessException | IllegalStateException e) {
+                Log.w("CameraPreview", "Unable to start the Preview: " + e);
+                notifyError();
+            }
+        }
+
+        @Override
+        public void onConfigureFailed(@NonNull CameraCaptureSession session) {
+            // The Preview would stay black: the app goes back to the mode without Camera
+            Log.w("CameraPreview", "Unable to configure the session of the Camera " + cameraId);
+            session.close();
+            notifyError();
+        }
+    };
+
+
+    /**
+     * Reports the first frame of the Preview. It stays attached to the repeating request:
+     * replacing the request to remove it would restart the pipeline of the Camera,
+     * while the following frames only check the flag.
+     */
+    private final CameraCaptureSession.CaptureCallback startupCallback = new CameraCaptureSession.CaptureCallback() {
+        @Override
+        public void onCaptureCompleted(@NonNull CameraCaptureSession session, @NonNull CaptureRequest request,
+                                       @NonNull TotalCaptureResult result) {
+            if (isPreviewStarted) return;
+            isPreviewStarted = true;
+            reportStartup();
+        }
+    };
+
+
+    private final CameraCaptureSession.CaptureCallback captureCallback = new CameraCaptureSession.CaptureCallback() {
+        @Override
+        public void onCaptureFailed(@NonNull CameraCaptureSession session, @NonNull CaptureRequest request,
+                                    @NonNull CaptureFailure failure) {
+            // No image will be available: the request must be answered anyway
+            Log.w("CameraPreview", "Unable to save the image of the Camera Preview: failure " + failure.getReason());
+            deliverNoImage();
+        }
+    };
+
+
+    private final ImageReader.OnImageAvailableListener onImageAvailableListener = new ImageReader.OnImageAvailableListener() {
+        @Override
+        public void onImageAvailable(ImageReader reader) {
+            Image image = reader.acquireLatestImage();
+            if (image == null) return;
+            long startNanos = System.nanoTime();
+            int width = image.getWidth();
+            int height = image.getHeight();
+            Image.Plane[] planes = image.getPlanes();
+            IntBuffer pixels = cameraFramePool.acquirePixels(width * height);
+            YuvConverter.yuv420ToRgba(planes[0].getBuffer(), planes[0].getRowStride(),
+                    planes[1].getBuffer(), planes[2].getBuffer(), planes[1].getRowStride(), planes[1].getPixelStride(),
+                    width, height, pixels.array());
+            image.close();
+            deliverImage(pixels, width, height, startNanos);
+        }
+    };
+}
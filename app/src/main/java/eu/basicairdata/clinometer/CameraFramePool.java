@@ -0,0 +1,135 @@
+/*
+ * CameraFramePool - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+import android.graphics.Bitmap;
+
+import java.nio.IntBuffer;
+
+/**
+ * A bounded pool of the memory used to save the frames of the Camera Preview:
+ * the preview buffers given to Camera.addCallbackBuffer(), the RGBA pixels
+ * of the conversion and the Bitmaps of the saved images.
+ * The Bitmaps are kept by size: at most MAX_BITMAPS of the size requested last,
+ * so that an image can be converted while the previous one is still drawn.
+ * When the size changes (another camera) the free objects of the old size are released.
+ * It can be used by any thread.
+ */
+public class CameraFramePool {
+
+    private static final int MAX_BUFFERS = 2;
+    private static final int MAX_BITMAPS = 2;
+
+    private final byte[][] buffers = new byte[MAX_BUFFERS][];       // The free preview buffers
+    private final Bitmap[] bitmaps = new Bitmap[MAX_BITMAPS];       // The free Bitmaps
+    private IntBuffer pixels;                                       // The RGBA pixels, on an array
+
+
+    /**
+     * @return a free preview buffer of the given length, allocated if the pool has none
+     */
+    public synchronized byte[] acquireBuffer(int length) {
+        byte[] buffer = null;
+        for (int i = 0; i < MAX_BUFFERS; i++) {
+            if ((buffers[i] != null) && (buffers[i].length != length)) buffers[i] = null;    // Old size
+            if ((buffer == null) && (buffers[i] != null)) {
+                buffer = buffers[i];
+                buffers[i] = null;
+            }
+        }
+        return buffer != null ? buffer : new byte[length];
+    }
+
+
+    /**
+     * Gives back a preview buffer that is no longer used.
+     * It is kept if there is room, otherwise it is left to the garbage collector.
+     */
+    public synchronized void releaseBuffer(byte[] buffer) {
+        for (int i = 0; i < MAX_BUFFERS; i++) {
+            if (buffers[i] == null) {
+                buffers[i] = buffer;
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * @return a buffer of RGBA pixels of the given length, the same at each call with the same length.
+     * The pixels are written into its array(), and it is copied into the Bitmap with copyPixelsFromBuffer.
+     * It must be used by only one thread at a time (the camera thread).
+     */
+    public synchronized IntBuffer acquirePixels(int length) {
+        if ((pixels == null) || (pixels.capacity() != length)) pixels = IntBuffer.wrap(new int[length]);
+        return pixels;
+    }
+
+
+    /**
+     * @return a free mutable ARGB_8888 Bitmap of the given size, created if the pool has none
+     */
+    public synchronized Bitmap acquireBitmap(int width, int height) {
+        Bitmap bitmap = null;
+        for (int i = 0; i < MAX_BITMAPS; i++) {
+            if ((bitmaps[i] != null) && ((bitmaps[i].getWidth() != width) || (bitmaps[i].getHeight() != height))) {
+                bitmaps[i].recycle();                       // Old size
+                bitmaps[i] = null;
+            }
+            if ((bitmap == null) && (bitmaps[i] != null)) {
+                bitmap = bitmaps[i];
+                bitmaps[i] = null;
+            }
+        }
+        return bitmap != null ? bitmap : Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+
+    /**
+     * Gives back a Bitmap that is no longer drawn.
+     * It is kept if there is room, otherwise it is recycled.
+     */
+    public synchronized void releaseBitmap(Bitmap bitmap) {
+        for (int i = 0; i < MAX_BITMAPS; i++) {
+            if (bitmaps[i] == null) {
+                bitmaps[i] = bitmap;
+                return;
+            }
+        }
+        bitmap.recycle();
+    }
+
+
+    /**
+     * Releases all the free objects of the pool; the ones in use are not affected.
+     * It is called when the Activity goes in background and when the system is low on memory.
+     */
+    public synchronized void trim() {
+        for (int i = 0; i < MAX_BUFFERS; i++) buffers[i] = null;
+        for (int i = 0; i < MAX_BITMAPS; i++) {
+            if (bitmaps[i] != null) {
+                bitmaps[i].recycle();
+                bitmaps[i] = null;
+            }
+        }
+        pixels = null;
+    }
+}
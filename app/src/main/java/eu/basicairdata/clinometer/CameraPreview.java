@@ -25,114 +25,404 @@
 package eu.basicairdata.clinometer;
 
 import android.content.Context;
-import android.hardware.Camera;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.Surface;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 import android.view.WindowManager;
 
-import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.Locale;
+
+/**
+ * The live Preview of the selected Camera, and the saving of its images when a measure is locked.
+ * It is implemented with Camera2 (Camera2Preview) from Android 5.0, and with
+ * android.hardware.Camera (LegacyCameraPreview) on the older versions and for the
+ * Cameras that Camera2 can't use.
+ * All the operations on the Camera (open, configuration, Preview, capture, conversion
+ * of the saved frames and close) run on the camera thread, so the UI thread never waits for the Camera.
+ * The Camera is opened when the CameraPreview is created; when it is ready the Listener is called
+ * on the UI thread, and the View can be added to the layout to start the Preview.
+ * The saved frames are converted into RGBA into the memory of the CameraFramePool.
+ * The startup times of the Camera are written in the log.
+ */
+public abstract class CameraPreview extends SurfaceView implements SurfaceHolder.Callback {
+
+    private static final float RATIO_TOLERANCE = 0.01f;     // The aspect ratios that differ less are considered equal
+
+    /**
+     * The listener of the events of the CameraPreview.
+     */
+    public interface Listener {
+        /**
+         * Called on the UI thread when the Camera has been opened and configured:
+         * the size of the Preview is known, and the View can be added to the layout.
+         */
+        void onCameraOpened(CameraPreview cameraPreview);
+
+        /**
+         * Called on the UI thread if the Camera can't be opened or used.
+         */
+        void onCameraError(CameraPreview cameraPreview);
+
+        /**
+         * Called on the camera thread when an image has been saved.
+         *
+         * @param request The request given to captureFrame()
+         * @param bitmap The image, taken from the CameraFramePool; null if the frame could not be saved
+         * @param conversionNanos The time spent converting the frame (in nanoseconds)
+         */
+        void onCameraImageSaved(int request, Bitmap bitmap, long conversionNanos);
+    }
+
+    protected final CameraInformation cameraInformation;
+    protected final int exposureCompensation;
+    protected final int maxPreviewSize;                     // The max size of the long side of the Preview (in pixels)
+    protected final Handler cameraHandler;                  // The Handler of the camera thread
+    protected final CameraFramePool cameraFramePool;
+    protected final Listener listener;
+    protected int previewWidth;                             // The size of the Preview, in the orientation of the sensor
+    protected int previewHeight;
+    protected volatile int request;                         // The request of the frame to save
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile boolean isReleased = false;            // True when release() has been called
+    private final long creationNanos = System.nanoTime();   // For the startup times
+    private long openedNanos = 0;
+    private boolean isStartupReported = false;
 
 
-public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback {
-    private final SurfaceHolder mHolder;
-    private final Camera mCamera;
+    /**
+     * Creates the Preview of the given Camera, with the implementation for the version of Android,
+     * and starts to open the Camera on the camera thread. The support of the Camera is checked there,
+     * so that the UI thread doesn't call the camera service.
+     *
+     * @param context The Context
+     * @param cameraInformation The Camera to open
+     * @param exposureCompensation The exposure compensation (in steps of the Camera)
+     * @param maxPreviewSize The max size of the long side of the Preview (in pixels)
+     * @param cameraHandler The Handler of the camera thread
+     * @param cameraFramePool The pool of the memory of the saved images
+     * @param listener The listener of the events
+     * @return the CameraPreview
+     */
+    public static CameraPreview create(Context context, CameraInformation cameraInformation, int exposureCompensation,
+                                       int maxPreviewSize, Handler cameraHandler, CameraFramePool cameraFramePool,
+                                       Listener listener) {
+        CameraPreview cameraPreview;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            cameraPreview = new Camera2Preview(context, cameraInformation, exposureCompensation,
+                    maxPreviewSize, cameraHandler, cameraFramePool, listener);
+        } else {
+            cameraPreview = new LegacyCameraPreview(context, cameraInformation, exposureCompensation,
+                    maxPreviewSize, cameraHandler, cameraFramePool, listener);
+        }
+        cameraHandler.post(cameraPreview.openRunnable);
+        return cameraPreview;
+    }
+
 
-    public CameraPreview(Context context, Camera camera, int exposureCompensation) {
+    protected CameraPreview(Context context, CameraInformation cameraInformation, int exposureCompensation,
+                            int maxPreviewSize, Handler cameraHandler, CameraFramePool cameraFramePool,
+                            Listener listener) {
         super(context);
-        mCamera = camera;
+        this.cameraInformation = cameraInformation;
+        this.exposureCompensation = exposureCompensation;
+        this.maxPreviewSize = maxPreviewSize;
+        this.cameraHandler = cameraHandler;
+        this.cameraFramePool = cameraFramePool;
+        this.listener = listener;
 
         // Install a SurfaceHolder.Callback so we get notified when the
         // underlying surface is created and destroyed.
-        mHolder = getHolder();
-        mHolder.addCallback(this);
-        // deprecated setting, but required on Android versions prior to 3.0
-        //mHolder.setType(SurfaceHolder.SURFACE_TYPE_PUSH_BUFFERS);
-        Camera.Parameters params = mCamera.getParameters();
-        if (params.getSupportedFocusModes().contains(Camera.Parameters.FOCUS_MODE_CONTINUOUS_VIDEO)) {
-            params.setFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_VIDEO);
-        }
+        getHolder().addCallback(this);
+    }
+
+
+    /**
+     * @return the width of the Preview, in the orientation of the sensor (in pixels).
+     * It is valid from the call of Listener.onCameraOpened().
+     */
+    public int getPreviewWidth() {
+        return previewWidth;
+    }
+
 
-        if (exposureCompensation != 0) params.setExposureCompensation(exposureCompensation);
-        mCamera.setParameters(params);
-        mCamera.setDisplayOrientation(getRotationDegrees());
+    /**
+     * @return the height of the Preview, in the orientation of the sensor (in pixels).
+     * It is valid from the call of Listener.onCameraOpened().
+     */
+    public int getPreviewHeight() {
+        return previewHeight;
     }
 
+
+    /**
+     * @return the clockwise rotation (in degrees) that shows the frames of the sensor as the Preview.
+     * For the front cameras the frames must be mirrored horizontally before the rotation.
+     */
+    public abstract int getRotationDegrees();
+
+
+    /**
+     * Saves the next frame of the Preview, and stops the Preview on it.
+     * The image is given to Listener.onCameraImageSaved().
+     *
+     * @param request A number given back to the listener with the image
+     */
+    public void captureFrame(int request) {
+        this.request = request;
+        cameraHandler.post(captureRunnable);
+    }
+
+
+    /**
+     * Stops the Preview and closes the Camera, on the camera thread.
+     * The images in conversion are still delivered.
+     */
+    public void release() {
+        if (isReleased) return;
+        isReleased = true;
+        cameraHandler.post(closeRunnable);
+    }
+
+
     public void surfaceCreated(SurfaceHolder holder) {
-        // The Surface has been created, now tell the camera where to draw the preview.
-        try {
-            mCamera.setPreviewDisplay(holder);
-            mCamera.startPreview();
-        } catch (IOException e) {
-            Log.d("CameraPreview", "Error setting camera preview: " + e.getMessage());
-        }
+        cameraHandler.post(startPreviewRunnable);
     }
 
+
     public void surfaceDestroyed(SurfaceHolder holder) {
         // empty. Take care of releasing the Camera preview in your activity.
     }
 
+
     public void surfaceChanged(SurfaceHolder holder, int format, int w, int h) {
-        // If your preview can change or rotate, take care of those events here.
-        // Make sure to stop the preview before resizing or reformatting it.
+        // The size of the frames doesn't depend on the size of the surface (the Camera scales them),
+        // and the orientation of the Activity is fixed: the Preview doesn't need to be restarted.
+    }
 
-        if (mHolder.getSurface() == null){
-            // preview surface does not exist
-            return;
-        }
 
-        // stop preview before making changes
-        try {
-            mCamera.stopPreview();
-        } catch (Exception e){
-            // ignore: tried to stop a non-existent preview
+    // The operations on the Camera, that run on the camera thread
+
+    /**
+     * Opens and configures the Camera, then calls notifyOpened() or notifyError().
+     */
+    protected abstract void open();
+
+    /**
+     * Starts the Preview on the Surface of the View.
+     */
+    protected abstract void startPreview();
+
+    /**
+     * Captures the next frame for the current request.
+     */
+    protected abstract void capture();
+
+    /**
+     * Closes the Camera and frees its resources.
+     */
+    protected abstract void close();
+
+
+    private final Runnable openRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!isReleased) open();
         }
+    };
 
-        // set preview size and make any resize, rotate or
-        // reformatting changes here
+    private final Runnable startPreviewRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!isReleased) startPreview();
+        }
+    };
 
-        // start preview with new settings
-        try {
-            mCamera.setPreviewDisplay(mHolder);
-            mCamera.startPreview();
+    private final Runnable captureRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!isReleased) capture();
+            else deliverNoImage();
+        }
+    };
 
-        } catch (Exception e){
-            Log.d("CameraPreview", "Error starting camera preview: " + e.getMessage());
+    private final Runnable closeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            close();
         }
+    };
+
+
+    /**
+     * @return true if release() has been called
+     */
+    protected boolean isReleased() {
+        return isReleased;
+    }
+
+
+    /**
+     * Tells the listener, on the UI thread, that the Camera has been opened.
+     * It is called by the camera thread.
+     */
+    protected void notifyOpened() {
+        openedNanos = System.nanoTime();
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (isReleased) return;
+                onOpened();
+                listener.onCameraOpened(CameraPreview.this);
+            }
+        });
     }
 
-    protected int getRotationDegrees() {
-        android.hardware.Camera.CameraInfo info = new android.hardware.Camera.CameraInfo();
-        android.hardware.Camera.getCameraInfo(0, info);
+
+    /**
+     * Called on the UI thread when the Camera has been opened, before the listener:
+     * the View can be configured for the size of the Preview.
+     */
+    protected void onOpened() {
+    }
+
+
+    /**
+     * Tells the listener, on the UI thread, that the Camera can't be used.
+     * It is called by the camera thread.
+     */
+    protected void notifyError() {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!isReleased) listener.onCameraError(CameraPreview.this);
+            }
+        });
+    }
+
+
+    /**
+     * @return the rotation of the display from its natural orientation (in degrees)
+     */
+    protected int getDisplayRotationDegrees() {
         int rotation = ((WindowManager) getContext()
                 .getSystemService(Context.WINDOW_SERVICE)).getDefaultDisplay()
                 .getRotation();
-        int degrees = 0;
-
         switch (rotation) {
-            case Surface.ROTATION_0:
-                degrees = 0;
-                break;
             case Surface.ROTATION_90:
-                degrees = 90;
-                break;
+                return 90;
             case Surface.ROTATION_180:
-                degrees = 180;
-                break;
+                return 180;
             case Surface.ROTATION_270:
-                degrees = 270;
-                break;
+                return 270;
+            default:
+                return 0;
+        }
+    }
+
+
+    /**
+     * Returns the clockwise rotation that shows the frames of the sensor upright.
+     *
+     * @param sensorOrientation The orientation of the sensor (in degrees)
+     * @param isFrontCamera true for the front cameras, that are mirrored
+     * @return the rotation (in degrees)
+     */
+    protected int getRotationDegrees(int sensorOrientation, boolean isFrontCamera) {
+        int degrees = getDisplayRotationDegrees();
+        Log.d("CameraPreview", "Orientation: sensor = " + sensorOrientation + " Surface.ROTATION = " + degrees);
+        if (isFrontCamera) return (360 - (sensorOrientation + degrees) % 360) % 360;     // compensate the mirror
+        return (sensorOrientation - degrees + 360) % 360;
+    }
+
+
+    /**
+     * Chooses the size of the Preview for the display: the aspect ratio nearest to the one of the display,
+     * and the smallest size that covers the long side of the display, up to maxPreviewSize.
+     *
+     * @param widths The supported widths
+     * @param heights The supported heights
+     * @return the index of the chosen size
+     */
+    protected int choosePreviewSize(int[] widths, int[] heights) {
+        int displayWidth = getContext().getResources().getDisplayMetrics().widthPixels;
+        int displayHeight = getContext().getResources().getDisplayMetrics().heightPixels;
+        int displayLongSide = Math.max(displayWidth, displayHeight);
+        float displayRatio = (float) displayLongSide / Math.min(displayWidth, displayHeight);
+
+        int chosen = -1;
+        float chosenRatioError = 0;
+        for (int i = 0; i < widths.length; i++) {
+            int longSide = Math.max(widths[i], heights[i]);
+            if (longSide > maxPreviewSize) continue;
+            float ratioError = Math.abs((float) longSide / Math.min(widths[i], heights[i]) - displayRatio);
+            if ((chosen == -1) || (ratioError < chosenRatioError - RATIO_TOLERANCE)
+                    || ((ratioError <= chosenRatioError + RATIO_TOLERANCE)
+                        && isBetterSize(longSide, Math.max(widths[chosen], heights[chosen]), displayLongSide))) {
+                chosen = i;
+                chosenRatioError = ratioError;
+            }
         }
-        Log.d("CameraPreview", "Orientation: info.orientation = " + info.orientation + " Surface.ROTATION = " + degrees);
-        return (info.orientation - degrees + 360) % 360;
+        if (chosen == -1) {
+            // All the sizes are bigger than maxPreviewSize: the smallest one
+            chosen = 0;
+            for (int i = 1; i < widths.length; i++)
+                if (widths[i] * heights[i] < widths[chosen] * heights[chosen]) chosen = i;
+        }
+        return chosen;
+    }
+
+
+    /**
+     * @return true if the long side is better than the current one for the display:
+     * the smallest that covers the display, or the biggest if none covers it
+     */
+    private static boolean isBetterSize(int longSide, int currentLongSide, int displayLongSide) {
+        if (longSide >= displayLongSide) return (currentLongSide < displayLongSide) || (longSide < currentLongSide);
+        return (currentLongSide < displayLongSide) && (longSide > currentLongSide);
+    }
+
+
+    /**
+     * Writes the startup times of the Camera in the log, at the first frame of the Preview:
+     * the time to open and configure the Camera, and the total time to the first frame.
+     * It is called by the camera thread.
+     */
+    protected void reportStartup() {
+        if (isStartupReported) return;
+        isStartupReported = true;
+        long nowNanos = System.nanoTime();
+        Log.d("CameraPreview", String.format(Locale.US,
+                "Camera %d (%s) opened in %1.1f ms, first frame in %1.1f ms, Preview %dx%d",
+                cameraInformation.id, getClass().getSimpleName(), (openedNanos - creationNanos) / 1E6,
+                (nowNanos - creationNanos) / 1E6, previewWidth, previewHeight));
     }
 
-    public void pausePreview () {
-        mCamera.stopPreview();
+
+    /**
+     * Copies the converted pixels into a Bitmap of the CameraFramePool and gives it to the listener.
+     * The pixels already have the layout of the Bitmap, so they are copied as they are.
+     * It is called by the camera thread.
+     */
+    protected void deliverImage(IntBuffer pixels, int width, int height, long startNanos) {
+        Bitmap bitmap = cameraFramePool.acquireBitmap(width, height);
+        pixels.rewind();                            // copyPixelsFromBuffer moves the position
+        bitmap.copyPixelsFromBuffer(pixels);
+        listener.onCameraImageSaved(request, bitmap, System.nanoTime() - startNanos);
+    }
+
+
+    /**
+     * Tells the listener that the requested frame could not be saved.
+     * It is called by the camera thread.
+     */
+    protected void deliverNoImage() {
+        listener.onCameraImageSaved(request, null, 0);
     }
-//
-//    public void resumePreview () {
-//        mCamera.startPreview();
-//    }
 }
@@ -29,13 +29,8 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Matrix;
-import android.graphics.Rect;
 import android.graphics.RectF;
-import android.graphics.YuvImage;
-import android.hardware.Camera;
-import android.hardware.Camera.Size;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
@@ -51,8 +46,11 @@ import android.media.AudioManager;
 import android.media.ToneGenerator;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
 import android.os.Vibrator;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.Display;
 import android.view.Gravity;
 import android.view.MotionEvent;
@@ -63,8 +61,12 @@ import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static eu.basicairdata.clinometer.ClinometerApplication.CAMERA_REQUEST_CODE;
 import static eu.basicairdata.clinometer.ClinometerApplication.KEY_PREF_AUTOLOCK;
@@ -80,7 +82,10 @@ import static eu.basicairdata.clinometer.ClinometerApplication.KEY_PREF_CALIBRAT
 import static eu.basicairdata.clinometer.ClinometerApplication.KEY_PREF_CALIBRATION_OFFSET_1;
 import static eu.basicairdata.clinometer.ClinometerApplication.KEY_PREF_CALIBRATION_OFFSET_2;
 import static eu.basicairdata.clinometer.ClinometerApplication.KEY_PREF_CAMERA_EXPOSURE_COMPENSATION;
+import static eu.basicairdata.clinometer.ClinometerApplication.KEY_PREF_HIGH_RATE_SENSOR;
 import static eu.basicairdata.clinometer.ClinometerApplication.KEY_PREF_KEEP_SCREEN_ON;
+import static eu.basicairdata.clinometer.ClinometerApplication.KEY_PREF_RECORD_SENSOR_DATA;
+import static eu.basicairdata.clinometer.ClinometerApplication.KEY_PREF_SENSOR_FUSION;
 import static eu.basicairdata.clinometer.ClinometerApplication.KEY_PREF_UNIT_OF_MEASUREMENT;
 
 
@@ -107,45 +112,42 @@ public class ClinometerActivity extends AppCompatActivity implements SensorEvent
 
     private static final float AUTOLOCK_MIN_TOLERANCE = 0.05f;          // The minimum tolerance of the AutoLock
     private static final float AUTOLOCK_MAX_TOLERANCE = 0.5f;           // The maximum tolerance of the AutoLock
-    private static final float AUTOLOCK_HORIZON_CHECK_THRESHOLD = 5.0f; // The zone of horizon check (+- 5 degrees)
-    private static final float ROTATION_THRESHOLD = 5;                  // The threshold of the boundaries for DisplayRotation (in degrees)
-    private static final int   SIZE_OF_MEANVARIANCE = 200;              // 2 seconds
-
-    private static final float ALPHA = 0.03f;                          // Weight of the new sensor reading
-    private float alpha0 = ALPHA;
-    private float alpha1 = ALPHA;
-    private float alpha2 = ALPHA;
 
     private ClinometerApplication clinometerApplication;
     private SharedPreferences preferences;
 
-    private boolean prefAutoLock = false;
-    private boolean prefAutoLockHorizonCheck = true;
-    private float prefAutoLockTolerance;
+    // The preferences and the flags used by the sensor thread are volatile
+    private volatile boolean prefAutoLock = false;
+    private volatile boolean prefAutoLockHorizonCheck = true;
+    private volatile float prefAutoLockTolerance;
     private int prefExposureCompensation = 0;
 
     private boolean isSettingsClicked = false;           // True when the Three-dots button has been clicked
 
-    private boolean isFlat = true;                       // True if the device is oriented flat (for example on a table)
-    private boolean isLocked = false;                    // True if the angles are locked by user
+    // The state of the Locking is changed only by the sensor thread; the UI thread posts its requests
+    // (see toggleLocking()) and reads the state to update the UI.
+    private volatile boolean isLocked = false;           // True if the angles are locked by user
     private boolean isDeltaAngle = false;                // True if the delta angles is selected
-    private boolean isLockRequested = false;
-    private float displayRotation = 0;                   // The rotation angle from the natural position of the device
+    private volatile boolean isLockRequested = false;
 
     private boolean isInCameraMode = false;              // True if Camera Mode is active
     private boolean isCameraLivePreviewActive = false;  // True if the Live Preview with Camera is active
     private Bitmap cameraPreviewBitmap;                 // The image saved from Camera Preview (used by Locking and onPause/onResume)
 
-    // Singleton instance
-//    private static ClinometerActivity singleton;
-//    public static ClinometerActivity getInstance(){
-//        return singleton;
-//    }
-
-    private String formattedAngle0;
-    private String formattedAngle1;
-    private String formattedAngle2;
-    private final DataFormatter dataFormatter = new DataFormatter();
+    // The Camera is opened, configured and closed by the camera thread, that also converts the saved frames.
+    // The preview buffer, the pixels and the Bitmaps are taken from the cameraFramePool, and given back when no longer used.
+    private HandlerThread cameraThread;                 // The thread of the operations on the Camera
+    private Handler cameraHandler;                      // The Handler of the camera thread
+    private final CameraFramePool cameraFramePool = new CameraFramePool();
+    private final Matrix cameraImageMatrix = new Matrix();  // The rotation and the mirroring of the image, applied when drawn
+    private int cameraImageRequest = 0;                 // The number of the last requested image; the older ones are discarded
+    private boolean isCameraImageRequested = false;     // True if the Preview is saving an image, and stops on it
+    private long cameraImageRequestNanos = 0;           // The time of the request of the image, for the latency
+    private int cameraImageRotation = 0;                // The rotation of the requested image
+    private boolean isCameraImageMirrored = false;      // True if the requested image must be mirrored (front camera)
+
+    private DataFormatter dataFormatter;
+    private char[] textAngles;                          // The text of mTextViewAngles, reused for each update
 
     private ClinometerView mClinometerView;
     private TextView mTextViewAngles;
@@ -167,39 +169,49 @@ public class ClinometerActivity extends AppCompatActivity implements SensorEvent
 
     private SensorManager mSensorManager;
     private Sensor mRotationSensor;
+    private Sensor mGyroscopeSensor;                    // The gyroscope used by the sensor fusion, null if not present
 
-    private final float[] gravity              = {0, 0, 0};    // The (filtered) current accelerometers values
     private final float[] gravity_gain         = {0, 0, 0};
     private final float[] gravity_offset       = {0, 0, 0};
-    private final float[] gravity_calibrated   = {0, 0, 0};    // The (filtered) current calibrated accelerometers values
-
     private final float[] angle_calibration    = {0, 0, 0};    // The angles for calibration: alpha, beta, gamma (in degrees)
-    private final float[] angle                = {0, 0, 0};    // The (filtered) current angles (in degrees)
 
-    private final float[][] calibrationMatrix = new float[3][3];
-
-    private float gravityXY = 0;
-    private float gravityXYZ = 0;
-    private float angleXY = 0;                          // The angle on the horizontal plane (in degrees)
-    private float angleXYZ = 0;                         // The angle between XY vector and the vertical (in degrees)
-    private float angleTextLabels = 0;                  // The rotation angle for the text labels
+    // The sensor events are processed by the sensor thread, that owns the InclinationEngine
+    // and publishes the results to the UI thread through the InclinationPublisher.
+    private final InclinationEngine inclinationEngine = new InclinationEngine();    // The signal processing
+    private final Inclination sensorInclination = new Inclination();                // The inclination computed by the sensor thread
+    private final InclinationPublisher inclinationPublisher = new InclinationPublisher();
+    private final InclinationSnapshot inclination = new InclinationSnapshot();      // The current inclination, read by the UI thread
+    private HandlerThread sensorThread;                 // The thread that receives and processes the sensor events
+    private Handler sensorHandler;                      // The Handler of the sensor thread
+    private SensorRecorder sensorRecorder = null;       // The recorder of the sensor data (owned by the sensor thread), null if not recording
+    private final SensorRingBuffer sensorRingBuffer = new SensorRingBuffer(SENSOR_RING_BUFFER_SIZE);   // The events of the current block (high rate mode)
+    private final float[] blockSample = {0, 0, 0};      // The sample polled from the sensorRingBuffer
+    private long blockPeriodNanos = 16666667;           // The duration of a block: a frame of the display (in nanoseconds)
+    private boolean isInclinationChanged = false;       // True if sensorInclination has been updated but not published yet
+    private boolean isDisplayRotationChanged = false;   // True if the display rotation has changed since the last publication
+    private volatile boolean isHighRateMode = false;    // True if the events are requested at the fastest rate and processed in blocks
+    private int prefSensorFusion = InclinationEngine.SENSOR_FUSION_NONE;   // The fusion of the gyroscope, SENSOR_FUSION_NONE if not used
+    private boolean prefRecordSensorData = false;
+
+    // The render loop, driven by the vsync
+    private Choreographer choreographer;
+    private final AtomicBoolean isFrameScheduled = new AtomicBoolean(false);      // True if frameCallback has been posted
+    private long lastFrameTimeNanos = 0;                // The time of the previous frame of the loop, 0 if the loop was stopped
+    private int lastPublicationsCount = -1;             // The count of the InclinationPublisher at the last frame
 
     private final static int ACCELEROMETER_UPDATE_INTERVAL_MICROS = 10000;
-
-    private final MeanVariance mvAngle0 = new MeanVariance(SIZE_OF_MEANVARIANCE);
-    private final MeanVariance mvAngle1 = new MeanVariance(SIZE_OF_MEANVARIANCE);
-    private final MeanVariance mvAngle2 = new MeanVariance(SIZE_OF_MEANVARIANCE);
-    private final MeanVariance mvGravity0 = new MeanVariance(16);
-    private final MeanVariance mvGravity1 = new MeanVariance(16);
-    private final MeanVariance mvGravity2 = new MeanVariance(16);
+    private final static int ACCELEROMETER_MAX_REPORT_LATENCY_MICROS = 20000;     // The batching of the hardware FIFO (high rate mode)
+    private final static int SENSOR_RING_BUFFER_SIZE = 1024;                     // The max number of events in a block (high rate mode)
+    private final static int CAMERA_PREVIEW_MAX_SIZE = 1920;                     // The max size of the long side of the Camera Preview
 
     private float refAngleXY = 0;                       // The reference angle on the plane
     private float refAngleXYZ = 0;                      // The reference angle between the screen plane and the horizontal plane
 
     private ValueAnimator animationR = new ValueAnimator();
 
-    private static Camera mCamera = null;
-    private CameraPreview mPreview;
+    private CameraPreview mPreview;                     // The Preview of the Camera, null if the Camera is closed
+    private boolean isCameraOpened = false;             // True when mPreview has been opened and added to the layout
+    private long cameraActivationNanos = 0;             // The time of activateCamera(), for the startup time
 
     private boolean doubleBackToExitPressedOnce;
     private Handler mHandler = new Handler();
@@ -211,6 +223,89 @@ public class ClinometerActivity extends AppCompatActivity implements SensorEvent
         }
     };
 
+    /**
+     * The render loop. It runs at the vsync, only when requested by a new sensor sample or
+     * by the animation of the reference axes: it advances the PIDAnimators with the real
+     * frame time and invalidates only the Views whose inputs have been changed.
+     * It stops scheduling frames when the angles are locked and the animations are completed.
+     */
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            isFrameScheduled.set(false);
+
+            long deltaNanos = lastFrameTimeNanos == 0 ? 0 : frameTimeNanos - lastFrameTimeNanos;
+            pid.advance(deltaNanos);
+            bgpid.advance(deltaNanos);
+
+            boolean isClinometerViewChanged = false;
+            int publicationsCount = inclinationPublisher.getPublicationsCount();
+            if (!isLocked && (publicationsCount != lastPublicationsCount)) {
+                lastPublicationsCount = publicationsCount;
+                inclinationPublisher.read(inclination);
+
+                // Show hint in camera mode
+                if (isCameraLivePreviewActive) {
+                    if ((Math.abs(inclination.angle[2]) > 7.5f) && (Math.abs(inclination.angle[1] % 180.0f) > 7.5f) && (Math.abs(inclination.angle[0] % 180.0f) > 7.5f)) {
+                        // The Screen is in vertical
+                        mTextViewKeepScreenVertical.setVisibility(View.VISIBLE);
+                    }
+                    if (!((Math.abs(inclination.angle[2]) > 7f) && (Math.abs(inclination.angle[1] % 180.0f) > 7f) && (Math.abs(inclination.angle[0] % 180.0f) > 7f))) {
+                        mTextViewKeepScreenVertical.setVisibility(View.GONE);
+                    }
+                }
+                isClinometerViewChanged = true;
+
+                // You must put this setText here in order to force the re-layout also during the rotations.
+                // Without this, if you lock the measure during the rotation animation, the layout doesn't change correctly :(
+
+                updateTextViewAngles();
+//                mTextViewAngles.setText(String.format("%1.1f°  %1.1f°  %1.1f°", angle[0], angle[1], angle[2]));
+            }
+
+            if (Math.abs(pid.getValue() - old_PIDValue) > 0.001) {
+                old_PIDValue = pid.getValue();
+                isClinometerViewChanged = true;
+            }
+
+            if (Math.abs(bgpid.getValue() - old_bgPIDValue) > 0.001) {
+                old_bgPIDValue = bgpid.getValue();
+                mBackgroundView.invalidate();
+            }
+
+            // Apply Changes
+            if (isClinometerViewChanged) mClinometerView.invalidate();
+
+            // The loop continues only for the animations; the new samples request their own frames
+            if (pid.isAnimating() || bgpid.isAnimating()) {
+                lastFrameTimeNanos = frameTimeNanos;
+                requestFrame();
+            } else lastFrameTimeNanos = 0;
+        }
+    };
+
+    private final Runnable lockRunnable = new Runnable() {
+        @Override
+        public void run() {
+            inclinationPublisher.read(inclination);
+            mClinometerView.invalidate();
+            updateLockIcon();
+            beep();
+            if (isInCameraMode) releaseCamera(true);
+        }
+    };
+
+    private final Runnable displayRotationRunnable = new Runnable() {
+        @Override
+        public void run() {
+            inclinationPublisher.read(inclination);
+            if ((inclination.displayRotation == 0) || (inclination.displayRotation == 180))
+                rotateOverlays(inclination.displayRotation, getWindowManager().getDefaultDisplay().getHeight(), getWindowManager().getDefaultDisplay().getWidth());
+            else
+                rotateOverlays(inclination.displayRotation, getWindowManager().getDefaultDisplay().getWidth(), getWindowManager().getDefaultDisplay().getHeight());
+        }
+    };
+
 
     // --------------------------------------------------------------------------------------------------------------------------
     // --- GETTERS AND SETTERS --------------------------------------------------------------------------------------------------
@@ -219,10 +314,12 @@ public class ClinometerActivity extends AppCompatActivity implements SensorEvent
 
     public void setPIDTargetValue(float newValue) {
         pid.setTargetValue(newValue);
+        requestFrame();
     }
 
     public void setbgPIDTargetValue(float newValue) {
         bgpid.setTargetValue(newValue);
+        requestFrame();
     }
 
     public float getPIDValue() {
@@ -233,14 +330,6 @@ public class ClinometerActivity extends AppCompatActivity implements SensorEvent
         return bgpid.getValue();
     }
 
-    public float getDisplayRotation() {
-        return displayRotation;
-    }
-
-    public boolean isFlat() {
-        return isFlat;
-    }
-
     public boolean isDeltaAngle() {
         return isDeltaAngle;
     }
@@ -249,20 +338,8 @@ public class ClinometerActivity extends AppCompatActivity implements SensorEvent
         return isInCameraMode;
     }
 
-    public float[] getAngles() {
-        return angle;
-    }
-
-    public float getAngleXY() {
-        return angleXY;
-    }
-
-    public float getAngleXYZ() {
-        return angleXYZ;
-    }
-
-    public float getAngleTextLabels() {
-        return angleTextLabels;
+    public InclinationPublisher getInclinationPublisher() {
+        return inclinationPublisher;
     }
 
     public float getRefAngleXYZ() {
@@ -297,6 +374,16 @@ public class ClinometerActivity extends AppCompatActivity implements SensorEvent
         preferences = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
 
         mSensorManager = (SensorManager)getSystemService(SENSOR_SERVICE);
+        sensorThread = new HandlerThread("SensorThread", Process.THREAD_PRIORITY_DISPLAY);
+        sensorThread.start();
+        sensorHandler = new Handler(sensorThread.getLooper());
+        cameraThread = new HandlerThread("CameraThread");
+        cameraThread.start();
+        cameraHandler = new Handler(cameraThread.getLooper());
+        choreographer = Choreographer.getInstance();
+        blockPeriodNanos = (long) (1E9 / getWindowManager().getDefaultDisplay().getRefreshRate());
+        dataFormatter = new DataFormatter(getString(R.string.um_degrees), getString(R.string.um_percent));
+        textAngles = new char[3 * dataFormatter.getMaxLength() + 4];
         setContentView(R.layout.activity_clinometer);
 
         mClinometerView = findViewById(R.id.id_clinometerview);
@@ -315,6 +402,7 @@ public class ClinometerActivity extends AppCompatActivity implements SensorEvent
         mLinearLayoutToolbar = findViewById(R.id.id_linearlayout_toolbar);
 
         mImageViewCameraImage = findViewById(R.id.id_imageview_cameraimage);
+        mImageViewCameraImage.setScaleType(ImageView.ScaleType.MATRIX);      // See setCameraImageMatrix()
         mFrameLayoutPreview = findViewById(R.id.camera_preview);
         mBackgroundView = findViewById(R.id.id_backgroundview);
 
@@ -324,23 +412,16 @@ public class ClinometerActivity extends AppCompatActivity implements SensorEvent
         mImageViewCamera.setAlpha(0.4f);
         mLinearLayoutToolbar.setBackground(null);
 
-//        for (int i = 0; i < SIZE_OF_MEANVARIANCE; i++) {
-//            MVGravity0.LoadSample(0.0f);
-//            MVGravity1.LoadSample(0.0f);
-//            MVGravity2.LoadSample(9.81f);
-//        }
-
-        mvGravity0.reset(0.0f);
-        mvGravity1.reset(0.0f);
-        mvGravity2.reset(9.80f);
-
         // ---------- Check sensors
 
         Log.d("Clinometer", "- ROTATION_VECTOR Sensors = " + mSensorManager.getSensorList(Sensor.TYPE_ROTATION_VECTOR).size());
         Log.d("Clinometer", "- ACCELEROMETER Sensors = " + mSensorManager.getSensorList(Sensor.TYPE_ACCELEROMETER).size());
+        Log.d("Clinometer", "- GYROSCOPE Sensors = " + mSensorManager.getSensorList(Sensor.TYPE_GYROSCOPE).size());
 
         mRotationSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
         if (mRotationSensor == null) Log.d("Clinometer", "NO ACCELEROMETER FOUND!");
+        mGyroscopeSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
+        if (mGyroscopeSensor == null) Log.d("Clinometer", "NO GYROSCOPE FOUND, the sensor fusion is not available");
 
         // ---------- Button Listeners
 
@@ -384,11 +465,11 @@ public class ClinometerActivity extends AppCompatActivity implements SensorEvent
                 }
                 else {
                     isDeltaAngle = true;
-                    refAngleXYZ = angleXYZ;
+                    refAngleXYZ = inclination.angleXYZ;
                     mImageViewDeltaAngles.setAlpha(1.0f);
                     mImageViewDeltaAngles.setImageResource(R.drawable.ic_push_pin_24);
 
-                    float newAngle = (angleXY + 90) % 360;
+                    float newAngle = (inclination.angleXY + 90) % 360;
 
                     Log.w("ClinometerActivity", "[#] ClinometerActivity - Current angle = " + refAngleXY + " - New angle = " + newAngle);
 
@@ -475,8 +556,19 @@ public class ClinometerActivity extends AppCompatActivity implements SensorEvent
     protected void onPause() {
         super.onPause();
         mSensorManager.unregisterListener(this);
-        if (isInCameraMode) releaseCamera(true);
+        choreographer.removeFrameCallback(frameCallback);
+        isFrameScheduled.set(false);
+        lastFrameTimeNanos = 0;
+        pid.cancel();
+        bgpid.cancel();
+        sensorHandler.post(stopRecordingRunnable);
+        sensorHandler.post(clearSensorRingBufferRunnable);
+        // The Camera is closed without saving a frame: the capture would be discarded by the close.
+        // Only the image of a locked measure (saved when it has been locked) is kept in background,
+        // to be shown again by onResume()
         stopCamera();
+        if (!isLocked) clearCameraImage();
+        cameraFramePool.trim();
     }
 
 
@@ -487,10 +579,7 @@ public class ClinometerActivity extends AppCompatActivity implements SensorEvent
 
         loadPreferences();
 
-        formattedAngle0 = dataFormatter.format(angle[0]);
-        formattedAngle1 = dataFormatter.format(angle[1]);
-        formattedAngle2 = dataFormatter.format(angle[2]);
-        mTextViewAngles.setText(formattedAngle0 + "  " + formattedAngle1 + "  " + formattedAngle2);
+        updateTextViewAngles();
 
         mFrameLayoutClinometer.setSystemUiVisibility(
                 //View.SYSTEM_UI_FLAG_IMMERSIVE |
@@ -509,14 +598,21 @@ public class ClinometerActivity extends AppCompatActivity implements SensorEvent
                 WindowManager.LayoutParams.FLAG_FULLSCREEN);
 
         isSettingsClicked = false;
-        isLockRequested = false;
+        sensorHandler.post(cancelLockRequestRunnable);
         updateLockIcon();
 
-        mSensorManager.registerListener(this, mRotationSensor, ACCELEROMETER_UPDATE_INTERVAL_MICROS);
+        if (prefRecordSensorData) sensorHandler.post(startRecordingRunnable);
+        if (isHighRateMode) mSensorManager.registerListener(this, mRotationSensor, SensorManager.SENSOR_DELAY_FASTEST, ACCELEROMETER_MAX_REPORT_LATENCY_MICROS, sensorHandler);
+        else mSensorManager.registerListener(this, mRotationSensor, ACCELEROMETER_UPDATE_INTERVAL_MICROS, sensorHandler);
+        if (prefSensorFusion != InclinationEngine.SENSOR_FUSION_NONE) {
+            // The gyroscope with the same rate of the accelerometer
+            if (isHighRateMode) mSensorManager.registerListener(this, mGyroscopeSensor, SensorManager.SENSOR_DELAY_FASTEST, ACCELEROMETER_MAX_REPORT_LATENCY_MICROS, sensorHandler);
+            else mSensorManager.registerListener(this, mGyroscopeSensor, ACCELEROMETER_UPDATE_INTERVAL_MICROS, sensorHandler);
+        }
+        requestFrame();
 
         if (isInCameraMode && !isLocked){
-            cameraPreviewBitmap = null;
-            mImageViewCameraImage.setImageBitmap(null);
+            clearCameraImage();
             activateCamera();
         }
     }
@@ -529,10 +625,24 @@ public class ClinometerActivity extends AppCompatActivity implements SensorEvent
     }
 
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        cameraFramePool.trim();
+    }
+
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (mHandler != null) { mHandler.removeCallbacks(mRunnable); }
+        if (mHandler != null) {
+            mHandler.removeCallbacks(mRunnable);
+            mHandler.removeCallbacks(lockRunnable);
+            mHandler.removeCallbacks(displayRotationRunnable);
+        }
+        sensorThread.quitSafely();
+        cameraThread.quitSafely();
+        cameraFramePool.trim();
     }
 
 
@@ -548,207 +658,226 @@ public class ClinometerActivity extends AppCompatActivity implements SensorEvent
     }
 
 
+    /**
+     * It runs on the sensor thread: it processes the event, publishes the new inclination
+     * and requests a frame of the render loop. The UI is updated at most once per frame.
+     * In high rate mode the events are accumulated into the sensorRingBuffer and processed
+     * in blocks of one display frame, so that the inclination is published once per block.
+     * The events of the gyroscope (sensor fusion) are processed in the same order of
+     * the events of the accelerometer; the inclination is updated by the accelerometer.
+     */
     public void onSensorChanged(SensorEvent event) {
 
-        if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
+        if (event.sensor.getType() == Sensor.TYPE_GYROSCOPE) {
 
-            // LOCKING
+            if (sensorRecorder != null) {
+                try {
+                    sensorRecorder.writeGyroscopeEvent(event.timestamp, event.values, event.accuracy);
+                } catch (IOException e) {
+                    stopRecording(e);
+                }
+            }
 
-            if (isLockRequested) {
-                if (!prefAutoLock) {
-                    isLockRequested = false;
-                    isLocked = true;
-                    mClinometerView.invalidate();
-                    updateLockIcon();
-                    beep();
-                    if (isInCameraMode) releaseCamera(true);
-                } else if ((mvAngle0.getTolerance() < prefAutoLockTolerance)
-                        && (mvAngle1.getTolerance() < prefAutoLockTolerance)
-                        && (mvAngle2.getTolerance() < prefAutoLockTolerance)
-                        && mvAngle0.getLoaded()
-                        && mvAngle1.getLoaded()
-                        && mvAngle2.getLoaded()
-                        && ((!prefAutoLockHorizonCheck)
-                                || (Math.abs(angle[2]) >= AUTOLOCK_HORIZON_CHECK_THRESHOLD)
-                                || (prefAutoLockHorizonCheck && (Math.abs(angle[2]) < AUTOLOCK_HORIZON_CHECK_THRESHOLD) && (Math.abs(mvAngle2.getMeanValue()) < prefAutoLockTolerance)))) {
-
-                    angle[0] = (float) (180 / Math.PI * Math.asin((mvGravity0.getMeanValue() / Math.max(gravityXYZ, 0.00001f))));
-                    angle[1] = (float) (180 / Math.PI * Math.asin((mvGravity1.getMeanValue() / Math.max(gravityXYZ, 0.00001f))));
-                    angle[2] = (float) (180 / Math.PI * Math.asin((mvGravity2.getMeanValue() / Math.max(gravityXYZ, 0.00001f))));
-
-                    angleXY = 0;
-                    if (gravityXY > 0) {
-                        if (mvGravity0.getMeanValue() >= 0) {
-                            if (mvGravity1.getMeanValue() < 0)
-                                angleXY = (float) Math.toDegrees(-Math.asin(mvGravity1.getMeanValue() / gravityXY));
-                            else
-                                angleXY = (float) Math.toDegrees(2 * Math.PI - Math.asin(mvGravity1.getMeanValue() / gravityXY));
-                        } else
-                            angleXY = (float) Math.toDegrees(Math.PI + Math.asin(mvGravity1.getMeanValue() / gravityXY));
-                    }
+            if (isHighRateMode) addToBlock(Sensor.TYPE_GYROSCOPE, event.timestamp, event.values);
+            else processGyroscopeSample(event.values, event.timestamp);
+            return;
+        }
 
-                    angleXYZ = 0;
-                    if (gravityXY > 0) {
-                        angleXYZ = (float) Math.toDegrees(Math.acos(mvGravity2.getMeanValue() / gravityXYZ));
-                    }
+        if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
 
-                    Log.d("SpiritLevel", "------------------------------------------------------------------");
-                    Log.d("SpiritLevel", String.format("Auto Locking Tolerance = %1.4f", prefAutoLockTolerance));
-                    Log.d("SpiritLevel", (String.format("Measurement locked - Angle0: Mean=%+1.4f Uncertainty=%+1.4f", mvAngle0.getMeanValue(), mvAngle0.getTolerance())));
-                    Log.d("SpiritLevel", (String.format("Measurement locked - Angle1: Mean=%+1.4f Uncertainty=%+1.4f", mvAngle1.getMeanValue(), mvAngle1.getTolerance())));
-                    Log.d("SpiritLevel", (String.format("Measurement locked - Angle2: Mean=%+1.4f Uncertainty=%+1.4f", mvAngle2.getMeanValue(), mvAngle2.getTolerance())));
-                    Log.d("SpiritLevel", "------------------------------------------------------------------");
-
-                    isLockRequested = false;
-                    isLocked = true;
-                    mClinometerView.invalidate();
-                    updateLockIcon();
-                    beep();
-                    if (isInCameraMode) releaseCamera(true);
-
-                    mvAngle0.reset();
-                    mvAngle1.reset();
-                    mvAngle2.reset();
+            if (sensorRecorder != null) {
+                try {
+                    sensorRecorder.writeSensorEvent(event.timestamp, event.values, event.accuracy);
+                } catch (IOException e) {
+                    stopRecording(e);
                 }
             }
 
-            // SIGNAL PROCESSING
+            if (!isHighRateMode) {
+                processSample(event.values, event.timestamp);
+                publishInclination();
+                return;
+            }
 
-            if (!isLocked) {
-                alpha0 = ALPHA * (float)(1 + Math.abs(mvGravity0.getMeanValue() - event.values[0])*0.1);
-                alpha1 = ALPHA * (float)(1 + Math.abs(mvGravity1.getMeanValue() - event.values[1])*0.1);
-                alpha2 = ALPHA * (float)(1 + Math.abs(mvGravity2.getMeanValue() - event.values[2])*0.1);
+            addToBlock(Sensor.TYPE_ACCELEROMETER, event.timestamp, event.values);
+        }
+    }
 
-                // Weighted gravity reads
 
-                if ((gravity[0] == 0) && (gravity[1] == 0) && (gravity[2] == 0)) {
-                    gravity[0] = (event.values[0] - gravity_offset[0]) / gravity_gain[0];   // X
-                    gravity[1] = (event.values[1] - gravity_offset[1]) / gravity_gain[1];   // Y
-                    gravity[2] = (event.values[2] - gravity_offset[2]) / gravity_gain[2];   // Z
-                } else {
-                    gravity[0] = (1 - alpha0) * gravity[0] + (alpha0) * (event.values[0] - gravity_offset[0]) / gravity_gain[0];
-                    gravity[1] = (1 - alpha1) * gravity[1] + (alpha1) * (event.values[1] - gravity_offset[1]) / gravity_gain[1];
-                    gravity[2] = (1 - alpha2) * gravity[2] + (alpha2) * (event.values[2] - gravity_offset[2]) / gravity_gain[2];
-                }
+    /**
+     * Adds an event to the current block (high rate mode). When the block is complete,
+     * all its events are processed and the inclination is published.
+     */
+    private void addToBlock(int sensorType, long timestamp, float[] values) {
+        sensorRingBuffer.add(sensorType, timestamp, values);
+        if (!sensorRingBuffer.isFull()
+                && (timestamp - sensorRingBuffer.getOldestTimestamp() < blockPeriodNanos)) return;
+
+        while (!sensorRingBuffer.isEmpty()) {
+            int blockSensorType = sensorRingBuffer.getOldestSensorType();
+            long blockTimestamp = sensorRingBuffer.poll(blockSample);
+            if (blockSensorType == Sensor.TYPE_GYROSCOPE) processGyroscopeSample(blockSample, blockTimestamp);
+            else processSample(blockSample, blockTimestamp);
+        }
+        publishInclination();
+    }
 
-                // Apply Calibration values
 
-                gravity_calibrated[0] = gravity[0] * calibrationMatrix[0][0] + gravity[1] * calibrationMatrix[0][1] + gravity[2] * calibrationMatrix[0][2];
-                gravity_calibrated[1] = gravity[0] * calibrationMatrix[1][0] + gravity[1] * calibrationMatrix[1][1] + gravity[2] * calibrationMatrix[1][2];
-                gravity_calibrated[2] = gravity[0] * calibrationMatrix[2][0] + gravity[1] * calibrationMatrix[2][1] + gravity[2] * calibrationMatrix[2][2];
+    /**
+     * Processes a gyroscope sample on the sensor thread. It is not used while the measure is locked,
+     * as the accelerometer samples: the sensor fusion restarts after the lock.
+     */
+    private void processGyroscopeSample(float[] values, long timestamp) {
+        if (!isLocked) inclinationEngine.updateGyroscope(values, timestamp);
+    }
 
-                mvGravity0.loadSample(gravity_calibrated[0]);
-                mvGravity1.loadSample(gravity_calibrated[1]);
-                mvGravity2.loadSample(gravity_calibrated[2]);
 
-                gravityXY = (float) Math.sqrt(mvGravity0.getMeanValue() * mvGravity0.getMeanValue() + mvGravity1.getMeanValue() * mvGravity1.getMeanValue());   // Vector over the screen plane
-                gravityXYZ = (float) Math.sqrt(gravityXY * gravityXY + mvGravity2.getMeanValue() * mvGravity2.getMeanValue());                                  // Spatial Vector
+    /**
+     * Processes a sample on the sensor thread: the Locking and the signal processing.
+     * The results are published by publishInclination().
+     */
+    private void processSample(float[] values, long timestamp) {
+
+        // LOCKING
+
+        if (isLockRequested) {
+            if (!prefAutoLock) {
+                isLockRequested = false;
+                isLocked = true;
+                inclinationPublisher.publish(sensorInclination, true);
+                mHandler.post(lockRunnable);
+            } else if (inclinationEngine.isSteady(prefAutoLockTolerance, prefAutoLockHorizonCheck)) {
+
+                Log.d("SpiritLevel", "------------------------------------------------------------------");
+                Log.d("SpiritLevel", String.format("Auto Locking Tolerance = %1.4f", prefAutoLockTolerance));
+                Log.d("SpiritLevel", (String.format("Measurement locked - Angle0: Mean=%+1.4f Uncertainty=%+1.4f", inclinationEngine.getAngleMeanVariance(0).getMeanValue(), inclinationEngine.getAngleMeanVariance(0).getTolerance())));
+                Log.d("SpiritLevel", (String.format("Measurement locked - Angle1: Mean=%+1.4f Uncertainty=%+1.4f", inclinationEngine.getAngleMeanVariance(1).getMeanValue(), inclinationEngine.getAngleMeanVariance(1).getTolerance())));
+                Log.d("SpiritLevel", (String.format("Measurement locked - Angle2: Mean=%+1.4f Uncertainty=%+1.4f", inclinationEngine.getAngleMeanVariance(2).getMeanValue(), inclinationEngine.getAngleMeanVariance(2).getTolerance())));
+                Log.d("SpiritLevel", "------------------------------------------------------------------");
+
+                inclinationEngine.lock(sensorInclination);
+                inclinationPublisher.publish(sensorInclination, true);
+
+                isLockRequested = false;
+                isLocked = true;
+                recordInclination();
+                mHandler.post(lockRunnable);
+            }
+        }
 
-                // Calculate Angles
+        // SIGNAL PROCESSING
 
-                angleXY = 0;
-                if (gravityXY > 0) {
-                    if (mvGravity0.getMeanValue() >= 0) {
-                        if (mvGravity1.getMeanValue() < 0)
-                            angleXY = (float) Math.toDegrees(-Math.asin(mvGravity1.getMeanValue() / gravityXY));
-                        else
-                            angleXY = (float) Math.toDegrees(2 * Math.PI - Math.asin(mvGravity1.getMeanValue() / gravityXY));
-                    } else
-                        angleXY = (float) Math.toDegrees(Math.PI + Math.asin(mvGravity1.getMeanValue() / gravityXY));
-                }
+        if (!isLocked) {
+            inclinationEngine.update(values, timestamp, sensorInclination);
+            recordInclination();
+            isInclinationChanged = true;
+            if (sensorInclination.isDisplayRotationChanged) isDisplayRotationChanged = true;
+        }
+    }
 
-                angleXYZ = 0;
-                if (gravityXY > 0) {
-                    angleXYZ = (float) Math.toDegrees(Math.acos(mvGravity2.getMeanValue() / gravityXYZ));
-                }
 
-                angle[0] = (float) (180 / Math.PI * Math.asin((mvGravity0.getMeanValue() / Math.max(gravityXYZ, 0.00001f))));
-                angle[1] = (float) (180 / Math.PI * Math.asin((mvGravity1.getMeanValue() / Math.max(gravityXYZ, 0.00001f))));
-                angle[2] = (float) (180 / Math.PI * Math.asin((mvGravity2.getMeanValue() / Math.max(gravityXYZ, 0.00001f))));
+    /**
+     * Publishes the inclination computed by processSample() to the UI thread, if changed.
+     * It runs on the sensor thread.
+     */
+    private void publishInclination() {
+        if (!isInclinationChanged) return;
+        inclinationPublisher.publish(sensorInclination, isLocked);
+        requestFrame();
 
-                // Load angles into Auto-Locking MeanVariances
+        if (isDisplayRotationChanged) {
+            Log.w("SpiritLevel", " ROTATION = " + sensorInclination.displayRotation);
+            mHandler.removeCallbacks(displayRotationRunnable);
+            mHandler.post(displayRotationRunnable);
+        }
+        isInclinationChanged = false;
+        isDisplayRotationChanged = false;
+    }
 
-                mvAngle0.loadSample(angle[0]);
-                mvAngle1.loadSample(angle[1]);
-                mvAngle2.loadSample(angle[2]);
 
-                // Determine Rotation, ViewMode and Text Angles
+    private final Runnable clearSensorRingBufferRunnable = new Runnable() {
+        @Override
+        public void run() {
+            // The events not yet processed are discarded, they are too old
+            sensorRingBuffer.clear();
+        }
+    };
 
-                if (Math.abs(angle[2]) < 70) {
-                    if ((angleXY > 270 - 45 + ROTATION_THRESHOLD) && (angleXY < 270 + 45 - ROTATION_THRESHOLD) && (displayRotation != 0)) {
-                        displayRotation = 0;
-                        Log.w("SpiritLevel", " ROTATION = " + displayRotation);
-                        rotateOverlays(displayRotation, this.getWindowManager().getDefaultDisplay().getHeight(), this.getWindowManager().getDefaultDisplay().getWidth());
-                    }
-                    if ((angleXY > 90 - 45 + ROTATION_THRESHOLD) && (angleXY < 90 + 45 - ROTATION_THRESHOLD) && (displayRotation != 180)) {
-                        displayRotation = 180;
-                        Log.w("SpiritLevel", " ROTATION = " + displayRotation);
-                        rotateOverlays(displayRotation, this.getWindowManager().getDefaultDisplay().getHeight(), this.getWindowManager().getDefaultDisplay().getWidth());
-                    }
-                    if ((angleXY > 180 - 45 + ROTATION_THRESHOLD) && (angleXY < 180 + 45 - ROTATION_THRESHOLD) && (displayRotation != 270)) {
-                        displayRotation = 270;
-                        Log.w("SpiritLevel", " ROTATION = " + displayRotation);
-                        rotateOverlays(displayRotation, this.getWindowManager().getDefaultDisplay().getWidth(), this.getWindowManager().getDefaultDisplay().getHeight());
-                    }
-                    if (((angleXY > 270 + 45 + ROTATION_THRESHOLD) || (angleXY < 45 - ROTATION_THRESHOLD)) && (displayRotation != 90)) {
-                        displayRotation = 90;
-                        Log.w("SpiritLevel", " ROTATION = " + displayRotation);
-                        rotateOverlays(displayRotation, this.getWindowManager().getDefaultDisplay().getWidth(), this.getWindowManager().getDefaultDisplay().getHeight());
-                    }
-                }
 
-                if (Math.abs(angle[2]) < 70) {
-                    if (isFlat) isFlat = false;
-                    angleTextLabels = (90 + angleXY) % 360;
-                }
-                if ((Math.abs(angle[2]) >= 70) && (Math.abs(angle[2]) < 75)) {
-                    if ((displayRotation == 0) && (angleXY < 270)) {
-                        //Log.d("SpiritLevel", "ANG");
-                        angleTextLabels = displayRotation * (Math.abs(angle[2]) - 70) / 5
-                                + (((90 + angleXY) % 360) - 360) * (75 - Math.abs(angle[2])) / 5;
-                    } else {
-                        angleTextLabels = displayRotation * (Math.abs(angle[2]) - 70) / 5
-                                + ((90 + angleXY) % 360) * (75 - Math.abs(angle[2])) / 5;
-                    }
-                }
-                if (Math.abs(angle[2]) >= 75) {
-                    if (!isFlat) isFlat = true;
-                    angleTextLabels = displayRotation;
-                }
+    // --------------------------------------------------------------------------------------------------------------------------
+    // --- SENSOR DATA RECORDING ------------------------------------------------------------------------------------------------
+    // --------------------------------------------------------------------------------------------------------------------------
 
-                // Show hint in camera mode
-                if (isCameraLivePreviewActive) {
-                    if ((Math.abs(angle[2]) > 7.5f) && (Math.abs(angle[1] % 180.0f) > 7.5f) && (Math.abs(angle[0] % 180.0f) > 7.5f)) {
-                        // The Screen is in vertical
-                        mTextViewKeepScreenVertical.setVisibility(View.VISIBLE);
-                    }
-                    if (!((Math.abs(angle[2]) > 7f) && (Math.abs(angle[1] % 180.0f) > 7f) && (Math.abs(angle[0] % 180.0f) > 7f))) {
-                        mTextViewKeepScreenVertical.setVisibility(View.GONE);
-                    }
-                }
-                // Apply Changes
-                mClinometerView.invalidate();
 
-                // You must put this setText here in order to force the re-layout also during the rotations.
-                // Without this, if you lock the measure during the rotation animation, the layout doesn't change correctly :(
+    // The recording runs on the sensor thread, that owns the SensorRecorder.
+    // The raw events and the inclinations are written into a binary log (see SensorRecorder)
+    // into the app-specific external storage; it can be replayed on the JVM with the SensorLogReader.
 
-                formattedAngle0 = dataFormatter.format(angle[0]);
-                formattedAngle1 = dataFormatter.format(angle[1]);
-                formattedAngle2 = dataFormatter.format(angle[2]);
-                mTextViewAngles.setText(formattedAngle0 + "  " + formattedAngle1 + "  " + formattedAngle2);
-//                mTextViewAngles.setText(String.format("%1.1f°  %1.1f°  %1.1f°", angle[0], angle[1], angle[2]));
+    private final Runnable startRecordingRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (sensorRecorder != null) return;
+            File directory = getExternalFilesDir(null);
+            if (directory == null) {
+                Log.w("ClinometerActivity", "[#] ClinometerActivity - The external storage is not available, the sensor data will not be recorded");
+                return;
             }
-
-            if (Math.abs(pid.getValue() - old_PIDValue) > 0.001) {
-                old_PIDValue = pid.getValue();
-                mClinometerView.invalidate();
+            File file = new File(directory, "SensorLog_"
+                    + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date()) + ".bin");
+            try {
+                sensorRecorder = new SensorRecorder(file, Sensor.TYPE_ACCELEROMETER,
+                        isHighRateMode ? SensorManager.SENSOR_DELAY_FASTEST : ACCELEROMETER_UPDATE_INTERVAL_MICROS);
+                Log.w("ClinometerActivity", "[#] ClinometerActivity - Recording the sensor data into " + file.getAbsolutePath());
+            } catch (IOException e) {
+                Log.w("ClinometerActivity", "[#] ClinometerActivity - Unable to record the sensor data: " + e.getMessage());
             }
+        }
+    };
 
-            if (Math.abs(bgpid.getValue() - old_bgPIDValue) > 0.001) {
-                old_bgPIDValue = bgpid.getValue();
-                mBackgroundView.invalidate();
-            }
+    private final Runnable stopRecordingRunnable = new Runnable() {
+        @Override
+        public void run() {
+            stopRecording(null);
+        }
+    };
+
+
+    /**
+     * Closes the current recording, if any. It runs on the sensor thread.
+     *
+     * @param error The error that stops the recording, or null
+     */
+    private void stopRecording(IOException error) {
+        if (sensorRecorder == null) return;
+        if (error != null) Log.w("ClinometerActivity", "[#] ClinometerActivity - The recording of the sensor data has been stopped: " + error.getMessage());
+        try {
+            sensorRecorder.close();
+        } catch (IOException e) {
+            Log.w("ClinometerActivity", "[#] ClinometerActivity - Unable to close the sensor data recording: " + e.getMessage());
         }
+        sensorRecorder = null;
+    }
+
+
+    /**
+     * Records the last inclination computed by the sensor thread, if recording.
+     */
+    private void recordInclination() {
+        if (sensorRecorder == null) return;
+        try {
+            sensorRecorder.writeInclination(sensorInclination, isLocked);
+        } catch (IOException e) {
+            stopRecording(e);
+        }
+    }
+
+
+    /**
+     * Requests a frame of the render loop, if not already requested.
+     * It can be called by any thread.
+     */
+    private void requestFrame() {
+        if (isFrameScheduled.compareAndSet(false, true)) choreographer.postFrameCallback(frameCallback);
     }
 
 
@@ -758,17 +887,63 @@ public class ClinometerActivity extends AppCompatActivity implements SensorEvent
     }
 
 
+    /**
+     * Unlocks the measure, or requests (and cancels the request of) the Locking.
+     * The request is processed by the sensor thread, in order with the sensor samples,
+     * so that a cancel can't be overtaken by an Auto-Lock in progress.
+     */
     public void toggleLocking() {
-        if (isLocked) {
-            isLocked = false;
+        sensorHandler.post(toggleLockingRunnable);
+    }
+
+
+    // The changes of the state of the Locking, that run on the sensor thread
+
+    private final Runnable toggleLockingRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (isLocked) {
+                isLocked = false;
+                isLockRequested = false;
+                // The samples have not been processed while locked
+                inclinationEngine.restartSampleRateMeasurement();
+                mHandler.post(unlockRunnable);
+            } else {
+                isLockRequested = !isLockRequested;
+                mHandler.post(updateLockIconRunnable);
+            }
+        }
+    };
+
+    private final Runnable cancelLockRequestRunnable = new Runnable() {
+        @Override
+        public void run() {
+            // Called on resume: the samples stopped while paused
+            inclinationEngine.restartSampleRateMeasurement();
+            if (!isLockRequested) return;
             isLockRequested = false;
+            mHandler.post(updateLockIconRunnable);
+        }
+    };
+
+
+    // The updates of the UI after the changes of the state of the Locking
+
+    private final Runnable unlockRunnable = new Runnable() {
+        @Override
+        public void run() {
             if (isInCameraMode) activateCamera();
-            mImageViewCameraImage.setImageBitmap(null);
-            cameraPreviewBitmap = null;
+            clearCameraImage();
+            updateLockIcon();
         }
-        else isLockRequested = !isLockRequested;
-        updateLockIcon();
-    }
+    };
+
+    private final Runnable updateLockIconRunnable = new Runnable() {
+        @Override
+        public void run() {
+            updateLockIcon();
+        }
+    };
 
 
     private void updateLockIcon() {
@@ -787,17 +962,38 @@ public class ClinometerActivity extends AppCompatActivity implements SensorEvent
     }
 
 
+    /**
+     * Writes the 3 angles into mTextViewAngles, reusing the textAngles buffer
+     * in order to avoid the creation of new Strings for each sensor event.
+     */
+    private void updateTextViewAngles() {
+        int length = dataFormatter.format(inclination.angle[0], textAngles, 0);
+        textAngles[length++] = ' ';
+        textAngles[length++] = ' ';
+        length = dataFormatter.format(inclination.angle[1], textAngles, length);
+        textAngles[length++] = ' ';
+        textAngles[length++] = ' ';
+        length = dataFormatter.format(inclination.angle[2], textAngles, length);
+        mTextViewAngles.setText(textAngles, 0, length);
+    }
+
+
     private void loadPreferences() {
         if (preferences.getBoolean(KEY_PREF_KEEP_SCREEN_ON, true)) getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
         else getWindow().clearFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
 
         prefAutoLock = preferences.getBoolean(KEY_PREF_AUTOLOCK, false);
         clinometerApplication.setPrefUM(Integer.parseInt(preferences.getString(KEY_PREF_UNIT_OF_MEASUREMENT, (getResources().getStringArray(R.array.UMAnglesValues))[0])));
+        dataFormatter.setUM(clinometerApplication.getPrefUM());
         prefAutoLockHorizonCheck = preferences.getBoolean(KEY_PREF_AUTOLOCK_HORIZON_CHECK, true);
         prefAutoLockTolerance = AUTOLOCK_MAX_TOLERANCE - (AUTOLOCK_MAX_TOLERANCE - AUTOLOCK_MIN_TOLERANCE) * preferences.getInt(KEY_PREF_AUTOLOCK_PRECISION, 500) / 1000;
         Log.d("Clinometer", String.format("Auto Locking Tolerance = %1.3f", prefAutoLockTolerance));
 
         prefExposureCompensation = preferences.getInt(KEY_PREF_CAMERA_EXPOSURE_COMPENSATION, 0);
+        prefRecordSensorData = preferences.getBoolean(KEY_PREF_RECORD_SENSOR_DATA, false);
+        isHighRateMode = preferences.getBoolean(KEY_PREF_HIGH_RATE_SENSOR, false);
+        prefSensorFusion = Integer.parseInt(preferences.getString(KEY_PREF_SENSOR_FUSION, "0"));
+        if (mGyroscopeSensor == null) prefSensorFusion = InclinationEngine.SENSOR_FUSION_NONE;
 
         angle_calibration[0]    = preferences.getFloat(KEY_PREF_CALIBRATION_ANGLE_0, 0);
         angle_calibration[1]    = preferences.getFloat(KEY_PREF_CALIBRATION_ANGLE_1, 0);
@@ -809,17 +1005,18 @@ public class ClinometerActivity extends AppCompatActivity implements SensorEvent
         gravity_offset[1]       = preferences.getFloat(KEY_PREF_CALIBRATION_OFFSET_1, 0);
         gravity_offset[2]       = preferences.getFloat(KEY_PREF_CALIBRATION_OFFSET_2, 0);
 
-        calibrationMatrix[0][0] = (float) (Math.cos(Math.toRadians(angle_calibration[2])) * Math.cos(Math.toRadians(angle_calibration[0])) + Math.sin(Math.toRadians(angle_calibration[2])) * Math.sin(Math.toRadians(angle_calibration[1])) * Math.sin(Math.toRadians(angle_calibration[0])));
-        calibrationMatrix[0][1] = (float) (Math.cos(Math.toRadians(angle_calibration[1])) * Math.sin(Math.toRadians(angle_calibration[0])));
-        calibrationMatrix[0][2] = (float) (-Math.sin(Math.toRadians(angle_calibration[2])) * Math.cos(Math.toRadians(angle_calibration[0])) + Math.cos(Math.toRadians(angle_calibration[2])) * Math.sin(Math.toRadians(angle_calibration[1])) * Math.sin(Math.toRadians(angle_calibration[0])));
-
-        calibrationMatrix[1][0] = (float) (-Math.cos(Math.toRadians(angle_calibration[2])) * Math.sin(Math.toRadians(angle_calibration[0])) + Math.sin(Math.toRadians(angle_calibration[2])) * Math.sin(Math.toRadians(angle_calibration[1])) * Math.cos(Math.toRadians(angle_calibration[0])));
-        calibrationMatrix[1][1] = (float) (Math.cos(Math.toRadians(angle_calibration[1])) * Math.cos(Math.toRadians(angle_calibration[0])));
-        calibrationMatrix[1][2] = (float) (Math.sin(Math.toRadians(angle_calibration[2])) * Math.sin(Math.toRadians(angle_calibration[0])) + Math.cos(Math.toRadians(angle_calibration[2])) * Math.sin(Math.toRadians(angle_calibration[1])) * Math.cos(Math.toRadians(angle_calibration[0])));
-
-        calibrationMatrix[2][0] = (float) (Math.sin(Math.toRadians(angle_calibration[2])) * Math.cos(Math.toRadians(angle_calibration[1])));
-        calibrationMatrix[2][1] = (float) (-Math.sin(Math.toRadians(angle_calibration[1])));
-        calibrationMatrix[2][2] = (float) (Math.cos(Math.toRadians(angle_calibration[2])) * Math.cos(Math.toRadians(angle_calibration[1])));
+        // The InclinationEngine is owned by the sensor thread
+        final float[] gain = gravity_gain.clone();
+        final float[] offset = gravity_offset.clone();
+        final float[] calibration = angle_calibration.clone();
+        final int sensorFusion = prefSensorFusion;
+        sensorHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                inclinationEngine.setCalibration(gain, offset, calibration);
+                inclinationEngine.setSensorFusion(sensorFusion);
+            }
+        });
     }
 
 
@@ -850,10 +1047,7 @@ public class ClinometerActivity extends AppCompatActivity implements SensorEvent
                 }
                 // You must put this setText here in order to force the re-layout also during the rotations.
                 // Without this, if you lock the measure during the rotation animation, the layout doesn't change correctly :(
-                formattedAngle0 = dataFormatter.format(angle[0]);
-                formattedAngle1 = dataFormatter.format(angle[1]);
-                formattedAngle2 = dataFormatter.format(angle[2]);
-                mTextViewAngles.setText(formattedAngle0 + "  " + formattedAngle1 + "  " + formattedAngle2);
+                updateTextViewAngles();
 //                mTextViewAngles.setText(String.format("%1.1f°  %1.1f°  %1.1f°", angle[0], angle[1], angle[2]));
             }
         });
@@ -893,20 +1087,6 @@ public class ClinometerActivity extends AppCompatActivity implements SensorEvent
     // --------------------------------------------------------------------------------------------------------------------------
 
 
-    /** A safe way to get an instance of the Camera object. */
-    private Camera getCameraInstance(){
-        Camera c = null;
-        try {
-            clinometerApplication.scanCameras();
-            c = Camera.open(clinometerApplication.getSelectedCameraInformation().id); // attempt to get a Camera instance
-        }
-        catch (Exception e){
-            // Camera is not available (in use or does not exist)
-        }
-        return c; // returns null if camera is unavailable
-    }
-
-
     /** Switch on/off the Camera Mode */
     private boolean switchToCameraMode(boolean newState) {
         Log.d("Clinometer", "switchToCameraMode(" + newState + ")");
@@ -937,39 +1117,88 @@ public class ClinometerActivity extends AppCompatActivity implements SensorEvent
     }
 
 
-    /** Activate the Camera Preview */
+    /**
+     * Activate the Camera Preview.
+     * The Camera is opened asynchronously by the camera thread: the Preview is added to the layout
+     * by cameraListener.onCameraOpened(), and the Camera Mode is switched off if the Camera can't be opened.
+     * At the first use the Cameras are scanned by the camera thread too, before opening the Camera.
+     */
     private boolean activateCamera() {
-        if (isCameraLivePreviewActive) return true;
-        if (mCamera == null) {
-            //showToast(getString(R.string.toast_activation_of_the_camera));
-            // Create an instance of Camera
-            mCamera = getCameraInstance();
+        if (isCameraLivePreviewActive) {
+            if (!isCameraImageRequested) return true;
+            stopCamera();                           // The Preview stopped on the requested image
         }
-        if (mCamera == null) return false;
+        cameraImageRequest++;                       // The images still in conversion will be discarded
 
-        // Create our Preview view and set it as the content of our activity.
+        cameraActivationNanos = System.nanoTime();
         mFrameLayoutPreview.removeAllViews();
-        mPreview = new CameraPreview(this, mCamera, prefExposureCompensation);
-        mFrameLayoutPreview.addView(mPreview);
         mFrameLayoutPreview.setVisibility(View.VISIBLE);
         mImageViewCameraImage.setVisibility(View.GONE);
+        isCameraLivePreviewActive = true;
+
+        if (clinometerApplication.isCameraScanned()) openCamera();
+        else cameraHandler.post(scanCamerasRunnable);
+        Log.d("Clinometer", String.format(Locale.US, "activateCamera() returned in %1.1f ms",
+                (System.nanoTime() - cameraActivationNanos) / 1E6));
+        return true;
+    }
 
-        // SCALE TO FILL SCREEN WITHOUT DEFORMATION ------------------------------------------------
-        // Based on: https://startandroid.ru/ru/uroki/vse-uroki-spiskom/264-urok-132-kamera-vyvod-izobrazhenija-na-ekran-obrabotka-povorota.html
 
+    /** Scans the Cameras on the camera thread, then opens the selected Camera */
+    private final Runnable scanCamerasRunnable = new Runnable() {
+        @Override
+        public void run() {
+            clinometerApplication.scanCameras();
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    openCamera();
+                }
+            });
+        }
+    };
+
+
+    /** Creates the Camera Preview of the selected Camera, that is opened by the camera thread */
+    private void openCamera() {
+        if (!isCameraLivePreviewActive || (mPreview != null)) return;     // Stopped, or already created
+        CameraInformation cameraInformation = clinometerApplication.getSelectedCameraInformation();
+        if (cameraInformation == null) {
+            Log.w("Clinometer", "No Camera available");
+            stopCamera();
+            isInCameraMode = switchToCameraMode(false);
+            return;
+        }
+        //showToast(getString(R.string.toast_activation_of_the_camera));
+        mPreview = CameraPreview.create(this, cameraInformation, prefExposureCompensation,
+                CAMERA_PREVIEW_MAX_SIZE, cameraHandler, cameraFramePool, cameraListener);
+        isCameraOpened = false;
+        Log.d("Clinometer", String.format(Locale.US, "Camera Preview created %1.1f ms after activateCamera()",
+                (System.nanoTime() - cameraActivationNanos) / 1E6));
+    }
+
+
+    /** Adds the opened Camera Preview to the layout, scaled to fill the screen */
+    private void showCameraPreview() {
         Display display = getWindowManager().getDefaultDisplay();
 
+        // Create our Preview view and set it as the content of our activity.
+        mFrameLayoutPreview.removeAllViews();
+        mFrameLayoutPreview.addView(mPreview);
+
+        // SCALE TO FILL SCREEN WITHOUT DEFORMATION ------------------------------------------------
+        // Based on: https://startandroid.ru/ru/uroki/vse-uroki-spiskom/264-urok-132-kamera-vyvod-izobrazhenija-na-ekran-obrabotka-povorota.html
+
         // RectF of the Display, it matches the size of the Window
         RectF rectDisplay = new RectF();
         rectDisplay.set(0, 0, display.getWidth(), display.getHeight());
-        Size size = mCamera.getParameters().getPreviewSize();
 
         // RectF of the Camera Preview
         RectF rectPreview = new RectF();
         if (display.getWidth() > display.getHeight()) {
-            rectPreview.set(0, 0, size.width, size.height);
+            rectPreview.set(0, 0, mPreview.getPreviewWidth(), mPreview.getPreviewHeight());
         } else {
-            rectPreview.set(0, 0, size.height, size.width);                // vertical preview
+            rectPreview.set(0, 0, mPreview.getPreviewHeight(), mPreview.getPreviewWidth());    // vertical preview
         }
 
         // Transformation matrix
@@ -992,49 +1221,106 @@ public class ClinometerActivity extends AppCompatActivity implements SensorEvent
 
         // -----------------------------------------------------------------------------------------
 
-        isCameraLivePreviewActive = true;
-        return true;
+        isCameraOpened = true;
     }
 
 
-    final Camera.PreviewCallback cameraPreviewCallback = new Camera.PreviewCallback() {
+    private final CameraPreview.Listener cameraListener = new CameraPreview.Listener() {
         @Override
-        public void onPreviewFrame(byte[] bytes, Camera camera) {
-            try {
-                mPreview.pausePreview();
-                Camera.Parameters parameters = camera.getParameters();
-                Log.d("Clinometer", "onPreviewFrame");
-
-                ByteArrayOutputStream out = new ByteArrayOutputStream();
-                YuvImage yuvImage = new YuvImage(bytes, parameters.getPreviewFormat(), parameters.getPreviewSize().width, parameters.getPreviewSize().height, null);
-                yuvImage.compressToJpeg(new Rect(0, 0, parameters.getPreviewSize().width, parameters.getPreviewSize().height), 90, out);
-                byte[] imageBytes = out.toByteArray();
-                cameraPreviewBitmap = BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
-
-                out.flush();
-                out.close();
-            } catch (IOException e) {
-                Log.d("Clinometer", "IOException: " + e);
-            }
-            Matrix matrix = new Matrix();
-            //this will prevent mirror effect
-            if (clinometerApplication.getSelectedCameraInformation().type == CameraInformation.FRONT_CAMERA) matrix.preScale(-1.0f, 1.0f);
-            matrix.postRotate(mPreview.getRotationDegrees());
-            mImageViewCameraImage.setImageBitmap(Bitmap.createBitmap(cameraPreviewBitmap, 0, 0,
-                    cameraPreviewBitmap.getWidth(),
-                    cameraPreviewBitmap.getHeight(), matrix, true));
+        public void onCameraOpened(CameraPreview cameraPreview) {
+            if (cameraPreview != mPreview) return;          // A Preview already released
+            showCameraPreview();
+        }
+
+        @Override
+        public void onCameraError(CameraPreview cameraPreview) {
+            if (cameraPreview != mPreview) return;
+            Log.w("Clinometer", "Unable to use the Camera");
             stopCamera();
+            isInCameraMode = switchToCameraMode(false);
+        }
+
+        @Override
+        public void onCameraImageSaved(final int request, final Bitmap bitmap, final long conversionNanos) {
+            // It runs on the camera thread
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    showCameraImage(request, bitmap, conversionNanos);
+                }
+            });
         }
     };
 
 
+    /**
+     * Shows the image saved from the Camera Preview, if it has not been discarded in the meantime:
+     * the image is shown only for the last request, in Camera Mode and while the measure is locked
+     * (a late frame must not be shown after an unlock or a pause of the unlocked measure).
+     */
+    private void showCameraImage(int request, Bitmap bitmap, long conversionNanos) {
+        if ((request != cameraImageRequest) || !isInCameraMode || !isLocked) {
+            if (bitmap != null) cameraFramePool.releaseBitmap(bitmap);
+            return;
+        }
+        if (bitmap == null) {
+            Log.w("Clinometer", "Unable to save the image of the Camera Preview");
+            stopCamera();
+            return;
+        }
+        Bitmap previousBitmap = cameraPreviewBitmap;
+        cameraPreviewBitmap = bitmap;
+        setCameraImageMatrix(bitmap.getWidth(), bitmap.getHeight(), cameraImageRotation, isCameraImageMirrored);
+        mImageViewCameraImage.setImageBitmap(bitmap);
+        if (previousBitmap != null) cameraFramePool.releaseBitmap(previousBitmap);
+        stopCamera();
+        Log.d("Clinometer", String.format(Locale.US, "Camera image %dx%d saved in %1.1f ms (conversion = %1.1f ms)",
+                bitmap.getWidth(), bitmap.getHeight(),
+                (System.nanoTime() - cameraImageRequestNanos) / 1E6, conversionNanos / 1E6));
+    }
+
+
+    /** Removes the image saved from the Camera Preview, and gives back its Bitmap to the pool */
+    private void clearCameraImage() {
+        mImageViewCameraImage.setImageBitmap(null);
+        if (cameraPreviewBitmap != null) cameraFramePool.releaseBitmap(cameraPreviewBitmap);
+        cameraPreviewBitmap = null;
+    }
+
+
+    /**
+     * Sets the matrix that draws the image saved from the Camera Preview into mImageViewCameraImage:
+     * the image is mirrored (for the front camera), rotated as the preview and scaled to fit the view.
+     * The Bitmap is not transformed, so it can be reused.
+     */
+    private void setCameraImageMatrix(int width, int height, int rotation, boolean isMirrored) {
+        FrameLayout.LayoutParams layout = (FrameLayout.LayoutParams) mImageViewCameraImage.getLayoutParams();
+        boolean isRotated = (rotation % 180) != 0;
+        float scale = Math.min(layout.width / (float) (isRotated ? height : width),
+                layout.height / (float) (isRotated ? width : height));
+        cameraImageMatrix.reset();
+        cameraImageMatrix.postTranslate(-width / 2.0f, -height / 2.0f);
+        //this will prevent mirror effect
+        if (isMirrored) cameraImageMatrix.postScale(-1.0f, 1.0f);
+        cameraImageMatrix.postRotate(rotation);
+        cameraImageMatrix.postScale(scale, scale);
+        cameraImageMatrix.postTranslate(layout.width / 2.0f, layout.height / 2.0f);
+        mImageViewCameraImage.setImageMatrix(cameraImageMatrix);
+    }
+
+
     /** Stops the Camera Preview.
      * If saveImage is true, the method saves the last frame before stop the Preview */
     private void releaseCamera(boolean saveImage) {
         mTextViewKeepScreenVertical.setVisibility(View.GONE);
-        if (mCamera != null) {
-            if (saveImage) {
-                mCamera.setOneShotPreviewCallback(cameraPreviewCallback);
+        if (isCameraLivePreviewActive) {
+            if (saveImage && isCameraOpened) {
+                if (isCameraImageRequested) return;
+                isCameraImageRequested = true;
+                cameraImageRequestNanos = System.nanoTime();
+                cameraImageRotation = mPreview.getRotationDegrees();
+                isCameraImageMirrored = clinometerApplication.getSelectedCameraInformation().type == CameraInformation.FRONT_CAMERA;
+                mPreview.captureFrame(++cameraImageRequest);
             } else {
                 stopCamera();
             }
@@ -1044,10 +1330,12 @@ public class ClinometerActivity extends AppCompatActivity implements SensorEvent
 
     /** Stops the Camera Preview */
     private void stopCamera() {
-        if (mCamera != null) {
-            mCamera.release();
-            mCamera = null;
+        if (mPreview != null) {
+            mPreview.release();
+            mPreview = null;
         }
+        isCameraOpened = false;
+        isCameraImageRequested = false;
         mImageViewCameraImage.setVisibility(View.VISIBLE);
         mFrameLayoutPreview.setVisibility(View.GONE);
         mFrameLayoutPreview.removeAllViews();
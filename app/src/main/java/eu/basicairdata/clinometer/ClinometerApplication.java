@@ -26,12 +26,14 @@ import android.app.Application;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.hardware.Camera;
+import android.os.Build;
 import android.util.Log;
 
 import androidx.core.content.ContextCompat;
 import androidx.preference.PreferenceManager;
 
 import java.util.ArrayList;
+import java.util.Locale;
 
 
 public class ClinometerApplication extends Application {
@@ -51,6 +53,9 @@ public class ClinometerApplication extends Application {
     public static final String KEY_PREF_ONLINE_HELP                   = "prefOnlineHelp";
     public static final String KEY_PREF_KEEP_SCREEN_ON                = "prefKeepScreenOn";
     public static final String KEY_PREF_UNIT_OF_MEASUREMENT           = "prefUnitOfMeasurement";
+    public static final String KEY_PREF_RECORD_SENSOR_DATA            = "prefRecordSensorData";
+    public static final String KEY_PREF_HIGH_RATE_SENSOR              = "prefHighRateSensor";
+    public static final String KEY_PREF_SENSOR_FUSION                 = "prefSensorFusion";
     public static final String KEY_PREF_CALIBRATION_ANGLE_0           = "prefCalibrationAngle0";
     public static final String KEY_PREF_CALIBRATION_ANGLE_1           = "prefCalibrationAngle1";
     public static final String KEY_PREF_CALIBRATION_ANGLE_2           = "prefCalibrationAngle2";
@@ -61,6 +66,12 @@ public class ClinometerApplication extends Application {
     public static final String KEY_PREF_CALIBRATION_OFFSET_1          = "prefCalibrationOffset1";
     public static final String KEY_PREF_CALIBRATION_OFFSET_2          = "prefCalibrationOffset2";
 
+    // The cache of the CameraInformation, valid until the build of the device changes
+    private static final String CAMERA_CACHE_NAME                     = "CameraInformationCache";
+    private static final String KEY_CAMERA_CACHE_FINGERPRINT          = "fingerprint";
+    private static final String KEY_CAMERA_CACHE_NUMBER_OF_CAMERAS    = "numberOfCameras";
+    private static final String KEY_CAMERA_CACHE_CAMERA               = "camera";   // + the index of the Camera
+
 
     // Singleton instance
     private static ClinometerApplication singleton;
@@ -72,7 +83,7 @@ public class ClinometerApplication extends Application {
     private int prefUM = 0;
 
     private boolean hasACamera = false;                                                 // True if the device has at least a camera
-    private boolean isCameraScanned = false;
+    private volatile boolean isCameraScanned = false;
     private final ArrayList<CameraInformation> listOfCameraInformation = new ArrayList<>();   // The list of Cameras of the device
     private CameraInformation selectedCameraInformation;                                // The Selected Camera
     static Camera camera = null;
@@ -99,14 +110,18 @@ public class ClinometerApplication extends Application {
         return listOfCameraInformation;
     }
 
-    public CameraInformation getSelectedCameraInformation() {
+    public synchronized CameraInformation getSelectedCameraInformation() {
         return selectedCameraInformation;
     }
 
-    public void setSelectedCamera(int i) {
+    public synchronized void setSelectedCamera(int i) {
         this.selectedCameraInformation = listOfCameraInformation.get(i);
     }
 
+    public boolean isCameraScanned() {
+        return isCameraScanned;
+    }
+
 
     // ----------------------------------------------------------------------------------------------------------------------
     // CLASS METHODS --------------------------------------------------------------------------------------------------------
@@ -119,7 +134,7 @@ public class ClinometerApplication extends Application {
         singleton = this;
         preferences = PreferenceManager.getDefaultSharedPreferences(this);
         hasACamera = checkCameraHardware();         // checkCameraHardware() does NOT require CAMERA Permission
-        //scanCameras();
+        // The Cameras are scanned at the first use, see scanCameras()
     }
 
 
@@ -135,51 +150,30 @@ public class ClinometerApplication extends Application {
     }
 
 
-    /** Scan all the Cameras of the Device and populate the List of CameraInformation */
-    public void scanCameras() {
+    /**
+     * Scan all the Cameras of the Device and populate the List of CameraInformation.
+     * The CameraInformation are read from the cache when possible, otherwise every Camera is
+     * opened to read its parameters, and the cache is written.
+     * Opening the Cameras is slow: at the first use it should be called by a background thread.
+     */
+    public synchronized void scanCameras() {
         Log.d("ClinometerApplication", "Scan Cameras (" + isCameraScanned + ")");
         if (!isCameraScanned) {
             listOfCameraInformation.clear();
             hasACamera = checkCameraHardware();         // checkCameraHardware() does NOT require CAMERA Permission
             if (hasACamera && (ContextCompat.checkSelfPermission(getApplicationContext(), Manifest.permission.CAMERA) == PackageManager.PERMISSION_GRANTED)) {
-                Log.d("ClinometerApplication", "Adding Cameras to list:");
-                int numberOfCameras = Camera.getNumberOfCameras();
-                for (int i = 0; i < numberOfCameras; i++) {
-                    camera = Camera.open(i);
-                    Camera.Parameters params = camera.getParameters();
-                    if (params.getSupportedFocusModes().contains(Camera.Parameters.FOCUS_MODE_CONTINUOUS_VIDEO)) {
-                        params.setFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_VIDEO);
-                    }
-
-                    Camera.CameraInfo info = new Camera.CameraInfo();
-                    Camera.getCameraInfo(i, info);
-
-                    CameraInformation cameraInformation = new CameraInformation();
-                    cameraInformation.id = i;
-                    cameraInformation.type = info.facing;
-                    cameraInformation.description = getString(info.facing == Camera.CameraInfo.CAMERA_FACING_FRONT ? R.string.pref_cameramode_camera_front : R.string.pref_cameramode_camera_rear);
-                    cameraInformation.minExposureCompensation = params.getMinExposureCompensation();
-                    cameraInformation.maxExposureCompensation = params.getMaxExposureCompensation();
-
-                    // TEST EXPOSURE COMPENSATION IN SETTINGS
-//                if (i == 1) {
-//                    cameraInformation.minExposureCompensation = -10;
-//                    cameraInformation.maxExposureCompensation = 10;
-//                }
-
-                    cameraInformation.horizontalViewAngle = params.getHorizontalViewAngle();
-                    listOfCameraInformation.add(cameraInformation);
-
-//                if ((selectedCameraInformation == null) && (info.facing == Camera.CameraInfo.CAMERA_FACING_BACK)) {
-//                    selectedCameraInformation = cameraInformation;
-//                    Log.d("ClinometerApplication", "Using Camera " + selectedCameraInformation.id);
-//                }
-
-                    Log.d("ClinometerApplication", i + " = (" + cameraInformation.horizontalViewAngle + "°) " + (info.facing == Camera.CameraInfo.CAMERA_FACING_FRONT ? "Front Camera" : "Rear Camera") +
-                            " (" + cameraInformation.minExposureCompensation + " - " + cameraInformation.maxExposureCompensation + ")");
-                    camera.release();
-                    camera = null;
-                    Log.d("ClinometerApplication", "Camera " + cameraInformation.id + " added to list");
+                long startNanos = System.nanoTime();
+                boolean isCached = loadCameraCache();
+                if (!isCached) {
+                    readCameras();
+                    saveCameraCache();
+                }
+                Log.d("ClinometerApplication", String.format(Locale.US, "%d Cameras %s in %1.1f ms",
+                        listOfCameraInformation.size(), isCached ? "loaded from cache" : "scanned",
+                        (System.nanoTime() - startNanos) / 1E6));
+                if (listOfCameraInformation.isEmpty()) {
+                    selectedCameraInformation = null;
+                    return;
                 }
 
                 int prefCamera = Integer.parseInt(preferences.getString(KEY_PREF_CAMERA, "0"));
@@ -218,4 +212,97 @@ public class ClinometerApplication extends Application {
             }
         }
     }
+
+
+    /** Opens all the Cameras of the Device and reads their CameraInformation */
+    private void readCameras() {
+        Log.d("ClinometerApplication", "Adding Cameras to list:");
+        int numberOfCameras = Camera.getNumberOfCameras();
+        for (int i = 0; i < numberOfCameras; i++) {
+            camera = Camera.open(i);
+            Camera.Parameters params = camera.getParameters();
+            if (params.getSupportedFocusModes().contains(Camera.Parameters.FOCUS_MODE_CONTINUOUS_VIDEO)) {
+                params.setFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_VIDEO);
+            }
+
+            Camera.CameraInfo info = new Camera.CameraInfo();
+            Camera.getCameraInfo(i, info);
+
+            CameraInformation cameraInformation = new CameraInformation();
+            cameraInformation.id = i;
+            cameraInformation.type = info.facing;
+            cameraInformation.description = getString(info.facing == Camera.CameraInfo.CAMERA_FACING_FRONT ? R.string.pref_cameramode_camera_front : R.string.pref_cameramode_camera_rear);
+            cameraInformation.minExposureCompensation = params.getMinExposureCompensation();
+            cameraInformation.maxExposureCompensation = params.getMaxExposureCompensation();
+
+            // TEST EXPOSURE COMPENSATION IN SETTINGS
+//                if (i == 1) {
+//                    cameraInformation.minExposureCompensation = -10;
+//                    cameraInformation.maxExposureCompensation = 10;
+//                }
+
+            cameraInformation.horizontalViewAngle = params.getHorizontalViewAngle();
+            listOfCameraInformation.add(cameraInformation);
+
+//                if ((selectedCameraInformation == null) && (info.facing == Camera.CameraInfo.CAMERA_FACING_BACK)) {
+//                    selectedCameraInformation = cameraInformation;
+//                    Log.d("ClinometerApplication", "Using Camera " + selectedCameraInformation.id);
+//                }
+
+            Log.d("ClinometerApplication", i + " = (" + cameraInformation.horizontalViewAngle + "°) " + (info.facing == Camera.CameraInfo.CAMERA_FACING_FRONT ? "Front Camera" : "Rear Camera") +
+                    " (" + cameraInformation.minExposureCompensation + " - " + cameraInformation.maxExposureCompensation + ")");
+            camera.release();
+            camera = null;
+            Log.d("ClinometerApplication", "Camera " + cameraInformation.id + " added to list");
+        }
+    }
+
+
+    /**
+     * Reads the List of CameraInformation from the cache.
+     * The cache is valid if it has been written with the same build of the device, and with the same number of Cameras.
+     *
+     * @return true if the List has been read
+     */
+    private boolean loadCameraCache() {
+        SharedPreferences cache = getSharedPreferences(CAMERA_CACHE_NAME, MODE_PRIVATE);
+        int numberOfCameras = cache.getInt(KEY_CAMERA_CACHE_NUMBER_OF_CAMERAS, -1);
+        if (!Build.FINGERPRINT.equals(cache.getString(KEY_CAMERA_CACHE_FINGERPRINT, null))
+                || (numberOfCameras != Camera.getNumberOfCameras())) return false;
+        try {
+            for (int i = 0; i < numberOfCameras; i++) {
+                // id;type;minExposureCompensation;maxExposureCompensation;horizontalViewAngle
+                String[] values = cache.getString(KEY_CAMERA_CACHE_CAMERA + i, "").split(";");
+                CameraInformation cameraInformation = new CameraInformation();
+                cameraInformation.id = Integer.parseInt(values[0]);
+                cameraInformation.type = Integer.parseInt(values[1]);
+                cameraInformation.description = getString(cameraInformation.type == Camera.CameraInfo.CAMERA_FACING_FRONT ? R.string.pref_cameramode_camera_front : R.string.pref_cameramode_camera_rear);
+                cameraInformation.minExposureCompensation = Integer.parseInt(values[2]);
+                cameraInformation.maxExposureCompensation = Integer.parseInt(values[3]);
+                cameraInformation.horizontalViewAngle = Float.parseFloat(values[4]);
+                listOfCameraInformation.add(cameraInformation);
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            Log.w("ClinometerApplication", "Invalid cache of the Cameras: " + e);
+            listOfCameraInformation.clear();
+            return false;
+        }
+        return true;
+    }
+
+
+    /** Writes the List of CameraInformation into the cache */
+    private void saveCameraCache() {
+        SharedPreferences.Editor editor = getSharedPreferences(CAMERA_CACHE_NAME, MODE_PRIVATE).edit();
+        editor.clear();
+        editor.putString(KEY_CAMERA_CACHE_FINGERPRINT, Build.FINGERPRINT);
+        editor.putInt(KEY_CAMERA_CACHE_NUMBER_OF_CAMERAS, listOfCameraInformation.size());
+        for (int i = 0; i < listOfCameraInformation.size(); i++) {
+            CameraInformation cameraInformation = listOfCameraInformation.get(i);
+            editor.putString(KEY_CAMERA_CACHE_CAMERA + i, cameraInformation.id + ";" + cameraInformation.type + ";"
+                    + cameraInformation.minExposureCompensation + ";" + cameraInformation.maxExposureCompensation + ";"
+                    + cameraInformation.horizontalViewAngle);
+        }
+        editor.commit();
+    }
 }
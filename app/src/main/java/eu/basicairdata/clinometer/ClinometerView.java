@@ -54,6 +54,8 @@ public class ClinometerView extends View {
 
     private final ClinometerActivity clinometerActivity = ClinometerActivity.getInstance();
     private final ClinometerApplication clinometerApplication = ClinometerApplication.getInstance();
+    private final InclinationPublisher inclinationPublisher = clinometerActivity.getInclinationPublisher();
+    private final InclinationSnapshot inclination = new InclinationSnapshot();     // The inclination drawn by onDraw()
 
     private Paint paint_LTGray;             // For Background Lines 30° + Circles
     private Paint paint_BlackDashCamera;            // For dashed line
@@ -68,7 +70,7 @@ public class ClinometerView extends View {
     private Paint paint_Yellow_Spirit;      // For Lines and Spirit Bubbles
     private Paint paint_bg_horizon;         // For Horizon Background
 
-    private DataFormatter dataFormatter = new DataFormatter(); // Formatter for angles
+    private DataFormatter dataFormatter;    // Formatter for angles
     private String formattedAngle;
 
     private final Rect textbounds = new Rect();
@@ -261,6 +263,8 @@ public class ClinometerView extends View {
         paint_Black30.setAntiAlias(true);
 
         textOffsetPx = Math.round(dpToPx(TEXT_OFFSET));
+
+        dataFormatter = new DataFormatter(getResources().getString(R.string.um_degrees), getResources().getString(R.string.um_percent));
     }
 
 
@@ -268,14 +272,16 @@ public class ClinometerView extends View {
     protected void onDraw(Canvas canvas) {
         //super.onDraw(canvas);
 
-        angles = clinometerActivity.getAngles();
-        angleXY = clinometerActivity.getAngleXY();
-        angleXYZ = clinometerActivity.getAngleXYZ();
-        angleTextLabels = clinometerActivity.getAngleTextLabels();
-        isFlat = clinometerActivity.isFlat();
-        displayRotation = clinometerActivity.getDisplayRotation();
+        inclinationPublisher.read(inclination);        // All the angles of the same sample
+        angles = inclination.angle;
+        angleXY = inclination.angleXY;
+        angleXYZ = inclination.angleXYZ;
+        angleTextLabels = inclination.angleTextLabels;
+        isFlat = inclination.isFlat;
+        displayRotation = inclination.displayRotation;
         refAxis = clinometerActivity.getPIDValue();
         refbgAxis = clinometerActivity.getbgPIDValue();
+        dataFormatter.setUM(clinometerApplication.getPrefUM());
 
         // --------[ CALCULATIONS ]-----------------------------------------------------------------
 
@@ -0,0 +1,138 @@
+/*
+ * ComplementaryFusion - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+/**
+ * A complementary filter between the gyroscope and the accelerometer.
+ * The gravity vector is rotated by the angular rate of the gyroscope, that follows the
+ * movements of the device without delay, and it is pulled toward the accelerometer
+ * with the time constant TIME_CONSTANT, that removes the drift of the integration.
+ * The bias of the gyroscope is estimated by integrating the correction (as the Mahony filter).
+ * The accelerometer is trusted less when the norm of the acceleration shows that the
+ * device is accelerating.
+ * The Class doesn't depend on Android and doesn't allocate objects on each sample.
+ */
+public class ComplementaryFusion implements SensorFusion {
+
+    private static final double TIME_CONSTANT = 0.7;                    // The time constant of the accelerometer correction (in seconds)
+    private static final double BIAS_GAIN = 0.5;                        // The integral gain of the bias estimation (in 1/s²)
+    private static final double LINEAR_ACCELERATION_THRESHOLD = 0.5;    // The difference of norm that reveals a linear acceleration (in m/s²)
+    private static final double LINEAR_ACCELERATION_WEIGHT = 0.1;       // The reduction of the correction during the linear accelerations
+    private static final long   MAX_SAMPLE_PERIOD_NANOS = 100000000L;   // Over this period the gravity restarts from the accelerometer (100 ms)
+
+    private final double[] gravity = {0, 0, 0};         // The estimated gravity (in m/s²)
+    private final double[] bias = {0, 0, 0};            // The estimated bias of the gyroscope (in rad/s)
+    private long lastGyroscopeTimestamp = 0;            // The timestamp of the previous gyroscope sample, 0 if none
+    private long lastAccelerometerTimestamp = 0;        // The timestamp of the previous accelerometer sample, 0 if none
+    private boolean isInitialized = false;              // True if the gravity has been initialized by the accelerometer
+    private int samplesCount = 0;                       // The number of accelerometer samples since the initialization
+
+
+    @Override
+    public void reset() {
+        isInitialized = false;
+        bias[0] = 0;
+        bias[1] = 0;
+        bias[2] = 0;
+        lastGyroscopeTimestamp = 0;
+        lastAccelerometerTimestamp = 0;
+    }
+
+
+    @Override
+    public void updateGyroscope(float[] angularRate, long timestamp) {
+        long periodNanos = timestamp - lastGyroscopeTimestamp;
+        boolean isFirstSample = (lastGyroscopeTimestamp == 0);
+        lastGyroscopeTimestamp = timestamp;
+        if (!isInitialized || isFirstSample || (periodNanos <= 0) || (periodNanos > MAX_SAMPLE_PERIOD_NANOS)) return;
+
+        // The gravity is fixed in the world, so in the frame of the device
+        // it rotates in the opposite direction of the device
+        double dt = periodNanos * 1E-9;
+        rotate(gravity, -(angularRate[0] - bias[0]) * dt, -(angularRate[1] - bias[1]) * dt, -(angularRate[2] - bias[2]) * dt);
+    }
+
+
+    @Override
+    public void updateAccelerometer(float[] acceleration, long timestamp, float[] gravity) {
+        long periodNanos = timestamp - lastAccelerometerTimestamp;
+        boolean isFirstSample = (lastAccelerometerTimestamp == 0);
+        lastAccelerometerTimestamp = timestamp;
+
+        double norm = Math.sqrt(acceleration[0] * acceleration[0] + acceleration[1] * acceleration[1] + acceleration[2] * acceleration[2]);
+        if (!isInitialized || isFirstSample || (periodNanos > MAX_SAMPLE_PERIOD_NANOS)) {
+            // The first sample, or a pause (the device could have been moved): restart from the accelerometer.
+            // The bias of the gyroscope is kept
+            this.gravity[0] = acceleration[0];
+            this.gravity[1] = acceleration[1];
+            this.gravity[2] = acceleration[2];
+            samplesCount = 1;
+            isInitialized = norm > 0;
+        } else if ((periodNanos > 0) && (norm > 0)) {
+            double dt = periodNanos * 1E-9;
+            double gravityNorm = Math.sqrt(this.gravity[0] * this.gravity[0] + this.gravity[1] * this.gravity[1] + this.gravity[2] * this.gravity[2]);
+            double trust = (Math.abs(norm - gravityNorm) > LINEAR_ACCELERATION_THRESHOLD) ? LINEAR_ACCELERATION_WEIGHT : 1;
+            // At the start, the mean value of the samples until it is more accurate than the filter
+            samplesCount++;
+            double weight = Math.max(trust * (1 - Math.exp(-dt / TIME_CONSTANT)), 1.0 / samplesCount);
+
+            // The residual rotation between the estimated and the measured gravity (the sine of the angle
+            // times the axis) is what remains of the bias of the gyroscope after the integration
+            double biasWeight = trust * BIAS_GAIN * dt / (norm * gravityNorm);
+            bias[0] += biasWeight * (this.gravity[1] * acceleration[2] - this.gravity[2] * acceleration[1]);
+            bias[1] += biasWeight * (this.gravity[2] * acceleration[0] - this.gravity[0] * acceleration[2]);
+            bias[2] += biasWeight * (this.gravity[0] * acceleration[1] - this.gravity[1] * acceleration[0]);
+
+            this.gravity[0] += weight * (acceleration[0] - this.gravity[0]);
+            this.gravity[1] += weight * (acceleration[1] - this.gravity[1]);
+            this.gravity[2] += weight * (acceleration[2] - this.gravity[2]);
+        }
+        gravity[0] = (float) this.gravity[0];
+        gravity[1] = (float) this.gravity[1];
+        gravity[2] = (float) this.gravity[2];
+    }
+
+
+    /**
+     * Rotates the vector by the given rotation vector (Rodrigues' formula).
+     *
+     * @param v The vector to rotate
+     * @param rx The X component of the rotation vector (the axis times the angle, in radians)
+     * @param ry The Y component of the rotation vector
+     * @param rz The Z component of the rotation vector
+     */
+    static void rotate(double[] v, double rx, double ry, double rz) {
+        double angle = Math.sqrt(rx * rx + ry * ry + rz * rz);
+        if (angle == 0) return;
+        double kx = rx / angle;
+        double ky = ry / angle;
+        double kz = rz / angle;
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        double dot = (kx * v[0] + ky * v[1] + kz * v[2]) * (1 - cos);
+        double x = v[0] * cos + (ky * v[2] - kz * v[1]) * sin + kx * dot;
+        double y = v[1] * cos + (kz * v[0] - kx * v[2]) * sin + ky * dot;
+        double z = v[2] * cos + (kx * v[1] - ky * v[0]) * sin + kz * dot;
+        v[0] = x;
+        v[1] = y;
+        v[2] = z;
+    }
+}
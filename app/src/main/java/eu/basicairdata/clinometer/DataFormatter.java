@@ -21,11 +21,17 @@
 
 package eu.basicairdata.clinometer;
 
+import java.text.DecimalFormatSymbols;
 import java.util.Locale;
 
 /**
  * A helper Class for the formatting of the physical data.
  * It returns the data formatted basing on the given criteria and on the Preferences.
+ * The Class doesn't depend on Android: the unit of measurement and its suffixes
+ * are given by the caller.
+ * The data are written as fixed-point digits into a char array given by the caller,
+ * without allocating any object; the result is the same of
+ * String.format(Locale.getDefault(), "%.1f", ...) and of the other formats used.
  */
 class DataFormatter {
 
@@ -36,28 +42,159 @@ class DataFormatter {
     public static final int UM_FRACTIONAL       = 30;
 //    public static final int UM_ENGINEERING_1H   = 40;
 
-    private final ClinometerApplication clinometerApp = ClinometerApplication.getInstance();
+    private static final double[] POW10 = {1, 10, 100};     // The scale factors for 0, 1 and 2 decimals
+    private static final double MAX_SCALED_VALUE = 1E15;    // Over this value the number is shown as >> or <<
+    private static final int MAX_NUMBER_LENGTH = 20;        // Sign + 15 digits + Decimal separator + 2 decimals + 1
+
+    private static final int FRACTION_MAX_TERM = 1000;      // The max numerator and denominator of the fractions
+    private static final int FRACTION_MAX_ITERATIONS = 32;  // A safe upper bound of the continued fraction loop
+    private static final int FRACTION_ZERO = 0;             // The fraction is shown as 0 (denominator > 1000)
+    private static final int FRACTION_OVER = -1;            // The fraction is shown as >> or << (numerator > 1000)
+
+    private final char[] umDegrees;         // The suffix for degrees (R.string.um_degrees)
+    private final char[] umPercent;         // The suffix for percent (R.string.um_percent)
+    private final char decimalSeparator;    // The decimal separator of the default Locale
+    private final char zeroDigit;           // The zero digit of the default Locale
+    private final char[] stringBuffer;      // The buffer used by format(float) that returns a String
+    private int um = UM_DEGREES;            // The unit of measurement (one of UM_*)
+
+
+    /**
+     * Creates a new DataFormatter for the default Locale.
+     * The Locale is read only once, so a new DataFormatter must be created
+     * when it changes (the Activity is re-created anyway).
+     *
+     * @param umDegrees The suffix for degrees (R.string.um_degrees)
+     * @param umPercent The suffix for percent (R.string.um_percent)
+     */
+    public DataFormatter(String umDegrees, String umPercent) {
+        this.umDegrees = umDegrees.toCharArray();
+        this.umPercent = umPercent.toCharArray();
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(Locale.getDefault());
+        decimalSeparator = symbols.getDecimalSeparator();
+        zeroDigit = symbols.getZeroDigit();
+        stringBuffer = new char[getMaxLength()];
+    }
+
+
+    /**
+     * Sets the unit of measurement used to format the data.
+     *
+     * @param um The unit of measurement (one of UM_*), as in Preferences
+     */
+    public void setUM(int um) {
+        this.um = um;
+    }
+
+
+    /**
+     * @return the max number of chars written by a single call of format(float, char[], int)
+     */
+    public int getMaxLength() {
+        return MAX_NUMBER_LENGTH + Math.max(umDegrees.length, umPercent.length);
+    }
 
 
     /**
-     * It converts a double into its string representation as fraction.
-     * The standard tolerance for approximation is 1.0E-2.
+     * Writes the digits of a positive integer number into the buffer.
      *
-     * @param x The double number to convert in fraction
-     * @return the fraction string
+     * @param n The number to write
+     * @param buffer The destination buffer
+     * @param offset The position of the first char to write
+     * @return the position after the last char written
+     */
+    private int writeInteger(long n, char[] buffer, int offset) {
+        int length = 1;
+        for (long i = n; i >= 10; i /= 10) length++;
+        for (int pos = offset + length - 1; pos >= offset; pos--) {
+            buffer[pos] = (char) (zeroDigit + (int) (n % 10));
+            n /= 10;
+        }
+        return offset + length;
+    }
+
+
+    /**
+     * Writes a number with the given number of decimals into the buffer,
+     * with the same result of String.format(Locale.getDefault(), "%.<decimals>f", value).
+     * Like String.format, it rounds HALF_UP the shortest decimal representation of the value,
+     * and it keeps the minus sign also for negative numbers rounded to zero.
+     *
+     * @param value The number to write
+     * @param decimals The number of decimals (0..2)
+     * @param buffer The destination buffer
+     * @param offset The position of the first char to write
+     * @return the position after the last char written
+     */
+    private int writeFixed(double value, int decimals, char[] buffer, int offset) {
+        boolean isNegative = Double.doubleToRawLongBits(value) < 0;
+        double abs = Math.abs(value);
+        double scaled = abs * POW10[decimals];
+
+        if (Double.isNaN(value)) {
+            buffer[offset++] = 'N';
+            buffer[offset++] = 'a';
+            buffer[offset++] = 'N';
+            return offset;
+        }
+        if (!(scaled < MAX_SCALED_VALUE)) {
+            buffer[offset++] = isNegative ? '<' : '>';
+            buffer[offset++] = isNegative ? '<' : '>';
+            return offset;
+        }
+
+        // The product may be not exact: the rounding is decided comparing the value
+        // with the nearest double to the decimal tie. If they are equal, the shortest
+        // representation of the value is the tie itself, that is rounded up.
+        long n = (long) Math.floor(scaled);
+        if (abs >= (n + 0.5) / POW10[decimals]) n++;
+
+        if (isNegative) buffer[offset++] = '-';
+        if (decimals == 0) return writeInteger(n, buffer, offset);
+        long scale = (long) POW10[decimals];
+        offset = writeInteger(n / scale, buffer, offset);
+        buffer[offset++] = decimalSeparator;
+        long fraction = n % scale;
+        for (int pos = offset + decimals - 1; pos >= offset; pos--) {
+            buffer[pos] = (char) (zeroDigit + (int) (fraction % 10));
+            fraction /= 10;
+        }
+        return offset + decimals;
+    }
+
+
+    /**
+     * Copies a suffix into the buffer.
+     *
+     * @return the position after the last char written
+     */
+    private static int writeChars(char[] chars, char[] buffer, int offset) {
+        System.arraycopy(chars, 0, buffer, offset, chars.length);
+        return offset + chars.length;
+    }
+
+
+    /**
+     * It converts a positive double into its best rational approximation h:k,
+     * with a relative tolerance of 1.0E-2.
+     * The continued fraction stops as soon as the denominator exceeds FRACTION_MAX_TERM:
+     * the denominators grow at least as the Fibonacci numbers, so the loop
+     * never runs more than 17 times (F17 = 1597).
+     *
+     * @param xx The positive double number to convert in fraction
+     * @return the fraction, packed as (h << 16 | k), or FRACTION_ZERO, or FRACTION_OVER
      */
     // Based on the good Matthew556's answer on
     // https://stackoverflow.com/questions/31585931/how-to-convert-decimal-to-fractions
-    static private String convertDecimalToFraction(double x){
-        double xx = Math.abs(x);
-        boolean isNegative = x != Math.abs(x);
+    private static int convertDecimalToFraction(double xx) {
+        if (Double.isNaN(xx)) return FRACTION_ZERO;
         double tolerance = 1.0E-2;
         double h1 = 1;
         double h2 = 0;
         double k1 = 0;
         double k2 = 1;
         double b = xx;
-        do {
+        for (int i = 0; i < FRACTION_MAX_ITERATIONS; i++) {
             double a = Math.floor(b);
             double aux = h1;
             h1 = a * h1 + h2;
@@ -66,33 +203,81 @@ class DataFormatter {
             k1 = a * k1 + k2;
             k2 = aux;
             b = 1 / (b - a);
-        } while (Math.abs(xx - h1 / k1) > xx * tolerance);
+            // The denominator can only grow: the fraction would be shown as 0
+            if (k1 > FRACTION_MAX_TERM) return FRACTION_ZERO;
+            if (Math.abs(xx - h1 / k1) <= xx * tolerance) {
+                if (h1 > FRACTION_MAX_TERM) return FRACTION_OVER;
+                return ((int) h1 << 16) | (int) k1;
+            }
+        }
+        return FRACTION_ZERO;
+    }
+
 
-        if (k1 > 1000) return "0";
-        if (h1 > 1000) return isNegative ? "<<" : ">>";
-        return (isNegative ? "-" : "") + String.format(Locale.getDefault(), "%.0f", h1) + ":"
-                + String.format(Locale.getDefault(), "%.0f", k1);
+    /**
+     * It writes the slope of an angle as fraction.
+     * The fraction is computed for each call: the bounded continued fraction costs less than
+     * a lookup into a table, that the sensor readings would almost never hit exactly.
+     *
+     * @param angle The angle (in degrees)
+     * @param buffer The destination buffer
+     * @param offset The position of the first char to write
+     * @return the position after the last char written
+     */
+    private int writeFraction(float angle, char[] buffer, int offset) {
+        float x = (float) Math.tan(Math.toRadians(angle));
+        int fraction = convertDecimalToFraction(Math.abs(x));
+        boolean isNegative = x < 0;
+
+        if (fraction == FRACTION_ZERO) {
+            buffer[offset++] = '0';
+            return offset;
+        }
+        if (fraction == FRACTION_OVER) {
+            buffer[offset++] = isNegative ? '<' : '>';
+            buffer[offset++] = isNegative ? '<' : '>';
+            return offset;
+        }
+        int h = fraction >>> 16;
+        if (isNegative && (h != 0)) buffer[offset++] = '-';
+        offset = writeInteger(h, buffer, offset);
+        buffer[offset++] = ':';
+        return writeInteger(fraction & 0xFFFF, buffer, offset);
     }
 
 
     /**
-     * It returns a String containing the data formatted basing on the given criteria and on the Preferences.
+     * It returns a String containing the data formatted basing on the given criteria and on the unit of measurement set.
+     * Use format(float, char[], int) in the code that runs for each sensor event,
+     * this method allocates the String.
      *
      * @param number The float number to format as String
      * @return The String containing the formatted data as number and unit of measurement
      */
     public String format(float number) {
-        String s = "";
+        return new String(stringBuffer, 0, format(number, stringBuffer, 0));
+    }
 
-        int format = clinometerApp.getPrefUM();
 
-        switch (format) {
+    /**
+     * It writes the data formatted basing on the given criteria and on the unit of measurement set
+     * into the buffer, without allocations.
+     * The buffer must have at least getMaxLength() chars available after the offset.
+     *
+     * @param number The float number to format
+     * @param buffer The destination buffer
+     * @param offset The position of the first char to write
+     * @return the position after the last char written
+     */
+    public int format(float number, char[] buffer, int offset) {
+        switch (um) {
             case UM_DEGREES:
-                s = String.format(Locale.getDefault(), "%.1f", number) + clinometerApp.getString(R.string.um_degrees);
+                offset = writeFixed(number, 1, buffer, offset);
+                offset = writeChars(umDegrees, buffer, offset);
                 break;
 
             case UM_RADIANS:
-                s = String.format(Locale.getDefault(), "%.2f", Math.toRadians(number));
+                offset = writeFixed(Math.toRadians(number), 2, buffer, offset);
                 break;
 
             case UM_PERCENT:
@@ -101,17 +286,24 @@ class DataFormatter {
                 else if (number == -90) percent = -1000;
                 else percent = (float) Math.tan(Math.toRadians(number)) * 100.0f;
 
-                if (percent >= 1000) s = ">>";
-                else if (percent <= -1000) s = "<<";
+                if (percent >= 1000) {
+                    buffer[offset++] = '>';
+                    buffer[offset++] = '>';
+                }
+                else if (percent <= -1000) {
+                    buffer[offset++] = '<';
+                    buffer[offset++] = '<';
+                }
                 else {
                     if (Math.abs(percent) < 100)
-                        s = String.format(Locale.getDefault(), "%.1f", percent) + clinometerApp.getString(R.string.um_percent);
-                    else s = String.format(Locale.getDefault(), "%.0f", percent) + clinometerApp.getString(R.string.um_percent);
+                        offset = writeFixed(percent, 1, buffer, offset);
+                    else offset = writeFixed(percent, 0, buffer, offset);
+                    offset = writeChars(umPercent, buffer, offset);
                 }
                 break;
 
             case UM_FRACTIONAL:
-                s = convertDecimalToFraction((float) Math.tan(Math.toRadians(number)));
+                offset = writeFraction(number, buffer, offset);
                 break;
 
 //            case UM_ENGINEERING_1H:
@@ -132,6 +324,6 @@ class DataFormatter {
 //                }
 //                break;
         }
-        return (s);
+        return offset;
     }
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+/*
+ * Inclination - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+/**
+ * The inclination of the device, as computed by the InclinationEngine.
+ * It is a plain data structure that the engine fills on each sensor event.
+ * The instance is supplied by the caller, in order to avoid allocations.
+ */
+public class Inclination {
+
+    public final float[] angle = {0, 0, 0};         // The (filtered) current angles (in degrees)
+    public float angleXY = 0;                       // The angle on the horizontal plane (in degrees)
+    public float angleXYZ = 0;                      // The angle between XY vector and the vertical (in degrees)
+    public float angleTextLabels = 0;               // The rotation angle for the text labels
+    public float displayRotation = 0;               // The rotation angle from the natural position of the device
+    public boolean isFlat = true;                   // True if the device is oriented flat (for example on a table)
+    public boolean isDisplayRotationChanged = false;    // True if the displayRotation has been changed by the last update
+    public long timestamp = 0;                      // The timestamp of the sensor event (in nanoseconds)
+
+
+    /**
+     * Copies the values of the given Inclination into this one.
+     *
+     * @param source The Inclination to copy
+     */
+    public void set(Inclination source) {
+        angle[0] = source.angle[0];
+        angle[1] = source.angle[1];
+        angle[2] = source.angle[2];
+        angleXY = source.angleXY;
+        angleXYZ = source.angleXYZ;
+        angleTextLabels = source.angleTextLabels;
+        displayRotation = source.displayRotation;
+        isFlat = source.isFlat;
+        isDisplayRotationChanged = source.isDisplayRotationChanged;
+        timestamp = source.timestamp;
+    }
+}
@@ -0,0 +1,688 @@
+/*
+ * InclinationEngine - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+/**
+ * The signal processing of the Clinometer.
+ * It takes the raw accelerometer samples and computes the inclination of the device:
+ * the adaptive low-pass filter, the gain/offset correction, the calibration matrix,
+ * the mean values, the angles and the display rotation (with hysteresis).
+ * The low-pass filter can be replaced by a SensorFusion, that combines the accelerometer with
+ * the gyroscope in order to follow the movements of the device without delay.
+ * The Class doesn't depend on Android and doesn't allocate objects on each sample,
+ * so that it can be run and benchmarked on a plain JVM.
+ */
+public class InclinationEngine {
+
+    public static final float DEFAULT_SAMPLE_RATE = 100;                    // The sample rate assumed until it is measured (in Hz)
+    public static final int   SIZE_OF_MEANVARIANCE = 200;                   // 2 seconds at the DEFAULT_SAMPLE_RATE
+    public static final float AUTOLOCK_HORIZON_CHECK_THRESHOLD = 5.0f;      // The zone of horizon check (+- 5 degrees)
+
+    public static final int SENSOR_FUSION_NONE = 0;                         // The accelerometer only, with the adaptive low-pass filter
+    public static final int SENSOR_FUSION_COMPLEMENTARY = 1;                // The ComplementaryFusion with the gyroscope
+    public static final int SENSOR_FUSION_KALMAN = 2;                       // The KalmanFusion with the gyroscope
+
+    private static final float ROTATION_THRESHOLD = 5;                      // The threshold of the boundaries for DisplayRotation (in degrees)
+    private static final float ALPHA = 0.03f;                               // Weight of the new sensor reading for a period of ALPHA_PERIOD_NANOS
+    private static final double ALPHA_PERIOD_NANOS = 10000000;              // The sample period the ALPHA refers to (10 ms)
+    private static final long  MAX_SAMPLE_PERIOD_NANOS = 100000000L;        // The max period between samples used by the filter (100 ms)
+    private static final int   SIZE_OF_GRAVITY_MEANVARIANCE = 16;           // 0.16 seconds at the DEFAULT_SAMPLE_RATE
+
+    private static final long  RATE_MEASUREMENT_NANOS = 1000000000L;        // The time window of the measurement of the sample rate
+    private static final float RATE_CHANGE_THRESHOLD = 0.2f;                // The relative change of the rate that reconfigures the engine
+
+    private static final int    AUTOLOCK_SEQUENTIAL_WINDOWS = 3;            // The windows of the sequential test: 1/4, 2/4 and 3/4 of the MeanVariances
+    private static final double AUTOLOCK_SIGNIFICANCE = 0.05;               // The probability to lock a measurement that is not within the tolerance
+
+    private float sampleRate = DEFAULT_SAMPLE_RATE;     // The sample rate the engine is configured for (in Hz)
+    private long lastTimestamp = 0;                     // The timestamp of the previous sample, 0 if none
+    private long rateWindowStart = 0;                   // The timestamp of the first sample of the rate measurement window
+    private int rateWindowSamples = 0;                  // The number of samples into the rate measurement window
+
+    private int sensorFusionMode = SENSOR_FUSION_NONE;
+    private SensorFusion sensorFusion = null;           // The fusion with the gyroscope, null for the accelerometer only
+
+    private float alpha0 = ALPHA;
+    private float alpha1 = ALPHA;
+    private float alpha2 = ALPHA;
+
+    private final float[] gravity              = {0, 0, 0};    // The (filtered) current accelerometers values
+    private final float[] gravity_gain         = {1, 1, 1};
+    private final float[] gravity_offset       = {0, 0, 0};
+    private final float[] gravity_calibrated   = {0, 0, 0};    // The (filtered) current calibrated accelerometers values
+    private final float[] gravity_estimate     = {0, 0, 0};    // The gravity used for the angles: the mean values, or the result of the SensorFusion
+    private final float[] acceleration         = {0, 0, 0};    // The (not filtered) current accelerometers values, for the SensorFusion
+    private final float[] acceleration_calibrated = {0, 0, 0};
+    private final float[] angularRate_calibrated = {0, 0, 0};     // The angular rates in the frame of the calibrated accelerations
+
+    private final float[][] calibrationMatrix = {{1, 0, 0}, {0, 1, 0}, {0, 0, 1}};
+
+    private final float[] angle = {0, 0, 0};    // The (filtered) current angles (in degrees)
+    private float angleXY = 0;                  // The angle on the horizontal plane (in degrees)
+    private float angleXYZ = 0;                 // The angle between XY vector and the vertical (in degrees)
+    private float angleTextLabels = 0;          // The rotation angle for the text labels
+    private float displayRotation = 0;          // The rotation angle from the natural position of the device
+    private boolean isFlat = true;              // True if the device is oriented flat (for example on a table)
+    private final Inclination angles = new Inclination();  // The angles computed by computeAngles
+
+    private final MeanVariance mvAngle0 = new MeanVariance(SIZE_OF_MEANVARIANCE);
+    private final MeanVariance mvAngle1 = new MeanVariance(SIZE_OF_MEANVARIANCE);
+    private final MeanVariance mvAngle2 = new MeanVariance(SIZE_OF_MEANVARIANCE);
+    private final MeanVariance mvGravity0 = new MeanVariance(SIZE_OF_GRAVITY_MEANVARIANCE);
+    private final MeanVariance mvGravity1 = new MeanVariance(SIZE_OF_GRAVITY_MEANVARIANCE);
+    private final MeanVariance mvGravity2 = new MeanVariance(SIZE_OF_GRAVITY_MEANVARIANCE);
+
+
+    public InclinationEngine() {
+        mvGravity0.reset(0.0f);
+        mvGravity1.reset(0.0f);
+        mvGravity2.reset(9.80f);
+    }
+
+
+    /**
+     * Sets the calibration of the accelerometers.
+     *
+     * @param gain The gains of the accelerometers
+     * @param offset The offsets of the accelerometers
+     * @param angleCalibration The calibration angles: alpha, beta, gamma (in degrees)
+     */
+    public void setCalibration(float[] gain, float[] offset, float[] angleCalibration) {
+        gravity_gain[0] = gain[0];
+        gravity_gain[1] = gain[1];
+        gravity_gain[2] = gain[2];
+        gravity_offset[0] = offset[0];
+        gravity_offset[1] = offset[1];
+        gravity_offset[2] = offset[2];
+
+        computeCalibrationMatrix(angleCalibration, calibrationMatrix);
+    }
+
+
+    /**
+     * Computes the rotation matrix that corrects the misalignment of the accelerometers.
+     * The calibrated gravity is the product of the matrix by the corrected gravity.
+     *
+     * @param angleCalibration The calibration angles: alpha, beta, gamma (in degrees)
+     * @param matrix The 3x3 matrix to fill
+     */
+    public static void computeCalibrationMatrix(float[] angleCalibration, float[][] matrix) {
+        matrix[0][0] = (float) (Math.cos(Math.toRadians(angleCalibration[2])) * Math.cos(Math.toRadians(angleCalibration[0])) + Math.sin(Math.toRadians(angleCalibration[2])) * Math.sin(Math.toRadians(angleCalibration[1])) * Math.sin(Math.toRadians(angleCalibration[0])));
+        matrix[0][1] = (float) (Math.cos(Math.toRadians(angleCalibration[1])) * Math.sin(Math.toRadians(angleCalibration[0])));
+        matrix[0][2] = (float) (-Math.sin(Math.toRadians(angleCalibration[2])) * Math.cos(Math.toRadians(angleCalibration[0])) + Math.cos(Math.toRadians(angleCalibration[2])) * Math.sin(Math.toRadians(angleCalibration[1])) * Math.sin(Math.toRadians(angleCalibration[0])));
+
+        matrix[1][0] = (float) (-Math.cos(Math.toRadians(angleCalibration[2])) * Math.sin(Math.toRadians(angleCalibration[0])) + Math.sin(Math.toRadians(angleCalibration[2])) * Math.sin(Math.toRadians(angleCalibration[1])) * Math.cos(Math.toRadians(angleCalibration[0])));
+        matrix[1][1] = (float) (Math.cos(Math.toRadians(angleCalibration[1])) * Math.cos(Math.toRadians(angleCalibration[0])));
+        matrix[1][2] = (float) (Math.sin(Math.toRadians(angleCalibration[2])) * Math.sin(Math.toRadians(angleCalibration[0])) + Math.cos(Math.toRadians(angleCalibration[2])) * Math.sin(Math.toRadians(angleCalibration[1])) * Math.cos(Math.toRadians(angleCalibration[0])));
+
+        matrix[2][0] = (float) (Math.sin(Math.toRadians(angleCalibration[2])) * Math.cos(Math.toRadians(angleCalibration[1])));
+        matrix[2][1] = (float) (-Math.sin(Math.toRadians(angleCalibration[1])));
+        matrix[2][2] = (float) (Math.cos(Math.toRadians(angleCalibration[2])) * Math.cos(Math.toRadians(angleCalibration[1])));
+    }
+
+
+    /**
+     * Selects the processing of the accelerometer: the adaptive low-pass filter, or
+     * the fusion with the gyroscope. The processing restarts from the next sample.
+     *
+     * @param mode The mode: SENSOR_FUSION_NONE, SENSOR_FUSION_COMPLEMENTARY or SENSOR_FUSION_KALMAN
+     */
+    public void setSensorFusion(int mode) {
+        if (mode == sensorFusionMode) return;
+        sensorFusionMode = mode;
+        switch (mode) {
+            case SENSOR_FUSION_COMPLEMENTARY:
+                sensorFusion = new ComplementaryFusion();
+                break;
+            case SENSOR_FUSION_KALMAN:
+                sensorFusion = new KalmanFusion();
+                break;
+            default:
+                sensorFusionMode = SENSOR_FUSION_NONE;
+                sensorFusion = null;
+                // The low-pass filter restarts from the last estimate
+                gravity[0] = 0;
+                gravity[1] = 0;
+                gravity[2] = 0;
+                mvGravity0.reset(gravity_estimate[0]);
+                mvGravity1.reset(gravity_estimate[1]);
+                mvGravity2.reset(gravity_estimate[2]);
+        }
+    }
+
+
+    /**
+     * @return the processing of the accelerometer (SENSOR_FUSION_NONE, SENSOR_FUSION_COMPLEMENTARY or SENSOR_FUSION_KALMAN)
+     */
+    public int getSensorFusion() {
+        return sensorFusionMode;
+    }
+
+
+    /**
+     * Configures the MeanVariances for the given sample rate.
+     * Their time windows (2 seconds for the Auto-Locking) are kept equal to the ones at the DEFAULT_SAMPLE_RATE.
+     * The Auto-Locking MeanVariances are reset, and the gravity filters restart from their current values,
+     * only if their size changes.
+     * The sample rate is also measured by update(), that calls this method when it changes.
+     *
+     * @param sampleRate The sample rate (in Hz)
+     */
+    public void setSampleRate(float sampleRate) {
+        this.sampleRate = sampleRate;
+        float samplesRatio = sampleRate / DEFAULT_SAMPLE_RATE;
+
+        mvAngle0.setSize(Math.max(2, Math.round(SIZE_OF_MEANVARIANCE * samplesRatio)));
+        mvAngle1.setSize(mvAngle0.getSize());
+        mvAngle2.setSize(mvAngle0.getSize());
+
+        // The gravity filters restart from the current values
+        int gravitySize = Math.max(2, Math.round(SIZE_OF_GRAVITY_MEANVARIANCE * samplesRatio));
+        if (gravitySize == mvGravity0.getSize()) return;
+        float mean0 = mvGravity0.getMeanValue();
+        float mean1 = mvGravity1.getMeanValue();
+        float mean2 = mvGravity2.getMeanValue();
+        mvGravity0.setSize(gravitySize);
+        mvGravity1.setSize(gravitySize);
+        mvGravity2.setSize(gravitySize);
+        mvGravity0.reset(mean0);
+        mvGravity1.reset(mean1);
+        mvGravity2.reset(mean2);
+    }
+
+
+    /**
+     * @return the sample rate the engine is configured for (in Hz)
+     */
+    public float getSampleRate() {
+        return sampleRate;
+    }
+
+
+    /**
+     * Restarts the measurement of the sample rate and of the period of the samples.
+     * It must be called when the stream of the samples is interrupted (for example when the
+     * measure is locked or unlocked, and when the app is resumed), so that the gap is not measured
+     * as a low sample rate.
+     */
+    public void restartSampleRateMeasurement() {
+        lastTimestamp = 0;
+        rateWindowStart = 0;
+        rateWindowSamples = 0;
+    }
+
+
+    /**
+     * Measures the sample rate using the timestamps of the samples, and reconfigures the
+     * engine if the rate changes more than RATE_CHANGE_THRESHOLD.
+     * A window with a period between two samples longer than MAX_SAMPLE_PERIOD_NANOS
+     * (a gap in the stream) is discarded, and the measurement restarts from the new sample.
+     */
+    private void measureSampleRate(long timestamp) {
+        if ((rateWindowSamples == 0) || (timestamp < rateWindowStart)
+                || (timestamp - lastTimestamp > MAX_SAMPLE_PERIOD_NANOS)) {
+            rateWindowStart = timestamp;
+            rateWindowSamples = 1;
+            return;
+        }
+        rateWindowSamples++;
+        long elapsed = timestamp - rateWindowStart;
+        if (elapsed >= RATE_MEASUREMENT_NANOS) {
+            float measuredRate = (rateWindowSamples - 1) * 1E9f / elapsed;
+            if (Math.abs(measuredRate - sampleRate) > RATE_CHANGE_THRESHOLD * sampleRate) setSampleRate(measuredRate);
+            rateWindowStart = timestamp;
+            rateWindowSamples = 1;
+        }
+    }
+
+
+    /**
+     * Returns the weight of a new sample for a low-pass filter with the given weight per ALPHA_PERIOD_NANOS.
+     * The weight is scaled to the period of the sample, so that the time constant of the
+     * filter doesn't depend on the sample rate: n samples with weight 1 - (1 - a)^(1/n)
+     * have the same effect of 1 sample with weight a.
+     *
+     * @param weight The weight for a period of ALPHA_PERIOD_NANOS
+     * @param periodNanos The period of the sample (in nanoseconds)
+     * @return the weight of the sample
+     */
+    static float scaleWeight(double weight, long periodNanos) {
+        if (weight >= 1) return 1;
+        return (float) (1 - Math.pow(1 - weight, periodNanos / ALPHA_PERIOD_NANOS));
+    }
+
+
+    /**
+     * Processes a new gyroscope sample. It is used only by the SensorFusion:
+     * the angles are updated by the next accelerometer sample.
+     * The rates are rotated by the calibration matrix, as the accelerations,
+     * so that the fusion receives both the vectors in the same frame.
+     *
+     * @param values The angular rates around X, Y, Z (in rad/s)
+     * @param timestamp The timestamp of the sample (in nanoseconds)
+     */
+    public void updateGyroscope(float[] values, long timestamp) {
+        if (sensorFusion == null) return;
+
+        angularRate_calibrated[0] = values[0] * calibrationMatrix[0][0] + values[1] * calibrationMatrix[0][1] + values[2] * calibrationMatrix[0][2];
+        angularRate_calibrated[1] = values[0] * calibrationMatrix[1][0] + values[1] * calibrationMatrix[1][1] + values[2] * calibrationMatrix[1][2];
+        angularRate_calibrated[2] = values[0] * calibrationMatrix[2][0] + values[1] * calibrationMatrix[2][1] + values[2] * calibrationMatrix[2][2];
+
+        sensorFusion.updateGyroscope(angularRate_calibrated, timestamp);
+    }
+
+
+    /**
+     * Processes a new accelerometer sample.
+     *
+     * @param values The values of the accelerometers (X, Y, Z)
+     * @param timestamp The timestamp of the sample (in nanoseconds)
+     * @param out The Inclination to fill with the results
+     */
+    public void update(float[] values, long timestamp, Inclination out) {
+        measureSampleRate(timestamp);
+
+        // The period of the sample, from the timestamps. The nominal period is used for the first sample
+        // and for the timestamps not increasing; the long periods (for example after a pause) are clamped.
+        long periodNanos = timestamp - lastTimestamp;
+        if ((lastTimestamp == 0) || (periodNanos <= 0)) periodNanos = (long) (1E9 / sampleRate);
+        periodNanos = Math.min(periodNanos, MAX_SAMPLE_PERIOD_NANOS);
+        lastTimestamp = timestamp;
+
+        if (sensorFusion == null) {
+            // The weights increase with the distance of the sample from the mean value (adaptive filter)
+            alpha0 = scaleWeight(ALPHA * (float)(1 + Math.abs(mvGravity0.getMeanValue() - values[0])*0.1), periodNanos);
+            alpha1 = scaleWeight(ALPHA * (float)(1 + Math.abs(mvGravity1.getMeanValue() - values[1])*0.1), periodNanos);
+            alpha2 = scaleWeight(ALPHA * (float)(1 + Math.abs(mvGravity2.getMeanValue() - values[2])*0.1), periodNanos);
+
+            // Weighted gravity reads
+
+            if ((gravity[0] == 0) && (gravity[1] == 0) && (gravity[2] == 0)) {
+                gravity[0] = (values[0] - gravity_offset[0]) / gravity_gain[0];   // X
+                gravity[1] = (values[1] - gravity_offset[1]) / gravity_gain[1];   // Y
+                gravity[2] = (values[2] - gravity_offset[2]) / gravity_gain[2];   // Z
+            } else {
+                gravity[0] = (1 - alpha0) * gravity[0] + (alpha0) * (values[0] - gravity_offset[0]) / gravity_gain[0];
+                gravity[1] = (1 - alpha1) * gravity[1] + (alpha1) * (values[1] - gravity_offset[1]) / gravity_gain[1];
+                gravity[2] = (1 - alpha2) * gravity[2] + (alpha2) * (values[2] - gravity_offset[2]) / gravity_gain[2];
+            }
+
+            // Apply Calibration values
+
+            gravity_calibrated[0] = gravity[0] * calibrationMatrix[0][0] + gravity[1] * calibrationMatrix[0][1] + gravity[2] * calibrationMatrix[0][2];
+            gravity_calibrated[1] = gravity[0] * calibrationMatrix[1][0] + gravity[1] * calibrationMatrix[1][1] + gravity[2] * calibrationMatrix[1][2];
+            gravity_calibrated[2] = gravity[0] * calibrationMatrix[2][0] + gravity[1] * calibrationMatrix[2][1] + gravity[2] * calibrationMatrix[2][2];
+
+            mvGravity0.loadSample(gravity_calibrated[0]);
+            mvGravity1.loadSample(gravity_calibrated[1]);
+            mvGravity2.loadSample(gravity_calibrated[2]);
+
+            gravity_estimate[0] = mvGravity0.getMeanValue();
+            gravity_estimate[1] = mvGravity1.getMeanValue();
+            gravity_estimate[2] = mvGravity2.getMeanValue();
+        } else {
+            // The calibrated sample, not filtered, is fused with the gyroscope
+
+            acceleration[0] = (values[0] - gravity_offset[0]) / gravity_gain[0];
+            acceleration[1] = (values[1] - gravity_offset[1]) / gravity_gain[1];
+            acceleration[2] = (values[2] - gravity_offset[2]) / gravity_gain[2];
+
+            acceleration_calibrated[0] = acceleration[0] * calibrationMatrix[0][0] + acceleration[1] * calibrationMatrix[0][1] + acceleration[2] * calibrationMatrix[0][2];
+            acceleration_calibrated[1] = acceleration[0] * calibrationMatrix[1][0] + acceleration[1] * calibrationMatrix[1][1] + acceleration[2] * calibrationMatrix[1][2];
+            acceleration_calibrated[2] = acceleration[0] * calibrationMatrix[2][0] + acceleration[1] * calibrationMatrix[2][1] + acceleration[2] * calibrationMatrix[2][2];
+
+            sensorFusion.updateAccelerometer(acceleration_calibrated, timestamp, gravity_estimate);
+        }
+
+        // Calculate Angles
+
+        calculateAngles();
+
+        // Load angles into Auto-Locking MeanVariances
+
+        mvAngle0.loadSample(angle[0]);
+        mvAngle1.loadSample(angle[1]);
+        mvAngle2.loadSample(angle[2]);
+
+        // Determine Rotation, ViewMode and Text Angles
+
+        boolean isDisplayRotationChanged = false;
+        if (Math.abs(angle[2]) < 70) {
+            if ((angleXY > 270 - 45 + ROTATION_THRESHOLD) && (angleXY < 270 + 45 - ROTATION_THRESHOLD) && (displayRotation != 0)) {
+                displayRotation = 0;
+                isDisplayRotationChanged = true;
+            }
+            if ((angleXY > 90 - 45 + ROTATION_THRESHOLD) && (angleXY < 90 + 45 - ROTATION_THRESHOLD) && (displayRotation != 180)) {
+                displayRotation = 180;
+                isDisplayRotationChanged = true;
+            }
+            if ((angleXY > 180 - 45 + ROTATION_THRESHOLD) && (angleXY < 180 + 45 - ROTATION_THRESHOLD) && (displayRotation != 270)) {
+                displayRotation = 270;
+                isDisplayRotationChanged = true;
+            }
+            if (((angleXY > 270 + 45 + ROTATION_THRESHOLD) || (angleXY < 45 - ROTATION_THRESHOLD)) && (displayRotation != 90)) {
+                displayRotation = 90;
+                isDisplayRotationChanged = true;
+            }
+        }
+
+        if (Math.abs(angle[2]) < 70) {
+            if (isFlat) isFlat = false;
+            angleTextLabels = (90 + angleXY) % 360;
+        }
+        if ((Math.abs(angle[2]) >= 70) && (Math.abs(angle[2]) < 75)) {
+            if ((displayRotation == 0) && (angleXY < 270)) {
+                angleTextLabels = displayRotation * (Math.abs(angle[2]) - 70) / 5
+                        + (((90 + angleXY) % 360) - 360) * (75 - Math.abs(angle[2])) / 5;
+            } else {
+                angleTextLabels = displayRotation * (Math.abs(angle[2]) - 70) / 5
+                        + ((90 + angleXY) % 360) * (75 - Math.abs(angle[2])) / 5;
+            }
+        }
+        if (Math.abs(angle[2]) >= 75) {
+            if (!isFlat) isFlat = true;
+            angleTextLabels = displayRotation;
+        }
+
+        getInclination(out);
+        out.isDisplayRotationChanged = isDisplayRotationChanged;
+        out.timestamp = timestamp;
+    }
+
+
+    /**
+     * Returns true if the measurement is steady enough to be locked automatically:
+     * either the full window of the Auto-Locking MeanVariances is within the tolerance
+     * (isSteadyWindow), or a shorter window proves it statistically (isSteadySequential).
+     *
+     * @param tolerance The tolerance of the Auto-Locking (in degrees)
+     * @param isHorizonCheckEnabled true if the Horizon check is enabled
+     * @return true if the measurement can be locked
+     */
+    public boolean isSteady(float tolerance, boolean isHorizonCheckEnabled) {
+        return isSteadyWindow(tolerance, isHorizonCheckEnabled) || isSteadySequential(tolerance, isHorizonCheckEnabled);
+    }
+
+
+    /**
+     * Returns true if the full window of the Auto-Locking is steady.
+     * All the Auto-Locking MeanVariances must be fully loaded, with a tolerance below the given one.
+     *
+     * @param tolerance The tolerance of the Auto-Locking (in degrees)
+     * @param isHorizonCheckEnabled true if the Horizon check is enabled
+     * @return true if the measurement can be locked
+     */
+    public boolean isSteadyWindow(float tolerance, boolean isHorizonCheckEnabled) {
+        return (mvAngle0.getTolerance() < tolerance)
+                && (mvAngle1.getTolerance() < tolerance)
+                && (mvAngle2.getTolerance() < tolerance)
+                && mvAngle0.getLoaded()
+                && mvAngle1.getLoaded()
+                && mvAngle2.getLoaded()
+                && ((!isHorizonCheckEnabled)
+                        || (Math.abs(angle[2]) >= AUTOLOCK_HORIZON_CHECK_THRESHOLD)
+                        || (isHorizonCheckEnabled && (Math.abs(angle[2]) < AUTOLOCK_HORIZON_CHECK_THRESHOLD) && (Math.abs(mvAngle2.getMeanValue()) < tolerance)));
+    }
+
+
+    /**
+     * Returns true if the last samples prove, with a chi-square test, that the measurement is within the tolerance.
+     * The tolerance is the 95% confidence interval of the single sample (1.96 * Standard Deviation),
+     * so the test rejects the hypothesis Standard Deviation >= tolerance / 1.96 with AUTOLOCK_SIGNIFICANCE.
+     * The samples of the angles are correlated by the filters, so the test uses their effective sample size,
+     * and a slow drift (that correlates the samples) prevents the lock. The three angles come from the same
+     * filters, so the smallest of their effective sizes is used for all of them: the estimate of a single
+     * short window is noisy, and an overestimate would lock a measurement that is still wandering.
+     * The test is evaluated on every sample, on the last 1/4, 2/4 and 3/4 of the Auto-Locking window:
+     * a steady device is locked after a fraction of the window, when its noise is well below the tolerance.
+     * The significance is divided between the windows (Bonferroni); all the angles must pass the test on the same window.
+     *
+     * @param tolerance The tolerance of the Auto-Locking (in degrees)
+     * @param isHorizonCheckEnabled true if the Horizon check is enabled
+     * @return true if the measurement can be locked
+     */
+    public boolean isSteadySequential(float tolerance, boolean isHorizonCheckEnabled) {
+        double maxVariance = (tolerance / 1.96) * (tolerance / 1.96);
+        double significance = AUTOLOCK_SIGNIFICANCE / AUTOLOCK_SEQUENTIAL_WINDOWS;
+        int size = mvAngle0.getSize();
+        for (int w = 1; w <= AUTOLOCK_SEQUENTIAL_WINDOWS; w++) {
+            int nsamples = size * w / (AUTOLOCK_SEQUENTIAL_WINDOWS + 1);
+            if (nsamples < 2 || mvAngle0.getSamplesCount() < nsamples) break;
+            double effectiveSize = Math.min(mvAngle0.getEffectiveSize(nsamples),
+                    Math.min(mvAngle1.getEffectiveSize(nsamples), mvAngle2.getEffectiveSize(nsamples)));
+            if (effectiveSize > 1
+                    && isWithinVariance(mvAngle0.getVariance(nsamples), effectiveSize, maxVariance, significance)
+                    && isWithinVariance(mvAngle1.getVariance(nsamples), effectiveSize, maxVariance, significance)
+                    && isWithinVariance(mvAngle2.getVariance(nsamples), effectiveSize, maxVariance, significance)
+                    && ((!isHorizonCheckEnabled)
+                            || (Math.abs(angle[2]) >= AUTOLOCK_HORIZON_CHECK_THRESHOLD)
+                            || (Math.abs(mvAngle2.getMeanValue(nsamples)) < tolerance))) return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * The chi-square test of the variance of a window of samples.
+     * With Neff effective samples, Neff * Variance / maxVariance has a chi-square distribution
+     * with Neff - 1 degrees of freedom when the true variance is maxVariance.
+     *
+     * @param variance The variance of the samples of the window
+     * @param effectiveSize The effective sample size of the window (> 1)
+     * @return true if the true variance is below maxVariance, with the given significance
+     */
+    private static boolean isWithinVariance(double variance, double effectiveSize, double maxVariance, double significance) {
+        double x = effectiveSize * variance / maxVariance;
+        // Above the mean value the probability is over 1/2 (the median is below the mean): not significant
+        if (x >= effectiveSize - 1) return false;
+        return chiSquareProbability(x, effectiveSize - 1) < significance;
+    }
+
+
+    /**
+     * Returns the probability that a chi-square variable with the given degrees of freedom is below x,
+     * that is the regularized lower incomplete gamma function P(dof / 2, x / 2).
+     * Below dof / 2 + 1 the series of P converges quickly; above, the continued fraction
+     * of the upper function Q = 1 - P is used (modified Lentz's method).
+     *
+     * @param x The value of the variable
+     * @param dof The degrees of freedom (> 0)
+     * @return the cumulative probability, in [0, 1]
+     */
+    static double chiSquareProbability(double x, double dof) {
+        if (x <= 0) return 0;
+        double a = dof / 2;
+        double y = x / 2;
+        double logPrefix = a * Math.log(y) - y - logGamma(a);
+        if (y < a + 1) {
+            double term = 1 / a;
+            double sum = term;
+            for (int k = 1; k < 200 && term > sum * 1E-12; k++) {
+                term *= y / (a + k);
+                sum += term;
+            }
+            return Math.min(1, Math.exp(logPrefix) * sum);
+        }
+        double b = y + 1 - a;
+        double c = 1 / 1E-300;
+        double d = 1 / b;
+        double h = d;
+        for (int i = 1; i < 200; i++) {
+            double an = -i * (i - a);
+            b += 2;
+            d = an * d + b;
+            if (Math.abs(d) < 1E-300) d = 1E-300;
+            c = b + an / c;
+            if (Math.abs(c) < 1E-300) c = 1E-300;
+            d = 1 / d;
+            double delta = d * c;
+            h *= delta;
+            if (Math.abs(delta - 1) < 1E-12) break;
+        }
+        return Math.max(0, 1 - Math.exp(logPrefix) * h);
+    }
+
+
+    /**
+     * Returns the natural logarithm of the Gamma function, for x > 0.
+     * The argument is shifted above 8 with the recurrence Gamma(x + 1) = x * Gamma(x),
+     * then the Stirling series is used (error < 1E-10).
+     */
+    static double logGamma(double x) {
+        double shift = 0;
+        while (x < 8) {
+            shift += Math.log(x);
+            x++;
+        }
+        double x2 = 1 / (x * x);
+        return (x - 0.5) * Math.log(x) - x + 0.5 * Math.log(2 * Math.PI)
+                + (1.0 / 12 - x2 * (1.0 / 360 - x2 / 1260)) / x - shift;
+    }
+
+
+    /**
+     * Computes the angles to be locked by the Auto-Locking, using the current estimate of the gravity,
+     * and resets the Auto-Locking MeanVariances and the measurement of the sample rate.
+     *
+     * @param out The Inclination to fill with the locked angles
+     */
+    public void lock(Inclination out) {
+        calculateAngles();
+        out.angle[0] = angle[0];
+        out.angle[1] = angle[1];
+        out.angle[2] = angle[2];
+        out.angleXY = angleXY;
+        out.angleXYZ = angleXYZ;
+
+        mvAngle0.reset();
+        mvAngle1.reset();
+        mvAngle2.reset();
+        restartSampleRateMeasurement();
+    }
+
+
+    /**
+     * Fills the given Inclination with the current results of the engine.
+     *
+     * @param out The Inclination to fill
+     */
+    public void getInclination(Inclination out) {
+        out.angle[0] = angle[0];
+        out.angle[1] = angle[1];
+        out.angle[2] = angle[2];
+        out.angleXY = angleXY;
+        out.angleXYZ = angleXYZ;
+        out.angleTextLabels = angleTextLabels;
+        out.displayRotation = displayRotation;
+        out.isFlat = isFlat;
+    }
+
+
+    /**
+     * Returns the Auto-Locking MeanVariance of the given angle.
+     *
+     * @param axis The index of the angle (0, 1, 2)
+     * @return The MeanVariance of the angle
+     */
+    public MeanVariance getAngleMeanVariance(int axis) {
+        switch (axis) {
+            case 0: return mvAngle0;
+            case 1: return mvAngle1;
+            default: return mvAngle2;
+        }
+    }
+
+
+    /**
+     * Computes angle[], angleXY and angleXYZ from the estimated gravity.
+     */
+    private void calculateAngles() {
+        computeAngles(gravity_estimate, angles);
+        angle[0] = angles.angle[0];
+        angle[1] = angles.angle[1];
+        angle[2] = angles.angle[2];
+        angleXY = angles.angleXY;
+        angleXYZ = angles.angleXYZ;
+    }
+
+
+    /**
+     * Computes the angles of a gravity vector, and fills angle[], angleXY and angleXYZ of the given Inclination.
+     * Each angle is the arctangent of two components (or norms) of the vector, so that no normalization
+     * nor asin/acos are needed, and the precision doesn't degrade near +-90°:
+     * <ul>
+     *     <li>angle[i] = atan2(g[i], norm of the other two components);</li>
+     *     <li>angleXY = atan2(-gy, gx), in (0, 360], on the horizontal plane; 0 if the vector is vertical;</li>
+     *     <li>angleXYZ = atan2(gxy, gz), the angle between the vector and the Z axis; 0 if the vector is vertical.</li>
+     * </ul>
+     * angle[2] is the complement of angleXYZ, so each quantity is computed once.
+     * The results match the asin/acos formulas used before within 1E-4°.
+     *
+     * @param gravity The gravity vector (X, Y, Z)
+     * @param out The Inclination to fill
+     */
+    public static void computeAngles(float[] gravity, Inclination out) {
+        float gx = gravity[0];
+        float gy = gravity[1];
+        float gz = gravity[2];
+        float gxy = (float) Math.sqrt(gx * gx + gy * gy);           // Vector over the screen plane
+
+        if (gxy > 0) {
+            float a = atan2Degrees(-gy, gx);
+            if ((a < 0) || ((gx >= 0) && (gy >= 0))) a += 360;      // (0, 360]: the positive X axis is 360°
+            out.angleXY = a;
+            out.angleXYZ = atan2Degrees(gxy, gz);
+            out.angle[2] = 90 - out.angleXYZ;
+        } else {
+            out.angleXY = 0;
+            out.angleXYZ = 0;
+            out.angle[2] = gz > 0 ? 90 : (gz < 0 ? -90 : 0);
+        }
+        out.angle[0] = atan2Degrees(gx, (float) Math.sqrt(gy * gy + gz * gz));
+        out.angle[1] = atan2Degrees(gy, (float) Math.sqrt(gx * gx + gz * gz));
+    }
+
+
+    /**
+     * Returns atan2(y, x) in degrees, in [-180, 180].
+     * The argument is reduced to [0, 1] with the symmetries of the arctangent, that is evaluated
+     * with the polynomial 4.4.49 of Abramowitz and Stegun (error < 2E-8 rad), several times faster than Math.atan2.
+     * Unlike Math.atan2, the sign of the zeros is ignored: (-0, -1) gives 180°.
+     *
+     * @param y The ordinate
+     * @param x The abscissa
+     * @return the angle of the vector (x, y) from the X axis (in degrees); 0 for (0, 0)
+     */
+    static float atan2Degrees(float y, float x) {
+        double ax = Math.abs(x);
+        double ay = Math.abs(y);
+        if (ax == 0 && ay == 0) return 0;
+        boolean isSteep = ay > ax;
+        double t = isSteep ? ax / ay : ay / ax;
+        double t2 = t * t;
+        double a = t * (1 + t2 * (-0.3333314528 + t2 * (0.1999355085 + t2 * (-0.1420889944 + t2 * (0.1065626393
+                + t2 * (-0.0752896400 + t2 * (0.0429096138 + t2 * (-0.0161657367 + t2 * 0.0028662257))))))));
+        a = Math.toDegrees(a);
+        if (isSteep) a = 90 - a;
+        if (x < 0) a = 180 - a;
+        return (float) (y < 0 ? -a : a);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * InclinationPublisher - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A lock-free publisher of the Inclination, with a single writer
+ * (the sensor thread) and any number of readers (the views, the UI thread, ...).
+ * Each reader copies the whole state into its own InclinationSnapshot,
+ * so that the values read are always of the same sample.
+ * It is a sequence lock: the writer makes the sequence odd while it writes
+ * and even when the data are consistent; a reader retries if the sequence
+ * was odd or changed during its copy.
+ * The values are stored as raw int bits into an AtomicIntegerArray, so that
+ * every access is volatile and the reads are ordered by the Java Memory Model.
+ * Neither the writer nor the readers allocate memory or block.
+ */
+public class InclinationPublisher {
+
+    // The positions of the values into the array
+    private static final int ANGLE_0            = 0;
+    private static final int ANGLE_1            = 1;
+    private static final int ANGLE_2            = 2;
+    private static final int ANGLE_XY           = 3;
+    private static final int ANGLE_XYZ          = 4;
+    private static final int ANGLE_TEXT_LABELS  = 5;
+    private static final int DISPLAY_ROTATION   = 6;
+    private static final int IS_FLAT            = 7;
+    private static final int TIMESTAMP_HIGH     = 8;
+    private static final int TIMESTAMP_LOW      = 9;
+    private static final int IS_LOCKED          = 10;
+    private static final int SIZE               = 11;
+
+    private final AtomicInteger sequence = new AtomicInteger(0);       // Odd while the writer is writing
+    private final AtomicIntegerArray data = new AtomicIntegerArray(SIZE);
+
+
+    public InclinationPublisher() {
+        data.set(IS_FLAT, 1);
+    }
+
+
+    /**
+     * Publishes the given Inclination, together with the lock state.
+     * It must be called always by the same thread.
+     * The isDisplayRotationChanged flag is an event of the single update and it is not published.
+     *
+     * @param source The Inclination to publish
+     * @param isLocked true if the Inclination is a locked measure
+     */
+    public void publish(Inclination source, boolean isLocked) {
+        sequence.incrementAndGet();
+        data.set(ANGLE_0, Float.floatToRawIntBits(source.angle[0]));
+        data.set(ANGLE_1, Float.floatToRawIntBits(source.angle[1]));
+        data.set(ANGLE_2, Float.floatToRawIntBits(source.angle[2]));
+        data.set(ANGLE_XY, Float.floatToRawIntBits(source.angleXY));
+        data.set(ANGLE_XYZ, Float.floatToRawIntBits(source.angleXYZ));
+        data.set(ANGLE_TEXT_LABELS, Float.floatToRawIntBits(source.angleTextLabels));
+        data.set(DISPLAY_ROTATION, Float.floatToRawIntBits(source.displayRotation));
+        data.set(IS_FLAT, source.isFlat ? 1 : 0);
+        data.set(TIMESTAMP_HIGH, (int) (source.timestamp >>> 32));
+        data.set(TIMESTAMP_LOW, (int) source.timestamp);
+        data.set(IS_LOCKED, isLocked ? 1 : 0);
+        sequence.incrementAndGet();
+    }
+
+
+    /**
+     * Copies the last published Inclination into the given snapshot.
+     * It can be called by any thread; it spins only if a publish is in progress.
+     *
+     * @param destination The InclinationSnapshot where to copy the data
+     */
+    public void read(InclinationSnapshot destination) {
+        int seq;
+        do {
+            seq = sequence.get();
+            if ((seq & 1) != 0) continue;          // The writer is writing
+            destination.angle[0] = Float.intBitsToFloat(data.get(ANGLE_0));
+            destination.angle[1] = Float.intBitsToFloat(data.get(ANGLE_1));
+            destination.angle[2] = Float.intBitsToFloat(data.get(ANGLE_2));
+            destination.angleXY = Float.intBitsToFloat(data.get(ANGLE_XY));
+            destination.angleXYZ = Float.intBitsToFloat(data.get(ANGLE_XYZ));
+            destination.angleTextLabels = Float.intBitsToFloat(data.get(ANGLE_TEXT_LABELS));
+            destination.displayRotation = Float.intBitsToFloat(data.get(DISPLAY_ROTATION));
+            destination.isFlat = data.get(IS_FLAT) != 0;
+            destination.timestamp = ((long) data.get(TIMESTAMP_HIGH) << 32) | (data.get(TIMESTAMP_LOW) & 0xFFFFFFFFL);
+            destination.isLocked = data.get(IS_LOCKED) != 0;
+        } while ((seq & 1) != 0 || seq != sequence.get());
+        destination.isDisplayRotationChanged = false;
+        destination.publication = seq >>> 1;
+    }
+
+
+    /**
+     * @return the number of the publications made (it can be used to check for new data)
+     */
+    public int getPublicationsCount() {
+        return sequence.get() >>> 1;
+    }
+}
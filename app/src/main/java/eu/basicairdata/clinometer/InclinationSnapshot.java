@@ -0,0 +1,33 @@
+/*
+ * InclinationSnapshot - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+/**
+ * A consistent copy of the last Inclination published by the sensor thread,
+ * as read from the InclinationPublisher.
+ * Each reader owns its own instance and fills it again when it needs the data,
+ * so that all the values come from the same sensor sample.
+ */
+public class InclinationSnapshot extends Inclination {
+
+    public boolean isLocked = false;                // True if the published inclination is a locked measure
+    public int publication = 0;                     // The number of the publication, it changes at each new sample
+}
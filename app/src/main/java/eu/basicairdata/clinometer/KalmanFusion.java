@@ -0,0 +1,314 @@
+/*
+ * KalmanFusion - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+/**
+ * An Extended Kalman Filter that fuses the gyroscope and the accelerometer.
+ * The state is the attitude of the device (a unit quaternion, from the device frame
+ * to the world frame) and the bias of the gyroscope (in rad/s).
+ * The gyroscope predicts the attitude; the direction of the acceleration measures
+ * the gravity in the frame of the device and corrects the attitude and the bias.
+ * The rotation around the vertical axis is not observable, and it doesn't change the angles.
+ *
+ * <p>The noises are expressed as densities, so that the response of the filter doesn't
+ * depend on the sample rate; the ratio between the accelerometer and the gyroscope noises
+ * gives the time constant of the correction (about 0.7 s).
+ * The accelerometer is trusted less when the norm of the acceleration shows that the
+ * device is accelerating.
+ * The Class doesn't depend on Android and doesn't allocate objects on each sample.
+ */
+public class KalmanFusion implements SensorFusion {
+
+    private static final double GYROSCOPE_NOISE_DENSITY = 0.007;        // The angle random walk (in rad/√s)
+    private static final double BIAS_NOISE_DENSITY = 0.0001;            // The random walk of the bias (in rad/s/√s)
+    private static final double ACCELEROMETER_NOISE_DENSITY = 0.005;    // The noise of the direction of the gravity (in 1/√Hz)
+    private static final double LINEAR_ACCELERATION_NOISE = 1;          // The noise added for the relative difference of the norm of the acceleration
+    private static final double INITIAL_ATTITUDE_VARIANCE = 1E-4;       // The variance of the attitude initialized by the accelerometer
+    private static final double INITIAL_BIAS_VARIANCE = 1E-4;           // The variance of the bias at the start: (0.01 rad/s)²
+    private static final double NORM_TIME_CONSTANT = 0.5;               // The time constant of the norm of the gravity (in seconds)
+    private static final long   MAX_SAMPLE_PERIOD_NANOS = 100000000L;   // Over this period the attitude restarts from the accelerometer (100 ms)
+
+    private static final int N = 7;                     // The size of the state: q0, q1, q2, q3, bias X, Y, Z
+
+    private final double[] x = new double[N];           // The state
+    private final double[][] p = new double[N][N];      // The covariance of the state
+    private final double[][] f = new double[N][N];      // The Jacobian of the prediction
+    private final double[][] fp = new double[N][N];     // F * P
+    private final double[][] xi = new double[4][3];     // The matrix of q ⊗ (0, v) = xi * v
+    private final double[][] h = new double[3][4];      // The Jacobian of the measurement (the bias columns are zero)
+    private final double[][] pht = new double[N][3];    // P * transpose(H)
+    private final double[][] s = new double[3][3];      // The covariance of the innovation
+    private final double[][] sInverse = new double[3][3];
+    private final double[][] k = new double[N][3];      // The Kalman gain
+    private final double[] innovation = new double[3];
+
+    private double gravityNorm = 0;                     // The filtered norm of the acceleration (in m/s²)
+    private long lastGyroscopeTimestamp = 0;            // The timestamp of the previous gyroscope sample, 0 if none
+    private long lastAccelerometerTimestamp = 0;        // The timestamp of the previous accelerometer sample, 0 if none
+    private boolean isInitialized = false;              // True if the attitude has been initialized by the accelerometer
+
+
+    public KalmanFusion() {
+        reset();
+    }
+
+
+    @Override
+    public void reset() {
+        isInitialized = false;
+        lastGyroscopeTimestamp = 0;
+        lastAccelerometerTimestamp = 0;
+        for (int i = 0; i < N; i++) {
+            x[i] = 0;
+            for (int j = 0; j < N; j++) p[i][j] = 0;
+        }
+        x[0] = 1;
+        for (int i = 4; i < N; i++) p[i][i] = INITIAL_BIAS_VARIANCE;
+    }
+
+
+    @Override
+    public void updateGyroscope(float[] angularRate, long timestamp) {
+        long periodNanos = timestamp - lastGyroscopeTimestamp;
+        boolean isFirstSample = (lastGyroscopeTimestamp == 0);
+        lastGyroscopeTimestamp = timestamp;
+        if (!isInitialized || isFirstSample || (periodNanos <= 0) || (periodNanos > MAX_SAMPLE_PERIOD_NANOS)) return;
+        predict(angularRate[0] - x[4], angularRate[1] - x[5], angularRate[2] - x[6], periodNanos * 1E-9);
+    }
+
+
+    @Override
+    public void updateAccelerometer(float[] acceleration, long timestamp, float[] gravity) {
+        long periodNanos = timestamp - lastAccelerometerTimestamp;
+        boolean isFirstSample = (lastAccelerometerTimestamp == 0);
+        lastAccelerometerTimestamp = timestamp;
+
+        double norm = Math.sqrt(acceleration[0] * acceleration[0] + acceleration[1] * acceleration[1] + acceleration[2] * acceleration[2]);
+        if (norm > 0) {
+            if (!isInitialized || isFirstSample || (periodNanos > MAX_SAMPLE_PERIOD_NANOS)) {
+                // The first sample, or a pause (the device could have been moved): restart from the accelerometer.
+                // The bias of the gyroscope is kept
+                initialize(acceleration[0] / norm, acceleration[1] / norm, acceleration[2] / norm);
+                gravityNorm = norm;
+            } else if (periodNanos > 0) {
+                double dt = periodNanos * 1E-9;
+                double linearAcceleration = LINEAR_ACCELERATION_NOISE * (norm - gravityNorm) / gravityNorm;
+                correct(acceleration[0] / norm, acceleration[1] / norm, acceleration[2] / norm,
+                        ACCELEROMETER_NOISE_DENSITY * ACCELEROMETER_NOISE_DENSITY / dt + linearAcceleration * linearAcceleration);
+                gravityNorm += (1 - Math.exp(-dt / NORM_TIME_CONSTANT)) * (norm - gravityNorm);
+            }
+        }
+
+        // The gravity in the frame of the device: the third row of the rotation matrix
+        gravity[0] = (float) (gravityNorm * 2 * (x[1] * x[3] - x[0] * x[2]));
+        gravity[1] = (float) (gravityNorm * 2 * (x[2] * x[3] + x[0] * x[1]));
+        gravity[2] = (float) (gravityNorm * (x[0] * x[0] - x[1] * x[1] - x[2] * x[2] + x[3] * x[3]));
+    }
+
+
+    /**
+     * Initializes the attitude from the direction of the gravity (with no rotation around
+     * the vertical axis), using the shortest rotation from the gravity to the Z axis of the world.
+     */
+    private void initialize(double gx, double gy, double gz) {
+        if (gz > -0.999999) {
+            x[0] = 1 + gz;
+            x[1] = gy;
+            x[2] = -gx;
+            x[3] = 0;
+        } else {
+            // Face down: a rotation of 180° around the X axis
+            x[0] = 0;
+            x[1] = 1;
+            x[2] = 0;
+            x[3] = 0;
+        }
+        normalize();
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                if ((i < 4) || (j < 4)) p[i][j] = 0;
+            }
+        }
+        for (int i = 0; i < 4; i++) p[i][i] = INITIAL_ATTITUDE_VARIANCE;
+        isInitialized = true;
+    }
+
+
+    /**
+     * The prediction: rotates the attitude by the angular rate (corrected by the bias).
+     * q' = q ⊗ dq, with dq the rotation of the period; P' = F P transpose(F) + Q.
+     */
+    private void predict(double wx, double wy, double wz, double dt) {
+        double angle = Math.sqrt(wx * wx + wy * wy + wz * wz) * dt;
+        double dq0 = 1;
+        double dq1 = 0;
+        double dq2 = 0;
+        double dq3 = 0;
+        if (angle > 0) {
+            double sin = Math.sin(angle / 2) * dt / angle;
+            dq0 = Math.cos(angle / 2);
+            dq1 = wx * sin;
+            dq2 = wy * sin;
+            dq3 = wz * sin;
+        }
+
+        // xi(q): q ⊗ (0, v) = xi * v
+        xi[0][0] = -x[1]; xi[0][1] = -x[2]; xi[0][2] = -x[3];
+        xi[1][0] =  x[0]; xi[1][1] = -x[3]; xi[1][2] =  x[2];
+        xi[2][0] =  x[3]; xi[2][1] =  x[0]; xi[2][2] = -x[1];
+        xi[3][0] = -x[2]; xi[3][1] =  x[1]; xi[3][2] =  x[0];
+
+        // F: the right multiplication by dq for the attitude, -dt/2 * xi(q) for the bias
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) f[i][j] = (i == j) ? 1 : 0;
+        }
+        f[0][0] = dq0; f[0][1] = -dq1; f[0][2] = -dq2; f[0][3] = -dq3;
+        f[1][0] = dq1; f[1][1] =  dq0; f[1][2] =  dq3; f[1][3] = -dq2;
+        f[2][0] = dq2; f[2][1] = -dq3; f[2][2] =  dq0; f[2][3] =  dq1;
+        f[3][0] = dq3; f[3][1] =  dq2; f[3][2] = -dq1; f[3][3] =  dq0;
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 3; j++) f[i][4 + j] = -dt / 2 * xi[i][j];
+        }
+
+        // The attitude
+        double q0 = x[0] * dq0 - x[1] * dq1 - x[2] * dq2 - x[3] * dq3;
+        double q1 = x[0] * dq1 + x[1] * dq0 + x[2] * dq3 - x[3] * dq2;
+        double q2 = x[0] * dq2 - x[1] * dq3 + x[2] * dq0 + x[3] * dq1;
+        double q3 = x[0] * dq3 + x[1] * dq2 - x[2] * dq1 + x[3] * dq0;
+        x[0] = q0;
+        x[1] = q1;
+        x[2] = q2;
+        x[3] = q3;
+        normalize();
+
+        // The covariance. The rows of F of the bias are the identity
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                if (i < 4) {
+                    double sum = 0;
+                    for (int m = 0; m < N; m++) sum += f[i][m] * p[m][j];
+                    fp[i][j] = sum;
+                } else fp[i][j] = p[i][j];
+            }
+        }
+        double attitudeNoise = GYROSCOPE_NOISE_DENSITY * GYROSCOPE_NOISE_DENSITY * dt / 4;
+        double biasNoise = BIAS_NOISE_DENSITY * BIAS_NOISE_DENSITY * dt;
+        for (int i = 0; i < N; i++) {
+            for (int j = i; j < N; j++) {
+                double sum = fp[i][j];
+                if (j < 4) {
+                    sum = 0;
+                    for (int m = 0; m < N; m++) sum += fp[i][m] * f[j][m];
+                }
+                if ((i < 4) && (j < 4)) sum += attitudeNoise * (xi[i][0] * xi[j][0] + xi[i][1] * xi[j][1] + xi[i][2] * xi[j][2]);
+                if ((i == j) && (i >= 4)) sum += biasNoise;
+                p[i][j] = sum;
+                p[j][i] = sum;
+            }
+        }
+    }
+
+
+    /**
+     * The correction: the measured direction of the gravity (a unit vector) is compared with
+     * the one of the attitude, h(q) = transpose(R(q)) * (0, 0, 1).
+     *
+     * @param variance The variance of the measurement, on each axis
+     */
+    private void correct(double zx, double zy, double zz, double variance) {
+        double q0 = x[0];
+        double q1 = x[1];
+        double q2 = x[2];
+        double q3 = x[3];
+        innovation[0] = zx - 2 * (q1 * q3 - q0 * q2);
+        innovation[1] = zy - 2 * (q2 * q3 + q0 * q1);
+        innovation[2] = zz - (q0 * q0 - q1 * q1 - q2 * q2 + q3 * q3);
+
+        h[0][0] = -2 * q2; h[0][1] =  2 * q3; h[0][2] = -2 * q0; h[0][3] = 2 * q1;
+        h[1][0] =  2 * q1; h[1][1] =  2 * q0; h[1][2] =  2 * q3; h[1][3] = 2 * q2;
+        h[2][0] =  2 * q0; h[2][1] = -2 * q1; h[2][2] = -2 * q2; h[2][3] = 2 * q3;
+
+        // P * transpose(H) and S = H * P * transpose(H) + R
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < 3; j++) {
+                pht[i][j] = p[i][0] * h[j][0] + p[i][1] * h[j][1] + p[i][2] * h[j][2] + p[i][3] * h[j][3];
+            }
+        }
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                s[i][j] = h[i][0] * pht[0][j] + h[i][1] * pht[1][j] + h[i][2] * pht[2][j] + h[i][3] * pht[3][j];
+            }
+            s[i][i] += variance;
+        }
+        if (!invert(s, sInverse)) return;
+
+        // K = P * transpose(H) * inverse(S); x = x + K * innovation; P = P - K * H * P
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < 3; j++) {
+                k[i][j] = pht[i][0] * sInverse[0][j] + pht[i][1] * sInverse[1][j] + pht[i][2] * sInverse[2][j];
+            }
+            x[i] += k[i][0] * innovation[0] + k[i][1] * innovation[1] + k[i][2] * innovation[2];
+        }
+        for (int i = 0; i < N; i++) {
+            for (int j = i; j < N; j++) {
+                // H * P = transpose(P * transpose(H)), P being symmetric
+                double sum = p[i][j] - (k[i][0] * pht[j][0] + k[i][1] * pht[j][1] + k[i][2] * pht[j][2]);
+                p[i][j] = sum;
+                p[j][i] = sum;
+            }
+        }
+        normalize();
+    }
+
+
+    /**
+     * Inverts a 3x3 matrix.
+     *
+     * @return false if the matrix is singular
+     */
+    private static boolean invert(double[][] a, double[][] inverse) {
+        double c00 = a[1][1] * a[2][2] - a[1][2] * a[2][1];
+        double c01 = a[1][2] * a[2][0] - a[1][0] * a[2][2];
+        double c02 = a[1][0] * a[2][1] - a[1][1] * a[2][0];
+        double determinant = a[0][0] * c00 + a[0][1] * c01 + a[0][2] * c02;
+        if (determinant == 0) return false;
+        double d = 1 / determinant;
+        inverse[0][0] = c00 * d;
+        inverse[1][0] = c01 * d;
+        inverse[2][0] = c02 * d;
+        inverse[0][1] = (a[0][2] * a[2][1] - a[0][1] * a[2][2]) * d;
+        inverse[1][1] = (a[0][0] * a[2][2] - a[0][2] * a[2][0]) * d;
+        inverse[2][1] = (a[0][1] * a[2][0] - a[0][0] * a[2][1]) * d;
+        inverse[0][2] = (a[0][1] * a[1][2] - a[0][2] * a[1][1]) * d;
+        inverse[1][2] = (a[0][2] * a[1][0] - a[0][0] * a[1][2]) * d;
+        inverse[2][2] = (a[0][0] * a[1][1] - a[0][1] * a[1][0]) * d;
+        return true;
+    }
+
+
+    private void normalize() {
+        double norm = Math.sqrt(x[0] * x[0] + x[1] * x[1] + x[2] * x[2] + x[3] * x[3]);
+        x[0] /= norm;
+        x[1] /= norm;
+        x[2] /= norm;
+        x[3] /= norm;
+    }
+}
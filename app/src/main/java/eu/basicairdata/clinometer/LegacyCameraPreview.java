@@ -0,0 +1,167 @@
+/*
+ * LegacyCameraPreview - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * The class is based on the developer.android.com CameraPreview Class:
+ * https://developer.android.com/guide/topics/media/camera#custom-camera
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.hardware.Camera;
+import android.os.Handler;
+import android.util.Log;
+
+import java.nio.IntBuffer;
+import java.util.List;
+
+/**
+ * The CameraPreview implemented with android.hardware.Camera, for the Android versions before 5.0
+ * and, through Camera2Preview, for the Cameras that Camera2 can't use.
+ * The Camera is opened on the camera thread, so its callbacks are called on the camera thread too.
+ * The saved frame is written by the Camera into a NV21 buffer of the CameraFramePool.
+ */
+@SuppressWarnings("deprecation")
+public class LegacyCameraPreview extends CameraPreview {
+
+    private Camera mCamera;                 // Used only by the camera thread
+
+
+    LegacyCameraPreview(Context context, CameraInformation cameraInformation, int exposureCompensation,
+                        int maxPreviewSize, Handler cameraHandler, CameraFramePool cameraFramePool,
+                        Listener listener) {
+        super(context, cameraInformation, exposureCompensation, maxPreviewSize, cameraHandler, cameraFramePool, listener);
+    }
+
+
+    @Override
+    public int getRotationDegrees() {
+        Camera.CameraInfo info = new Camera.CameraInfo();
+        Camera.getCameraInfo(cameraInformation.id, info);
+        return getRotationDegrees(info.orientation, info.facing == Camera.CameraInfo.CAMERA_FACING_FRONT);
+    }
+
+
+    @Override
+    protected void open() {
+        try {
+            mCamera = Camera.open(cameraInformation.id);
+
+            Camera.Parameters params = mCamera.getParameters();
+            if (params.getSupportedFocusModes().contains(Camera.Parameters.FOCUS_MODE_CONTINUOUS_VIDEO)) {
+                params.setFocusMode(Camera.Parameters.FOCUS_MODE_CONTINUOUS_VIDEO);
+            }
+            if (exposureCompensation != 0) params.setExposureCompensation(exposureCompensation);
+
+            List<Camera.Size> sizes = params.getSupportedPreviewSizes();
+            int[] widths = new int[sizes.size()];
+            int[] heights = new int[sizes.size()];
+            for (int i = 0; i < sizes.size(); i++) {
+                widths[i] = sizes.get(i).width;
+                heights[i] = sizes.get(i).height;
+            }
+            int chosen = choosePreviewSize(widths, heights);
+            previewWidth = widths[chosen];
+            previewHeight = heights[chosen];
+            params.setPreviewSize(previewWidth, previewHeight);
+
+            mCamera.setParameters(params);
+            mCamera.setDisplayOrientation(getRotationDegrees());
+        } catch (Exception e) {
+            // Camera is not available (in use or does not exist)
+            Log.w("CameraPreview", "Unable to open the Camera " + cameraInformation.id + ": " + e);
+            close();
+            notifyError();
+            return;
+        }
+        notifyOpened();
+    }
+
+
+    @Override
+    protected void startPreview() {
+        if (mCamera == null) return;
+        // The Surface has been created, now tell the camera where to draw the preview.
+        try {
+            mCamera.setPreviewDisplay(getHolder());
+            mCamera.setOneShotPreviewCallback(firstFrameCallback);
+            mCamera.startPreview();
+        } catch (Exception e) {
+            Log.d("CameraPreview", "Error setting camera preview: " + e.getMessage());
+        }
+    }
+
+
+    @Override
+    protected void capture() {
+        if (mCamera == null) {
+            deliverNoImage();
+            return;
+        }
+        // The next frame is written into a buffer of the pool, instead of a new array
+        Camera.Parameters parameters = mCamera.getParameters();
+        mCamera.addCallbackBuffer(cameraFramePool.acquireBuffer(
+                previewWidth * previewHeight * ImageFormat.getBitsPerPixel(parameters.getPreviewFormat()) / 8));
+        mCamera.setPreviewCallbackWithBuffer(previewCallback);
+    }
+
+
+    @Override
+    protected void close() {
+        if (mCamera == null) return;
+        mCamera.setPreviewCallbackWithBuffer(null);
+        mCamera.release();
+        mCamera = null;
+    }
+
+
+    private final Camera.PreviewCallback firstFrameCallback = new Camera.PreviewCallback() {
+        @Override
+        public void onPreviewFrame(byte[] bytes, Camera camera) {
+            reportStartup();
+        }
+    };
+
+
+    private final Camera.PreviewCallback previewCallback = new Camera.PreviewCallback() {
+        @Override
+        public void onPreviewFrame(byte[] bytes, Camera camera) {
+            camera.setPreviewCallbackWithBuffer(null);
+            camera.stopPreview();
+            reportStartup();
+            Log.d("CameraPreview", "onPreviewFrame");
+
+            // NV21 is the default format of the Camera Preview, and it is not changed
+            if ((bytes == null) || (camera.getParameters().getPreviewFormat() != ImageFormat.NV21)) {
+                if (bytes != null) cameraFramePool.releaseBuffer(bytes);
+                Log.w("CameraPreview", "Unable to save the image of the Camera Preview");
+                deliverNoImage();
+                return;
+            }
+
+            // Already on the camera thread: the frame is converted here
+            long startNanos = System.nanoTime();
+            IntBuffer pixels = cameraFramePool.acquirePixels(previewWidth * previewHeight);
+            YuvConverter.nv21ToRgba(bytes, previewWidth, previewHeight, pixels.array());
+            cameraFramePool.releaseBuffer(bytes);
+            deliverImage(pixels, previewWidth, previewHeight, startNanos);
+        }
+    };
+}
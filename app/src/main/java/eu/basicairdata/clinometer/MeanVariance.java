@@ -21,16 +21,42 @@
 
 package eu.basicairdata.clinometer;
 
-import android.util.Log;
-
 import java.util.Arrays;
 
+/**
+ * The Class that computes the Mean value, the Variance, the Standard Deviation and the
+ * Tolerance (95% confidence) of the last N samples loaded into a circular buffer.
+ * The statistics are updated incrementally in O(1) for each new sample.
+ * Together with the samples, the Class keeps a circular buffer of prefix sums
+ * (sum and sum of squares), so that the statistics of any window of the last
+ * samples are computed as a difference of two prefix sums, in O(1) and without allocations.
+ * The prefix sums are accumulated in double precision around a shift value (the mean of
+ * the previous window), and they are re-synchronized with a two-pass computation every
+ * time the circular buffer wraps, in order to bound the numeric drift.
+ * A third prefix sum (of the products of consecutive samples) gives the lag-1 autocorrelation
+ * of the window, used to estimate its effective sample size.
+ * The Variance and the Standard Deviation are the population ones (divided by N), and the
+ * Tolerance is 1.96 times the population Standard Deviation.
+ * The results match the batch (two-pass) computation within 1.0E-6 * max(|sample|)
+ * for the mean value, and within 1.0E-5 relative for the variance (plus 1.0E-12 * max(|sample|)^2,
+ * for the windows with an almost null variance), where max(|sample|) is taken on the whole buffer.
+ * See MeanVarianceTest.
+ */
 public class MeanVariance {
 
     private float[] sample;
     private int currentSample = -1;
     private int loaded = 0;
 
+    private double shift = 0;               // The reference value subtracted from the samples into the prefix sums
+    private double[] prefixSum;             // The prefix sums of (sample - shift); prefixSum[prefixHead] is the last one
+    private double[] prefixSumOfSquares;    // The prefix sums of (sample - shift)^2
+    private double[] prefixSumOfProducts;   // The prefix sums of (sample - shift) * (previous sample - shift)
+    private int prefixHead = 0;             // The index of the last prefix sum
+
+    private double windowSum = 0;           // The sum of (sample - shift) of the last window evaluated
+    private double windowSumOfSquares = 0;  // The sum of (sample - shift)^2 of the last window evaluated
+
     private float meanValue = 0;
     private float variance = 0;
     private float stdDeviation = 0;
@@ -39,6 +65,9 @@ public class MeanVariance {
 
     public MeanVariance(int size) {
         sample = new float[size];
+        prefixSum = new double[size + 1];
+        prefixSumOfSquares = new double[size + 1];
+        prefixSumOfProducts = new double[size + 1];
     }
 
 
@@ -52,6 +81,20 @@ public class MeanVariance {
         this.sample[currentSample] = sample;
         loaded++;
 
+        if (currentSample == this.sample.length - 1) {
+            // The circular buffer wraps: re-synchronize the prefix sums
+            synchronize();
+        } else {
+            double s = sample - shift;
+            double previous = this.sample[currentSample == 0 ? this.sample.length - 1 : currentSample - 1] - shift;
+            int next = prefixHead + 1;
+            if (next == prefixSum.length) next = 0;
+            prefixSum[next] = prefixSum[prefixHead] + s;
+            prefixSumOfSquares[next] = prefixSumOfSquares[prefixHead] + s * s;
+            prefixSumOfProducts[next] = prefixSumOfProducts[prefixHead] + s * previous;
+            prefixHead = next;
+        }
+
         calculate();
     }
 
@@ -60,6 +103,12 @@ public class MeanVariance {
         loaded = 0;
         currentSample = -1;
 
+        shift = 0;
+        prefixHead = 0;
+        prefixSum[0] = 0;
+        prefixSumOfSquares[0] = 0;
+        prefixSumOfProducts[0] = 0;
+
         meanValue = 0;
         variance = 0;
         stdDeviation = 0;
@@ -78,11 +127,41 @@ public class MeanVariance {
     }
 
 
+    /**
+     * Changes the number of the samples of the window.
+     * If the size changes, the buffers are allocated again and the MeanVariance is reset;
+     * otherwise the samples loaded are kept.
+     *
+     * @param size The new number of samples
+     */
+    public void setSize(int size) {
+        if (size == sample.length) return;
+        sample = new float[size];
+        prefixSum = new double[size + 1];
+        prefixSumOfSquares = new double[size + 1];
+        prefixSumOfProducts = new double[size + 1];
+        reset();
+    }
+
+
+    public int getSize() {
+        return sample.length;
+    }
+
+
     public boolean getLoaded() {
         return (loaded >= sample.length);
     }
 
 
+    /**
+     * @return the number of samples into the window: the samples loaded, up to the size
+     */
+    public int getSamplesCount() {
+        return Math.min(loaded, sample.length);
+    }
+
+
     public float percentLoaded() {
         return (Math.min(100 * loaded / sample.length, 100));
     }
@@ -98,11 +177,17 @@ public class MeanVariance {
     }
 
 
+    /**
+     * @return the population Variance of the samples into the window (divided by N)
+     */
     public float getVariance() {
         return variance;
     }
 
 
+    /**
+     * @return the population Standard Deviation of the samples into the window (divided by N)
+     */
     public float getStdDeviation() {
         return stdDeviation;
     }
@@ -113,91 +198,175 @@ public class MeanVariance {
     }
 
 
+    /**
+     * Re-computes the prefix sums from the samples of the buffer (two-pass).
+     * The mean value of the buffer is used as new shift, in order to
+     * avoid the cancellation errors on the sum of squares.
+     * It must be called when the circular buffer is full and its samples are in
+     * chronological order (currentSample == sample.length - 1).
+     * It costs O(N), but it is called once every N samples.
+     */
+    private void synchronize() {
+        shift = 0;
+        for (int i = 0; i < sample.length; i++) {
+            shift += sample[i];
+        }
+        shift /= sample.length;
+
+        double s;
+        prefixSum[0] = 0;
+        prefixSumOfSquares[0] = 0;
+        prefixSumOfProducts[0] = 0;
+        for (int i = 0; i < sample.length; i++) {
+            s = sample[i] - shift;
+            prefixSum[i + 1] = prefixSum[i] + s;
+            prefixSumOfSquares[i + 1] = prefixSumOfSquares[i] + s * s;
+            // The previous sample of the first one is no more in the buffer; its product is never used
+            prefixSumOfProducts[i + 1] = prefixSumOfProducts[i] + (i == 0 ? 0 : s * (sample[i - 1] - shift));
+        }
+        prefixHead = sample.length;
+    }
+
+
+    /**
+     * Evaluates the sum and the sum of squares of the last samples, in O(1),
+     * as difference between the last prefix sum and the one of N samples ago.
+     * The results are stored into windowSum and windowSumOfSquares.
+     *
+     * @param nsamples The number of last samples of the window (1 <= nsamples <= min(size, loaded))
+     */
+    private void evaluateWindow(int nsamples) {
+        int start = prefixHead - nsamples;
+        if (start < 0) start += prefixSum.length;
+        windowSum = prefixSum[prefixHead] - prefixSum[start];
+        windowSumOfSquares = prefixSumOfSquares[prefixHead] - prefixSumOfSquares[start];
+    }
+
+
+    /**
+     * Updates the statistics using the prefix sums, in O(1).
+     * Note that the Tolerance is the 95% confidence interval of the single sample
+     * (1.96 * population Standard Deviation), that is the value the thresholds of the AutoLock and
+     * of the Calibration are tuned on.
+     */
     private void calculate() {
         int nsamples = Math.min(sample.length, loaded);
         if (nsamples > 0) {
+            evaluateWindow(nsamples);
 
             // ------ Mean value
-            double mv = 0;
-            for (int i = 0; i < nsamples; i++) {
-                mv += sample[i];
-            }
-            mv /= nsamples;
-            meanValue = (float) mv;
+            double mv = windowSum / nsamples;
+            meanValue = (float) (shift + mv);
 
             // ------ Variance
-            double var = 0;
-            for (int i = 0; i < nsamples; i++) {
-                var += (sample[i] - mv) * (sample[i] - mv);
-            }
-            variance /= nsamples;
+            double var = Math.max(0, windowSumOfSquares - windowSum * mv) / nsamples;
+            variance = (float) var;
 
             // ------ Standard Deviation
             stdDeviation = (float) Math.sqrt(var);
 
             // ------ Uncertainty (confidence 95%)
-            tolerance = (float) (1.96d * stdDeviation / Math.sqrt(nsamples));
+            tolerance = (float) (1.96d * stdDeviation);
         } else {
             reset();
         }
     }
 
 
+    /**
+     * Returns the Mean value of the last samples loaded, in O(1).
+     * If the number of samples requested is greater than the samples loaded,
+     * it returns the Mean value of all the samples loaded.
+     *
+     * @param number_of_last_samples The number of last samples to consider; if <= 0 it returns getMeanValue()
+     * @return The Mean value of the last samples
+     */
     public float getMeanValue(int number_of_last_samples) {
-        int nsamples = Math.min(sample.length, loaded);
         if (number_of_last_samples <= 0) return meanValue;
-        if (number_of_last_samples >= nsamples) return 0;
+        int nsamples = Math.min(Math.min(sample.length, loaded), number_of_last_samples);
         if (nsamples > 0) {
-            // ------ Mean value
-            double mv = 0;
-            int index = (loaded - number_of_last_samples) % nsamples;
-            Log.d("MeanVariance", ("MeanVariance: Loaded="+ loaded + " Start=" + index));
-
-            for (int i = 0; i < number_of_last_samples; i++) {
-                mv += sample[index];
-                index++;
-                if (index == nsamples) index = 0;
-            }
-            mv /= number_of_last_samples;
-
-            Log.d("MeanVariance", (String.format("MeanVariance: Mean=%+1.4f Uncertainty=%+1.4f (Std Deviation=%+1.4f)", meanValue, tolerance, stdDeviation)));
-            return (float) mv;
+            evaluateWindow(nsamples);
+            return (float) (shift + windowSum / nsamples);
         }
         return 0;
     }
 
 
+    /**
+     * Returns the Uncertainty (confidence 95%) of the Mean value of the last samples loaded, in O(1).
+     * If the number of samples requested is greater than the samples loaded,
+     * it returns the Uncertainty of the Mean value of all the samples loaded.
+     *
+     * @param number_of_last_samples The number of last samples to consider; if <= 0 it returns getTolerance()
+     * @return The Uncertainty of the Mean value of the last samples
+     */
     public float getTolerance(int number_of_last_samples) {
-        int nsamples = Math.min(sample.length, loaded);
         if (number_of_last_samples <= 0) return tolerance;
-        if (number_of_last_samples >= nsamples) return 0;
+        int nsamples = Math.min(Math.min(sample.length, loaded), number_of_last_samples);
         if (nsamples > 0) {
-            // ------ Mean value
-            double mv = 0;
-            int index = (loaded - number_of_last_samples) % nsamples;
-            for (int i = 0; i < number_of_last_samples; i++) {
-                mv += sample[index];
-                index++;
-                if (index == nsamples) index = 0;
-            }
-            mv /= number_of_last_samples;
+            evaluateWindow(nsamples);
+            double mv = windowSum / nsamples;
 
             // ------ Variance
-            double var = 0;
-            index = (loaded - number_of_last_samples) % nsamples;
-            for (int i = 0; i < number_of_last_samples; i++) {
-                var += (sample[index] - mv) * (sample[index] - mv);
-                index++;
-                if (index == nsamples) index = 0;
-            }
-            var /= number_of_last_samples;
-
-            // ------ Standard Deviation
-            double stddv = (float) Math.sqrt(var);
+            double var = Math.max(0, windowSumOfSquares - windowSum * mv) / nsamples;
 
             // ------ Uncertainty (confidence 95%)
-            return (float) (1.96d * stddv / Math.sqrt(number_of_last_samples));
+            return (float) (1.96d * Math.sqrt(var / nsamples));
+        }
+        return 0;
+    }
+
+
+    /**
+     * Returns the Variance of the last samples loaded, in O(1).
+     * If the number of samples requested is greater than the samples loaded,
+     * it returns the Variance of all the samples loaded.
+     *
+     * @param number_of_last_samples The number of last samples to consider; if <= 0 it returns getVariance()
+     * @return The Variance of the last samples
+     */
+    public float getVariance(int number_of_last_samples) {
+        if (number_of_last_samples <= 0) return variance;
+        int nsamples = Math.min(Math.min(sample.length, loaded), number_of_last_samples);
+        if (nsamples > 0) {
+            evaluateWindow(nsamples);
+            return (float) (Math.max(0, windowSumOfSquares - windowSum * windowSum / nsamples) / nsamples);
         }
         return 0;
     }
+
+
+    /**
+     * Returns the effective sample size of the last samples loaded, in O(1).
+     * The samples of a filtered signal are correlated, and N of them carry the information
+     * of fewer independent samples. The window is modelled as an AR(1) process with the
+     * lag-1 autocorrelation r of its samples: Neff = N * (1 - r) / (1 + r).
+     * The autocorrelation estimated on a short window is biased low (by about (1 + 4r) / N),
+     * and the bias is corrected, so that a window shorter than the correlation time of
+     * the signal doesn't look like independent samples.
+     * A negative autocorrelation is treated as 0, so that Neff <= N.
+     *
+     * @param number_of_last_samples The number of last samples to consider (clamped to the samples loaded)
+     * @return The effective sample size, between 0 (fully correlated) and the number of samples
+     */
+    public float getEffectiveSize(int number_of_last_samples) {
+        int nsamples = Math.min(Math.min(sample.length, loaded), number_of_last_samples);
+        if (nsamples < 2) return Math.max(0, nsamples);
+        evaluateWindow(nsamples);
+        double mv = windowSum / nsamples;
+        double c0 = windowSumOfSquares / nsamples - mv * mv;
+        if (c0 <= 0) return nsamples;
+
+        // The n - 1 pairs of consecutive samples of the window
+        int start = prefixHead - nsamples + 1;
+        if (start < 0) start += prefixSum.length;
+        int first = currentSample - nsamples + 1;
+        if (first < 0) first += sample.length;
+        double pairsSum = 2 * windowSum - (sample[first] - shift) - (sample[currentSample] - shift);
+        double c1 = (prefixSumOfProducts[prefixHead] - prefixSumOfProducts[start] - mv * pairsSum) / (nsamples - 1) + mv * mv;
+        double r = c1 / c0;
+        if (nsamples > 4) r = (nsamples * r + 1) / (nsamples - 4);
+        r = Math.min(1, Math.max(0, r));
+        return (float) (nsamples * (1 - r) / (1 + r));
+    }
 }
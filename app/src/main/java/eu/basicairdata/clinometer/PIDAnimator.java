@@ -21,102 +21,79 @@
 
 package eu.basicairdata.clinometer;
 
-import android.os.Handler;
-
-import java.util.Timer;
-import java.util.TimerTask;
-
-public class PIDAnimator extends TimerTask {
-
-    private final Handler handler = new Handler();
-    private final Timer mTimer = new Timer();
-
-    private float r = 0;            // Set-point
-    private float y = 0;
-    private float y_old = 0;
-    private float u = 0;            // Output Value
-    private float v = 0;
-
-    private float t;
-    private long t_ms;
+/**
+ * Animates a value (a rotation in degrees) towards its target, using a PIDController.
+ * The animation has no background thread: it is advanced by the render loop with the real
+ * elapsed time. The PID is stepped at its fixed period, so the dynamics are exactly the ones
+ * of the discrete PID on 60, 90 and 120 Hz displays, and the value shown between two steps
+ * is interpolated. The PID is computed one step ahead, so that the value at the time
+ * of each step is the output of that step.
+ */
+public class PIDAnimator {
 
-    private float kp;
-    private float ki;
-    private float kd;
-    private float kt = 0.3f;        // De-saturation gain
+    private static final long MAX_DELTA_NANOS = 100000000;     // The max time advanced in a single call (100 ms)
 
-    private float P = 0;            // Proportional Action
-    private float I = 0;            // Integral Action
-    private float D = 0;            // Derivative Action
+    private final PIDController controller;
+    private final long periodNanos;             // The period of the PID (in nanoseconds)
+    private long accumulatedNanos = 0;          // The time elapsed from the last step of the PID
+    private float targetValue;                  // The final value of the Animation
 
 
     public PIDAnimator(float initialValue, float Kp, float Ki, float Kd, long t_millis) {
-        u = initialValue;
-        y = initialValue;
-        r = initialValue;
-        t_ms = t_millis;
-        t = t_ms / 1000.0f;
-
-        kp = Kp;
-        kd = Kd;
-        ki = Ki;
-
-        mTimer.scheduleAtFixedRate(this, 0, t_millis);
+        controller = new PIDController(initialValue, Kp, Ki, Kd, t_millis);
+        periodNanos = t_millis * 1000000;
+        targetValue = initialValue;
     }
 
 
-    public void run() {
-        handler.post(new Runnable() {
-             @Override
-             public void run() {
-                 //Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
-
-                 calculate();
-
-                  // DEBUG LOG
-//                long now = System.currentTimeMillis();
-//                if (now - prevtime > 100) {
-//                    Log.i("PIDAnimator", "UPDATE: u = " + u + " y = " + y + " r = " + r + " P = " + P + " I = " + I + " D = " + D);
-//                    prevtime = now;
-//                }
-             }
-        });
+    /**
+     * Advances the animation of the given time.
+     * The time is limited to MAX_DELTA_NANOS, in order to avoid a burst of steps after a pause.
+     *
+     * @param deltaNanos The time elapsed from the previous call (in nanoseconds)
+     */
+    public void advance(long deltaNanos) {
+        accumulatedNanos += Math.max(0, Math.min(deltaNanos, MAX_DELTA_NANOS));
+        while (accumulatedNanos >= periodNanos) {
+            controller.calculate();
+            accumulatedNanos -= periodNanos;
+        }
     }
 
 
     /**
-     * Performs a step of the discrete time PID.
+     * @return true if the value is still moving towards the target
      */
-    private void calculate() {
-        P = kp * (r - y);                               // Proportional Action
-        D = kd * (y - y_old) / t;                       // Derivative Action
+    public boolean isAnimating() {
+        return !controller.isSettled();
+    }
 
-        v = P + I + D;
-        u = Math.min(3600.0f, Math.max(v, -3600.0f));   // Simulate the saturation of the sensor
-        y_old = y;
-        y = y + 0.3f *u;
 
-        I = I + ki * (r - y) * t + kt * (u - v) * t;    // Integral Action
+    /**
+     * Stops the animation, moving the value directly to its target.
+     * It must be called when the render loop stops for a while (for example in onPause),
+     * so that the loop doesn't continue an old animation when it restarts.
+     */
+    public void cancel() {
+        controller.setValue(targetValue);
+        accumulatedNanos = 0;
     }
 
 
     /**
      * Changes the final value of the Animation to a new value.
+     * If the Animation was settled, it starts from now with its first step.
+     * Otherwise the new value is used from the next step to compute (the one after the step in progress).
      * @param setPoint The new set Point
      */
     public void setTargetValue(float setPoint) {
-        float deltar = r - setPoint;
-        //Log.i("PIDAnimator", "UPDATE: r = " + r + "    setPoint = " + setPoint);
-        if (Math.abs(deltar) > 180.0f) {
-            if (deltar < 0.0f) {
-                y += 360.0f;
-                y_old += 360.0f;
-            } else {
-                y -= 360.0f;
-                y_old -= 360.0f;
-            }
+        boolean wasAnimating = isAnimating();
+        targetValue = setPoint;
+        controller.setTargetValue(setPoint);
+        if (!wasAnimating) {
+            controller.calculate();
+            accumulatedNanos = 0;
         }
-        r = setPoint;
     }
 
     /**
@@ -124,16 +101,12 @@ public class PIDAnimator extends TimerTask {
      * @return The current value
      */
     public float getValue() {
-        return y % 360.0f;
+        return controller.getInterpolatedValue((float) accumulatedNanos / periodNanos);
     }
 
     public void setValue(float setPoint) {
-        P = 0;
-        I = 0;
-        D = 0;
-        u = setPoint;
-        y = setPoint;
-        y_old = setPoint;
-        r = setPoint;
+        targetValue = setPoint;
+        controller.setValue(setPoint);
+        accumulatedNanos = 0;
     }
 }
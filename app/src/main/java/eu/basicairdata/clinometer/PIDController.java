@@ -0,0 +1,130 @@
+/*
+ * PIDController - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+/**
+ * The discrete time PID controller used to animate the rotations of the reference axes.
+ * It simulates a saturated plant driven by the PID, whose output follows the set-point.
+ * The Class doesn't depend on Android; the PIDAnimator steps it at a fixed period.
+ */
+public class PIDController {
+
+    private float r = 0;            // Set-point
+    private float y = 0;
+    private float y_old = 0;
+    private float u = 0;            // Output Value
+    private float v = 0;
+
+    private final float t;          // The period of the discrete time PID (in seconds)
+
+    private final float kp;
+    private final float ki;
+    private final float kd;
+    private final float kt = 0.3f;  // De-saturation gain
+
+    private static final float SETTLED_THRESHOLD = 0.001f;     // Below this error (in degrees) the value is settled
+
+    private float P = 0;            // Proportional Action
+    private float I = 0;            // Integral Action
+    private float D = 0;            // Derivative Action
+
+
+    public PIDController(float initialValue, float Kp, float Ki, float Kd, long t_millis) {
+        u = initialValue;
+        y = initialValue;
+        r = initialValue;
+        t = t_millis / 1000.0f;
+
+        kp = Kp;
+        kd = Kd;
+        ki = Ki;
+    }
+
+
+    /**
+     * Performs a step of the discrete time PID.
+     */
+    public void calculate() {
+        P = kp * (r - y);                               // Proportional Action
+        D = kd * (y - y_old) / t;                       // Derivative Action
+
+        v = P + I + D;
+        u = Math.min(3600.0f, Math.max(v, -3600.0f));   // Simulate the saturation of the sensor
+        y_old = y;
+        y = y + 0.3f *u;
+
+        I = I + ki * (r - y) * t + kt * (u - v) * t;    // Integral Action
+    }
+
+
+    /**
+     * Changes the final value of the Animation to a new value.
+     * @param setPoint The new set Point
+     */
+    public void setTargetValue(float setPoint) {
+        float deltar = r - setPoint;
+        //Log.i("PIDAnimator", "UPDATE: r = " + r + "    setPoint = " + setPoint);
+        if (Math.abs(deltar) > 180.0f) {
+            if (deltar < 0.0f) {
+                y += 360.0f;
+                y_old += 360.0f;
+            } else {
+                y -= 360.0f;
+                y_old -= 360.0f;
+            }
+        }
+        r = setPoint;
+    }
+
+    /**
+     * @return true if the value has reached the set-point and it doesn't move anymore
+     */
+    public boolean isSettled() {
+        return (Math.abs(r - y) < SETTLED_THRESHOLD) && (Math.abs(y - y_old) < SETTLED_THRESHOLD);
+    }
+
+    /**
+     * Returns the current value of the Animation.
+     * @return The current value
+     */
+    public float getValue() {
+        return y % 360.0f;
+    }
+
+    /**
+     * Returns the value of the Animation between the last two steps.
+     * @param alpha The position between the previous step (0) and the last one (1)
+     * @return The interpolated value
+     */
+    public float getInterpolatedValue(float alpha) {
+        return (y_old + (y - y_old) * alpha) % 360.0f;
+    }
+
+    public void setValue(float setPoint) {
+        P = 0;
+        I = 0;
+        D = 0;
+        u = setPoint;
+        y = setPoint;
+        y_old = setPoint;
+        r = setPoint;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * SensorFusion - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+/**
+ * An estimator of the gravity vector that fuses the gyroscope with the accelerometer.
+ * It is used by the InclinationEngine in place of the accelerometer only filter:
+ * the angles are computed from the estimated gravity in the same way.
+ * The values are in the frame of the device, the accelerations already corrected
+ * by the calibration. The implementations must not allocate objects on each sample.
+ */
+public interface SensorFusion {
+
+    /**
+     * Restarts the estimation: the next accelerometer sample initializes the gravity.
+     */
+    void reset();
+
+
+    /**
+     * Processes a new gyroscope sample.
+     *
+     * @param angularRate The angular rates around X, Y, Z (in rad/s)
+     * @param timestamp The timestamp of the sample (in nanoseconds)
+     */
+    void updateGyroscope(float[] angularRate, long timestamp);
+
+
+    /**
+     * Processes a new accelerometer sample and returns the estimated gravity.
+     *
+     * @param acceleration The calibrated accelerations along X, Y, Z (in m/s²)
+     * @param timestamp The timestamp of the sample (in nanoseconds)
+     * @param gravity The array to fill with the estimated gravity (X, Y, Z, in m/s²)
+     */
+    void updateAccelerometer(float[] acceleration, long timestamp, float[] gravity);
+}
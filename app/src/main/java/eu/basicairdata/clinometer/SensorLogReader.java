@@ -0,0 +1,234 @@
+/*
+ * SensorLogReader - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the binary logs written by the SensorRecorder.
+ * The records are read sequentially with next(); the values of the current record
+ * are available through the getters.
+ * The Class doesn't depend on Android, in order to replay the logs on the JVM.
+ */
+public class SensorLogReader implements Closeable {
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long endOfData;           // The end of the valid data into the file
+    private final long creationTime;
+    private final int chunkSize;
+    private final int sensorType;
+    private final int samplingPeriodUs;
+
+    private MappedByteBuffer chunk;         // The chunk currently read
+    private long chunkPosition;             // The position of the chunk into the file
+
+    // The current record
+    private byte recordType = SensorRecorder.RECORD_END;
+    private byte recordFlags = 0;
+    private long timestamp = 0;
+    private final float[] values = {0, 0, 0, 0, 0};
+    private int accuracy = 0;
+
+
+    /**
+     * Opens a log, validating its header.
+     *
+     * @param file The file to read
+     * @throws IOException if the file cannot be read, or if it is not a valid log
+     */
+    public SensorLogReader(File file) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        channel = this.file.getChannel();
+        try {
+            if (channel.size() < SensorRecorder.HEADER_SIZE) throw new IOException("The file is too short");
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, SensorRecorder.HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(SensorRecorder.HEADER_MAGIC) != SensorRecorder.MAGIC)
+                throw new IOException("Not a Clinometer sensor log");
+            short version = header.getShort(SensorRecorder.HEADER_VERSION);
+            if ((version < 1) || (version > SensorRecorder.VERSION))
+                throw new IOException("Unsupported log version " + version);
+            int headerSize = header.getShort(SensorRecorder.HEADER_HEADER_SIZE);
+            creationTime = header.getLong(SensorRecorder.HEADER_CREATION_TIME);
+            chunkSize = header.getInt(SensorRecorder.HEADER_CHUNK_SIZE);
+            sensorType = header.getInt(SensorRecorder.HEADER_SENSOR_TYPE);
+            samplingPeriodUs = header.getInt(SensorRecorder.HEADER_SAMPLING_PERIOD);
+            if (version >= 3) {
+                // The end of the data is updated after each record: the rest of a recording
+                // not closed (for example if the app has been killed) is the unused part of the mapping
+                endOfData = header.getLong(SensorRecorder.HEADER_END_OF_DATA);
+                if ((endOfData < headerSize) || (endOfData > channel.size()))
+                    throw new IOException("Invalid end of data " + endOfData);
+            } else {
+                // A closed recording is truncated at the end of the data; otherwise
+                // the zero filled part of the last chunk marks the end
+                endOfData = channel.size();
+            }
+            if (chunkSize < SensorRecorder.MAX_RECORD_SIZE) throw new IOException("Invalid chunk size " + chunkSize);
+            mapChunk(headerSize);
+        } catch (IOException e) {
+            this.file.close();
+            throw e;
+        }
+    }
+
+
+    /**
+     * Maps the chunk of the file that starts at the given position.
+     */
+    private void mapChunk(long position) throws IOException {
+        chunkPosition = position;
+        chunk = channel.map(FileChannel.MapMode.READ_ONLY, chunkPosition,
+                Math.max(0, Math.min(chunkSize, endOfData - chunkPosition)));
+        chunk.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    /**
+     * Reads the next record.
+     *
+     * @return the type of the record read (RECORD_SENSOR_EVENT, RECORD_GYROSCOPE_EVENT or RECORD_INCLINATION),
+     *         or RECORD_END at the end of the log
+     * @throws IOException if the log contains an unknown record
+     */
+    public byte next() throws IOException {
+        while (true) {
+            if (chunk.remaining() == 0 || (chunk.remaining() < SensorRecorder.MAX_RECORD_SIZE
+                    && chunk.get(chunk.position()) == SensorRecorder.RECORD_END)) {
+                // End of the chunk: go on with the next one, if any
+                long nextChunk = chunkPosition + chunkSize;
+                if (nextChunk >= endOfData) return recordType = SensorRecorder.RECORD_END;
+                mapChunk(nextChunk);
+                continue;
+            }
+            recordType = chunk.get();
+            switch (recordType) {
+                case SensorRecorder.RECORD_SENSOR_EVENT:
+                case SensorRecorder.RECORD_GYROSCOPE_EVENT:
+                    accuracy = chunk.get();
+                    chunk.getShort();
+                    values[0] = chunk.getFloat();
+                    values[1] = chunk.getFloat();
+                    values[2] = chunk.getFloat();
+                    timestamp = chunk.getLong();
+                    return recordType;
+                case SensorRecorder.RECORD_INCLINATION:
+                    recordFlags = chunk.get();
+                    chunk.getShort();
+                    for (int i = 0; i < 5; i++) values[i] = chunk.getFloat();
+                    timestamp = chunk.getLong();
+                    return recordType;
+                case SensorRecorder.RECORD_END:
+                    return recordType;
+                default:
+                    throw new IOException("Unknown record type " + recordType
+                            + " at position " + (chunkPosition + chunk.position() - 1));
+            }
+        }
+    }
+
+
+    /**
+     * @return the type of the current record
+     */
+    public byte getRecordType() {
+        return recordType;
+    }
+
+
+    /**
+     * @return the timestamp of the current record (in nanoseconds)
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+
+    /**
+     * @return the values of the current RECORD_SENSOR_EVENT or RECORD_GYROSCOPE_EVENT.
+     *         The returned array is reused by the next records.
+     */
+    public float[] getValues() {
+        return values;
+    }
+
+
+    /**
+     * @return the accuracy of the current RECORD_SENSOR_EVENT or RECORD_GYROSCOPE_EVENT
+     */
+    public int getAccuracy() {
+        return accuracy;
+    }
+
+
+    /**
+     * @return true if the measure of the current RECORD_INCLINATION was locked
+     */
+    public boolean isLocked() {
+        return (recordFlags & SensorRecorder.FLAG_LOCKED) != 0;
+    }
+
+
+    /**
+     * Copies the current RECORD_INCLINATION into the given Inclination.
+     * The values not recorded (labels and display rotation) are left untouched.
+     *
+     * @param out The Inclination to fill
+     */
+    public void getInclination(Inclination out) {
+        out.angle[0] = values[0];
+        out.angle[1] = values[1];
+        out.angle[2] = values[2];
+        out.angleXY = values[3];
+        out.angleXYZ = values[4];
+        out.isFlat = (recordFlags & SensorRecorder.FLAG_FLAT) != 0;
+        out.timestamp = timestamp;
+    }
+
+
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+
+    public int getSensorType() {
+        return sensorType;
+    }
+
+
+    public int getSamplingPeriodUs() {
+        return samplingPeriodUs;
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        chunk = null;
+        file.close();
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * SensorRecorder - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Records the raw sensor events and the computed inclinations into an append-only
+ * binary file, written through memory-mapped chunks of the file.
+ * The records are written without allocations and without flushing: the operating
+ * system writes the mapped pages to the storage in background.
+ * The Class doesn't depend on Android; the file can be read by the SensorLogReader.
+ *
+ * <p>The format (version 3, all the values are little-endian):
+ * <pre>
+ * Header (HEADER_SIZE bytes):
+ *   0  int    MAGIC
+ *   4  short  VERSION
+ *   6  short  HEADER_SIZE
+ *   8  long   Creation time (in ms since the epoch)
+ *  16  long   End of the data (file position), updated after each record (since version 3;
+ *             for each chunk before) and on close
+ *  24  int    CHUNK_SIZE
+ *  28  int    Type of the main sensor (android.hardware.Sensor.TYPE_*)
+ *  32  int    Sampling period requested (in microseconds)
+ *  36  reserved
+ *
+ * RECORD_SENSOR_EVENT (SENSOR_EVENT_RECORD_SIZE bytes):
+ *   0  byte   RECORD_SENSOR_EVENT
+ *   1  byte   Accuracy of the event
+ *   2  short  reserved
+ *   4  float  values[0], values[1], values[2]
+ *  16  long   Timestamp of the event (in nanoseconds)
+ *
+ * RECORD_GYROSCOPE_EVENT (SENSOR_EVENT_RECORD_SIZE bytes, since version 2):
+ *   the same layout of RECORD_SENSOR_EVENT, for the events of the gyroscope (in rad/s)
+ *
+ * RECORD_INCLINATION (INCLINATION_RECORD_SIZE bytes):
+ *   0  byte   RECORD_INCLINATION
+ *   1  byte   Flags (FLAG_LOCKED, FLAG_FLAT)
+ *   2  short  reserved
+ *   4  float  angle[0], angle[1], angle[2], angleXY, angleXYZ
+ *  24  long   Timestamp of the inclination (in nanoseconds)
+ * </pre>
+ * The records start at HEADER_SIZE and never cross a chunk boundary.
+ * A zero type byte means that the rest of the chunk is empty when less than
+ * MAX_RECORD_SIZE bytes remain in the chunk, and the end of the data otherwise.
+ * The file is grown by a whole chunk when it is mapped: if the recording is not closed
+ * (for example if the app crashes) the data end at the End of the data of the header,
+ * and the rest of the file must be ignored.
+ */
+public class SensorRecorder implements Closeable {
+
+    public static final int MAGIC = 0x4D4E4C43;             // "CLNM" in little-endian
+    public static final short VERSION = 3;
+    public static final short HEADER_SIZE = 64;
+    public static final int CHUNK_SIZE = 4 * 1024 * 1024;   // The size of the mapped chunks (4 MiB, about 12 minutes at 100 Hz)
+
+    public static final byte RECORD_END = 0;
+    public static final byte RECORD_SENSOR_EVENT = 1;
+    public static final byte RECORD_INCLINATION = 2;
+    public static final byte RECORD_GYROSCOPE_EVENT = 3;
+    public static final int SENSOR_EVENT_RECORD_SIZE = 24;
+    public static final int INCLINATION_RECORD_SIZE = 32;
+    public static final int MAX_RECORD_SIZE = 32;
+
+    public static final byte FLAG_LOCKED = 1;
+    public static final byte FLAG_FLAT = 2;
+
+    // The positions of the values into the header
+    static final int HEADER_MAGIC = 0;
+    static final int HEADER_VERSION = 4;
+    static final int HEADER_HEADER_SIZE = 6;
+    static final int HEADER_CREATION_TIME = 8;
+    static final int HEADER_END_OF_DATA = 16;
+    static final int HEADER_CHUNK_SIZE = 24;
+    static final int HEADER_SENSOR_TYPE = 28;
+    static final int HEADER_SAMPLING_PERIOD = 32;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private MappedByteBuffer chunk;         // The chunk currently written
+    private long chunkPosition;             // The position of the chunk into the file
+    private boolean isClosed = false;
+
+
+    /**
+     * Creates a new recording, overwriting the given file.
+     *
+     * @param file The file to write
+     * @param sensorType The type of the main recorded sensor (android.hardware.Sensor.TYPE_*)
+     * @param samplingPeriodUs The sampling period requested to the sensor (in microseconds)
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public SensorRecorder(File file, int sensorType, int samplingPeriodUs) throws IOException {
+        this.file = new RandomAccessFile(file, "rw");
+        this.file.setLength(0);
+        channel = this.file.getChannel();
+
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(HEADER_MAGIC, MAGIC);
+        header.putShort(HEADER_VERSION, VERSION);
+        header.putShort(HEADER_HEADER_SIZE, HEADER_SIZE);
+        header.putLong(HEADER_CREATION_TIME, System.currentTimeMillis());
+        header.putLong(HEADER_END_OF_DATA, HEADER_SIZE);
+        header.putInt(HEADER_CHUNK_SIZE, CHUNK_SIZE);
+        header.putInt(HEADER_SENSOR_TYPE, sensorType);
+        header.putInt(HEADER_SAMPLING_PERIOD, samplingPeriodUs);
+
+        mapChunk(HEADER_SIZE);
+    }
+
+
+    /**
+     * Maps the chunk of the file that starts at the given position.
+     */
+    private void mapChunk(long position) throws IOException {
+        chunkPosition = position;
+        chunk = channel.map(FileChannel.MapMode.READ_WRITE, chunkPosition, CHUNK_SIZE);
+        chunk.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    /**
+     * Makes room for a record of the given size, mapping the next chunk if needed.
+     */
+    private void ensureRemaining(int size) throws IOException {
+        if (isClosed) throw new IOException("The recording is closed");
+        if (chunk.remaining() < size) {
+            // The rest of the chunk is left empty (zero filled)
+            header.putLong(HEADER_END_OF_DATA, chunkPosition + CHUNK_SIZE);
+            mapChunk(chunkPosition + CHUNK_SIZE);
+        }
+    }
+
+
+    /**
+     * Writes a raw sensor event.
+     *
+     * @param timestamp The timestamp of the event (in nanoseconds)
+     * @param values The values of the event (only the first 3 are recorded)
+     * @param accuracy The accuracy of the event
+     * @throws IOException if the next chunk of the file cannot be mapped
+     */
+    public void writeSensorEvent(long timestamp, float[] values, int accuracy) throws IOException {
+        writeEvent(RECORD_SENSOR_EVENT, timestamp, values, accuracy);
+    }
+
+
+    /**
+     * Writes a raw gyroscope event.
+     *
+     * @param timestamp The timestamp of the event (in nanoseconds)
+     * @param values The angular rates of the event (in rad/s)
+     * @param accuracy The accuracy of the event
+     * @throws IOException if the next chunk of the file cannot be mapped
+     */
+    public void writeGyroscopeEvent(long timestamp, float[] values, int accuracy) throws IOException {
+        writeEvent(RECORD_GYROSCOPE_EVENT, timestamp, values, accuracy);
+    }
+
+
+    private void writeEvent(byte recordType, long timestamp, float[] values, int accuracy) throws IOException {
+        ensureRemaining(SENSOR_EVENT_RECORD_SIZE);
+        chunk.put(recordType);
+        chunk.put((byte) accuracy);
+        chunk.putShort((short) 0);
+        chunk.putFloat(values[0]);
+        chunk.putFloat(values[1]);
+        chunk.putFloat(values[2]);
+        chunk.putLong(timestamp);
+        header.putLong(HEADER_END_OF_DATA, getLength());
+    }
+
+
+    /**
+     * Writes an inclination computed by the InclinationEngine.
+     *
+     * @param inclination The inclination to record
+     * @param isLocked true if the measure is locked
+     * @throws IOException if the next chunk of the file cannot be mapped
+     */
+    public void writeInclination(Inclination inclination, boolean isLocked) throws IOException {
+        ensureRemaining(INCLINATION_RECORD_SIZE);
+        chunk.put(RECORD_INCLINATION);
+        chunk.put((byte) ((isLocked ? FLAG_LOCKED : 0) | (inclination.isFlat ? FLAG_FLAT : 0)));
+        chunk.putShort((short) 0);
+        chunk.putFloat(inclination.angle[0]);
+        chunk.putFloat(inclination.angle[1]);
+        chunk.putFloat(inclination.angle[2]);
+        chunk.putFloat(inclination.angleXY);
+        chunk.putFloat(inclination.angleXYZ);
+        chunk.putLong(inclination.timestamp);
+        header.putLong(HEADER_END_OF_DATA, getLength());
+    }
+
+
+    /**
+     * @return the length of the recorded data, header included (in bytes)
+     */
+    public long getLength() {
+        return chunkPosition + chunk.position();
+    }
+
+
+    /**
+     * Closes the recording, writing the end of the data into the header
+     * and truncating the unused part of the last chunk.
+     */
+    @Override
+    public void close() throws IOException {
+        if (isClosed) return;
+        isClosed = true;
+        long length = getLength();
+        header.putLong(HEADER_END_OF_DATA, length);
+        chunk = null;
+        try {
+            channel.truncate(length);
+        } finally {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * SensorRingBuffer - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+/**
+ * A circular buffer of sensor samples (accelerometer and gyroscope), stored into primitive arrays.
+ * It accumulates the events delivered by the sensor (in bursts, when the hardware FIFO is used)
+ * so that they can be processed in blocks.
+ * The Class doesn't allocate objects after the creation, and it is not thread safe:
+ * it must be used by a single thread.
+ */
+public class SensorRingBuffer {
+
+    private final int capacity;
+    private final int[] sensorTypes;    // The types of the sensors of the samples (android.hardware.Sensor.TYPE_*)
+    private final long[] timestamps;
+    private final float[] values;       // The values of the samples (X, Y, Z), 3 for each sample
+    private int head = 0;               // The index of the oldest sample
+    private int size = 0;               // The number of samples into the buffer
+
+
+    /**
+     * Creates a new buffer.
+     *
+     * @param capacity The maximum number of samples
+     */
+    public SensorRingBuffer(int capacity) {
+        this.capacity = capacity;
+        sensorTypes = new int[capacity];
+        timestamps = new long[capacity];
+        values = new float[3 * capacity];
+    }
+
+
+    /**
+     * Adds a sample to the buffer. If the buffer is full, the oldest sample is overwritten.
+     *
+     * @param sensorType The type of the sensor (android.hardware.Sensor.TYPE_*)
+     * @param timestamp The timestamp of the sample (in nanoseconds)
+     * @param sample The values of the sensor (X, Y, Z)
+     */
+    public void add(int sensorType, long timestamp, float[] sample) {
+        int index = head + size;
+        if (index >= capacity) index -= capacity;
+        if (size == capacity) {
+            head++;
+            if (head == capacity) head = 0;
+        } else size++;
+        sensorTypes[index] = sensorType;
+        timestamps[index] = timestamp;
+        values[3 * index] = sample[0];
+        values[3 * index + 1] = sample[1];
+        values[3 * index + 2] = sample[2];
+    }
+
+
+    /**
+     * Removes the oldest sample from the buffer.
+     *
+     * @param sample The array to fill with the values of the sensor (X, Y, Z)
+     * @return the timestamp of the sample (in nanoseconds)
+     */
+    public long poll(float[] sample) {
+        if (size == 0) throw new IllegalStateException("The buffer is empty");
+        long timestamp = timestamps[head];
+        sample[0] = values[3 * head];
+        sample[1] = values[3 * head + 1];
+        sample[2] = values[3 * head + 2];
+        head++;
+        if (head == capacity) head = 0;
+        size--;
+        return timestamp;
+    }
+
+
+    /**
+     * @return the type of the sensor of the oldest sample into the buffer (android.hardware.Sensor.TYPE_*)
+     */
+    public int getOldestSensorType() {
+        if (size == 0) throw new IllegalStateException("The buffer is empty");
+        return sensorTypes[head];
+    }
+
+
+    /**
+     * @return the timestamp of the oldest sample into the buffer (in nanoseconds)
+     */
+    public long getOldestTimestamp() {
+        if (size == 0) throw new IllegalStateException("The buffer is empty");
+        return timestamps[head];
+    }
+
+
+    public int size() {
+        return size;
+    }
+
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+}
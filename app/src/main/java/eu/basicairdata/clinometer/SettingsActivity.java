@@ -22,12 +22,17 @@
 package eu.basicairdata.clinometer;
 
 import android.Manifest;
+import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
+import android.hardware.Sensor;
+import android.hardware.SensorManager;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.util.Log;
 import android.view.WindowManager;
 import android.widget.Toast;
@@ -68,6 +73,7 @@ import static eu.basicairdata.clinometer.ClinometerApplication.KEY_PREF_CAMERA_E
 import static eu.basicairdata.clinometer.ClinometerApplication.KEY_PREF_CAMERA_PERMISSION;
 import static eu.basicairdata.clinometer.ClinometerApplication.KEY_PREF_KEEP_SCREEN_ON;
 import static eu.basicairdata.clinometer.ClinometerApplication.KEY_PREF_ONLINE_HELP;
+import static eu.basicairdata.clinometer.ClinometerApplication.KEY_PREF_SENSOR_FUSION;
 
 
 public class SettingsActivity extends AppCompatActivity {
@@ -75,6 +81,10 @@ public class SettingsActivity extends AppCompatActivity {
     private ClinometerApplication clinometerApplication;
     SettingsFragment settingsFragment = new SettingsFragment();
 
+    private HandlerThread cameraThread;                 // The thread that scans the Cameras
+    private Handler cameraHandler;                      // The Handler of the camera thread
+    private final Handler mHandler = new Handler();
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -94,7 +104,18 @@ public class SettingsActivity extends AppCompatActivity {
             actionBar.setDisplayHomeAsUpEnabled(true);
         }
 
-        clinometerApplication.scanCameras();
+        cameraThread = new HandlerThread("CameraThread");
+        cameraThread.start();
+        cameraHandler = new Handler(cameraThread.getLooper());
+        cameraHandler.post(scanCamerasRunnable);
+    }
+
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mHandler.removeCallbacksAndMessages(null);
+        cameraThread.quitSafely();
     }
 
 
@@ -112,13 +133,27 @@ public class SettingsActivity extends AppCompatActivity {
         if (requestCode == CAMERA_REQUEST_CODE) {
             Log.w("SettingsActivity", "onRequestPermissionsResult()");
             if ((grantResults.length > 0) && (grantResults[0] == PackageManager.PERMISSION_GRANTED)) {
-                clinometerApplication.scanCameras();
-                settingsFragment.updatePreferences();
+                cameraHandler.post(scanCamerasRunnable);
             }
         }
     }
 
 
+    /** Scans the Cameras on the camera thread, then updates the Preferences */
+    private final Runnable scanCamerasRunnable = new Runnable() {
+        @Override
+        public void run() {
+            clinometerApplication.scanCameras();
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (settingsFragment.isResumed()) settingsFragment.updatePreferences();     // Otherwise updated by onResume()
+                }
+            });
+        }
+    };
+
+
     public static class SettingsFragment extends PreferenceFragmentCompat {
 
         private ClinometerApplication clinometerApplication;
@@ -133,6 +168,7 @@ public class SettingsActivity extends AppCompatActivity {
         Preference preferenceOnlineHelp;
         Preference preferenceCameraPermission;
         Preference preferenceResetCalibration;
+        ListPreference preferenceSensorFusion;
 
 
         @Override
@@ -175,6 +211,7 @@ public class SettingsActivity extends AppCompatActivity {
 
             preferenceExposureCompensation = findPreference(KEY_PREF_CAMERA_EXPOSURE_COMPENSATION);
             preferenceCalibration = findPreference(KEY_PREF_CALIBRATION);
+            preferenceSensorFusion = findPreference(KEY_PREF_SENSOR_FUSION);
 
             preferenceAbout = findPreference(KEY_PREF_ABOUT);
             preferenceAbout.setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
@@ -280,6 +317,17 @@ public class SettingsActivity extends AppCompatActivity {
             }
             setupCameraPreference();
             setupCompensationPreference();
+            setupSensorFusionPreference();
+        }
+
+
+        private void setupSensorFusionPreference() {
+            SensorManager sensorManager = (SensorManager) getActivity().getSystemService(Context.SENSOR_SERVICE);
+            if (sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE) == null) {
+                // The Device has NO Gyroscope: the accelerometer only is used
+                preferenceSensorFusion.setEnabled(false);
+                preferenceSensorFusion.setSummary(getString(R.string.pref_sensor_fusion_no_gyroscope));
+            }
         }
 
 
@@ -0,0 +1,140 @@
+/*
+ * YuvConverter - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The conversion of the YUV frames of the camera preview into RGBA pixels:
+ * the NV21 arrays of android.hardware.Camera and the YUV_420_888 planes of Camera2,
+ * used to freeze the camera image when a measure is locked.
+ * The pixels are written with the memory layout of a Bitmap.Config.ARGB_8888 (the bytes
+ * R, G, B, A, that is the int 0xAABBGGRR on the little-endian CPUs of Android), so that
+ * they can be moved into the Bitmap with copyPixelsFromBuffer, a plain copy of the memory,
+ * instead of setPixels, that converts each pixel.
+ * The colors are converted with the full range (JFIF) YCbCr coefficients,
+ * the same used by the JPEG encoder of YuvImage, in 16.16 fixed point.
+ * The loops have no allocations and no calls, and they process each pair of pixels
+ * that shares the same chroma sample together.
+ */
+public class YuvConverter {
+
+    private static final int SHIFT = 16;
+    private static final int HALF = 1 << (SHIFT - 1);      // For the rounding
+    private static final int CR_R = 91881;                  // 1.402    * 2^16
+    private static final int CB_G = 22554;                  // 0.344136 * 2^16
+    private static final int CR_G = 46802;                  // 0.714136 * 2^16
+    private static final int CB_B = 116130;                 // 1.772    * 2^16
+
+    private YuvConverter() {}
+
+
+    /**
+     * @return the size of the NV21 buffer of a frame of the given size
+     */
+    public static int getNV21Size(int width, int height) {
+        return width * height * 3 / 2;
+    }
+
+
+    /**
+     * Converts a NV21 frame into opaque RGBA pixels, row by row, without rotation.
+     * The width and the height must be even, as for all the preview sizes of the camera.
+     *
+     * @param nv21 The frame: the Y plane followed by the interleaved V and U samples
+     * @param width The width of the frame (in pixels)
+     * @param height The height of the frame (in pixels)
+     * @param rgba The array where to write the pixels, of at least width * height elements
+     */
+    public static void nv21ToRgba(byte[] nv21, int width, int height, int[] rgba) {
+        final int frameSize = width * height;
+        for (int row = 0; row < height; row++) {
+            int yIndex = row * width;
+            int uvIndex = frameSize + (row >> 1) * width;
+            final int rowEnd = yIndex + width;
+            while (yIndex < rowEnd) {
+                final int v = (nv21[uvIndex++] & 0xFF) - 128;
+                final int u = (nv21[uvIndex++] & 0xFF) - 128;
+                final int dr = CR_R * v + HALF;
+                final int dg = - CB_G * u - CR_G * v + HALF;
+                final int db = CB_B * u + HALF;
+
+                int y = (nv21[yIndex] & 0xFF) << SHIFT;
+                rgba[yIndex++] = toRgba((y + dr) >> SHIFT, (y + dg) >> SHIFT, (y + db) >> SHIFT);
+                y = (nv21[yIndex] & 0xFF) << SHIFT;
+                rgba[yIndex++] = toRgba((y + dr) >> SHIFT, (y + dg) >> SHIFT, (y + db) >> SHIFT);
+            }
+        }
+    }
+
+
+    /**
+     * Converts a YUV_420_888 frame into opaque RGBA pixels, row by row, without rotation.
+     * The planes are read in place, as given by Image.getPlanes(); the pixel stride
+     * of the Y plane is always 1, the one of the chroma planes can be 1 (planar) or 2 (semi-planar).
+     * The width and the height must be even.
+     *
+     * @param yPlane The buffer of the Y plane
+     * @param yRowStride The row stride of the Y plane (in bytes)
+     * @param uPlane The buffer of the U (Cb) plane
+     * @param vPlane The buffer of the V (Cr) plane
+     * @param uvRowStride The row stride of the chroma planes (in bytes)
+     * @param uvPixelStride The pixel stride of the chroma planes (in bytes)
+     * @param width The width of the frame (in pixels)
+     * @param height The height of the frame (in pixels)
+     * @param rgba The array where to write the pixels, of at least width * height elements
+     */
+    public static void yuv420ToRgba(ByteBuffer yPlane, int yRowStride, ByteBuffer uPlane, ByteBuffer vPlane,
+                                    int uvRowStride, int uvPixelStride, int width, int height, int[] rgba) {
+        int index = 0;
+        for (int row = 0; row < height; row++) {
+            int yIndex = row * yRowStride;
+            int uvIndex = (row >> 1) * uvRowStride;
+            final int rowEnd = index + width;
+            while (index < rowEnd) {
+                final int v = (vPlane.get(uvIndex) & 0xFF) - 128;
+                final int u = (uPlane.get(uvIndex) & 0xFF) - 128;
+                uvIndex += uvPixelStride;
+                final int dr = CR_R * v + HALF;
+                final int dg = - CB_G * u - CR_G * v + HALF;
+                final int db = CB_B * u + HALF;
+
+                int y = (yPlane.get(yIndex++) & 0xFF) << SHIFT;
+                rgba[index++] = toRgba((y + dr) >> SHIFT, (y + dg) >> SHIFT, (y + db) >> SHIFT);
+                y = (yPlane.get(yIndex++) & 0xFF) << SHIFT;
+                rgba[index++] = toRgba((y + dr) >> SHIFT, (y + dg) >> SHIFT, (y + db) >> SHIFT);
+            }
+        }
+    }
+
+
+    /**
+     * @return the opaque RGBA color (0xAABBGGRR) of the given components, clamped into 0..255
+     */
+    private static int toRgba(int r, int g, int b) {
+        if (((r | g | b) & ~0xFF) != 0) {
+            r = r < 0 ? 0 : (r > 255 ? 255 : r);
+            g = g < 0 ? 0 : (g > 255 ? 255 : g);
+            b = b < 0 ? 0 : (b > 255 ? 255 : b);
+        }
+        return 0xFF000000 | (b << 16) | (g << 8) | r;
+    }
+}
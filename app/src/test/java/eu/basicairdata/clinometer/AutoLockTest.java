@@ -0,0 +1,163 @@
+/*
+ * AutoLockTest - JUnit Test Class
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package eu.basicairdata.clinometer;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the statistical Auto-Locking of the InclinationEngine (isSteadySequential):
+ * the chi-square distribution against reference values, and the locks on synthetic streams,
+ * where a steady device must be locked before the full window (isSteadyWindow) and a device
+ * that drifts slowly must never be locked by the sequential test.
+ * The streams roll the device around its Y axis at a constant pitch: the gyroscope measures
+ * then (0, -roll rate, 0) in the frame of the device.
+ */
+public class AutoLockTest {
+
+    private static final float AUTOLOCK_TOLERANCE = 0.275f;             // The default tolerance of the Auto-Locking
+    private static final double GRAVITY = 9.80665;
+    private static final double NOISE = 0.02;                           // The noise of the accelerometers (in m/s²)
+    private static final double GYROSCOPE_NOISE = 0.001;                // The noise of the gyroscope (in rad/s)
+    private static final double RATE = 100;                             // The sample rate (in Hz)
+    private static final double ROLL = 10;
+    private static final double PITCH = 5;
+    private static final int SEEDS = 10;
+
+
+    @Test
+    public void chiSquareMatchesTheReferenceValues() {
+        // {x, dof, P(chi-square < x)}, from the tables of the chi-square distribution
+        double[][] references = {
+                {3.841459, 1, 0.95}, {18.307038, 10, 0.95}, {0.003932, 1, 0.05}, {3.940299, 10, 0.05},
+                {0.454936, 1, 0.5}, {9.341818, 10, 0.5}, {6.634897, 1, 0.99}, {23.209251, 10, 0.99},
+                {0.554300, 5, 0.01}, {11.070498, 5, 0.95}, {67.504807, 50, 0.95}, {34.764252, 50, 0.05} };
+        for (double[] reference : references) {
+            assertEquals("x=" + reference[0] + " dof=" + reference[1], reference[2],
+                    InclinationEngine.chiSquareProbability(reference[0], reference[1]), 1E-5);
+        }
+        // 2 degrees of freedom: P = 1 - exp(-x / 2), also for the not integer dof used by the test
+        for (double x = 0.01; x < 40; x *= 1.1) {
+            assertEquals("x=" + x, 1 - Math.exp(-x / 2), InclinationEngine.chiSquareProbability(x, 2), 1E-9);
+        }
+        assertEquals(0, InclinationEngine.chiSquareProbability(0, 3), 0);
+        assertEquals(0, InclinationEngine.chiSquareProbability(-1, 3), 0);
+        // Monotonic, in [0, 1], for the effective sizes of the Auto-Locking
+        for (double dof = 0.1; dof < 200; dof *= 1.3) {
+            double previous = 0;
+            for (double x = 1E-3; x < 10 * dof + 50; x *= 1.05) {
+                double p = InclinationEngine.chiSquareProbability(x, dof);
+                assertTrue("x=" + x + " dof=" + dof + " P=" + p, (p >= previous - 1E-12) && (p <= 1));
+                previous = p;
+            }
+        }
+    }
+
+
+    @Test
+    public void logGammaMatchesTheFactorials() {
+        double factorial = 1;
+        for (int n = 1; n <= 30; n++) {
+            assertEquals("n=" + n, Math.log(factorial), InclinationEngine.logGamma(n), 1E-9 * Math.max(1, Math.log(factorial)));
+            factorial *= n;
+        }
+        assertEquals(0.5 * Math.log(Math.PI), InclinationEngine.logGamma(0.5), 1E-9);
+        assertEquals(Math.log(0.75 * Math.sqrt(Math.PI)), InclinationEngine.logGamma(2.5), 1E-9);
+    }
+
+
+    /**
+     * Processes a stream that rolls the device at the given rate, checking the rules of the
+     * Auto-Locking before each event (as onSensorChanged).
+     *
+     * @return the indexes of the first events locked by isSteadySequential and by isSteadyWindow,
+     *         -1 if never, and the maximum error of the angles locked by isSteadySequential
+     */
+    private static double[] firstLocks(int sensorFusion, double rollRate, long seed, int samples) {
+        Random random = new Random(seed);
+        InclinationEngine inclinationEngine = new InclinationEngine();
+        inclinationEngine.setSensorFusion(sensorFusion);
+        Inclination inclination = new Inclination();
+        float[] values = new float[3];
+        float[] angularRate = new float[3];
+        double sequential = -1;
+        double window = -1;
+        double error = 0;
+        for (int i = 0; i < samples; i++) {
+            long timestamp = 1000000000L + Math.round(i * 1E9 / RATE);
+            double r = Math.toRadians(ROLL + rollRate * i / RATE);
+            double p = Math.toRadians(PITCH);
+            values[0] = (float) (GRAVITY * Math.cos(p) * Math.sin(r) + NOISE * random.nextGaussian());
+            values[1] = (float) (GRAVITY * Math.sin(p) + NOISE * random.nextGaussian());
+            values[2] = (float) (GRAVITY * Math.cos(p) * Math.cos(r) + NOISE * random.nextGaussian());
+            angularRate[0] = (float) (GYROSCOPE_NOISE * random.nextGaussian());
+            angularRate[1] = (float) (-Math.toRadians(rollRate) + GYROSCOPE_NOISE * random.nextGaussian());
+            angularRate[2] = (float) (GYROSCOPE_NOISE * random.nextGaussian());
+            inclinationEngine.updateGyroscope(angularRate, timestamp);
+
+            if ((sequential < 0) && inclinationEngine.isSteadySequential(AUTOLOCK_TOLERANCE, true)) {
+                sequential = i;
+                inclinationEngine.getInclination(inclination);
+                double[] trueAngles = {
+                        Math.toDegrees(Math.asin(Math.cos(p) * Math.sin(r))),
+                        Math.toDegrees(Math.asin(Math.sin(p))),
+                        Math.toDegrees(Math.asin(Math.cos(p) * Math.cos(r))) };
+                for (int k = 0; k < 3; k++) error = Math.max(error, Math.abs(inclination.angle[k] - trueAngles[k]));
+            }
+            if ((window < 0) && inclinationEngine.isSteadyWindow(AUTOLOCK_TOLERANCE, true)) window = i;
+            inclinationEngine.update(values, timestamp, inclination);
+        }
+        return new double[] {sequential, window, error};
+    }
+
+
+    @Test
+    public void steadyDeviceLocksBeforeTheFullWindow() {
+        for (int sensorFusion : new int[] {InclinationEngine.SENSOR_FUSION_COMPLEMENTARY, InclinationEngine.SENSOR_FUSION_KALMAN}) {
+            for (long seed = 1; seed <= SEEDS; seed++) {
+                double[] locks = firstLocks(sensorFusion, 0, seed, 500);
+                String description = "fusion " + sensorFusion + ", seed " + seed + ": sequential " + locks[0] + ", window " + locks[1];
+                assertTrue(description, locks[1] >= 0);
+                assertTrue(description, (locks[0] >= 0) && (locks[0] < locks[1]));
+                assertTrue(description + ", error " + locks[2], locks[2] < AUTOLOCK_TOLERANCE);
+            }
+        }
+    }
+
+
+    @Test
+    public void slowDriftIsNotLocked() {
+        for (int sensorFusion : new int[] {InclinationEngine.SENSOR_FUSION_NONE,
+                InclinationEngine.SENSOR_FUSION_COMPLEMENTARY, InclinationEngine.SENSOR_FUSION_KALMAN}) {
+            for (double rollRate : new double[] {0.25, 0.5, 2}) {
+                for (long seed = 1; seed <= SEEDS; seed++) {
+                    double[] locks = firstLocks(sensorFusion, rollRate, seed, 1000);
+                    assertEquals("fusion " + sensorFusion + ", " + rollRate + " deg/s, seed " + seed, -1, locks[0], 0);
+                }
+            }
+        }
+    }
+}
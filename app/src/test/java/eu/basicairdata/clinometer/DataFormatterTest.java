@@ -0,0 +1,160 @@
+/*
+ * DataFormatterTest - JUnit Test Class
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package eu.basicairdata.clinometer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the data written by DataFormatter are identical to the ones of the previous
+ * implementation, that used String.format, for all the units of measurement.
+ * The fractional slopes are compared with the previous algorithm (the unbounded continued fraction)
+ * on the whole 0.01° grid and on arbitrary angles between -90° and 90°.
+ */
+public class DataFormatterTest {
+
+    private DataFormatter dataFormatter;
+
+
+    @Before
+    public void setUp() {
+        dataFormatter = new DataFormatter("°", "%");
+        dataFormatter.setUM(DataFormatter.UM_FRACTIONAL);
+    }
+
+
+    /** The previous implementation of the fractional format, used as reference */
+    private static String referenceFraction(float number) {
+        double x = (float) Math.tan(Math.toRadians(number));
+        double xx = Math.abs(x);
+        boolean isNegative = x != Math.abs(x);
+        double tolerance = 1.0E-2;
+        double h1 = 1;
+        double h2 = 0;
+        double k1 = 0;
+        double k2 = 1;
+        double b = xx;
+        do {
+            double a = Math.floor(b);
+            double aux = h1;
+            h1 = a * h1 + h2;
+            h2 = aux;
+            aux = k1;
+            k1 = a * k1 + k2;
+            k2 = aux;
+            b = 1 / (b - a);
+        } while (Math.abs(xx - h1 / k1) > xx * tolerance);
+
+        if (k1 > 1000) return "0";
+        if (h1 > 1000) return isNegative ? "<<" : ">>";
+        return (isNegative ? "-" : "") + String.format(Locale.getDefault(), "%.0f", h1) + ":"
+                + String.format(Locale.getDefault(), "%.0f", k1);
+    }
+
+
+    /** The previous implementation of the other units of measurement, used as reference */
+    private static String reference(int um, float number) {
+        switch (um) {
+            case DataFormatter.UM_DEGREES:
+                return String.format(Locale.getDefault(), "%.1f", number) + "°";
+            case DataFormatter.UM_RADIANS:
+                return String.format(Locale.getDefault(), "%.2f", Math.toRadians(number));
+            case DataFormatter.UM_PERCENT:
+                float percent;
+                if (number == 90) percent = 1000;
+                else if (number == -90) percent = -1000;
+                else percent = (float) Math.tan(Math.toRadians(number)) * 100.0f;
+                if (percent >= 1000) return ">>";
+                if (percent <= -1000) return "<<";
+                if (Math.abs(percent) < 100) return String.format(Locale.getDefault(), "%.1f", percent) + "%";
+                return String.format(Locale.getDefault(), "%.0f", percent) + "%";
+            default:
+                return referenceFraction(number);
+        }
+    }
+
+
+    private void assertSameFraction(float angle) {
+        assertEquals("angle=" + angle, referenceFraction(angle), dataFormatter.format(angle));
+    }
+
+
+    private void assertSame(int um, float angle) {
+        assertEquals("um=" + um + " angle=" + angle, reference(um, angle), dataFormatter.format(angle));
+    }
+
+
+    @Test
+    public void fractionMatchesOnTheTableGrid() {
+        for (int i = 0; i <= 9000; i++) {
+            float angle = (float) i / 100;
+            assertSameFraction(angle);
+            assertSameFraction(-angle);
+        }
+    }
+
+
+    @Test
+    public void fractionMatchesOffTheTableGrid() {
+        Random random = new Random(6);
+        for (int i = 0; i < 1000000; i++) {
+            assertSameFraction((random.nextFloat() * 2 - 1) * 90);
+        }
+        // Small angles, where the denominator changes every few hundredths of a degree
+        for (int i = 0; i < 200000; i++) {
+            assertSameFraction((random.nextFloat() * 2 - 1) * 2);
+        }
+    }
+
+
+    @Test
+    public void fractionMatchesOnTheKnownCases() {
+        float[] angles = { 0f, -0f, 0.001f, -0.001f, 0.17241073f, -0.17241073f, 0.005f, -0.005f,
+                45f, -45f, 89.99f, -89.99f, 90f, -90f, Math.nextDown(90f), Math.nextUp(-90f) };
+        for (float angle : angles) assertSameFraction(angle);
+        assertEquals("0", dataFormatter.format(-0.001f));
+        assertEquals(referenceFraction(0.17241073f), dataFormatter.format(0.17241073f));
+    }
+
+
+    @Test
+    public void otherUnitsMatch() {
+        int[] ums = { DataFormatter.UM_DEGREES, DataFormatter.UM_RADIANS, DataFormatter.UM_PERCENT };
+        float[] angles = { 0f, -0f, 0.04f, -0.04f, 0.05f, -0.05f, 0.25f, 44.95f, 45f, -45f, 84.29f, 84.3f,
+                89.99f, -89.99f, 90f, -90f, 179.95f, -179.95f, 180f, -180f };
+        Random random = new Random(7);
+        for (int um : ums) {
+            dataFormatter.setUM(um);
+            for (float angle : angles) assertSame(um, angle);
+            for (int i = 0; i <= 18000; i++) {
+                assertSame(um, (float) i / 100);
+                assertSame(um, -(float) i / 100);
+            }
+            for (int i = 0; i < 300000; i++) assertSame(um, (random.nextFloat() * 2 - 1) * 180);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * InclinationEngineTest - JUnit Test Class
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package eu.basicairdata.clinometer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks InclinationEngine.atan2Degrees and InclinationEngine.computeAngles against
+ * Math.atan2 (in double precision) on a grid of angles, and on the boundaries:
+ * ±0, the axes (x = 0 and y = 0), ±90° and ±180°.
+ */
+public class InclinationAnglesTest {
+
+    // The documented bound of the polynomial (2E-8 rad), in degrees
+    private static final double POLYNOMIAL_ERROR = Math.toDegrees(2E-8);
+    // The bound of computeAngles, that includes the rounding of the float norms
+    private static final double ANGLES_ERROR = 1E-4;
+
+    private static final float[] SPECIAL = {0f, -0f, 1f, -1f, Float.MIN_VALUE, -Float.MIN_VALUE, 1E-30f, -1E-30f, 9.80665f, -9.80665f, 1E30f, -1E30f};
+
+
+    /** The difference between two angles on the circle (in degrees) */
+    private static double difference(double a, double b) {
+        double d = Math.abs(a - b) % 360;
+        return Math.min(d, 360 - d);
+    }
+
+
+    /** Checks one value of atan2Degrees and returns its error from Math.atan2 */
+    private static double checkAtan2(float y, float x) {
+        float result = InclinationEngine.atan2Degrees(y, x);
+        assertTrue("atan2Degrees(" + y + ", " + x + ") = " + result, (result >= -180) && (result <= 180));
+        if ((x == 0) && (y == 0)) {
+            // The null vector is documented as 0, whatever the signs of the zeros (Math.atan2 gives 0 or ±180)
+            assertEquals(0, result, 0);
+            return 0;
+        }
+        double error = difference(result, Math.toDegrees(Math.atan2(y, x)));
+        // The result is rounded to a float: half an ulp is added to the bound of the polynomial
+        assertTrue("atan2Degrees(" + y + ", " + x + ") = " + result + ", error " + error,
+                error <= POLYNOMIAL_ERROR + Math.ulp(result) / 2);
+        return error;
+    }
+
+
+    @Test
+    public void atan2DegreesGrid() {
+        double maxError = 0;
+        // Every 0.01° on the circle, with two radii
+        for (int i = -18000; i <= 18000; i++) {
+            double a = Math.toRadians(i * 0.01);
+            for (double radius : new double[] {1, 9.80665}) {
+                maxError = Math.max(maxError, checkAtan2((float) (radius * Math.sin(a)), (float) (radius * Math.cos(a))));
+            }
+        }
+        assertTrue("max error " + maxError, maxError < 2E-5);
+    }
+
+
+    @Test
+    public void atan2DegreesBoundaries() {
+        for (float y : SPECIAL) {
+            for (float x : SPECIAL) checkAtan2(y, x);
+        }
+
+        assertEquals(0, InclinationEngine.atan2Degrees(0f, 0f), 0);
+        assertEquals(0, InclinationEngine.atan2Degrees(0f, 1f), 0);
+        assertEquals(90, InclinationEngine.atan2Degrees(1f, 0f), 0);
+        assertEquals(-90, InclinationEngine.atan2Degrees(-1f, 0f), 0);
+        assertEquals(180, InclinationEngine.atan2Degrees(0f, -1f), 0);
+        assertEquals(45, InclinationEngine.atan2Degrees(1f, 1f), 1E-5);
+        assertEquals(-135, InclinationEngine.atan2Degrees(-1f, -1f), 1E-5);
+        // The sign of the zero is not kept: -0 on the negative X axis is 180°, not -180°
+        assertEquals(180, InclinationEngine.atan2Degrees(-0f, -1f), 0);
+        assertEquals(0, InclinationEngine.atan2Degrees(-0f, -0f), 0);
+        assertEquals(90, InclinationEngine.atan2Degrees(1f, -0f), 0);
+    }
+
+
+    /** Checks computeAngles for the given vector, with the atan2 formulas in double precision */
+    private static void checkAngles(float gx, float gy, float gz, Inclination inclination) {
+        InclinationEngine.computeAngles(new float[] {gx, gy, gz}, inclination);
+        String vector = "(" + gx + ", " + gy + ", " + gz + ")";
+        double x = gx;
+        double y = gy;
+        double z = gz;
+        double xy = Math.sqrt(x * x + y * y);
+        assertEquals("angle[0] of " + vector, Math.toDegrees(Math.atan2(x, Math.sqrt(y * y + z * z))), inclination.angle[0], ANGLES_ERROR);
+        assertEquals("angle[1] of " + vector, Math.toDegrees(Math.atan2(y, Math.sqrt(x * x + z * z))), inclination.angle[1], ANGLES_ERROR);
+        if (xy > 0) {
+            assertEquals("angle[2] of " + vector, Math.toDegrees(Math.atan2(z, xy)), inclination.angle[2], ANGLES_ERROR);
+            assertEquals("angleXYZ of " + vector, Math.toDegrees(Math.atan2(xy, z)), inclination.angleXYZ, ANGLES_ERROR);
+            assertTrue("angleXY of " + vector + " = " + inclination.angleXY, (inclination.angleXY > 0) && (inclination.angleXY <= 360));
+            assertEquals("angleXY of " + vector, 0, difference(Math.toDegrees(Math.atan2(-y, x)), inclination.angleXY), ANGLES_ERROR);
+        } else {
+            // A vertical vector
+            assertEquals("angle[2] of " + vector, Math.signum(z) * 90, inclination.angle[2], 0);
+            assertEquals("angleXYZ of " + vector, 0, inclination.angleXYZ, 0);
+            assertEquals("angleXY of " + vector, 0, inclination.angleXY, 0);
+        }
+    }
+
+
+    @Test
+    public void computeAnglesGrid() {
+        Inclination inclination = new Inclination();
+        // Every 0.5° of polar and azimuth angle, on the whole sphere
+        for (int polar = 0; polar <= 360; polar++) {
+            double p = Math.toRadians(polar * 0.5);
+            for (int azimuth = 0; azimuth < 720; azimuth++) {
+                double a = Math.toRadians(azimuth * 0.5);
+                checkAngles((float) (9.80665 * Math.sin(p) * Math.cos(a)), (float) (9.80665 * Math.sin(p) * Math.sin(a)),
+                        (float) (9.80665 * Math.cos(p)), inclination);
+            }
+        }
+    }
+
+
+    @Test
+    public void computeAnglesBoundaries() {
+        Inclination inclination = new Inclination();
+        float[] components = {0f, -0f, 1f, -1f, 9.80665f, -9.80665f, 1E-3f, -1E-3f};
+        for (float gx : components) {
+            for (float gy : components) {
+                for (float gz : components) checkAngles(gx, gy, gz, inclination);
+            }
+        }
+
+        // The positive X axis is 360°, the angles along the axes are exact
+        checkAngles(9.80665f, 0f, 0f, inclination);
+        assertEquals(360, inclination.angleXY, 0);
+        assertEquals(90, inclination.angle[0], 0);
+        assertEquals(90, inclination.angleXYZ, 0);
+        checkAngles(9.80665f, -0f, 0f, inclination);
+        assertEquals(360, inclination.angleXY, 0);
+        checkAngles(0f, -9.80665f, 0f, inclination);
+        assertEquals(90, inclination.angleXY, 0);
+        assertEquals(-90, inclination.angle[1], 0);
+        checkAngles(-9.80665f, 0f, 0f, inclination);
+        assertEquals(180, inclination.angleXY, 0);
+        assertEquals(-90, inclination.angle[0], 0);
+        checkAngles(-9.80665f, -0f, 0f, inclination);
+        assertEquals(180, inclination.angleXY, 0);
+        checkAngles(0f, 9.80665f, 0f, inclination);
+        assertEquals(270, inclination.angleXY, 0);
+        checkAngles(0f, 0f, -9.80665f, inclination);
+        assertEquals(-90, inclination.angle[2], 0);
+        assertEquals(0, inclination.angle[0], 0);
+        assertEquals(0, inclination.angle[1], 0);
+    }
+}
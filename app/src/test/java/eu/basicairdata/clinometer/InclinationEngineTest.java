@@ -0,0 +1,107 @@
+/*
+ * InclinationEngineTest - JUnit Test Class
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package eu.basicairdata.clinometer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the measurement of the sample rate of the InclinationEngine:
+ * the gaps in the stream of the samples (the measure locked, the app paused or
+ * the screen off) must not be measured as a low sample rate.
+ */
+public class InclinationEngineTest {
+
+    private static final long PERIOD_NANOS = 10000000;          // 100 Hz
+    private static final float[] GRAVITY = {1.7f, 0.2f, 9.65f};
+
+    private long timestamp = 1000000000L;
+
+
+    /** Feeds the engine with the given number of samples at 100 Hz */
+    private void feed(InclinationEngine engine, int samples) {
+        Inclination inclination = new Inclination();
+        for (int i = 0; i < samples; i++) {
+            timestamp += PERIOD_NANOS;
+            engine.update(GRAVITY, timestamp, inclination);
+        }
+    }
+
+
+    @Test
+    public void gapsAreNotMeasured() {
+        InclinationEngine engine = new InclinationEngine();
+        feed(engine, 300);
+        int windowSize = engine.getAngleMeanVariance(0).getSize();
+        assertEquals(100, engine.getSampleRate(), 0);
+
+        for (long gapNanos : new long[] { 200000000L, 5000000000L, 60000000000L }) {
+            timestamp += gapNanos;
+            // Checked before a new measurement of 1 second can correct a wrong rate
+            for (int i = 0; i < 50; i++) {
+                feed(engine, 1);
+                assertEquals("gap of " + gapNanos + " ns", 100, engine.getSampleRate(), 0);
+                assertEquals("gap of " + gapNanos + " ns", windowSize, engine.getAngleMeanVariance(0).getSize());
+            }
+            feed(engine, 250);
+        }
+    }
+
+
+    @Test
+    public void restartAfterLock() {
+        InclinationEngine engine = new InclinationEngine();
+        feed(engine, 150);
+        engine.lock(new Inclination());
+        timestamp += 5000000000L;       // The samples are not processed while locked
+        feed(engine, 50);
+        assertEquals(100, engine.getSampleRate(), 0);
+        assertEquals(InclinationEngine.SIZE_OF_MEANVARIANCE, engine.getAngleMeanVariance(0).getSize());
+    }
+
+
+    @Test
+    public void sameRateKeepsTheWindows() {
+        InclinationEngine engine = new InclinationEngine();
+        feed(engine, 300);
+        MeanVariance mv = engine.getAngleMeanVariance(0);
+        int loaded = mv.getSamplesCount();
+        engine.setSampleRate(engine.getSampleRate());
+        assertEquals(loaded, mv.getSamplesCount());
+        assertTrue(mv.getLoaded());
+    }
+
+
+    @Test
+    public void rateChangeIsMeasured() {
+        InclinationEngine engine = new InclinationEngine();
+        feed(engine, 300);
+        Inclination inclination = new Inclination();
+        for (int i = 0; i < 500; i++) {
+            timestamp += 2 * PERIOD_NANOS;      // 50 Hz
+            engine.update(GRAVITY, timestamp, inclination);
+        }
+        assertEquals(50, engine.getSampleRate(), 1);
+    }
+}
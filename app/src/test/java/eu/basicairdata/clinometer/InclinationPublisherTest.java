@@ -0,0 +1,142 @@
+/*
+ * InclinationEngineTest - JUnit Test Class
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package eu.basicairdata.clinometer;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the sequence lock of the InclinationPublisher with a writer and a reader thread.
+ * All the values published by the writer derive from a single counter, so that each
+ * InclinationSnapshot read can be checked for consistency: a torn read (values of two
+ * different publications) would break the relations between the fields.
+ */
+public class InclinationPublisherTest {
+
+    private static final long MIN_DURATION_NANOS = 1000000000L;    // The min duration of the writes (1 s)
+    private static final long MAX_DURATION_NANOS = 20000000000L;   // The max duration, if the reader doesn't see enough publications (20 s)
+    private static final int MIN_DISTINCT_READS = 20;               // The min number of the different publications seen by the reader
+    private static final int FLOAT_MASK = (1 << 22) - 1;            // So that the angles derived from the counter are exact floats
+    private static final long TIMESTAMP_STEP = 4294967311L;    // Greater than 2^32, so that both the halves of the timestamp change
+
+
+    /** Fills the Inclination with the values of the given publication */
+    private static void fill(int n, Inclination inclination) {
+        inclination.angle[0] = n & FLOAT_MASK;
+        inclination.angle[1] = -(n & FLOAT_MASK);
+        inclination.angle[2] = (n & FLOAT_MASK) + 0.5f;
+        inclination.angleXY = n % 360;
+        inclination.angleXYZ = n % 180;
+        inclination.angleTextLabels = n % 90;
+        inclination.displayRotation = (n % 4) * 90;
+        inclination.isFlat = (n & 1) == 0;
+        inclination.timestamp = n * TIMESTAMP_STEP;
+    }
+
+
+    /**
+     * Checks that all the values of the snapshot belong to the same publication.
+     * The publication 0 is the initial state of the publisher.
+     *
+     * @return the publication number
+     */
+    private static int check(InclinationSnapshot snapshot) {
+        int n = snapshot.publication;
+        if (n == 0) {
+            assertEquals(0, snapshot.angle[2], 0);
+            assertTrue(snapshot.isFlat);
+            assertEquals(0, snapshot.timestamp);
+            return n;
+        }
+        String description = "publication " + n;
+        assertEquals(description, n & FLOAT_MASK, snapshot.angle[0], 0);
+        assertEquals(description, -(n & FLOAT_MASK), snapshot.angle[1], 0);
+        assertEquals(description, (n & FLOAT_MASK) + 0.5f, snapshot.angle[2], 0);
+        assertEquals(description, n % 360, snapshot.angleXY, 0);
+        assertEquals(description, n % 180, snapshot.angleXYZ, 0);
+        assertEquals(description, n % 90, snapshot.angleTextLabels, 0);
+        assertEquals(description, (n % 4) * 90, snapshot.displayRotation, 0);
+        assertEquals(description, (n & 1) == 0, snapshot.isFlat);
+        assertEquals(description, n * TIMESTAMP_STEP, snapshot.timestamp);
+        assertEquals(description, (n & 2) != 0, snapshot.isLocked);
+        return n;
+    }
+
+
+    @Test
+    public void readsAreNotTorn() throws InterruptedException {
+        final InclinationPublisher publisher = new InclinationPublisher();
+        final AtomicBoolean isWriting = new AtomicBoolean(true);
+        final AtomicInteger publications = new AtomicInteger(0);
+        final AtomicInteger distinctReads = new AtomicInteger(0);
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Inclination inclination = new Inclination();
+                // On a single core the reader runs only when the writer is preempted: the writes
+                // go on until the reader has seen enough publications
+                long start = System.nanoTime();
+                int n = 0;
+                long elapsed = 0;
+                while ((elapsed < MIN_DURATION_NANOS) || ((distinctReads.get() < MIN_DISTINCT_READS) && (elapsed < MAX_DURATION_NANOS))) {
+                    n++;
+                    fill(n, inclination);
+                    publisher.publish(inclination, (n & 2) != 0);
+                    elapsed = System.nanoTime() - start;
+                }
+                publications.set(n);
+                isWriting.set(false);
+            }
+        });
+
+        InclinationSnapshot snapshot = new InclinationSnapshot();
+        publisher.read(snapshot);
+        assertEquals(0, check(snapshot));
+
+        writer.start();
+        int reads = 0;
+        int last = 0;
+        try {
+            while (isWriting.get()) {
+                publisher.read(snapshot);
+                int n = check(snapshot);
+                assertTrue("publication " + n + " after " + last, n >= last);
+                if (n != last) distinctReads.incrementAndGet();
+                last = n;
+                reads++;
+            }
+        } finally {
+            writer.join();
+        }
+
+        publisher.read(snapshot);
+        assertEquals(publications.get(), check(snapshot));
+        assertEquals(publications.get(), publisher.getPublicationsCount());
+        // The reads must have overlapped the writes many times
+        assertTrue("reads " + reads + ", distinct publications " + distinctReads.get(), distinctReads.get() >= MIN_DISTINCT_READS);
+    }
+}
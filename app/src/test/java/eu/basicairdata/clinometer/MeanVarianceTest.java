@@ -0,0 +1,246 @@
+/*
+ * MeanVarianceTest - JUnit Test Class
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package eu.basicairdata.clinometer;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the incremental MeanVariance against a batch (two-pass) computation on synthetic
+ * sample streams, with the tolerances documented into the MeanVariance class:
+ * 1.0E-6 * max(|sample|) for the mean value, and 1.0E-5 relative for the variance
+ * (plus 1.0E-12 * max(|sample|)^2, for the windows with an almost null variance).
+ * The streams are longer than the buffers, so the ring wraps and the prefix sums are
+ * re-synchronized many times during each test.
+ */
+public class MeanVarianceTest {
+
+    private static final double MEAN_EPSILON = 1.0E-6;          // Relative to max(|sample|) of the buffer
+    private static final double VARIANCE_EPSILON = 1.0E-5;      // Relative to the variance
+    private static final double VARIANCE_FLOOR = 1.0E-12;       // Relative to max(|sample|)^2, for the almost null variances
+
+    private static final int[] SIZES = { 16, 200 };
+    private static final float[] OFFSETS = { 0f, 1f, -9.81f, 20f };
+    private static final float[] SCALES = { 1.0E-3f, 0.05f, 1f, 10f };
+
+
+    /** The samples of the window of the batch computation: the last min(loaded, size) ones */
+    private static float[] lastSamples(float[] stream, int loaded, int size) {
+        int n = Math.min(loaded, size);
+        float[] window = new float[n];
+        System.arraycopy(stream, loaded - n, window, 0, n);
+        return window;
+    }
+
+    private static double batchMean(float[] window, int n) {
+        double mean = 0;
+        for (int i = window.length - n; i < window.length; i++) mean += window[i];
+        return mean / n;
+    }
+
+    private static double batchVariance(float[] window, int n) {
+        double mean = batchMean(window, n);
+        double var = 0;
+        for (int i = window.length - n; i < window.length; i++) var += (window[i] - mean) * (window[i] - mean);
+        return var / n;
+    }
+
+    /** The max(|sample|) of the whole buffer, that bounds the rounding of the prefix sums */
+    private static double maxAbs(float[] window) {
+        double max = 0;
+        for (float sample : window) max = Math.max(max, Math.abs(sample));
+        return max;
+    }
+
+
+    /** Asserts that the mean value and the variance of the last n samples match the batch computation */
+    private static void assertWindow(String message, float[] window, int n, float mean, float variance) {
+        double expectedMean = batchMean(window, n);
+        double expectedVariance = batchVariance(window, n);
+        double max = maxAbs(window);
+        assertEquals(message + " mean", expectedMean, mean, MEAN_EPSILON * max);
+        assertEquals(message + " variance", expectedVariance, variance,
+                VARIANCE_EPSILON * expectedVariance + VARIANCE_FLOOR * max * max);
+    }
+
+
+    /** A Gaussian noise around an offset, with a slow drift */
+    private static float[] gaussianStream(Random random, int length, float offset, float scale) {
+        float[] stream = new float[length];
+        for (int i = 0; i < length; i++) {
+            stream[i] = offset + scale * (float) (random.nextGaussian() + 0.5 * Math.sin(i / 300.0));
+        }
+        return stream;
+    }
+
+
+    @Test
+    public void fullWindowMatchesBatchComputation() {
+        Random random = new Random(1);
+        for (int size : SIZES) {
+            for (float offset : OFFSETS) {
+                for (float scale : SCALES) {
+                    float[] stream = gaussianStream(random, 20 * size + 7, offset, scale);
+                    MeanVariance meanVariance = new MeanVariance(size);
+                    for (int loaded = 1; loaded <= stream.length; loaded++) {
+                        meanVariance.loadSample(stream[loaded - 1]);
+                        float[] window = lastSamples(stream, loaded, size);
+                        String message = "size=" + size + " offset=" + offset + " scale=" + scale + " loaded=" + loaded;
+                        assertWindow(message, window, window.length, meanVariance.getMeanValue(), meanVariance.getVariance());
+                        assertEquals(message + " stdDeviation", Math.sqrt(meanVariance.getVariance()),
+                                meanVariance.getStdDeviation(), 1.0E-6 * meanVariance.getStdDeviation());
+                        assertEquals(message + " tolerance", 1.96 * meanVariance.getStdDeviation(),
+                                meanVariance.getTolerance(), 1.0E-6 * meanVariance.getTolerance());
+                    }
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void windowedQueriesMatchBatchComputation() {
+        Random random = new Random(2);
+        for (int size : SIZES) {
+            for (float offset : OFFSETS) {
+                for (float scale : SCALES) {
+                    float[] stream = gaussianStream(random, 10 * size + 3, offset, scale);
+                    MeanVariance meanVariance = new MeanVariance(size);
+                    for (int loaded = 1; loaded <= stream.length; loaded++) {
+                        meanVariance.loadSample(stream[loaded - 1]);
+                        float[] window = lastSamples(stream, loaded, size);
+                        // Any N, also beyond the samples loaded (clamped to the whole window)
+                        int requested = 1 + random.nextInt(size + 10);
+                        int n = Math.min(requested, window.length);
+                        String message = "size=" + size + " offset=" + offset + " scale=" + scale
+                                + " loaded=" + loaded + " n=" + requested;
+                        assertWindow(message, window, n, meanVariance.getMeanValue(requested), meanVariance.getVariance(requested));
+                        double expectedTolerance = 1.96 * Math.sqrt(batchVariance(window, n) / n);
+                        assertEquals(message + " tolerance", expectedTolerance, meanVariance.getTolerance(requested),
+                                VARIANCE_EPSILON * expectedTolerance + 1.96 * Math.sqrt(VARIANCE_FLOOR) * maxAbs(window));
+                    }
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void resynchronizationBoundsTheDrift() {
+        // A large offset and a tiny noise: the worst case for the cancellation on the running sums.
+        // After a million samples the ring has been re-synchronized 5000 times.
+        Random random = new Random(3);
+        int size = 200;
+        float[] stream = gaussianStream(random, 1000000, 20f, 1.0E-3f);
+        MeanVariance meanVariance = new MeanVariance(size);
+        for (float sample : stream) meanVariance.loadSample(sample);
+        float[] window = lastSamples(stream, stream.length, size);
+        assertWindow("after 1E6 samples", window, size, meanVariance.getMeanValue(), meanVariance.getVariance());
+
+        // The same in the middle of a ring, between two re-synchronizations
+        for (int i = 0; i < size / 2; i++) meanVariance.loadSample(stream[i]);
+        float[] shifted = new float[size];
+        System.arraycopy(window, size / 2, shifted, 0, size / 2);
+        System.arraycopy(stream, 0, shifted, size / 2, size / 2);
+        assertWindow("mid ring", shifted, size, meanVariance.getMeanValue(), meanVariance.getVariance());
+    }
+
+
+    @Test
+    public void resetAndResizeStartFromEmpty() {
+        Random random = new Random(4);
+        float[] stream = gaussianStream(random, 500, 5f, 1f);
+        MeanVariance meanVariance = new MeanVariance(16);
+        for (int i = 0; i < 100; i++) meanVariance.loadSample(100f);     // A different level, then discarded
+
+        meanVariance.reset();
+        assertEquals(0, meanVariance.getSamplesCount());
+        assertEquals(0f, meanVariance.getMeanValue(), 0f);
+        for (int loaded = 1; loaded <= 50; loaded++) {
+            meanVariance.loadSample(stream[loaded - 1]);
+            float[] window = lastSamples(stream, loaded, 16);
+            assertWindow("after reset, loaded=" + loaded, window, window.length,
+                    meanVariance.getMeanValue(), meanVariance.getVariance());
+        }
+
+        meanVariance.setSize(40);
+        assertEquals(40, meanVariance.getSize());
+        assertTrue(!meanVariance.getLoaded());
+        for (int loaded = 1; loaded <= stream.length; loaded++) {
+            meanVariance.loadSample(stream[loaded - 1]);
+            float[] window = lastSamples(stream, loaded, 40);
+            assertWindow("after setSize, loaded=" + loaded, window, window.length,
+                    meanVariance.getMeanValue(), meanVariance.getVariance());
+        }
+        assertTrue(meanVariance.getLoaded());
+    }
+
+
+    /**
+     * The mean effective size of consecutive windows of a first order autoregressive stream
+     * x[i] = rho * x[i-1] + sqrt(1 - rho^2) * noise, that is n * (1 - rho) / (1 + rho) for a long window.
+     */
+    private static double meanEffectiveSize(double rho, int size, int windows, long seed) {
+        Random random = new Random(seed);
+        MeanVariance meanVariance = new MeanVariance(size);
+        double x = 0;
+        double sum = 0;
+        for (int i = 1; i <= size * windows; i++) {
+            x = rho * x + Math.sqrt(1 - rho * rho) * random.nextGaussian();
+            meanVariance.loadSample((float) x);
+            if (i % size == 0) {
+                float effectiveSize = meanVariance.getEffectiveSize(size);
+                assertTrue("rho=" + rho + ": " + effectiveSize, (effectiveSize >= 0) && (effectiveSize <= size));
+                sum += effectiveSize;
+            }
+        }
+        return sum / windows;
+    }
+
+
+    @Test
+    public void effectiveSize() {
+        // White noise: about n (a negative autocorrelation is clamped to 0, so the mean is slightly less)
+        assertEquals(200, meanEffectiveSize(0, 200, 500, 11), 200 * 0.1);
+        // AR(1): n * (1 - rho) / (1 + rho), within 10%
+        for (double rho : new double[] { 0.5, 0.8, 0.9 }) {
+            double expected = 200 * (1 - rho) / (1 + rho);
+            assertEquals("rho=" + rho, expected, meanEffectiveSize(rho, 200, 500, 12), expected * 0.1);
+        }
+        // The windows shorter than the buffer
+        double expected = 100 * (1 - 0.5) / (1 + 0.5);
+        Random random = new Random(13);
+        MeanVariance meanVariance = new MeanVariance(400);
+        double x = 0;
+        double sum = 0;
+        for (int i = 1; i <= 100 * 500; i++) {
+            x = 0.5 * x + Math.sqrt(1 - 0.25) * random.nextGaussian();
+            meanVariance.loadSample((float) x);
+            if (i % 100 == 0) sum += meanVariance.getEffectiveSize(100);
+        }
+        assertEquals(expected, sum / 500, expected * 0.1);
+    }
+}
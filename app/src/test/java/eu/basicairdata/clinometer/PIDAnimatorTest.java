@@ -0,0 +1,195 @@
+/*
+ * PIDAnimatorTest - JUnit Test Class
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package eu.basicairdata.clinometer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the PIDAnimator, advanced with the frame time, reproduces the step response
+ * of the discrete PID that was stepped by a Timer every 16 ms, and that the values between
+ * two steps are the linear interpolation of the steps.
+ */
+public class PIDAnimatorTest {
+
+    private static final float KP = 0.3f;           // The gains used by ClinometerActivity
+    private static final float KI = 0.0f;
+    private static final float KD = 0.03f;
+    private static final long PERIOD_MILLIS = 16;
+    private static final long PERIOD_NANOS = PERIOD_MILLIS * 1000000;
+
+
+    /** The discrete PID stepped by the Timer of the previous PIDAnimator, used as reference */
+    private static class ReferencePID {
+        private float r, y, y_old, u, v;
+        private final float t = PERIOD_MILLIS / 1000.0f;
+        private final float kt = 0.3f;
+        private float P, I, D;
+
+        ReferencePID(float initialValue) {
+            u = initialValue;
+            y = initialValue;
+            r = initialValue;
+        }
+
+        void calculate() {
+            P = KP * (r - y);
+            D = KD * (y - y_old) / t;
+            v = P + I + D;
+            u = Math.min(3600.0f, Math.max(v, -3600.0f));
+            y_old = y;
+            y = y + 0.3f * u;
+            I = I + KI * (r - y) * t + kt * (u - v) * t;
+        }
+
+        void setTargetValue(float setPoint) {
+            float deltar = r - setPoint;
+            if (Math.abs(deltar) > 180.0f) {
+                if (deltar < 0.0f) {
+                    y += 360.0f;
+                    y_old += 360.0f;
+                } else {
+                    y -= 360.0f;
+                    y_old -= 360.0f;
+                }
+            }
+            r = setPoint;
+        }
+
+        float getValue() {
+            return y % 360.0f;
+        }
+
+        float getInterpolatedValue(float alpha) {
+            return (y_old + (y - y_old) * alpha) % 360.0f;
+        }
+    }
+
+
+    @Test
+    public void stepResponseMatchesTheDiscretePID() {
+        // At t = n * 16 ms from the change of the target, the value is the one of the
+        // discrete PID after n steps: the first step is shown at t = 16 ms.
+        float[] targets = { 30f, -45f, 170f, -170f, 0.5f, 0f };     // Also across the ±180° wrap
+        PIDAnimator animator = new PIDAnimator(0f, KP, KI, KD, PERIOD_MILLIS);
+        ReferencePID reference = new ReferencePID(0f);
+        for (float target : targets) {
+            assertFalse(animator.isAnimating());
+            animator.setTargetValue(target);
+            reference.setTargetValue(target);
+            assertEquals("target=" + target + " t=0", reference.getValue(), animator.getValue(), 0f);
+
+            for (int step = 1; step <= 200; step++) {
+                animator.advance(PERIOD_NANOS);
+                reference.calculate();
+                assertEquals("target=" + target + " t=" + step * PERIOD_MILLIS + " ms",
+                        reference.getValue(), animator.getValue(), 0f);
+            }
+            assertEquals(target, animator.getValue(), 0.001f);
+        }
+    }
+
+
+    @Test
+    public void newTargetDuringTheAnimationIsUsedFromTheNextStepToCompute() {
+        // The PIDAnimator computes one step ahead: a new target set at t = n * 16 ms
+        // is used from the step shown at t = (n + 2) * 16 ms
+        PIDAnimator animator = new PIDAnimator(0f, KP, KI, KD, PERIOD_MILLIS);
+        ReferencePID reference = new ReferencePID(0f);
+        animator.setTargetValue(60f);
+        reference.setTargetValue(60f);
+        for (int step = 1; step <= 300; step++) {
+            if (step == 5) {
+                assertTrue(animator.isAnimating());
+                animator.setTargetValue(-20f);
+            }
+            if (step == 6) reference.setTargetValue(-20f);
+            animator.advance(PERIOD_NANOS);
+            reference.calculate();
+            assertEquals("step=" + step, reference.getValue(), animator.getValue(), 0f);
+        }
+    }
+
+
+    @Test
+    public void fractionalStepsAreInterpolated() {
+        // Between t = 0 and t = 16 ms the value moves linearly towards the first step
+        PIDAnimator animator = new PIDAnimator(0f, KP, KI, KD, PERIOD_MILLIS);
+        ReferencePID reference = new ReferencePID(0f);
+        animator.setTargetValue(40f);
+        reference.setTargetValue(40f);
+        reference.calculate();
+        animator.advance(PERIOD_NANOS / 4);
+        assertEquals(reference.getInterpolatedValue(0.25f), animator.getValue(), 0f);
+        animator.advance(PERIOD_NANOS / 4);
+        assertEquals(reference.getInterpolatedValue(0.5f), animator.getValue(), 0f);
+        animator.advance(PERIOD_NANOS / 2);
+        assertEquals(reference.getValue(), animator.getValue(), 0f);
+
+        // The same between the steps 1 and 2
+        reference.calculate();
+        animator.advance(PERIOD_NANOS * 3 / 4);
+        assertEquals(reference.getInterpolatedValue(0.75f), animator.getValue(), 0f);
+    }
+
+
+    @Test
+    public void framesOfAnyRefreshRateFollowTheInterpolatedSteps() {
+        long[] framePeriods = { 16666667, 11111111, 8333333, 6944444 };     // 60, 90, 120 and 144 Hz
+        for (long framePeriod : framePeriods) {
+            PIDAnimator animator = new PIDAnimator(0f, KP, KI, KD, PERIOD_MILLIS);
+            ReferencePID reference = new ReferencePID(0f);
+            animator.setTargetValue(90f);
+            reference.setTargetValue(90f);
+            reference.calculate();                  // The step towards which the value is interpolated
+            long steps = 0;                         // The steps of the reference after the first one
+            for (long time = framePeriod; time < 2000000000L; time += framePeriod) {
+                animator.advance(framePeriod);
+                while ((steps + 1) * PERIOD_NANOS <= time) {
+                    reference.calculate();
+                    steps++;
+                }
+                float alpha = (float) (time - steps * PERIOD_NANOS) / PERIOD_NANOS;
+                assertEquals("frame period=" + framePeriod + " time=" + time,
+                        reference.getInterpolatedValue(alpha), animator.getValue(), 1.0E-4f);
+            }
+        }
+    }
+
+
+    @Test
+    public void controllerStepMatchesTheDiscretePID() {
+        PIDController controller = new PIDController(10f, KP, KI, KD, PERIOD_MILLIS);
+        ReferencePID reference = new ReferencePID(10f);
+        controller.setTargetValue(-100f);
+        reference.setTargetValue(-100f);
+        for (int step = 1; step <= 500; step++) {
+            controller.calculate();
+            reference.calculate();
+            assertEquals("step=" + step, reference.getValue(), controller.getValue(), 0f);
+        }
+        assertTrue(controller.isSettled());
+    }
+}
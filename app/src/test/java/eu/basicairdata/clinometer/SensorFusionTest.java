@@ -0,0 +1,188 @@
+/*
+ * InclinationEngineTest - JUnit Test Class
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package eu.basicairdata.clinometer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the ComplementaryFusion and the KalmanFusion on synthetic traces: the estimated
+ * gravity must converge to the accelerometer when the device is still, and must follow
+ * the integration of the gyroscope when the device rotates.
+ * The InclinationEngine must feed the fusion with the gyroscope in the frame of the
+ * calibrated accelerometer.
+ */
+public class SensorFusionTest {
+
+    private static final float G = 9.80665f;
+    private static final long PERIOD_NANOS = 10000000;      // 100 Hz
+
+
+    private static SensorFusion[] fusions() {
+        return new SensorFusion[] { new ComplementaryFusion(), new KalmanFusion() };
+    }
+
+
+    /** The gravity in the frame of the device for the given pitch (around X) and roll (around Y), in degrees */
+    private static void gravity(double pitch, double roll, float[] out) {
+        double p = Math.toRadians(pitch);
+        double r = Math.toRadians(roll);
+        out[0] = (float) (G * Math.cos(p) * Math.sin(r));
+        out[1] = (float) (G * Math.sin(p));
+        out[2] = (float) (G * Math.cos(p) * Math.cos(r));
+    }
+
+
+    /** The angle (in degrees) between two vectors */
+    private static double angleBetween(float[] a, float[] b) {
+        double dot = a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+        double na = Math.sqrt(a[0] * a[0] + a[1] * a[1] + a[2] * a[2]);
+        double nb = Math.sqrt(b[0] * b[0] + b[1] * b[1] + b[2] * b[2]);
+        return Math.toDegrees(Math.acos(Math.min(1, dot / (na * nb))));
+    }
+
+
+    @Test
+    public void staticDeviceConvergesToTheAccelerometer() {
+        float[] acceleration = new float[3];
+        float[] estimate = new float[3];
+        float[] rate = {0, 0, 0};
+        for (SensorFusion fusion : fusions()) {
+            String name = fusion.getClass().getSimpleName();
+            long timestamp = 1000000000L;
+
+            // Initialized at 10° of pitch; then the accelerometer reads a slightly different tilt
+            // that the gyroscope didn't see (as a bias integrated before the start)
+            gravity(10, 0, acceleration);
+            for (int i = 0; i < 100; i++) {
+                timestamp += PERIOD_NANOS;
+                fusion.updateGyroscope(rate, timestamp);
+                fusion.updateAccelerometer(acceleration, timestamp, estimate);
+            }
+            assertEquals(name, 0, angleBetween(estimate, acceleration), 0.01);
+
+            gravity(12, 1, acceleration);
+            timestamp += PERIOD_NANOS;
+            fusion.updateGyroscope(rate, timestamp);
+            fusion.updateAccelerometer(acceleration, timestamp, estimate);
+            assertTrue(name + " follows the gyroscope", angleBetween(estimate, acceleration) > 2);
+
+            // The difference is partly taken as a bias of the gyroscope, that the correction removes slowly
+            for (int i = 0; i < 3000; i++) {
+                timestamp += PERIOD_NANOS;
+                fusion.updateGyroscope(rate, timestamp);
+                fusion.updateAccelerometer(acceleration, timestamp, estimate);
+            }
+            assertEquals(name, 0, angleBetween(estimate, acceleration), 0.1);
+            assertEquals(name, G, Math.sqrt(estimate[0] * estimate[0] + estimate[1] * estimate[1] + estimate[2] * estimate[2]), 0.01);
+        }
+    }
+
+
+    @Test
+    public void constantRateIsIntegrated() {
+        float[] acceleration = new float[3];
+        float[] estimate = new float[3];
+        float[] initial = new float[3];
+        float[] rate = new float[3];
+        double rateDegrees = 30;                    // Around X, for 3 seconds
+        for (SensorFusion fusion : fusions()) {
+            String name = fusion.getClass().getSimpleName();
+            long timestamp = 1000000000L;
+            gravity(0, 0, acceleration);
+            for (int i = 0; i < 100; i++) {
+                timestamp += PERIOD_NANOS;
+                fusion.updateGyroscope(rate, timestamp);
+                fusion.updateAccelerometer(acceleration, timestamp, estimate);
+            }
+
+            // The accelerometer stays at the initial tilt, so only the gyroscope can move the estimate;
+            // in 0.1 s the correction toward the accelerometer takes back less than 15% of the rotation
+            gravity(0, 0, initial);
+            rate[0] = (float) Math.toRadians(rateDegrees);
+            for (int i = 1; i <= 10; i++) {
+                timestamp += PERIOD_NANOS;
+                fusion.updateGyroscope(rate, timestamp);
+                fusion.updateAccelerometer(initial, timestamp, estimate);
+            }
+            double pitch = Math.toDegrees(Math.atan2(estimate[1], estimate[2]));
+            assertTrue(name + " integrated " + pitch, (pitch > rateDegrees * 0.1 * 0.85) && (pitch <= rateDegrees * 0.1));
+
+            // With an accelerometer that agrees with the rotation, the estimate follows it with no lag
+            for (int i = 11; i <= 300; i++) {
+                timestamp += PERIOD_NANOS;
+                gravity(rateDegrees * i * PERIOD_NANOS * 1E-9, 0, acceleration);
+                fusion.updateGyroscope(rate, timestamp);
+                fusion.updateAccelerometer(acceleration, timestamp, estimate);
+            }
+            pitch = Math.toDegrees(Math.atan2(estimate[1], estimate[2]));
+            assertEquals(name + " tracked", rateDegrees * 3, pitch, 0.5);
+            rate[0] = 0;
+        }
+    }
+
+
+    @Test
+    public void gyroscopeIsCalibratedAsTheAccelerometer() {
+        float[] angleCalibration = {3, -4, 8};
+        float[][] matrix = new float[3][3];
+        InclinationEngine.computeCalibrationMatrix(angleCalibration, matrix);
+
+        float[] gravity = new float[3];
+        float[] rate = new float[3];
+        float[] rawGravity = new float[3];
+        float[] rawRate = new float[3];
+        double rateDegrees = 40;                    // Around the calibrated X, for 2 seconds
+        for (int mode : new int[] { InclinationEngine.SENSOR_FUSION_COMPLEMENTARY, InclinationEngine.SENSOR_FUSION_KALMAN }) {
+            // The reference is fed with the calibrated values, the calibrated engine with the raw ones
+            InclinationEngine reference = new InclinationEngine();
+            InclinationEngine engine = new InclinationEngine();
+            reference.setSensorFusion(mode);
+            engine.setSensorFusion(mode);
+            engine.setCalibration(new float[] {1, 1, 1}, new float[] {0, 0, 0}, angleCalibration);
+            Inclination referenceInclination = new Inclination();
+            Inclination inclination = new Inclination();
+
+            long timestamp = 1000000000L;
+            double maxError = 0;
+            for (int i = 0; i < 300; i++) {
+                timestamp += PERIOD_NANOS;
+                double pitch = (i < 100) ? 0 : rateDegrees * (i - 100) * PERIOD_NANOS * 1E-9;
+                gravity(pitch, 10, gravity);
+                rate[0] = (float) ((i < 100) ? 0 : Math.toRadians(rateDegrees));
+                // The calibration matrix is a rotation: the raw vector is its transpose by the calibrated one
+                for (int j = 0; j < 3; j++) {
+                    rawGravity[j] = matrix[0][j] * gravity[0] + matrix[1][j] * gravity[1] + matrix[2][j] * gravity[2];
+                    rawRate[j] = matrix[0][j] * rate[0] + matrix[1][j] * rate[1] + matrix[2][j] * rate[2];
+                }
+                reference.updateGyroscope(rate, timestamp);
+                reference.update(gravity, timestamp, referenceInclination);
+                engine.updateGyroscope(rawRate, timestamp);
+                engine.update(rawGravity, timestamp, inclination);
+                for (int j = 0; j < 3; j++) maxError = Math.max(maxError, Math.abs(inclination.angle[j] - referenceInclination.angle[j]));
+            }
+            assertEquals("mode " + mode, 0, maxError, 0.05);
+        }
+    }
+}
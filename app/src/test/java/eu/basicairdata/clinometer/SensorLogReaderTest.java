@@ -0,0 +1,110 @@
+/*
+ * SensorLogReaderTest - JUnit Test Class
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package eu.basicairdata.clinometer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the SensorLogReader reads exactly the records written by the SensorRecorder,
+ * both for the closed recordings and for the ones not closed (as after a crash of the app),
+ * where the file is longer than the data because it is grown by a whole chunk when mapped.
+ */
+public class SensorLogReaderTest {
+
+    private static final int SENSOR_TYPE = 1;                   // Sensor.TYPE_ACCELEROMETER
+    private static final int SAMPLING_PERIOD_US = 10000;
+    // More records than the ones of a chunk, in order to read across a chunk boundary
+    private static final int EVENTS_ACROSS_CHUNKS = SensorRecorder.CHUNK_SIZE / SensorRecorder.SENSOR_EVENT_RECORD_SIZE + 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    /** Writes the given number of sensor events, with values and timestamps that depend on their index */
+    private static void writeEvents(SensorRecorder recorder, int count) throws IOException {
+        float[] values = new float[3];
+        for (int i = 1; i <= count; i++) {
+            values[0] = i;
+            values[1] = -i;
+            values[2] = 9.81f;
+            recorder.writeSensorEvent(i * 10000000L, values, 3);
+        }
+    }
+
+
+    /** Reads the whole log, checking the events written by writeEvents, and returns their number */
+    private static int readEvents(File file) throws IOException {
+        SensorLogReader reader = new SensorLogReader(file);
+        try {
+            assertEquals(SENSOR_TYPE, reader.getSensorType());
+            int count = 0;
+            while (reader.next() != SensorRecorder.RECORD_END) {
+                count++;
+                assertEquals(SensorRecorder.RECORD_SENSOR_EVENT, reader.getRecordType());
+                assertEquals(count * 10000000L, reader.getTimestamp());
+                assertEquals(count, reader.getValues()[0], 0);
+                assertEquals(-count, reader.getValues()[1], 0);
+            }
+            return count;
+        } finally {
+            reader.close();
+        }
+    }
+
+
+    @Test
+    public void closedRecording() throws IOException {
+        File file = folder.newFile();
+        SensorRecorder recorder = new SensorRecorder(file, SENSOR_TYPE, SAMPLING_PERIOD_US);
+        writeEvents(recorder, EVENTS_ACROSS_CHUNKS);
+        recorder.close();
+        assertEquals(EVENTS_ACROSS_CHUNKS, readEvents(file));
+    }
+
+
+    @Test
+    public void recordingNotClosed() throws IOException {
+        for (int count : new int[] { 0, 1, 1000, EVENTS_ACROSS_CHUNKS }) {
+            File file = folder.newFile();
+            SensorRecorder recorder = new SensorRecorder(file, SENSOR_TYPE, SAMPLING_PERIOD_US);
+            writeEvents(recorder, count);
+            long length = recorder.getLength();
+            // The recording is left open: the file contains the whole mapped chunk
+            assertTrue(file.length() > length);
+            // A record written after the end of the data (torn by the crash) must be ignored
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            raf.seek(length);
+            raf.write(SensorRecorder.RECORD_SENSOR_EVENT);
+            raf.close();
+            assertEquals(count, readEvents(file));
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * InclinationEngineTest - JUnit Test Class
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package eu.basicairdata.clinometer;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the YuvConverter: the fixed point conversion against the full range (JFIF) formulas
+ * in floating point, on all the YUV triples and on the known colors, and the handling of the
+ * row and pixel strides of the YUV_420_888 planes, against the NV21 conversion of the same frame.
+ * The pixels have the memory layout of the Bitmap: the int 0xAABBGGRR.
+ */
+public class YuvConverterTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+
+
+    /** The reference conversion, in floating point, with the layout of the pixels of the Bitmap (0xAABBGGRR) */
+    private static int reference(int y, int u, int v) {
+        double cb = u - 128;
+        double cr = v - 128;
+        return 0xFF000000 | (clamp(y + 1.772 * cb) << 16) | (clamp(y - 0.344136 * cb - 0.714136 * cr) << 8) | clamp(y + 1.402 * cr);
+    }
+
+
+    /** The opaque pixel of the given 0xRRGGBB color, with the layout of the pixels of the Bitmap */
+    private static int rgba(int rgb) {
+        return 0xFF000000 | ((rgb & 0xFF) << 16) | (rgb & 0xFF00) | ((rgb >> 16) & 0xFF);
+    }
+
+
+    private static int clamp(double value) {
+        return (int) Math.max(0, Math.min(255, Math.round(value)));
+    }
+
+
+    /** The largest difference between the components of two colors */
+    private static int difference(int argb1, int argb2) {
+        int max = 0;
+        for (int shift = 0; shift <= 24; shift += 8) {
+            max = Math.max(max, Math.abs(((argb1 >> shift) & 0xFF) - ((argb2 >> shift) & 0xFF)));
+        }
+        return max;
+    }
+
+
+    /** Converts a single YUV triple with nv21ToRgba, as a 2x2 frame */
+    private static int convert(int y, int u, int v) {
+        byte[] nv21 = new byte[YuvConverter.getNV21Size(2, 2)];
+        for (int i = 0; i < 4; i++) nv21[i] = (byte) y;
+        nv21[4] = (byte) v;
+        nv21[5] = (byte) u;
+        int[] argb = new int[4];
+        YuvConverter.nv21ToRgba(nv21, 2, 2, argb);
+        for (int i = 1; i < 4; i++) assertEquals(argb[0], argb[i]);
+        return argb[0];
+    }
+
+
+    @Test
+    public void allTriplesMatchTheReference() {
+        // A frame of 256 x 2 pixels for each chroma sample: every luma value on each row
+        byte[] nv21 = new byte[YuvConverter.getNV21Size(256, 2)];
+        int[] argb = new int[256 * 2];
+        for (int i = 0; i < 256 * 2; i++) nv21[i] = (byte) (i & 0xFF);
+        int differences = 0;
+        for (int u = 0; u < 256; u++) {
+            for (int v = 0; v < 256; v++) {
+                for (int i = 256 * 2; i < nv21.length; i += 2) {
+                    nv21[i] = (byte) v;
+                    nv21[i + 1] = (byte) u;
+                }
+                YuvConverter.nv21ToRgba(nv21, 256, 2, argb);
+                for (int i = 0; i < argb.length; i++) {
+                    int d = difference(argb[i], reference(i & 0xFF, u, v));
+                    // Only the rounding of the 16.16 fixed point can differ
+                    if (d > 1) fail("Y = " + (i & 0xFF) + ", U = " + u + ", V = " + v + ": difference " + d);
+                    differences += d;
+                }
+            }
+        }
+        // The differences are rare: less than 1% of the triples
+        assertTrue("differences " + differences, differences < 256 * 256 * 256 / 100);
+    }
+
+
+    @Test
+    public void knownColors() {
+        assertEquals(0xFF000000, convert(0, 128, 128));        // Black
+        assertEquals(0xFFFFFFFF, convert(255, 128, 128));      // White
+        assertEquals(0xFF808080, convert(128, 128, 128));      // Grey
+
+        // The primaries and the secondaries, with the JFIF coefficients
+        int[][] colors = {
+                {0xFF0000, 76, 85, 255},        // Red
+                {0x00FF00, 150, 44, 21},        // Green
+                {0x0000FF, 29, 255, 107},       // Blue
+                {0x00FFFF, 179, 171, 1},        // Cyan
+                {0xFF00FF, 105, 212, 235},      // Magenta
+                {0xFFFF00, 226, 1, 149}};       // Yellow
+        for (int[] color : colors) {
+            int argb = convert(color[1], color[2], color[3]);
+            assertEquals(Integer.toHexString(color[0]), reference(color[1], color[2], color[3]), argb);
+            assertTrue(Integer.toHexString(color[0]) + " as " + Integer.toHexString(argb), difference(rgba(color[0]), argb) <= 2);
+        }
+
+        // The order of the components: R in the lowest byte, A in the highest
+        int red = convert(76, 85, 255);
+        assertTrue(Integer.toHexString(red), ((red & 0xFF) >= 254) && (((red >> 8) & 0xFF) <= 1) && (((red >> 16) & 0xFF) <= 1));
+        assertEquals(0xFF, red >>> 24);
+
+        // The clamping at 0 and 255: R and B out of range on both sides, G in range
+        assertEquals(0x00FF00FF, convert(255, 255, 255) & 0x00FF00FF);
+        assertEquals(0, convert(0, 0, 0) & 0x00FF00FF);
+        int[][] extremes = {{255, 128, 255}, {0, 128, 0}, {255, 255, 128}, {0, 0, 128}, {255, 0, 0}, {0, 255, 255}, {255, 0, 255}, {0, 255, 0}};
+        for (int[] yuv : extremes) {
+            assertEquals("Y = " + yuv[0] + ", U = " + yuv[1] + ", V = " + yuv[2], reference(yuv[0], yuv[1], yuv[2]), convert(yuv[0], yuv[1], yuv[2]));
+        }
+    }
+
+
+    /** A random NV21 frame */
+    private static byte[] randomFrame(long seed) {
+        byte[] nv21 = new byte[YuvConverter.getNV21Size(WIDTH, HEIGHT)];
+        new Random(seed).nextBytes(nv21);
+        return nv21;
+    }
+
+
+    @Test
+    public void semiPlanarStrides() {
+        byte[] nv21 = randomFrame(1);
+        int[] expected = new int[WIDTH * HEIGHT];
+        YuvConverter.nv21ToRgba(nv21, WIDTH, HEIGHT, expected);
+
+        // The layout of NV21 in Camera2: the V and U planes are views of the same interleaved
+        // buffer, one byte apart (pixel stride 2), and the rows are padded
+        int yRowStride = WIDTH + 32;
+        int uvRowStride = WIDTH + 16;
+        ByteBuffer y = ByteBuffer.allocate(yRowStride * HEIGHT);
+        ByteBuffer vu = ByteBuffer.allocate(uvRowStride * (HEIGHT / 2));
+        for (int i = 0; i < y.capacity(); i++) y.put(i, (byte) 0x55);      // The padding must not be read
+        for (int i = 0; i < vu.capacity(); i++) vu.put(i, (byte) 0x55);
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int column = 0; column < WIDTH; column++) y.put(row * yRowStride + column, nv21[row * WIDTH + column]);
+        }
+        for (int row = 0; row < HEIGHT / 2; row++) {
+            for (int column = 0; column < WIDTH; column++) vu.put(row * uvRowStride + column, nv21[WIDTH * HEIGHT + row * WIDTH + column]);
+        }
+        ByteBuffer v = vu.duplicate();
+        vu.position(1);
+        ByteBuffer u = vu.slice();
+
+        int[] argb = new int[WIDTH * HEIGHT];
+        YuvConverter.yuv420ToRgba(y, yRowStride, u, v, uvRowStride, 2, WIDTH, HEIGHT, argb);
+        assertArrayEquals(expected, argb);
+    }
+
+
+    @Test
+    public void planarStrides() {
+        byte[] nv21 = randomFrame(2);
+        int[] expected = new int[WIDTH * HEIGHT];
+        YuvConverter.nv21ToRgba(nv21, WIDTH, HEIGHT, expected);
+
+        // The I420 layout: separated U and V planes (pixel stride 1), with padded rows
+        int yRowStride = WIDTH + 8;
+        int uvRowStride = WIDTH / 2 + 8;
+        ByteBuffer y = ByteBuffer.allocate(yRowStride * HEIGHT);
+        ByteBuffer u = ByteBuffer.allocate(uvRowStride * (HEIGHT / 2));
+        ByteBuffer v = ByteBuffer.allocate(uvRowStride * (HEIGHT / 2));
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int column = 0; column < WIDTH; column++) y.put(row * yRowStride + column, nv21[row * WIDTH + column]);
+        }
+        for (int row = 0; row < HEIGHT / 2; row++) {
+            for (int column = 0; column < WIDTH / 2; column++) {
+                int index = WIDTH * HEIGHT + row * WIDTH + 2 * column;
+                v.put(row * uvRowStride + column, nv21[index]);
+                u.put(row * uvRowStride + column, nv21[index + 1]);
+            }
+        }
+
+        int[] argb = new int[WIDTH * HEIGHT];
+        YuvConverter.yuv420ToRgba(y, yRowStride, u, v, uvRowStride, 1, WIDTH, HEIGHT, argb);
+        assertArrayEquals(expected, argb);
+    }
+}
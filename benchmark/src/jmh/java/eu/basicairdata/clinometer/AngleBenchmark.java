@@ -0,0 +1,67 @@
+/*
+ * AngleBenchmark - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package eu.basicairdata.clinometer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Compares the angle extraction of the InclinationEngine (computeAngles, with atan2)
+ * with the asin/acos formulas used before (AngleSweep.computeAnglesLegacy),
+ * on random directions of the gravity.
+ */
+@State(Scope.Thread)
+public class AngleBenchmark {
+
+    private static final int N_SAMPLES = 1024;      // Power of 2, for the index mask
+
+    private final float[][] vectors = new float[N_SAMPLES][3];
+    private final Inclination inclination = new Inclination();
+    private int index;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        for (int i = 0; i < N_SAMPLES; i++) {
+            vectors[i][0] = (float) random.nextGaussian() * 5.66f;
+            vectors[i][1] = (float) random.nextGaussian() * 5.66f;
+            vectors[i][2] = (float) random.nextGaussian() * 5.66f;
+        }
+        index = 0;
+    }
+
+    @Benchmark
+    public Inclination computeAngles() {
+        InclinationEngine.computeAngles(vectors[index++ & (N_SAMPLES - 1)], inclination);
+        return inclination;
+    }
+
+    @Benchmark
+    public Inclination computeAnglesLegacy() {
+        AngleSweep.computeAnglesLegacy(vectors[index++ & (N_SAMPLES - 1)], inclination);
+        return inclination;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * DataFormatterBenchmark - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures DataFormatter.format() for every unit of measurement.
+ * The Activity formats 3 angles for each sensor event, the View formats
+ * up to 4 labels for each frame.
+ */
+@State(Scope.Thread)
+public class DataFormatterBenchmark {
+
+    private static final int N_SAMPLES = 1024;      // Power of 2, for the index mask
+
+    @Param({"" + DataFormatter.UM_DEGREES,
+            "" + DataFormatter.UM_RADIANS,
+            "" + DataFormatter.UM_PERCENT,
+            "" + DataFormatter.UM_FRACTIONAL})
+    public int um;
+
+    private final float[] angles = new float[N_SAMPLES];
+    private DataFormatter dataFormatter;
+    private int index;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < N_SAMPLES; i++) angles[i] = -90f + 180f * i / N_SAMPLES;
+        dataFormatter = new DataFormatter("°", "%");
+        dataFormatter.setUM(um);
+        index = 0;
+    }
+
+    @Benchmark
+    public String format() {
+        return dataFormatter.format(angles[index++ & (N_SAMPLES - 1)]);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * InclinationEngineBenchmark - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Measures the full per-event computation made by onSensorChanged:
+ * calibration, low pass filter, angles, MeanVariance and display rotation,
+ * without and with the check of the Auto-Locking.
+ */
+@State(Scope.Thread)
+public class InclinationEngineBenchmark {
+
+    private static final int N_SAMPLES = 1024;      // Power of 2, for the index mask
+
+    private final float[][] events = new float[N_SAMPLES][3];
+    private final Inclination inclination = new Inclination();
+    private InclinationEngine inclinationEngine;
+    private long timestamp;
+    private int index;
+
+    @Setup
+    public void setup() {
+        // A device slightly tilted, with the sensor noise of a typical accelerometer
+        Random random = new Random(1);
+        for (int i = 0; i < N_SAMPLES; i++) {
+            events[i][0] = 1.70f + (float) random.nextGaussian() * 0.02f;
+            events[i][1] = 3.35f + (float) random.nextGaussian() * 0.02f;
+            events[i][2] = 9.02f + (float) random.nextGaussian() * 0.02f;
+        }
+        inclinationEngine = new InclinationEngine();
+        inclinationEngine.setCalibration(new float[] {1, 1, 1}, new float[] {0, 0, 0}, new float[] {0, 0, 0});
+        timestamp = 0;
+        index = 0;
+    }
+
+    @Benchmark
+    public Inclination update() {
+        timestamp += 10000000;                      // 100 Hz
+        inclinationEngine.update(events[index++ & (N_SAMPLES - 1)], timestamp, inclination);
+        return inclination;
+    }
+
+    @Benchmark
+    public boolean updateWithAutoLock() {
+        // The Auto-Locking check made by onSensorChanged before processing each event (the default tolerance)
+        boolean isSteady = inclinationEngine.isSteady(0.275f, true);
+        timestamp += 10000000;                      // 100 Hz
+        inclinationEngine.update(events[index++ & (N_SAMPLES - 1)], timestamp, inclination);
+        return isSteady;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * InclinationPublisherBenchmark - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the InclinationPublisher with one writer (the sensor thread)
+ * and three readers (for example ClinometerView, the UI thread and a recorder)
+ * that read concurrently, as on the device.
+ * gc.alloc.rate.norm must be 0 for both the writer and the readers.
+ */
+@State(Scope.Group)
+public class InclinationPublisherBenchmark {
+
+    private InclinationPublisher publisher;
+
+    @State(Scope.Thread)
+    public static class Writer {
+        final Inclination inclination = new Inclination();
+        int step;
+    }
+
+    @State(Scope.Thread)
+    public static class Reader {
+        final InclinationSnapshot snapshot = new InclinationSnapshot();
+    }
+
+    @Setup
+    public void setup() {
+        publisher = new InclinationPublisher();
+    }
+
+    @Benchmark
+    @Group("publication")
+    @GroupThreads(1)
+    public int publish(Writer writer) {
+        writer.step++;
+        writer.inclination.angle[0] = writer.step * 0.001f;
+        writer.inclination.angle[1] = -writer.step * 0.001f;
+        writer.inclination.timestamp = writer.step * 10000000L;
+        publisher.publish(writer.inclination, false);
+        return writer.step;
+    }
+
+    @Benchmark
+    @Group("publication")
+    @GroupThreads(3)
+    public float read(Reader reader) {
+        publisher.read(reader.snapshot);
+        return reader.snapshot.angle[0] + reader.snapshot.angle[1];
+    }
+}
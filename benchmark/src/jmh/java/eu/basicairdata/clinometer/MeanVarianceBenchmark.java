@@ -0,0 +1,57 @@
+/*
+ * MeanVarianceBenchmark - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Measures the cost of MeanVariance.loadSample() on the 200 samples buffer
+ * used for the angles, including the periodic re-synchronization.
+ */
+@State(Scope.Thread)
+public class MeanVarianceBenchmark {
+
+    private static final int N_SAMPLES = 1024;      // Power of 2, for the index mask
+
+    private final float[] samples = new float[N_SAMPLES];
+    private MeanVariance meanVariance;
+    private int index;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        for (int i = 0; i < N_SAMPLES; i++) samples[i] = 12.5f + (float) random.nextGaussian() * 0.05f;
+        meanVariance = new MeanVariance(InclinationEngine.SIZE_OF_MEANVARIANCE);
+        for (int i = 0; i < InclinationEngine.SIZE_OF_MEANVARIANCE; i++) meanVariance.loadSample(samples[i]);
+        index = 0;
+    }
+
+    @Benchmark
+    public float loadSample() {
+        meanVariance.loadSample(samples[index++ & (N_SAMPLES - 1)]);
+        return meanVariance.getTolerance();
+    }
+}
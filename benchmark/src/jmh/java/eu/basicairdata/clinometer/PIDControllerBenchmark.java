@@ -0,0 +1,51 @@
+/*
+ * PIDControllerBenchmark - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures one step of the PID used by PIDAnimator to animate the axes,
+ * with the same gains of ClinometerActivity.
+ */
+@State(Scope.Thread)
+public class PIDControllerBenchmark {
+
+    private PIDController controller;
+    private int step;
+
+    @Setup
+    public void setup() {
+        controller = new PIDController(0.0f, 0.3f, 0.0f, 0.03f, 16);
+        step = 0;
+    }
+
+    @Benchmark
+    public float calculate() {
+        // Changes the target every 64 steps, to keep the controller active
+        if ((step++ & 63) == 0) controller.setTargetValue((step & 64) == 0 ? 90f : 0f);
+        controller.calculate();
+        return controller.getValue();
+    }
+}
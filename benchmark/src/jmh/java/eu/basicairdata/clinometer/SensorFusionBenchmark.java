@@ -0,0 +1,86 @@
+/*
+ * SensorFusionBenchmark - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Measures the per-event computation of the InclinationEngine with each processing of the
+ * accelerometer: a gyroscope sample (not used by "none") followed by an accelerometer sample.
+ */
+@State(Scope.Thread)
+public class SensorFusionBenchmark {
+
+    private static final int N_SAMPLES = 1024;      // Power of 2, for the index mask
+
+    @Param({"none", "complementary", "kalman"})
+    public String sensorFusion;
+
+    private final float[][] events = new float[N_SAMPLES][3];
+    private final float[][] angularRates = new float[N_SAMPLES][3];
+    private final Inclination inclination = new Inclination();
+    private InclinationEngine inclinationEngine;
+    private long timestamp;
+    private int index;
+
+    @Setup
+    public void setup() {
+        // A device slightly tilted, with the sensor noise of a typical accelerometer and gyroscope
+        Random random = new Random(1);
+        for (int i = 0; i < N_SAMPLES; i++) {
+            events[i][0] = 1.70f + (float) random.nextGaussian() * 0.02f;
+            events[i][1] = 3.35f + (float) random.nextGaussian() * 0.02f;
+            events[i][2] = 9.02f + (float) random.nextGaussian() * 0.02f;
+            angularRates[i][0] = 0.002f + (float) random.nextGaussian() * 0.001f;
+            angularRates[i][1] = -0.001f + (float) random.nextGaussian() * 0.001f;
+            angularRates[i][2] = (float) random.nextGaussian() * 0.001f;
+        }
+        inclinationEngine = new InclinationEngine();
+        inclinationEngine.setCalibration(new float[] {1, 1, 1}, new float[] {0, 0, 0}, new float[] {0, 0, 0});
+        switch (sensorFusion) {
+            case "complementary":
+                inclinationEngine.setSensorFusion(InclinationEngine.SENSOR_FUSION_COMPLEMENTARY);
+                break;
+            case "kalman":
+                inclinationEngine.setSensorFusion(InclinationEngine.SENSOR_FUSION_KALMAN);
+                break;
+            default:
+                inclinationEngine.setSensorFusion(InclinationEngine.SENSOR_FUSION_NONE);
+        }
+        timestamp = 0;
+        index = 0;
+    }
+
+    @Benchmark
+    public Inclination update() {
+        timestamp += 10000000;                      // 100 Hz
+        int i = index++ & (N_SAMPLES - 1);
+        inclinationEngine.updateGyroscope(angularRates[i], timestamp);
+        inclinationEngine.update(events[i], timestamp, inclination);
+        return inclination;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * YuvConverterBenchmark - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.geom.AffineTransform;
+import java.awt.image.AffineTransformOp;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Measures the conversion of a frame of the Camera Preview, saved when a measure is locked.
+ * nv21ToRgba is the conversion of LegacyCameraPreview, yuv420ToRgba the one of Camera2Preview
+ * (on direct buffers laid out as the semi-planar Image.Plane of most devices).
+ * jpegRoundTrip approximates on the JVM the path used before: the frame was compressed
+ * into a JPEG (quality 90) by YuvImage, decoded again by BitmapFactory and rotated by
+ * Bitmap.createBitmap; here the same steps are made with ImageIO and AffineTransformOp.
+ */
+@State(Scope.Thread)
+public class YuvConverterBenchmark {
+
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String previewSize;
+
+    private int width;
+    private int height;
+    private byte[] nv21;
+    private int[] rgba;
+    private ByteBuffer yPlane;
+    private ByteBuffer uPlane;
+    private ByteBuffer vPlane;
+    private ImageWriter jpegWriter;
+    private ImageWriteParam jpegParam;
+
+    @Setup
+    public void setup() {
+        width = Integer.parseInt(previewSize.substring(0, previewSize.indexOf('x')));
+        height = Integer.parseInt(previewSize.substring(previewSize.indexOf('x') + 1));
+        nv21 = new byte[YuvConverter.getNV21Size(width, height)];
+        rgba = new int[width * height];
+
+        // A smooth gradient with some noise, as a real frame
+        Random random = new Random(1);
+        for (int y = 0; y < height; y++)
+            for (int x = 0; x < width; x++)
+                nv21[y * width + x] = (byte) (((x + y) * 255 / (width + height)) + random.nextInt(8));
+        for (int i = width * height; i < nv21.length; i += 2) {
+            nv21[i] = (byte) (128 + random.nextInt(32));
+            nv21[i + 1] = (byte) (128 - random.nextInt(32));
+        }
+
+        // The planes of Camera2 share the interleaved chroma samples
+        yPlane = ByteBuffer.allocateDirect(width * height);
+        yPlane.put(nv21, 0, width * height).rewind();
+        vPlane = ByteBuffer.allocateDirect(width * height / 2);
+        vPlane.put(nv21, width * height, width * height / 2).rewind();
+        uPlane = ByteBuffer.allocateDirect(width * height / 2 - 1);
+        uPlane.put(nv21, width * height + 1, width * height / 2 - 1).rewind();
+
+        jpegWriter = ImageIO.getImageWritersByFormatName("jpeg").next();
+        jpegParam = jpegWriter.getDefaultWriteParam();
+        jpegParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        jpegParam.setCompressionQuality(0.9f);
+    }
+
+    @Benchmark
+    public int[] nv21ToRgba() {
+        YuvConverter.nv21ToRgba(nv21, width, height, rgba);
+        return rgba;
+    }
+
+    @Benchmark
+    public int[] yuv420ToRgba() {
+        YuvConverter.yuv420ToRgba(yPlane, width, uPlane, vPlane, width, 2, width, height, rgba);
+        return rgba;
+    }
+
+    @Benchmark
+    public BufferedImage jpegRoundTrip() throws IOException {
+        // The encoder of YuvImage reads the YCbCr samples directly, ImageIO needs RGB pixels:
+        // their conversion is included, it is small compared with the JPEG encoding and decoding.
+        // TYPE_INT_BGR has the layout of the converted pixels (0x00BBGGRR)
+        YuvConverter.nv21ToRgba(nv21, width, height, rgba);
+        BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_BGR);
+        System.arraycopy(rgba, 0, ((DataBufferInt) frame.getRaster().getDataBuffer()).getData(), 0, rgba.length);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageOutputStream imageOut = ImageIO.createImageOutputStream(out);
+        jpegWriter.setOutput(imageOut);
+        jpegWriter.write(null, new IIOImage(frame, null, null), jpegParam);
+        imageOut.close();
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+
+        AffineTransform rotation = new AffineTransform();
+        rotation.translate(height, 0);
+        rotation.quadrantRotate(1);
+        return new AffineTransformOp(rotation, AffineTransformOp.TYPE_NEAREST_NEIGHBOR).filter(decoded, null);
+    }
+}
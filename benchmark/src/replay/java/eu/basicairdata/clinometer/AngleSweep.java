@@ -0,0 +1,257 @@
+/*
+ * AngleSweep - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package eu.basicairdata.clinometer;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares InclinationEngine.computeAngles with the asin/acos formulas it replaced (computeAnglesLegacy),
+ * on the whole sphere of the directions of the gravity:
+ * <ul>
+ *     <li>a grid of the polar and azimuth angles, with the given step;</li>
+ *     <li>the vectors along the axes and on the boundaries of the quadrants, with signed zeros;</li>
+ *     <li>random vectors with norms from 1E-3 to 1E3 m/s^2.</li>
+ * </ul>
+ * For each angle it prints the maximum difference between the two routines, and the maximum error
+ * of each of them from the exact value (computed in double precision). The differences of angleXY
+ * are measured on the circle, so that 0° and 360° match.
+ * The asin and acos of the legacy formulas lose precision near +-1 (for example, angleXYZ of a
+ * device almost flat), so the difference is checked only where the legacy value is within
+ * TOLERANCE of the exact one; computeAngles must be within TOLERANCE of the exact value everywhere.
+ * The tool also prints the time per vector of the two routines.
+ *
+ * <pre>
+ * Usage: AngleSweep [--step degrees] [--random n] [--seed n]
+ * </pre>
+ *
+ * Run with:  ./gradlew :benchmark:anglesweep -Pargs="--step 0.01"
+ */
+public class AngleSweep {
+
+    private static final String[] NAMES = {"angle[0]", "angle[1]", "angle[2]", "angleXY", "angleXYZ"};
+    private static final double TOLERANCE = 0.01;           // The maximum difference allowed (in degrees)
+
+    private double step = 0.05;
+    private int randomCount = 1000000;
+    private long seed = 1;
+
+    private final Inclination legacy = new Inclination();
+    private final Inclination current = new Inclination();
+    private final float[] gravity = new float[3];
+    private final double[] exact = new double[5];
+    private final double[] maxDifference = new double[5];  // computeAngles vs legacy, where the legacy is precise
+    private final double[] maxLegacyError = new double[5];  // legacy vs exact
+    private final double[] maxError = new double[5];        // computeAngles vs exact
+    private final float[][] worst = new float[5][3];        // The vector of the maximum difference
+    private long count = 0;
+
+
+    public static void main(String[] args) {
+        AngleSweep sweep = new AngleSweep();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--step":
+                        sweep.step = Double.parseDouble(args[++i]);
+                        break;
+                    case "--random":
+                        sweep.randomCount = Integer.parseInt(args[++i]);
+                        break;
+                    case "--seed":
+                        sweep.seed = Long.parseLong(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Usage: AngleSweep [--step degrees] [--random n] [--seed n]");
+            System.exit(1);
+        }
+        System.exit(sweep.run(System.out));
+    }
+
+
+    /**
+     * The angles computed with asin and acos of the normalized components,
+     * as the InclinationEngine did before computeAngles.
+     *
+     * @param gravity The gravity vector (X, Y, Z)
+     * @param out The Inclination to fill with angle[], angleXY and angleXYZ
+     */
+    static void computeAnglesLegacy(float[] gravity, Inclination out) {
+        float gravityXY = (float) Math.sqrt(gravity[0] * gravity[0] + gravity[1] * gravity[1]);
+        float gravityXYZ = (float) Math.sqrt(gravityXY * gravityXY + gravity[2] * gravity[2]);
+
+        out.angleXY = 0;
+        if (gravityXY > 0) {
+            if (gravity[0] >= 0) {
+                if (gravity[1] < 0)
+                    out.angleXY = (float) Math.toDegrees(-Math.asin(gravity[1] / gravityXY));
+                else
+                    out.angleXY = (float) Math.toDegrees(2 * Math.PI - Math.asin(gravity[1] / gravityXY));
+            } else
+                out.angleXY = (float) Math.toDegrees(Math.PI + Math.asin(gravity[1] / gravityXY));
+        }
+
+        out.angleXYZ = 0;
+        if (gravityXY > 0) {
+            out.angleXYZ = (float) Math.toDegrees(Math.acos(gravity[2] / gravityXYZ));
+        }
+
+        out.angle[0] = (float) (180 / Math.PI * Math.asin((gravity[0] / Math.max(gravityXYZ, 0.00001f))));
+        out.angle[1] = (float) (180 / Math.PI * Math.asin((gravity[1] / Math.max(gravityXYZ, 0.00001f))));
+        out.angle[2] = (float) (180 / Math.PI * Math.asin((gravity[2] / Math.max(gravityXYZ, 0.00001f))));
+    }
+
+
+    /**
+     * The exact angles of the vector, in double precision, with the conventions of computeAnglesLegacy.
+     */
+    private void computeExact(double x, double y, double z) {
+        double xy = Math.sqrt(x * x + y * y);
+        exact[0] = Math.toDegrees(Math.atan2(x, Math.sqrt(y * y + z * z)));
+        exact[1] = Math.toDegrees(Math.atan2(y, Math.sqrt(x * x + z * z)));
+        exact[2] = Math.toDegrees(Math.atan2(z, xy));
+        exact[3] = xy > 0 ? Math.toDegrees(Math.atan2(-y, x)) : 0;
+        exact[4] = xy > 0 ? Math.toDegrees(Math.atan2(xy, z)) : 0;
+    }
+
+
+    private static double get(Inclination inclination, int i) {
+        return i < 3 ? inclination.angle[i] : (i == 3 ? inclination.angleXY : inclination.angleXYZ);
+    }
+
+
+    /**
+     * @return the difference between two angles; the angles XY (i = 3) are compared on the circle. NaN is infinite
+     */
+    private static double difference(double a, double b, int i) {
+        double d = Math.abs(a - b);
+        if (i == 3) {
+            d %= 360;
+            d = Math.min(d, 360 - d);
+        }
+        return Double.isNaN(d) ? Double.POSITIVE_INFINITY : d;
+    }
+
+
+    private void compare(float x, float y, float z) {
+        gravity[0] = x;
+        gravity[1] = y;
+        gravity[2] = z;
+        computeAnglesLegacy(gravity, legacy);
+        InclinationEngine.computeAngles(gravity, current);
+        computeExact(x, y, z);
+        count++;
+
+        for (int i = 0; i < 5; i++) {
+            double legacyError = difference(get(legacy, i), exact[i], i);
+            maxLegacyError[i] = Math.max(maxLegacyError[i], legacyError);
+            maxError[i] = Math.max(maxError[i], difference(get(current, i), exact[i], i));
+            if (legacyError <= TOLERANCE) {
+                double d = difference(get(current, i), get(legacy, i), i);
+                if (d > maxDifference[i]) {
+                    maxDifference[i] = d;
+                    worst[i][0] = x;
+                    worst[i][1] = y;
+                    worst[i][2] = z;
+                }
+            }
+        }
+    }
+
+
+    int run(PrintStream out) {
+        // The grid on the sphere
+        int nPolar = (int) Math.round(180 / step);
+        int nAzimuth = (int) Math.round(360 / step);
+        for (int p = 0; p <= nPolar; p++) {
+            double polar = Math.toRadians(p * step);
+            for (int a = 0; a < nAzimuth; a++) {
+                double azimuth = Math.toRadians(a * step);
+                compare((float) (SyntheticAccelerometer.STANDARD_GRAVITY * Math.sin(polar) * Math.cos(azimuth)),
+                        (float) (SyntheticAccelerometer.STANDARD_GRAVITY * Math.sin(polar) * Math.sin(azimuth)),
+                        (float) (SyntheticAccelerometer.STANDARD_GRAVITY * Math.cos(polar)));
+            }
+        }
+
+        // The axes and the boundaries of the quadrants, with signed zeros
+        float[] values = {0.0f, -0.0f, 1E-3f, -1E-3f, 1, -1, (float) SyntheticAccelerometer.STANDARD_GRAVITY, (float) -SyntheticAccelerometer.STANDARD_GRAVITY};
+        for (float x : values) for (float y : values) for (float z : values) compare(x, y, z);
+
+        // Random vectors with random norms
+        Random random = new Random(seed);
+        for (int i = 0; i < randomCount; i++) {
+            double norm = Math.pow(10, 6 * random.nextDouble() - 3);
+            double x = random.nextGaussian();
+            double y = random.nextGaussian();
+            double z = random.nextGaussian();
+            double n = Math.sqrt(x * x + y * y + z * z);
+            compare((float) (norm * x / n), (float) (norm * y / n), (float) (norm * z / n));
+        }
+
+        out.println(String.format(Locale.US, "Vectors: %d (grid step %.3f deg, %d random)", count, step, randomCount));
+        out.println("           Difference    Legacy error    Error   (deg, maximum values)");
+        boolean isPassed = true;
+        for (int i = 0; i < 5; i++) {
+            out.println(String.format(Locale.US, "%-9s  %10.6f  %14.6f  %7.6f   difference at (%s, %s, %s)",
+                    NAMES[i], maxDifference[i], maxLegacyError[i], maxError[i], worst[i][0], worst[i][1], worst[i][2]));
+            if ((maxDifference[i] > TOLERANCE) || (maxError[i] > TOLERANCE)) isPassed = false;
+        }
+        out.println(String.format(Locale.US, "Time per vector: legacy %.1f ns, computeAngles %.1f ns",
+                measure(true), measure(false)));
+        out.println(isPassed ? "PASSED (within " + TOLERANCE + " deg)" : "FAILED (above " + TOLERANCE + " deg)");
+        return isPassed ? 0 : 1;
+    }
+
+
+    /**
+     * @return the best mean time of the routine per vector (in nanoseconds)
+     */
+    private double measure(boolean isLegacy) {
+        Random random = new Random(seed);
+        float[][] vectors = new float[4096][3];
+        for (float[] v : vectors) {
+            v[0] = (float) random.nextGaussian();
+            v[1] = (float) random.nextGaussian();
+            v[2] = (float) random.nextGaussian();
+        }
+        double best = Double.MAX_VALUE;
+        float sink = 0;
+        for (int r = 0; r < 20; r++) {
+            long start = System.nanoTime();
+            for (int k = 0; k < 100; k++) {
+                for (float[] v : vectors) {
+                    if (isLegacy) computeAnglesLegacy(v, legacy);
+                    else InclinationEngine.computeAngles(v, legacy);
+                    sink += legacy.angleXY;
+                }
+            }
+            best = Math.min(best, (System.nanoTime() - start) / (100.0 * vectors.length));
+        }
+        if (sink == 42) System.out.print("");     // Keeps the results alive
+        return best;
+    }
+}
@@ -0,0 +1,653 @@
+/*
+ * SensorReplay - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Replays a recorded sensor stream through the signal processing of the app,
+ * faster than real time and in a deterministic way, on a plain JVM.
+ *
+ * <p>The sensor log can be a binary log written by the SensorRecorder (.bin) or a CSV file
+ * with a sample per line: timestamp (in nanoseconds), X, Y, Z (in m/s²).
+ * The lines that don't start with a digit or a sign are skipped (headers and comments).
+ * The binary logs contain also the events of the gyroscope, if recorded with the sensor fusion:
+ * they are used with --fusion.
+ *
+ * <p>Inclination mode (default): the events are processed by the InclinationEngine with
+ * the Auto-Locking always requested, as onSensorChanged does. When the measurement locks,
+ * a LOCK line is printed and the lock is requested again, so each steady period produces
+ * a lock event. The trace of the angles can be written as CSV with --trace.
+ * The first lock after a movement reports its time to lock, measured from the last event with the
+ * angles out of the tolerance from the locked ones, and each lock followed by a steady window
+ * reports its error, that is the difference from the mean angles of that window. The rule of the Auto-Locking can be
+ * the one of the app (sequential, InclinationEngine.isSteady) or the full window only (window,
+ * InclinationEngine.isSteadyWindow), in order to compare them on the same logs.
+ *
+ * <p>Calibration mode (--calibrate): 7 logs, one for each step of the calibration wizard,
+ * are processed by the CalibrationEngine; the offsets, gains and angles are printed.
+ *
+ * <p>The throughput (events/s) is measured on the processing only, after loading the logs.
+ *
+ * <p>Baseline: the results (the time and the angles of each lock, or the offsets, gains and
+ * angles of the calibration) can be stored into a text file with --write-baseline, and compared
+ * with a stored file with --baseline. The number of locks must be the same, the lock times must be
+ * within --baseline-time-tolerance and all the other values within --baseline-tolerance.
+ * The tool exits with 1 if the results don't match the baseline, so it can be used as a regression check.
+ *
+ * <pre>
+ * Usage: SensorReplay [options] log
+ *        SensorReplay --calibrate log1 log2 ... log7
+ *
+ *   --trace file          Writes the angle trace (CSV) into the file ("-" for the standard output)
+ *   --tolerance degrees   The tolerance of the Auto-Locking (default 0.275, the default precision of the app)
+ *   --no-horizon-check    Disables the horizon check of the Auto-Locking
+ *   --autolock rule       The rule of the Auto-Locking: sequential (the app, default) or window
+ *   --fusion mode         The processing: none (the accelerometer only, default), complementary or kalman
+ *   --calibration g0,g1,g2,o0,o1,o2,a0,a1,a2
+ *                         The gains, offsets and angles of calibration (default: not calibrated)
+ *   --repeat n            Repeats the processing n times and reports the best throughput (default 1)
+ *   --jitter microseconds Adds a Gaussian jitter to the timestamps, keeping them increasing
+ *   --seed n              The seed of the jitter (default 1)
+ *   --write-baseline file Writes the results into the baseline file
+ *   --baseline file       Compares the results with the baseline file
+ *   --baseline-tolerance value
+ *                         The tolerance of the angles (degrees), offsets (m/s²) and gains (default 0.001)
+ *   --baseline-time-tolerance seconds
+ *                         The tolerance of the lock times (default 0.05)
+ *
+ * Exit status: 0 on success, 1 if the results don't match the baseline (or a calibration step
+ * is not completed), 2 on the errors and on the wrong arguments.
+ * </pre>
+ *
+ * Run with:  ./gradlew :benchmark:replay -Pargs="--trace trace.csv SensorLog.bin"
+ *       or:  ./gradlew :benchmark:replay -Pargs="--baseline SensorLog.baseline SensorLog.bin"
+ */
+public class SensorReplay {
+
+    private static final float DEFAULT_AUTOLOCK_TOLERANCE = 0.275f;
+    private static final String[] SENSOR_FUSION_NAMES = {"none", "complementary", "kalman"};  // By InclinationEngine.SENSOR_FUSION_*
+    private static final String[] AUTOLOCK_RULE_NAMES = {"sequential", "window"};
+    private static final double DEFAULT_BASELINE_TOLERANCE = 0.001;
+    private static final double DEFAULT_BASELINE_TIME_TOLERANCE = 0.05;     // 5 events at 100 Hz
+
+    /**
+     * A sensor stream (accelerometer and gyroscope), loaded in memory.
+     */
+    static class SensorLog {
+        int count = 0;
+        byte[] types = new byte[1024];          // RECORD_SENSOR_EVENT (accelerometer) or RECORD_GYROSCOPE_EVENT
+        long[] timestamps = new long[1024];
+        float[] values = new float[3 * 1024];
+
+        void add(byte type, long timestamp, float x, float y, float z) {
+            if (count == timestamps.length) {
+                types = Arrays.copyOf(types, count * 2);
+                timestamps = Arrays.copyOf(timestamps, count * 2);
+                values = Arrays.copyOf(values, count * 6);
+            }
+            types[count] = type;
+            timestamps[count] = timestamp;
+            values[3 * count] = x;
+            values[3 * count + 1] = y;
+            values[3 * count + 2] = z;
+            count++;
+        }
+
+        /**
+         * Adds a Gaussian jitter to the timestamps, keeping them increasing.
+         */
+        void jitter(double standardDeviationNanos, long seed) {
+            Random random = new Random(seed);
+            for (int i = 0; i < count; i++) {
+                timestamps[i] += Math.round(standardDeviationNanos * random.nextGaussian());
+                if ((i > 0) && (timestamps[i] <= timestamps[i - 1])) timestamps[i] = timestamps[i - 1] + 1;
+            }
+        }
+
+        static SensorLog load(File file) throws IOException {
+            return file.getName().toLowerCase(Locale.US).endsWith(".csv") ? loadCsv(file) : loadBinary(file);
+        }
+
+        static SensorLog loadBinary(File file) throws IOException {
+            SensorLog log = new SensorLog();
+            SensorLogReader reader = new SensorLogReader(file);
+            try {
+                byte type;
+                while ((type = reader.next()) != SensorRecorder.RECORD_END) {
+                    if ((type == SensorRecorder.RECORD_SENSOR_EVENT) || (type == SensorRecorder.RECORD_GYROSCOPE_EVENT)) {
+                        float[] v = reader.getValues();
+                        log.add(type, reader.getTimestamp(), v[0], v[1], v[2]);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+            return log;
+        }
+
+        static SensorLog loadCsv(File file) throws IOException {
+            SensorLog log = new SensorLog();
+            BufferedReader reader = new BufferedReader(new FileReader(file));
+            try {
+                String line;
+                int lineNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    line = line.trim();
+                    if (line.isEmpty()) continue;
+                    char c = line.charAt(0);
+                    if (!Character.isDigit(c) && (c != '-') && (c != '+')) continue;
+                    String[] fields = line.split("[,;\\s]+");
+                    if (fields.length < 4) throw new IOException(file.getName() + ":" + lineNumber + ": 4 values expected");
+                    try {
+                        log.add(SensorRecorder.RECORD_SENSOR_EVENT, Long.parseLong(fields[0]),
+                                Float.parseFloat(fields[1]), Float.parseFloat(fields[2]), Float.parseFloat(fields[3]));
+                    } catch (NumberFormatException e) {
+                        throw new IOException(file.getName() + ":" + lineNumber + ": " + e.getMessage());
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+            return log;
+        }
+    }
+
+
+    /**
+     * The results of a replay, as lines of text made of a key and its values:
+     * "LOCK time a0 a1 a2 XY XYZ" for each lock (the time in seconds from the start of the log),
+     * or "OFFSET o0 o1 o2", "GAIN g0 g1 g2" and "ANGLES a0 a1 a2" for the calibration.
+     * The lines starting with # are comments.
+     */
+    static class Baseline {
+        final List<String> keys = new ArrayList<>();
+        final List<double[]> values = new ArrayList<>();
+
+        void add(String key, double... v) {
+            keys.add(key);
+            values.add(v);
+        }
+
+        void write(File file) throws IOException {
+            PrintStream stream = new PrintStream(file, "UTF-8");
+            try {
+                stream.println("# SensorReplay baseline");
+                for (int i = 0; i < keys.size(); i++) {
+                    StringBuilder line = new StringBuilder(keys.get(i));
+                    for (double v : values.get(i)) line.append(' ').append(v);
+                    stream.println(line);
+                }
+            } finally {
+                stream.close();
+            }
+        }
+
+        static Baseline load(File file) throws IOException {
+            Baseline baseline = new Baseline();
+            BufferedReader reader = new BufferedReader(new FileReader(file));
+            try {
+                String line;
+                int lineNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) continue;
+                    String[] fields = line.split("\\s+");
+                    double[] v = new double[fields.length - 1];
+                    try {
+                        for (int j = 0; j < v.length; j++) v[j] = Double.parseDouble(fields[j + 1]);
+                    } catch (NumberFormatException e) {
+                        throw new IOException(file.getName() + ":" + lineNumber + ": " + e.getMessage());
+                    }
+                    baseline.add(fields[0], v);
+                }
+            } finally {
+                reader.close();
+            }
+            return baseline;
+        }
+
+        /**
+         * Compares the results with the expected ones, printing the differences.
+         * The first value of the LOCK lines is the time, compared with the time tolerance;
+         * the angles are compared modulo 360 degrees (the XY angle wraps around 0).
+         *
+         * @return the number of the lines that don't match
+         */
+        int compare(Baseline expected, double tolerance, double timeTolerance, PrintStream out) {
+            int mismatches = 0;
+            if (keys.size() != expected.keys.size()) {
+                out.println(String.format(Locale.US, "BASELINE: %d results, %d expected", keys.size(), expected.keys.size()));
+                mismatches++;
+            }
+            for (int i = 0; i < Math.min(keys.size(), expected.keys.size()); i++) {
+                double[] v = values.get(i);
+                double[] e = expected.values.get(i);
+                boolean isMatching = keys.get(i).equals(expected.keys.get(i)) && (v.length == e.length);
+                boolean isLock = keys.get(i).equals("LOCK");
+                for (int j = 0; isMatching && j < v.length; j++) {
+                    if (isLock && (j == 0)) isMatching = Math.abs(v[j] - e[j]) <= timeTolerance;
+                    else if (isLock || keys.get(i).equals("ANGLES")) {
+                        double difference = (v[j] - e[j]) % 360;
+                        isMatching = Math.min(Math.abs(difference), 360 - Math.abs(difference)) <= tolerance;
+                    } else isMatching = Math.abs(v[j] - e[j]) <= tolerance;
+                }
+                if (!isMatching) {
+                    out.println("BASELINE: " + keys.get(i) + " " + Arrays.toString(v)
+                            + ", expected " + expected.keys.get(i) + " " + Arrays.toString(e));
+                    mismatches++;
+                }
+            }
+            return mismatches;
+        }
+    }
+
+
+    private File traceFile = null;
+    private boolean isTraceOnStdout = false;
+    private float autoLockTolerance = DEFAULT_AUTOLOCK_TOLERANCE;
+    private boolean isHorizonCheckEnabled = true;
+    private boolean isWindowRule = false;
+    private int sensorFusion = InclinationEngine.SENSOR_FUSION_NONE;
+    private final float[] gain = {1, 1, 1};
+    private final float[] offset = {0, 0, 0};
+    private final float[] angleCalibration = {0, 0, 0};
+    private int repeat = 1;
+    private double jitterNanos = 0;
+    private long seed = 1;
+    private File baselineFile = null;
+    private File writeBaselineFile = null;
+    private double baselineTolerance = DEFAULT_BASELINE_TOLERANCE;
+    private double baselineTimeTolerance = DEFAULT_BASELINE_TIME_TOLERANCE;
+
+
+    public static void main(String[] args) {
+        try {
+            System.exit(new SensorReplay().run(args));
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+
+    private static int usage() {
+        System.err.println("Usage: SensorReplay [--trace file] [--tolerance degrees] [--no-horizon-check] [--autolock rule] [--fusion mode]");
+        System.err.println("                    [--calibration g0,g1,g2,o0,o1,o2,a0,a1,a2] [--repeat n]");
+        System.err.println("                    [--jitter microseconds] [--seed n]");
+        System.err.println("                    [--write-baseline file] [--baseline file] [--baseline-tolerance value]");
+        System.err.println("                    [--baseline-time-tolerance seconds] log");
+        System.err.println("       SensorReplay [baseline options] --calibrate log1 log2 log3 log4 log5 log6 log7");
+        return 2;
+    }
+
+
+    int run(String[] args) throws IOException {
+        boolean isCalibrationMode = false;
+        int i = 0;
+        try {
+            for (; i < args.length && args[i].startsWith("--"); i++) {
+                switch (args[i]) {
+                    case "--trace":
+                        if (args[++i].equals("-")) isTraceOnStdout = true;
+                        else traceFile = new File(args[i]);
+                        break;
+                    case "--tolerance":
+                        autoLockTolerance = Float.parseFloat(args[++i]);
+                        break;
+                    case "--no-horizon-check":
+                        isHorizonCheckEnabled = false;
+                        break;
+                    case "--autolock":
+                        int rule = Arrays.asList(AUTOLOCK_RULE_NAMES).indexOf(args[++i]);
+                        if (rule < 0) return usage();
+                        isWindowRule = (rule == 1);
+                        break;
+                    case "--fusion":
+                        sensorFusion = Arrays.asList(SENSOR_FUSION_NAMES).indexOf(args[++i]);
+                        if (sensorFusion < 0) return usage();
+                        break;
+                    case "--calibration":
+                        String[] c = args[++i].split(",");
+                        if (c.length != 9) return usage();
+                        for (int j = 0; j < 3; j++) {
+                            gain[j] = Float.parseFloat(c[j]);
+                            offset[j] = Float.parseFloat(c[j + 3]);
+                            angleCalibration[j] = Float.parseFloat(c[j + 6]);
+                        }
+                        break;
+                    case "--repeat":
+                        repeat = Math.max(1, Integer.parseInt(args[++i]));
+                        break;
+                    case "--jitter":
+                        jitterNanos = Double.parseDouble(args[++i]) * 1000;
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    case "--write-baseline":
+                        writeBaselineFile = new File(args[++i]);
+                        break;
+                    case "--baseline":
+                        baselineFile = new File(args[++i]);
+                        break;
+                    case "--baseline-tolerance":
+                        baselineTolerance = Double.parseDouble(args[++i]);
+                        break;
+                    case "--baseline-time-tolerance":
+                        baselineTimeTolerance = Double.parseDouble(args[++i]);
+                        break;
+                    case "--calibrate":
+                        isCalibrationMode = true;
+                        break;
+                    default:
+                        return usage();
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            return usage();
+        }
+
+        Baseline expected = baselineFile != null ? Baseline.load(baselineFile) : null;
+        Baseline results = new Baseline();
+        int status;
+        if (isCalibrationMode) {
+            if (args.length - i != CalibrationEngine.N_STEPS) return usage();
+            SensorLog[] logs = new SensorLog[CalibrationEngine.N_STEPS];
+            for (int j = 0; j < CalibrationEngine.N_STEPS; j++) logs[j] = SensorLog.load(new File(args[i + j]));
+            status = replayCalibration(logs, results);
+        } else {
+            if (args.length - i != 1) return usage();
+            SensorLog log = SensorLog.load(new File(args[i]));
+            if (jitterNanos > 0) log.jitter(jitterNanos, seed);
+            status = replayInclination(log, results);
+        }
+        if (status != 0) return status;
+
+        // Baseline
+
+        if (writeBaselineFile != null) results.write(writeBaselineFile);
+        if (expected != null) {
+            int mismatches = results.compare(expected, baselineTolerance, baselineTimeTolerance, System.out);
+            if (mismatches > 0) {
+                System.out.println(String.format(Locale.US, "Baseline:   FAILED (%d mismatches with %s)", mismatches, baselineFile));
+                return 1;
+            }
+            System.out.println(String.format(Locale.US, "Baseline:   OK (%s)", baselineFile));
+        }
+        return 0;
+    }
+
+
+    // --------------------------------------------------------------------------------------------------------------------------
+    // --- INCLINATION ----------------------------------------------------------------------------------------------------------
+    // --------------------------------------------------------------------------------------------------------------------------
+
+
+    private int replayInclination(SensorLog log, Baseline results) throws IOException {
+        float[] trace = new float[5 * log.count];           // The angles after each accelerometer event
+        boolean[] traceLocked = new boolean[log.count];     // True for the events that lock the measurement
+        boolean isGyroscopeUsed = (sensorFusion != InclinationEngine.SENSOR_FUSION_NONE);
+        int locks = 0;
+        int windowSize = 0;                                 // The size of the Auto-Locking window (in events)
+        long bestNanos = Long.MAX_VALUE;
+
+        for (int r = 0; r < repeat; r++) {
+            InclinationEngine inclinationEngine = new InclinationEngine();
+            inclinationEngine.setCalibration(gain, offset, angleCalibration);
+            inclinationEngine.setSensorFusion(sensorFusion);
+            Inclination inclination = new Inclination();
+            float[] values = new float[3];
+            boolean isRecording = (r == 0);
+            locks = 0;
+
+            long start = System.nanoTime();
+            for (int i = 0; i < log.count; i++) {
+                values[0] = log.values[3 * i];
+                values[1] = log.values[3 * i + 1];
+                values[2] = log.values[3 * i + 2];
+
+                if (log.types[i] == SensorRecorder.RECORD_GYROSCOPE_EVENT) {
+                    if (isGyroscopeUsed) inclinationEngine.updateGyroscope(values, log.timestamps[i]);
+                    continue;
+                }
+
+                // The same order of onSensorChanged: the lock is checked before processing the event
+                boolean isLocked = isWindowRule
+                        ? inclinationEngine.isSteadyWindow(autoLockTolerance, isHorizonCheckEnabled)
+                        : inclinationEngine.isSteady(autoLockTolerance, isHorizonCheckEnabled);
+                if (isLocked) {
+                    inclinationEngine.lock(inclination);
+                    locks++;
+                } else inclinationEngine.update(values, log.timestamps[i], inclination);
+
+                if (isRecording) {
+                    trace[5 * i] = inclination.angle[0];
+                    trace[5 * i + 1] = inclination.angle[1];
+                    trace[5 * i + 2] = inclination.angle[2];
+                    trace[5 * i + 3] = inclination.angleXY;
+                    trace[5 * i + 4] = inclination.angleXYZ;
+                    traceLocked[i] = isLocked;
+                }
+            }
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+            windowSize = inclinationEngine.getAngleMeanVariance(0).getSize();
+        }
+
+        // Lock events
+
+        PrintStream out = System.out;
+        int events = 0;
+        int previousLock = -1;
+        int timesToLock = 0;
+        double timeToLockSum = 0;
+        double timeToLockMax = 0;
+        double lockErrorSum = 0;
+        double lockErrorMax = 0;
+        int lockErrors = 0;
+        for (int i = 0; i < log.count; i++) {
+            if ((log.types[i] == SensorRecorder.RECORD_SENSOR_EVENT) || isGyroscopeUsed) events++;
+            if (traceLocked[i]) {
+                int movement = getLastMovement(log, trace, i, previousLock);
+                if ((movement < 0) && (previousLock < 0)) movement = 0;     // The first lock is measured from the start of the log
+                double timeToLock = movement < 0 ? Double.NaN : (log.timestamps[i] - log.timestamps[movement]) / 1E9;
+                double lockError = getLockError(log, trace, i, windowSize);
+                if (!Double.isNaN(timeToLock)) {
+                    timeToLockSum += timeToLock;
+                    timeToLockMax = Math.max(timeToLockMax, timeToLock);
+                    timesToLock++;
+                }
+                if (!Double.isNaN(lockError)) {
+                    lockErrorSum += lockError;
+                    lockErrorMax = Math.max(lockErrorMax, lockError);
+                    lockErrors++;
+                }
+                previousLock = i;
+                results.add("LOCK", (log.timestamps[i] - log.timestamps[0]) / 1E9,
+                        trace[5 * i], trace[5 * i + 1], trace[5 * i + 2], trace[5 * i + 3], trace[5 * i + 4]);
+                out.println(String.format(Locale.US, "LOCK t=%.3f s  angles = %+.4f  %+.4f  %+.4f  XY = %.4f  XYZ = %.4f  after %s s  error = %s",
+                        (log.timestamps[i] - log.timestamps[0]) / 1E9,
+                        trace[5 * i], trace[5 * i + 1], trace[5 * i + 2], trace[5 * i + 3], trace[5 * i + 4],
+                        Double.isNaN(timeToLock) ? "-" : String.format(Locale.US, "%.3f", timeToLock),
+                        Double.isNaN(lockError) ? "-" : String.format(Locale.US, "%.4f", lockError)));
+            }
+        }
+
+        // Trace
+
+        if (traceFile != null || isTraceOnStdout) {
+            PrintStream traceStream = isTraceOnStdout ? System.out : new PrintStream(traceFile, "UTF-8");
+            try {
+                traceStream.println("timestamp,angle0,angle1,angle2,angleXY,angleXYZ,locked");
+                for (int i = 0; i < log.count; i++) {
+                    if (log.types[i] != SensorRecorder.RECORD_SENSOR_EVENT) continue;
+                    traceStream.println(String.format(Locale.US, "%d,%.5f,%.5f,%.5f,%.5f,%.5f,%d",
+                            log.timestamps[i], trace[5 * i], trace[5 * i + 1], trace[5 * i + 2], trace[5 * i + 3], trace[5 * i + 4],
+                            traceLocked[i] ? 1 : 0));
+                }
+            } finally {
+                if (!isTraceOnStdout) traceStream.close();
+            }
+        }
+
+        // Summary
+
+        printSummary(out, events, bestNanos);
+        out.println(String.format(Locale.US, "Locks:      %d (%s rule)", locks, AUTOLOCK_RULE_NAMES[isWindowRule ? 1 : 0]));
+        if (timesToLock > 0) {
+            out.println(String.format(Locale.US, "Lock time:  mean %.3f s, max %.3f s (%d locks after a movement)",
+                    timeToLockSum / timesToLock, timeToLockMax, timesToLock));
+        }
+        if (lockErrors > 0) {
+            out.println(String.format(Locale.US, "Lock error: mean %.4f deg, max %.4f deg (%d locks followed by a steady window)",
+                    lockErrorSum / lockErrors, lockErrorMax, lockErrors));
+        }
+        return 0;
+    }
+
+
+    /**
+     * Returns the last accelerometer event before a lock with an angle out of the tolerance
+     * from the locked ones, that is the end of the movement of the device.
+     *
+     * @param lock The index of the lock event
+     * @param previousLock The index of the previous lock event, -1 if none
+     * @return the index of the event, or -1 if the device didn't move after the previous lock
+     */
+    private int getLastMovement(SensorLog log, float[] trace, int lock, int previousLock) {
+        for (int j = lock - 1; j > previousLock; j--) {
+            if (log.types[j] != SensorRecorder.RECORD_SENSOR_EVENT) continue;
+            if ((Math.abs(trace[5 * j] - trace[5 * lock]) > autoLockTolerance)
+                    || (Math.abs(trace[5 * j + 1] - trace[5 * lock + 1]) > autoLockTolerance)
+                    || (Math.abs(trace[5 * j + 2] - trace[5 * lock + 2]) > autoLockTolerance)) return j;
+        }
+        return -1;
+    }
+
+
+    /**
+     * Returns the error of a lock: the maximum difference between the locked angles and
+     * the mean angles of the following window of accelerometer events.
+     * The window is the reference only if the device is steady: all its angles must be
+     * within the tolerance from their mean values.
+     *
+     * @param lock The index of the lock event
+     * @param windowSize The number of accelerometer events of the window
+     * @return the error (in degrees), or NaN if the log ends before the window or the device moves
+     */
+    private double getLockError(SensorLog log, float[] trace, int lock, int windowSize) {
+        double[] sum = new double[3];
+        int n = 0;
+        for (int j = lock + 1; j < log.count && n < windowSize; j++) {
+            if (log.types[j] != SensorRecorder.RECORD_SENSOR_EVENT) continue;
+            for (int k = 0; k < 3; k++) sum[k] += trace[5 * j + k];
+            n++;
+        }
+        if (n < windowSize) return Double.NaN;
+        n = 0;
+        for (int j = lock + 1; j < log.count && n < windowSize; j++) {
+            if (log.types[j] != SensorRecorder.RECORD_SENSOR_EVENT) continue;
+            for (int k = 0; k < 3; k++) {
+                if (Math.abs(trace[5 * j + k] - sum[k] / windowSize) > autoLockTolerance) return Double.NaN;
+            }
+            n++;
+        }
+        double error = 0;
+        for (int k = 0; k < 3; k++) error = Math.max(error, Math.abs(trace[5 * lock + k] - sum[k] / n));
+        return error;
+    }
+
+
+    // --------------------------------------------------------------------------------------------------------------------------
+    // --- CALIBRATION ----------------------------------------------------------------------------------------------------------
+    // --------------------------------------------------------------------------------------------------------------------------
+
+
+    private int replayCalibration(SensorLog[] logs, Baseline results) {
+        CalibrationEngine calibrationEngine = null;
+        int events = 0;
+        long bestNanos = Long.MAX_VALUE;
+        PrintStream out = System.out;
+
+        for (int r = 0; r < repeat; r++) {
+            calibrationEngine = new CalibrationEngine();
+            float[] values = new float[3];
+            events = 0;
+
+            long start = System.nanoTime();
+            for (int step = 0; step < CalibrationEngine.N_STEPS; step++) {
+                SensorLog log = logs[step];
+                calibrationEngine.startStep(step);
+                int result = CalibrationEngine.SAMPLE_DISCARDED;
+                for (int i = 0; i < log.count && result != CalibrationEngine.STEP_COMPLETED; i++) {
+                    if (log.types[i] != SensorRecorder.RECORD_SENSOR_EVENT) continue;
+                    values[0] = log.values[3 * i];
+                    values[1] = log.values[3 * i + 1];
+                    values[2] = log.values[3 * i + 2];
+                    result = calibrationEngine.loadSample(values);
+                    events++;
+                }
+                if (result != CalibrationEngine.STEP_COMPLETED) {
+                    out.println("Step " + (step + 1) + " not completed: the device is not steady enough, or the log is too short");
+                    return 1;
+                }
+            }
+            calibrationEngine.calculate();
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+
+        float[][] mean = calibrationEngine.getMean();
+        for (int i = 0; i < CalibrationEngine.N_STEPS; i++) {
+            out.println(String.format(Locale.US, "mean[ ][%d]  =  %+1.4f  %+1.4f  %+1.4f", i, mean[0][i], mean[1][i], mean[2][i]));
+        }
+        float[] o = calibrationEngine.getCalibrationOffset();
+        float[] g = calibrationEngine.getCalibrationGain();
+        float[] a = calibrationEngine.getCalibrationAngle();
+        out.println(String.format(Locale.US, "Offset  =  %+1.4f  %+1.4f  %+1.4f", o[0], o[1], o[2]));
+        out.println(String.format(Locale.US, "Gain    =  %+1.4f  %+1.4f  %+1.4f", g[0], g[1], g[2]));
+        out.println(String.format(Locale.US, "Angles  =  %+1.4f  %+1.4f  %+1.4f", a[0], a[1], a[2]));
+        results.add("OFFSET", o[0], o[1], o[2]);
+        results.add("GAIN", g[0], g[1], g[2]);
+        results.add("ANGLES", a[0], a[1], a[2]);
+        out.println(String.format(Locale.US, "--calibration %s,%s,%s,%s,%s,%s,%s,%s,%s",
+                g[0], g[1], g[2], o[0], o[1], o[2], a[0], a[1], a[2]));
+        printSummary(out, events, bestNanos);
+        return 0;
+    }
+
+
+    private static void printSummary(PrintStream out, int events, long nanos) {
+        out.println(String.format(Locale.US, "Events:     %d", events));
+        out.println(String.format(Locale.US, "Time:       %.3f ms", nanos / 1E6));
+        out.println(String.format(Locale.US, "Throughput: %.0f events/s", nanos > 0 ? events * 1E9 / nanos : 0));
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * SyntheticAccelerometer - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A seeded generator of accelerometer samples, for the tests of the signal processing
+ * without hardware.
+ *
+ * <p>The orientation of the device is scripted as a sequence of segments (hold and moveTo),
+ * expressed as roll (rotation around the Y axis) and pitch (rotation around the X axis):
+ * the true gravity in the device frame is G * (cos(pitch) sin(roll), sin(pitch), cos(pitch) cos(roll)).
+ * Roll = 0 and Pitch = 0 is the device flat on a table, Roll = 180 is face down.
+ *
+ * <p>The errors of the sensor are applied to the true gravity in this order:
+ * the axis misalignment (the inverse of the calibrationMatrix of the InclinationEngine,
+ * so that the calibration angles are recovered by the calibration), the vibration,
+ * the gain, the bias and the Gaussian noise:
+ * <pre>
+ * sample = gain * (transpose(calibrationMatrix) * gravity + vibration) + bias + noise
+ * </pre>
+ * The timestamps can be jittered, and the script can contain gaps (for example the screen
+ * turned off), to test the filters with irregular sample periods.
+ *
+ * <p>Each sample has also a gyroscope sample (getAngularRate), with the mean angular rate
+ * of the device since the previous sample, plus the bias and the Gaussian noise of the gyroscope.
+ * The rotation of the device is the world to device rotation C = Ry(roll) * Rx(-pitch), so that
+ * gravity = C * (0, 0, G) and the angular rate w is given by dC/dt = -[w]x C.
+ * The same seed and script always give the same samples.
+ */
+public class SyntheticAccelerometer {
+
+    public static final double STANDARD_GRAVITY = 9.80665;
+
+    /**
+     * A segment of the script: the orientation goes linearly from the end
+     * of the previous segment to the given angles.
+     */
+    private static class Segment {
+        final long samples;         // The duration of the segment (in samples)
+        final double roll;          // The roll at the end of the segment (in degrees)
+        final double pitch;         // The pitch at the end of the segment (in degrees)
+        long gapNanos = 0;          // The time without samples at the start of the segment (in nanoseconds)
+
+        Segment(long samples, double roll, double pitch) {
+            this.samples = samples;
+            this.roll = roll;
+            this.pitch = pitch;
+        }
+    }
+
+    private final Random random;
+    private final Random jitterRandom;                   // Separated, so that the jitter doesn't change the values
+    private final Random gyroscopeRandom;               // Separated, so that the gyroscope doesn't change the accelerometer values
+    private final double sampleRate;                    // The sample rate (in Hz)
+    private final long periodNanos;                     // The period of the samples (in nanoseconds)
+
+    private double noise = 0;                           // The standard deviation of the noise (in m/s²)
+    private final double[] bias = {0, 0, 0};            // The bias of the accelerometers (in m/s²)
+    private final double[] gain = {1, 1, 1};            // The gain of the accelerometers
+    private final float[][] misalignment = {{1, 0, 0}, {0, 1, 0}, {0, 0, 1}};  // The calibrationMatrix of the misalignment
+    private double vibrationAmplitude = 0;              // The amplitude of the vibration (in m/s², on all the axes)
+    private double vibrationFrequency = 0;              // The frequency of the vibration (in Hz)
+    private double gyroscopeNoise = 0;                  // The standard deviation of the noise of the gyroscope (in rad/s)
+    private final double[] gyroscopeBias = {0, 0, 0};   // The bias of the gyroscope (in rad/s)
+    private double jitter = 0;                          // The standard deviation of the jitter of the timestamps (in nanoseconds)
+    private long gapsNanos = 0;                         // The sum of the gaps of the script, up to the current segment
+
+    private final List<Segment> script = new ArrayList<>();
+    private int segmentIndex = 0;
+    private long segmentSample = 0;                     // The current sample into the current segment
+    private double startRoll = 0;                       // The roll at the start of the current segment
+    private double startPitch = 0;                      // The pitch at the start of the current segment
+    private double roll = 0;                            // The current roll (in degrees)
+    private double pitch = 0;                           // The current pitch (in degrees)
+    private long sample = 0;                            // The number of the samples generated
+
+    private final double[] gravity = {0, 0, 0};         // The true gravity of the last sample
+    private final double[] angularRate = {0, 0, 0};     // The gyroscope sample of the last sample (in rad/s)
+    private final double[][] rotation = new double[3][3];           // The rotation of the device at the last sample
+    private final double[][] previousRotation = new double[3][3];   // The rotation of the device at the previous sample
+    private final double[][] deltaRotation = new double[3][3];      // The rotation between the previous and the last sample
+
+
+    /**
+     * Creates a new generator.
+     *
+     * @param seed The seed of the random generator
+     * @param sampleRate The sample rate (in Hz)
+     */
+    public SyntheticAccelerometer(long seed, double sampleRate) {
+        random = new Random(seed);
+        jitterRandom = new Random(~seed);
+        gyroscopeRandom = new Random(seed ^ 0x5DEECE66DL);
+        this.sampleRate = sampleRate;
+        periodNanos = Math.round(1E9 / sampleRate);
+    }
+
+
+    public void setNoise(double standardDeviation) {
+        noise = standardDeviation;
+    }
+
+
+    public void setBias(double x, double y, double z) {
+        bias[0] = x;
+        bias[1] = y;
+        bias[2] = z;
+    }
+
+
+    public void setGain(double x, double y, double z) {
+        gain[0] = x;
+        gain[1] = y;
+        gain[2] = z;
+    }
+
+
+    /**
+     * Sets the misalignment of the axes, with the same model of the calibration.
+     *
+     * @param angleCalibration The calibration angles that correct the misalignment: alpha, beta, gamma (in degrees)
+     */
+    public void setMisalignment(float[] angleCalibration) {
+        InclinationEngine.computeCalibrationMatrix(angleCalibration, misalignment);
+    }
+
+
+    public void setGyroscopeNoise(double standardDeviation) {
+        gyroscopeNoise = standardDeviation;
+    }
+
+
+    public void setGyroscopeBias(double x, double y, double z) {
+        gyroscopeBias[0] = x;
+        gyroscopeBias[1] = y;
+        gyroscopeBias[2] = z;
+    }
+
+
+    public void setVibration(double amplitude, double frequency) {
+        vibrationAmplitude = amplitude;
+        vibrationFrequency = frequency;
+    }
+
+
+    /**
+     * Sets the jitter of the timestamps. The timestamps are always increasing.
+     *
+     * @param standardDeviation The standard deviation of the jitter, as a fraction of the sample period
+     */
+    public void setTimestampJitter(double standardDeviation) {
+        jitter = standardDeviation * periodNanos;
+    }
+
+
+    /**
+     * Adds a gap: a time without samples, at the current orientation.
+     *
+     * @param seconds The duration of the gap (in seconds)
+     */
+    public void addGap(double seconds) {
+        Segment gap = script.isEmpty() ? new Segment(0, 0, 0)
+                : new Segment(0, script.get(script.size() - 1).roll, script.get(script.size() - 1).pitch);
+        gap.gapNanos = Math.round(seconds * 1E9);
+        script.add(gap);
+    }
+
+
+    /**
+     * Adds a segment that holds the device at the given orientation.
+     * The orientation changes instantly, if different from the previous one.
+     *
+     * @param seconds The duration of the segment (in seconds)
+     * @param roll The roll (in degrees)
+     * @param pitch The pitch (in degrees)
+     */
+    public void hold(double seconds, double roll, double pitch) {
+        if (script.isEmpty()) {
+            startRoll = roll;
+            startPitch = pitch;
+        }
+        script.add(new Segment(0, roll, pitch));
+        script.add(new Segment(Math.round(seconds * sampleRate), roll, pitch));
+    }
+
+
+    /**
+     * Adds a segment that moves the device linearly to the given orientation.
+     *
+     * @param seconds The duration of the movement (in seconds)
+     * @param roll The roll at the end of the movement (in degrees)
+     * @param pitch The pitch at the end of the movement (in degrees)
+     */
+    public void moveTo(double seconds, double roll, double pitch) {
+        script.add(new Segment(Math.round(seconds * sampleRate), roll, pitch));
+    }
+
+
+    /**
+     * @return the total number of the samples of the script
+     */
+    public long getSamplesCount() {
+        long count = 0;
+        for (Segment segment : script) count += segment.samples;
+        return count;
+    }
+
+
+    /**
+     * @return true if there are other samples in the script
+     */
+    public boolean hasNext() {
+        while (segmentIndex < script.size() && segmentSample >= script.get(segmentIndex).samples) {
+            gapsNanos += script.get(segmentIndex).gapNanos;
+            startRoll = script.get(segmentIndex).roll;
+            startPitch = script.get(segmentIndex).pitch;
+            segmentIndex++;
+            segmentSample = 0;
+        }
+        return segmentIndex < script.size();
+    }
+
+
+    /**
+     * Generates the next sample of the script.
+     *
+     * @param values The array to fill with the values of the accelerometers (X, Y, Z)
+     * @return the timestamp of the sample (in nanoseconds)
+     */
+    public long next(float[] values) {
+        if (!hasNext()) throw new IllegalStateException("End of the script");
+        Segment segment = script.get(segmentIndex);
+        segmentSample++;
+        double t = (double) segmentSample / segment.samples;
+        roll = startRoll + (segment.roll - startRoll) * t;
+        pitch = startPitch + (segment.pitch - startPitch) * t;
+
+        double r = Math.toRadians(roll);
+        double p = Math.toRadians(pitch);
+        gravity[0] = STANDARD_GRAVITY * Math.cos(p) * Math.sin(r);
+        gravity[1] = STANDARD_GRAVITY * Math.sin(p);
+        gravity[2] = STANDARD_GRAVITY * Math.cos(p) * Math.cos(r);
+
+        // The gyroscope: the rotation from the previous sample
+        for (int i = 0; i < 3; i++) System.arraycopy(rotation[i], 0, previousRotation[i], 0, 3);
+        computeRotation(r, p, rotation);
+        if (sample == 0) computeRotation(r, p, previousRotation);
+        computeAngularRate(previousRotation, rotation, periodNanos * 1E-9, angularRate);
+        for (int i = 0; i < 3; i++) angularRate[i] += gyroscopeBias[i] + gyroscopeNoise * gyroscopeRandom.nextGaussian();
+
+        double vibration = vibrationAmplitude == 0 ? 0
+                : vibrationAmplitude * Math.sin(2 * Math.PI * vibrationFrequency * sample / sampleRate);
+        for (int i = 0; i < 3; i++) {
+            // The transpose of the calibrationMatrix is its inverse
+            double misaligned = misalignment[0][i] * gravity[0] + misalignment[1][i] * gravity[1] + misalignment[2][i] * gravity[2];
+            values[i] = (float) (gain[i] * (misaligned + vibration) + bias[i] + noise * random.nextGaussian());
+        }
+        long timestamp = sample++ * periodNanos + gapsNanos;
+        if (jitter > 0) {
+            // Limited to less than half period, so that the timestamps are always increasing
+            timestamp += (long) Math.max(-0.45 * periodNanos, Math.min(0.45 * periodNanos, jitter * jitterRandom.nextGaussian()));
+        }
+        return timestamp;
+    }
+
+
+    /**
+     * Returns the gyroscope sample that goes with the last accelerometer sample, with the same timestamp.
+     *
+     * @param values The array to fill with the angular rates around X, Y, Z (in rad/s)
+     */
+    public void getAngularRate(float[] values) {
+        values[0] = (float) angularRate[0];
+        values[1] = (float) angularRate[1];
+        values[2] = (float) angularRate[2];
+    }
+
+
+    /**
+     * Computes the world to device rotation C = Ry(roll) * Rx(-pitch).
+     */
+    private static void computeRotation(double roll, double pitch, double[][] c) {
+        double cr = Math.cos(roll);
+        double sr = Math.sin(roll);
+        double cp = Math.cos(pitch);
+        double sp = Math.sin(pitch);
+        c[0][0] = cr;  c[0][1] = -sr * sp; c[0][2] = sr * cp;
+        c[1][0] = 0;   c[1][1] = cp;       c[1][2] = sp;
+        c[2][0] = -sr; c[2][1] = -cr * sp; c[2][2] = cr * cp;
+    }
+
+
+    /**
+     * Computes the mean angular rate between two rotations: the rotation between them,
+     * D = c1 * transpose(c0) = exp(-[w dt]x), is converted into axis and angle.
+     */
+    private void computeAngularRate(double[][] c0, double[][] c1, double dt, double[] w) {
+        double[][] d = deltaRotation;
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) d[i][j] = c1[i][0] * c0[j][0] + c1[i][1] * c0[j][1] + c1[i][2] * c0[j][2];
+        }
+        double vx = (d[2][1] - d[1][2]) / 2;
+        double vy = (d[0][2] - d[2][0]) / 2;
+        double vz = (d[1][0] - d[0][1]) / 2;
+        double sin = Math.sqrt(vx * vx + vy * vy + vz * vz);
+        double angle = Math.atan2(sin, (d[0][0] + d[1][1] + d[2][2] - 1) / 2);
+        double scale = (sin == 0) ? 0 : -angle / sin / dt;
+        w[0] = vx * scale;
+        w[1] = vy * scale;
+        w[2] = vz * scale;
+    }
+
+
+    /**
+     * Returns the true angle of the last sample, as computed by the InclinationEngine
+     * on an ideal sensor.
+     *
+     * @param axis The index of the angle (0, 1, 2)
+     * @return the angle (in degrees)
+     */
+    public double getTrueAngle(int axis) {
+        return Math.toDegrees(Math.asin(gravity[axis] / STANDARD_GRAVITY));
+    }
+
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+}
@@ -0,0 +1,383 @@
+/*
+ * SyntheticBenchmark - Java Class for Android
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.basicairdata.clinometer;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Drives the signal processing with the SyntheticAccelerometer at different sample rates
+ * and measures, for each rate and for each processing (the accelerometer only filter and
+ * the SensorFusions with the gyroscope):
+ * <ul>
+ *     <li>the convergence time of the angles after a movement of the device (within CONVERGENCE_THRESHOLD);</li>
+ *     <li>the latency of the Auto-Locking after the movement, and the error of the locked angles,
+ *         with the full window rule (isSteadyWindow) and with the rule of the app, that adds the
+ *         sequential test (isSteady);</li>
+ *     <li>the noise of the angles (the standard deviation of the error) in the last NOISE_SECONDS of the measurement;</li>
+ *     <li>the convergence time after a gap of the samples (the screen turned off while the device is moved);</li>
+ *     <li>the errors of the gains, offsets and angles computed by the CalibrationEngine,
+ *         and the residual error of the angles measured with that calibration;</li>
+ *     <li>the CPU cost of InclinationEngine.update (ns/event), with updateGyroscope when the gyroscope is used.</li>
+ * </ul>
+ *
+ * <pre>
+ * Usage: SyntheticBenchmark [--seed n] [--noise m/s^2] [--vibration amplitude,frequency] [--jitter fraction] [--rates r1,r2,...]
+ *                           [--fusion none,complementary,kalman]
+ *
+ *   --jitter fraction     The standard deviation of the jitter of the timestamps, as a fraction of the sample period
+ *   --fusion modes        The processings to compare (default all)
+ * </pre>
+ *
+ * Run with:  ./gradlew :benchmark:synthetic -Pargs="--rates 50,100,200,500,1000"
+ */
+public class SyntheticBenchmark {
+
+    private static final double CONVERGENCE_THRESHOLD = 0.1;            // The threshold of the convergence (in degrees)
+    private static final float AUTOLOCK_TOLERANCE = 0.275f;             // The default tolerance of the Auto-Locking
+    private static final double SETTLE_SECONDS = 5;                     // The time at the first orientation
+    private static final double MOVE_SECONDS = 1;                       // The time of the movement between the orientations
+    private static final double MEASURE_SECONDS = 20;                   // The time at the second orientation
+    private static final double GAP_SECONDS = 10;                       // The time without samples of the wake test
+    private static final double NOISE_SECONDS = 10;                     // The final part of the measurement used for the noise
+    private static final double CPU_SECONDS = 60;                       // The duration of the stream for the CPU cost
+    private static final int CPU_REPEAT = 5;
+
+    // The orientations of the movement
+    private static final double ROLL_A = 10;
+    private static final double PITCH_A = 5;
+    private static final double ROLL_B = 30;
+    private static final double PITCH_B = -20;
+
+    // The orientations of the 7 steps of the calibration wizard (roll, pitch)
+    private static final double[][] CALIBRATION_POSES = {
+            {0, 0}, {0, 0}, {90, 0}, {-90, 0}, {0, 90}, {0, -90}, {180, 0} };
+    private static final double CALIBRATION_STEP_SECONDS = 60;          // The maximum time of each step
+
+    // The errors of the simulated sensor
+    private static final double[] GAIN = {1.02, 0.98, 1.01};
+    private static final double[] BIAS = {0.05, -0.08, 0.12};
+    private static final float[] MISALIGNMENT = {0.3f, -0.2f, 0.5f};
+    private static final double GYROSCOPE_NOISE = 0.001;                // The noise of the gyroscope (in rad/s)
+    private static final double[] GYROSCOPE_BIAS = {0.003, -0.002, 0.001};  // The bias of the gyroscope (in rad/s)
+
+    private static final String[] SENSOR_FUSION_NAMES = {"none", "complementary", "kalman"};  // By InclinationEngine.SENSOR_FUSION_*
+
+    private long seed = 1;
+    private double noise = 0.02;
+    private double vibrationAmplitude = 0;
+    private double vibrationFrequency = 0;
+    private double jitter = 0;
+    private double[] rates = {50, 100, 200, 500, 1000};
+    private int[] sensorFusions = {InclinationEngine.SENSOR_FUSION_NONE, InclinationEngine.SENSOR_FUSION_COMPLEMENTARY, InclinationEngine.SENSOR_FUSION_KALMAN};
+
+
+    public static void main(String[] args) {
+        SyntheticBenchmark benchmark = new SyntheticBenchmark();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--seed":
+                        benchmark.seed = Long.parseLong(args[++i]);
+                        break;
+                    case "--noise":
+                        benchmark.noise = Double.parseDouble(args[++i]);
+                        break;
+                    case "--vibration":
+                        String[] v = args[++i].split(",");
+                        benchmark.vibrationAmplitude = Double.parseDouble(v[0]);
+                        benchmark.vibrationFrequency = Double.parseDouble(v[1]);
+                        break;
+                    case "--jitter":
+                        benchmark.jitter = Double.parseDouble(args[++i]);
+                        break;
+                    case "--rates":
+                        String[] r = args[++i].split(",");
+                        benchmark.rates = new double[r.length];
+                        for (int j = 0; j < r.length; j++) benchmark.rates[j] = Double.parseDouble(r[j]);
+                        break;
+                    case "--fusion":
+                        String[] f = args[++i].split(",");
+                        benchmark.sensorFusions = new int[f.length];
+                        for (int j = 0; j < f.length; j++) {
+                            benchmark.sensorFusions[j] = Arrays.asList(SENSOR_FUSION_NAMES).indexOf(f[j]);
+                            if (benchmark.sensorFusions[j] < 0) throw new IllegalArgumentException(f[j]);
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException(args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Usage: SyntheticBenchmark [--seed n] [--noise m/s^2] [--vibration amplitude,frequency] [--jitter fraction] [--rates r1,r2,...]");
+            System.err.println("                          [--fusion none,complementary,kalman]");
+            System.exit(1);
+        }
+        benchmark.run(System.out);
+    }
+
+
+    private SyntheticAccelerometer createAccelerometer(long seed, double rate) {
+        SyntheticAccelerometer accelerometer = new SyntheticAccelerometer(seed, rate);
+        accelerometer.setNoise(noise);
+        accelerometer.setGain(GAIN[0], GAIN[1], GAIN[2]);
+        accelerometer.setBias(BIAS[0], BIAS[1], BIAS[2]);
+        accelerometer.setMisalignment(MISALIGNMENT);
+        accelerometer.setVibration(vibrationAmplitude, vibrationFrequency);
+        accelerometer.setTimestampJitter(jitter);
+        accelerometer.setGyroscopeNoise(GYROSCOPE_NOISE);
+        accelerometer.setGyroscopeBias(GYROSCOPE_BIAS[0], GYROSCOPE_BIAS[1], GYROSCOPE_BIAS[2]);
+        return accelerometer;
+    }
+
+
+    void run(PrintStream out) {
+        out.println(String.format(Locale.US, "Seed = %d, Noise = %.3f m/s^2, Vibration = %.3f m/s^2 at %.1f Hz, Jitter = %.2f, Gyroscope noise = %.3f rad/s",
+                seed, noise, vibrationAmplitude, vibrationFrequency, jitter, GYROSCOPE_NOISE));
+        out.println();
+        out.println("    Rate  Fusion          Convergence   AutoLock   Lock error   Seq. lock   Seq. error      Noise   Wake conv.   Cal. gain   Cal. offset   Cal. angle   Cal. residual    CPU cost");
+        out.println("    (Hz)                          (s)        (s)        (deg)         (s)        (deg)      (deg)          (s)     (error)      (m/s^2)        (deg)           (deg)   (ns/event)");
+        for (double rate : rates) {
+            float[] trueCalibration = new float[9];
+            for (int i = 0; i < 3; i++) {
+                trueCalibration[i] = (float) GAIN[i];
+                trueCalibration[i + 3] = (float) BIAS[i];
+                trueCalibration[i + 6] = MISALIGNMENT[i];
+            }
+            float[] calibration = new float[9];
+            double[] calibrationErrors = measureCalibration(rate, calibration);
+            for (int sensorFusion : sensorFusions) {
+                double[] step = measureStep(rate, sensorFusion, trueCalibration);
+                double wake = measureWake(rate, sensorFusion, trueCalibration);
+                double residual = Double.NaN;
+                if (calibrationErrors != null) residual = measureStep(rate, sensorFusion, calibration)[3];
+                double cpu = measureCpuCost(rate, sensorFusion, trueCalibration);
+
+                out.println(String.format(Locale.US, "%8.0f  %-13s  %12s  %9s  %11.4f  %10s  %11.4f  %9.4f  %11s  %10s  %12s  %11s  %14.4f  %11.1f",
+                        rate, SENSOR_FUSION_NAMES[sensorFusion], formatTime(step[0]), formatTime(step[1]), step[2],
+                        formatTime(step[5]), step[6], step[4], formatTime(wake),
+                        calibrationErrors == null ? "failed" : String.format(Locale.US, "%.5f", calibrationErrors[0]),
+                        calibrationErrors == null ? "failed" : String.format(Locale.US, "%.5f", calibrationErrors[1]),
+                        calibrationErrors == null ? "failed" : String.format(Locale.US, "%.4f", calibrationErrors[2]),
+                        residual, cpu));
+            }
+        }
+    }
+
+
+    private static String formatTime(double seconds) {
+        return Double.isNaN(seconds) ? "never" : String.format(Locale.US, "%.3f", seconds);
+    }
+
+
+    private static InclinationEngine createInclinationEngine(int sensorFusion, float[] calibration) {
+        InclinationEngine inclinationEngine = new InclinationEngine();
+        inclinationEngine.setSensorFusion(sensorFusion);
+        inclinationEngine.setCalibration(
+                new float[] {calibration[0], calibration[1], calibration[2]},
+                new float[] {calibration[3], calibration[4], calibration[5]},
+                new float[] {calibration[6], calibration[7], calibration[8]});
+        return inclinationEngine;
+    }
+
+
+    /**
+     * Measures the response to a movement of the device, from A to B.
+     * The lock is requested at the end of the movement, and the times are measured from there.
+     * The rules of the Auto-Locking are only checked, so that both of them are measured on the same stream:
+     * the locked angles are the ones of the last event, as computed by InclinationEngine.lock.
+     *
+     * @return the convergence time (in s), the latency of the Auto-Locking with the full window
+     *         rule (in s), the maximum error of the locked angles (in degrees), the maximum error
+     *         of the angles at the end of the measurement (in degrees), the maximum standard
+     *         deviation of the errors in the last NOISE_SECONDS (in degrees), the latency of the
+     *         Auto-Locking with the sequential test (in s) and the maximum error of its locked angles (in degrees)
+     */
+    private double[] measureStep(double rate, int sensorFusion, float[] calibration) {
+        SyntheticAccelerometer accelerometer = createAccelerometer(seed, rate);
+        accelerometer.hold(SETTLE_SECONDS, ROLL_A, PITCH_A);
+        accelerometer.moveTo(MOVE_SECONDS, ROLL_B, PITCH_B);
+        accelerometer.hold(MEASURE_SECONDS, ROLL_B, PITCH_B);
+        long stepSample = Math.round((SETTLE_SECONDS + MOVE_SECONDS) * rate);
+        long noiseSample = accelerometer.getSamplesCount() - Math.round(NOISE_SECONDS * rate);
+
+        InclinationEngine inclinationEngine = createInclinationEngine(sensorFusion, calibration);
+        Inclination inclination = new Inclination();
+        float[] values = new float[3];
+        float[] angularRate = new float[3];
+        double[] errorSum = new double[3];
+        double[] errorSumOfSquares = new double[3];
+
+        double convergence = 0;
+        double autoLock = Double.NaN;
+        double lockError = Double.NaN;
+        double sequentialLock = Double.NaN;
+        double sequentialLockError = Double.NaN;
+        double error = 0;
+        long sample = 0;
+        while (accelerometer.hasNext()) {
+            long timestamp = accelerometer.next(values);
+            accelerometer.getAngularRate(angularRate);
+            inclinationEngine.updateGyroscope(angularRate, timestamp);
+            // The lock is checked before processing the event (as onSensorChanged)
+            if (sample >= stepSample && Double.isNaN(autoLock)
+                    && inclinationEngine.isSteadyWindow(AUTOLOCK_TOLERANCE, true)) {
+                autoLock = (sample - stepSample) / rate;
+                lockError = maxError(inclination, accelerometer);
+            }
+            if (sample >= stepSample && Double.isNaN(sequentialLock)
+                    && inclinationEngine.isSteady(AUTOLOCK_TOLERANCE, true)) {
+                sequentialLock = (sample - stepSample) / rate;
+                sequentialLockError = maxError(inclination, accelerometer);
+            }
+            inclinationEngine.update(values, timestamp, inclination);
+            error = maxError(inclination, accelerometer);
+            if (sample >= stepSample && error > CONVERGENCE_THRESHOLD) convergence = (sample + 1 - stepSample) / rate;
+            if (sample >= noiseSample) {
+                for (int i = 0; i < 3; i++) {
+                    double e = inclination.angle[i] - accelerometer.getTrueAngle(i);
+                    errorSum[i] += e;
+                    errorSumOfSquares[i] += e * e;
+                }
+            }
+            sample++;
+        }
+        if (error > CONVERGENCE_THRESHOLD) convergence = Double.NaN;
+        double noise = 0;
+        long n = sample - noiseSample;
+        for (int i = 0; i < 3; i++) {
+            noise = Math.max(noise, Math.sqrt(Math.max(0, errorSumOfSquares[i] / n - (errorSum[i] / n) * (errorSum[i] / n))));
+        }
+        return new double[] {convergence, autoLock, lockError, error, noise, sequentialLock, sequentialLockError};
+    }
+
+
+    /**
+     * Measures the convergence time after a gap of the samples, during which the device is moved from A to B.
+     *
+     * @return the convergence time from the first sample after the gap (in s)
+     */
+    private double measureWake(double rate, int sensorFusion, float[] calibration) {
+        SyntheticAccelerometer accelerometer = createAccelerometer(seed, rate);
+        accelerometer.hold(SETTLE_SECONDS, ROLL_A, PITCH_A);
+        accelerometer.addGap(GAP_SECONDS);
+        accelerometer.hold(MEASURE_SECONDS, ROLL_B, PITCH_B);
+        long wakeSample = Math.round(SETTLE_SECONDS * rate);
+
+        InclinationEngine inclinationEngine = createInclinationEngine(sensorFusion, calibration);
+        Inclination inclination = new Inclination();
+        float[] values = new float[3];
+        float[] angularRate = new float[3];
+
+        double convergence = 0;
+        double error = 0;
+        long sample = 0;
+        while (accelerometer.hasNext()) {
+            long timestamp = accelerometer.next(values);
+            accelerometer.getAngularRate(angularRate);
+            inclinationEngine.updateGyroscope(angularRate, timestamp);
+            inclinationEngine.update(values, timestamp, inclination);
+            error = maxError(inclination, accelerometer);
+            if (sample >= wakeSample && error > CONVERGENCE_THRESHOLD) convergence = (sample + 1 - wakeSample) / rate;
+            sample++;
+        }
+        return error > CONVERGENCE_THRESHOLD ? Double.NaN : convergence;
+    }
+
+
+    private static double maxError(Inclination inclination, SyntheticAccelerometer accelerometer) {
+        double error = 0;
+        for (int i = 0; i < 3; i++) error = Math.max(error, Math.abs(inclination.angle[i] - accelerometer.getTrueAngle(i)));
+        return error;
+    }
+
+
+    /**
+     * Runs the 7 steps of the calibration wizard.
+     *
+     * @param calibration The array to fill with the gains, offsets and angles computed
+     * @return the maximum errors of the gains, offsets and angles, or null if the calibration failed
+     */
+    private double[] measureCalibration(double rate, float[] calibration) {
+        CalibrationEngine calibrationEngine = new CalibrationEngine();
+        float[] values = new float[3];
+        for (int step = 0; step < CalibrationEngine.N_STEPS; step++) {
+            SyntheticAccelerometer accelerometer = createAccelerometer(seed + step + 1, rate);
+            accelerometer.hold(CALIBRATION_STEP_SECONDS, CALIBRATION_POSES[step][0], CALIBRATION_POSES[step][1]);
+            calibrationEngine.startStep(step);
+            int result = CalibrationEngine.SAMPLE_DISCARDED;
+            while (accelerometer.hasNext() && result != CalibrationEngine.STEP_COMPLETED) {
+                accelerometer.next(values);
+                result = calibrationEngine.loadSample(values);
+            }
+            if (result != CalibrationEngine.STEP_COMPLETED) return null;
+        }
+        calibrationEngine.calculate();
+
+        double[] errors = {0, 0, 0};
+        for (int i = 0; i < 3; i++) {
+            calibration[i] = calibrationEngine.getCalibrationGain()[i];
+            calibration[i + 3] = calibrationEngine.getCalibrationOffset()[i];
+            calibration[i + 6] = calibrationEngine.getCalibrationAngle()[i];
+            errors[0] = Math.max(errors[0], Math.abs(calibration[i] - GAIN[i]));
+            errors[1] = Math.max(errors[1], Math.abs(calibration[i + 3] - BIAS[i]));
+            errors[2] = Math.max(errors[2], Math.abs(calibration[i + 6] - MISALIGNMENT[i]));
+        }
+        return errors;
+    }
+
+
+    /**
+     * Measures the CPU cost of InclinationEngine.update, on a moving device.
+     * With a SensorFusion the cost includes the gyroscope sample of each event.
+     *
+     * @return the best mean time per event (in nanoseconds)
+     */
+    private double measureCpuCost(double rate, int sensorFusion, float[] calibration) {
+        SyntheticAccelerometer accelerometer = createAccelerometer(seed, rate);
+        accelerometer.hold(CPU_SECONDS / 3, ROLL_A, PITCH_A);
+        accelerometer.moveTo(CPU_SECONDS / 3, ROLL_B, PITCH_B);
+        accelerometer.hold(CPU_SECONDS / 3, ROLL_B, PITCH_B);
+        int count = (int) accelerometer.getSamplesCount();
+        long[] timestamps = new long[count];
+        float[][] samples = new float[count][3];
+        float[][] angularRates = new float[count][3];
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = accelerometer.next(samples[i]);
+            accelerometer.getAngularRate(angularRates[i]);
+        }
+        boolean isGyroscopeUsed = (sensorFusion != InclinationEngine.SENSOR_FUSION_NONE);
+
+        double best = Double.MAX_VALUE;
+        for (int r = 0; r < CPU_REPEAT; r++) {
+            InclinationEngine inclinationEngine = createInclinationEngine(sensorFusion, calibration);
+            Inclination inclination = new Inclination();
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                if (isGyroscopeUsed) inclinationEngine.updateGyroscope(angularRates[i], timestamps[i]);
+                inclinationEngine.update(samples[i], timestamps[i], inclination);
+            }
+            best = Math.min(best, (double) (System.nanoTime() - start) / count);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * InclinationJitterTest - JUnit Test Class
+ * This file is part of BasicAirData Clinometer
+ *
+ * Copyright (C) 2026 BasicAirData
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package eu.basicairdata.clinometer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the response of the InclinationEngine doesn't depend on the sample rate
+ * and on the jitter of the timestamps of the sensor events.
+ * The same script of the SyntheticAccelerometer (the device held at A, then turned to B
+ * and held there) is processed at 50, 100 and 500 Hz, with and without jitter:
+ * the settled angles at B must be the true ones with every processing, and the time constant
+ * of the response of the accelerometer filter to a step must be the same in seconds at every rate.
+ * The discrete filters follow a step with a delay quantized by the period, so the time constants
+ * can differ by about one period of the lowest rate (20 ms at 50 Hz, less than 10% of the constant).
+ */
+public class InclinationJitterTest {
+
+    private static final double MAX_TIME_CONSTANT_DIFFERENCE = 0.025;   // The bound of the change of the time constant (in s)
+    private static final double MAX_ANGLE_ERROR = 0.05;                 // The bound of the mean error of the settled angles, half of the displayed resolution (in degrees)
+
+    private static final double[] RATES = {50, 100, 500};
+    private static final double[] JITTERS = {0, 0.2, 0.45};             // The standard deviations of the jitter (fractions of the period)
+    private static final int[] SENSOR_FUSIONS = {InclinationEngine.SENSOR_FUSION_NONE,
+            InclinationEngine.SENSOR_FUSION_COMPLEMENTARY, InclinationEngine.SENSOR_FUSION_KALMAN};
+    private static final long SEED = 1;
+
+    private static final double NOISE = 0.02;                           // The noise of the accelerometers (in m/s²)
+    private static final double GYROSCOPE_NOISE = 0.002;                // The noise of the gyroscope (in rad/s)
+    private static final double HOLD_A_SECONDS = 3;
+    private static final double MOVE_SECONDS = 1;                       // The movement for the settled angles
+    private static final double HOLD_B_SECONDS = 8;
+    private static final double SETTLED_SECONDS = 2;                    // The final part of the hold at B where the angles are averaged
+    private static final double ROLL_A = 10;
+    private static final double PITCH_A = 5;
+    private static final double ROLL_B = 30;
+    private static final double PITCH_B = -20;
+
+
+    /**
+     * Processes the script and returns the time constant of the step response (the time
+     * from the end of the movement to 63% of the change of the angle with the largest change, in s)
+     * and the mean errors of the 3 settled angles (over the last SETTLED_SECONDS, in degrees).
+     *
+     * @param noise The noise of the accelerometers, 0 for the measurement of the time constant
+     * @param jitter The standard deviation of the jitter of the timestamps, as a fraction of the period
+     * @param moveSeconds The duration of the movement from A to B (in s), 0 for a step
+     */
+    private static double[] response(double rate, int sensorFusion, double noise, double jitter, double moveSeconds) {
+        SyntheticAccelerometer accelerometer = new SyntheticAccelerometer(SEED, rate);
+        accelerometer.setNoise(noise);
+        accelerometer.setGyroscopeNoise(noise == 0 ? 0 : GYROSCOPE_NOISE);
+        accelerometer.setTimestampJitter(jitter);
+        accelerometer.hold(HOLD_A_SECONDS, ROLL_A, PITCH_A);
+        if (moveSeconds > 0) accelerometer.moveTo(moveSeconds, ROLL_B, PITCH_B);
+        accelerometer.hold(HOLD_B_SECONDS, ROLL_B, PITCH_B);
+        long stepSample = Math.round((HOLD_A_SECONDS + moveSeconds) * rate);
+        long settledSample = accelerometer.getSamplesCount() - Math.round(SETTLED_SECONDS * rate);
+
+        InclinationEngine inclinationEngine = new InclinationEngine();
+        inclinationEngine.setSensorFusion(sensorFusion);
+        Inclination inclination = new Inclination();
+        float[] values = new float[3];
+        float[] angularRate = new float[3];
+        double[] result = {Double.NaN, 0, 0, 0};
+        double start = 0;
+        double target = 0;
+        long stepTimestamp = 0;
+        long lastTimestamp = 0;
+        double lastChange = 0;
+        for (long sample = 0; accelerometer.hasNext(); sample++) {
+            long timestamp = accelerometer.next(values);
+            accelerometer.getAngularRate(angularRate);
+            if (sensorFusion != InclinationEngine.SENSOR_FUSION_NONE) inclinationEngine.updateGyroscope(angularRate, timestamp);
+            if (sample == stepSample) {
+                // The angle 1 (the pitch) has the largest change. The device turns between
+                // the last sample at A and the first one at B: on average, in the middle
+                start = inclination.angle[1];
+                stepTimestamp = (lastTimestamp + timestamp) / 2;
+            }
+            inclinationEngine.update(values, timestamp, inclination);
+            if (sample == stepSample) target = accelerometer.getTrueAngle(1);
+            if ((sample >= stepSample) && Double.isNaN(result[0])) {
+                // The crossing is interpolated between the samples, so that it is not quantized by the period
+                double threshold = (1 - Math.exp(-1)) * Math.abs(target - start);
+                double change = Math.abs(inclination.angle[1] - start);
+                if (change >= threshold) {
+                    double fraction = (sample == stepSample) ? 1 : (threshold - lastChange) / (change - lastChange);
+                    result[0] = (lastTimestamp + fraction * (timestamp - lastTimestamp) - stepTimestamp) * 1E-9;
+                }
+                lastChange = change;
+            }
+            lastTimestamp = timestamp;
+            if (sample >= settledSample) {
+                for (int i = 0; i < 3; i++) result[i + 1] += (inclination.angle[i] - accelerometer.getTrueAngle(i)) / (SETTLED_SECONDS * rate);
+            }
+        }
+        return result;
+    }
+
+
+    @Test
+    public void settledAnglesDoNotDependOnTheRate() {
+        for (int sensorFusion : SENSOR_FUSIONS) {
+            for (double rate : RATES) {
+                for (double jitter : JITTERS) {
+                    double[] settled = response(rate, sensorFusion, NOISE, jitter, MOVE_SECONDS);
+                    String description = "fusion " + sensorFusion + ", " + rate + " Hz, jitter " + jitter;
+                    for (int i = 1; i <= 3; i++) {
+                        assertEquals(description + ": error of the settled angle " + (i - 1), 0, settled[i], MAX_ANGLE_ERROR);
+                    }
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void timeConstantDoesNotDependOnTheRate() {
+        double[] reference = response(RATES[0], InclinationEngine.SENSOR_FUSION_NONE, 0, 0, 0);
+        assertFalse("the step is never followed", Double.isNaN(reference[0]));
+        // Much longer than the periods, so that the comparison is meaningful
+        assertTrue("time constant " + reference[0] + " s", reference[0] > 0.1);
+        for (double rate : RATES) {
+            for (double jitter : JITTERS) {
+                double[] step = response(rate, InclinationEngine.SENSOR_FUSION_NONE, 0, jitter, 0);
+                String description = rate + " Hz, jitter " + jitter;
+                assertFalse(description + ": the step is never followed", Double.isNaN(step[0]));
+                assertEquals(description + ": time constant", reference[0], step[0], MAX_TIME_CONSTANT_DIFFERENCE);
+            }
+        }
+    }
+}